@@ -0,0 +1,62 @@
+package com.example.chatbotcache.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor for the chat pipeline. In virtual mode every pipeline step runs on its own
+ * virtual thread, so blocking LLM and Redis calls park cheaply instead of holding a
+ * platform thread. Virtual threads need Java 21, so the default is the bounded platform
+ * pool; virtual mode on an older runtime falls back to that pool with a warning.
+ */
+@Configuration
+public class ChatExecutorConfig {
+
+    public static final String VIRTUAL_MODE = "virtual";
+    public static final String PLATFORM_MODE = "platform";
+
+    @Value("${app.chat.executor.mode:platform}")
+    private String mode;
+
+    @Value("${app.chat.executor.platform-threads:200}")
+    private int platformThreads;
+
+    @Bean("chatExecutor")
+    public AsyncTaskExecutor chatExecutor() {
+        return createExecutor(mode, platformThreads);
+    }
+
+    /**
+     * Build an executor for the given mode, falling back to platform threads when
+     * virtual threads are not available on this JVM
+     */
+    public static AsyncTaskExecutor createExecutor(String mode, int platformThreads) {
+        return createExecutor(mode, platformThreads, "chat-");
+    }
+
+    public static AsyncTaskExecutor createExecutor(String mode, int platformThreads, String threadNamePrefix) {
+        if (VIRTUAL_MODE.equalsIgnoreCase(mode)) {
+            try {
+                return new VirtualThreadTaskExecutor(threadNamePrefix + "vt-");
+            } catch (UnsupportedOperationException e) {
+                System.err.println("Virtual threads unavailable, using platform threads for " + threadNamePrefix
+                    + " executor: " + e.getMessage());
+            }
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(platformThreads);
+        executor.setMaxPoolSize(platformThreads);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
+
+    public static boolean isVirtual(AsyncTaskExecutor executor) {
+        return executor instanceof VirtualThreadTaskExecutor;
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.chatbotcache.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis value serializer that stores the hot structured values (cached-response maps, event
+ * maps and lists) in a compact tagged binary format instead of JSON with class-name type
+ * metadata. Entities kept in repository hashes never pass through it, and any other object
+ * is written as JSON. Strings, numbers and booleans keep their JSON bytes so INCR/HINCRBY,
+ * LREM by value and Lua scripts see the same data as before.
+ *
+ * A compact value starts with a marker byte that can never begin a JSON document, followed
+ * by the format version. Reads accept both formats, so during a rolling upgrade new
+ * instances read what old instances wrote; writing compact values can be switched off
+ * until every reader understands them.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    public static final byte MARKER = (byte) 0xC7;
+    public static final byte VERSION = 1;
+
+    // Value tags
+    private static final int TAG_NULL = 0;
+    private static final int TAG_TRUE = 1;
+    private static final int TAG_FALSE = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_DOUBLE = 5;
+    private static final int TAG_STRING = 6;
+    private static final int TAG_MAP = 7;
+    private static final int TAG_LIST = 8;
+    private static final int TAG_SET = 9;
+    private static final int TAG_DATE_TIME = 10;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final RedisSerializer<Object> fallback;
+    private final boolean writeCompact;
+
+    public CompactRedisSerializer(RedisSerializer<Object> fallback, boolean writeCompact) {
+        this.fallback = fallback;
+        this.writeCompact = writeCompact;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        if (writeCompact && isCompactRoot(value)) {
+            try {
+                Writer out = new Writer();
+                out.writeByte(MARKER);
+                out.writeByte(VERSION);
+                writeValue(out, value);
+                return out.toByteArray();
+            } catch (UnsupportedValueException e) {
+                // A nested value outside the compact schema; keep the whole value as JSON
+            }
+        }
+        return fallback.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isCompact(bytes)) {
+            return fallback.deserialize(bytes);
+        }
+        if (bytes.length < 3) {
+            throw new SerializationException("Truncated compact value");
+        }
+        int version = bytes[1];
+        if (version < 1 || version > VERSION) {
+            throw new SerializationException("Unsupported compact value version " + version);
+        }
+
+        try {
+            Reader in = new Reader(bytes, 2);
+            Object value = readValue(in);
+            if (in.position != bytes.length) {
+                throw new SerializationException("Trailing bytes after compact value");
+            }
+            return value;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated compact value", e);
+        }
+    }
+
+    public static boolean isCompact(byte[] bytes) {
+        return bytes != null && bytes.length > 0 && bytes[0] == MARKER;
+    }
+
+    // Private helper methods
+
+    private boolean isCompactRoot(Object value) {
+        return value instanceof Map || value instanceof Collection;
+    }
+
+    private void writeValue(Writer out, Object value) {
+        if (value == null) {
+            out.writeVarint(TAG_NULL);
+        } else if (value instanceof String) {
+            out.writeVarint(TAG_STRING);
+            out.writeString((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeVarint((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer) {
+            out.writeVarint(TAG_INT);
+            out.writeZigZag((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeVarint(TAG_LONG);
+            out.writeZigZag((Long) value);
+        } else if (value instanceof Double) {
+            out.writeVarint(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof LocalDateTime) {
+            out.writeVarint(TAG_DATE_TIME);
+            writeDateTime(out, (LocalDateTime) value);
+        } else if (value instanceof Map) {
+            out.writeVarint(TAG_MAP);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof Set) {
+            out.writeVarint(TAG_SET);
+            writeElements(out, (Collection<?>) value);
+        } else if (value instanceof Collection) {
+            out.writeVarint(TAG_LIST);
+            writeElements(out, (Collection<?>) value);
+        } else {
+            throw new UnsupportedValueException();
+        }
+    }
+
+    private Object readValue(Reader in) {
+        int tag = (int) in.readVarint();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_INT:
+                return (int) in.readZigZag();
+            case TAG_LONG:
+                return in.readZigZag();
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_STRING:
+                return in.readString();
+            case TAG_MAP:
+                return readMap(in);
+            case TAG_LIST:
+                return readElements(in, new ArrayList<>());
+            case TAG_SET:
+                return readElements(in, new LinkedHashSet<>());
+            case TAG_DATE_TIME:
+                return readDateTime(in);
+            default:
+                throw new SerializationException("Unknown compact value tag " + tag);
+        }
+    }
+
+    private void writeMap(Writer out, Map<?, ?> map) {
+        out.writeVarint(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String)) {
+                throw new UnsupportedValueException();
+            }
+            out.writeString((String) entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private Map<String, Object> readMap(Reader in) {
+        int size = in.readLength();
+        Map<String, Object> map = new LinkedHashMap<>(Math.max(16, size * 4 / 3 + 1));
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private void writeElements(Writer out, Collection<?> elements) {
+        out.writeVarint(elements.size());
+        for (Object element : elements) {
+            writeValue(out, element);
+        }
+    }
+
+    private <C extends Collection<Object>> C readElements(Reader in, C elements) {
+        int size = in.readLength();
+        for (int i = 0; i < size; i++) {
+            elements.add(readValue(in));
+        }
+        return elements;
+    }
+
+    private void writeDateTime(Writer out, LocalDateTime value) {
+        out.writeZigZag(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeVarint(value.getNano());
+    }
+
+    private LocalDateTime readDateTime(Reader in) {
+        long epochSecond = in.readZigZag();
+        int nanos = (int) in.readVarint();
+        return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Thrown while writing when a value has no compact encoding
+     */
+    private static final class UnsupportedValueException extends RuntimeException {
+        private UnsupportedValueException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[128];
+        private int length = 0;
+
+        private void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) value;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        private void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[length++] = (byte) (bits >>> shift);
+            }
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in compact value");
+        }
+
+        private long readZigZag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (bytes[position++] & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private int readLength() {
+            long length = readVarint();
+            if (length < 0 || length > bytes.length - position) {
+                throw new SerializationException("Invalid length " + length + " in compact value");
+            }
+            return (int) length;
+        }
+
+        private String readString() {
+            int length = readLength();
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.chatbotcache.config;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Compresses the serialized form of structured template values (cached responses, event maps,
+ * lists) above the compressor's threshold. Scalars are written as the delegate writes them so
+ * that INCR, LREM and the Lua scripts keep working on them. Reads accept compressed and plain
+ * values. Repository entities are written field by field by the RedisConverter instead; there
+ * only ChatMessage.content is compressed, see MessageContentCompressingConverter.
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> delegate;
+    private final ValueCompressor compressor;
+
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, ValueCompressor compressor) {
+        this.delegate = delegate;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (value == null || value instanceof CharSequence || value instanceof Number || value instanceof Boolean) {
+            return bytes;
+        }
+        return compressor.compress(bytes);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        return delegate.deserialize(compressor.decompress(bytes));
+    }
+}
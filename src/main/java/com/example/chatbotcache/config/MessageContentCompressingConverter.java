@@ -0,0 +1,58 @@
+package com.example.chatbotcache.config;
+
+import com.example.chatbotcache.model.ChatMessage;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+/**
+ * Repository converter that compresses ChatMessage.content inside the message hash. Messages
+ * are short, so the content uses a threshold of its own and relies on the dictionary trained
+ * from chat content to save space. Every path that writes or reads message hashes goes through
+ * this converter: repository saves and finds, the scripted append and the pipelined reader.
+ * Plain content written before compression was enabled is read unchanged.
+ */
+public class MessageContentCompressingConverter extends MappingRedisConverter {
+
+    private static final String CONTENT_FIELD = "content";
+
+    private final ValueCompressor compressor;
+    private final int thresholdBytes;
+
+    public MessageContentCompressingConverter(RedisMappingContext mappingContext, ValueCompressor compressor,
+                                              int thresholdBytes) {
+        super(mappingContext);
+        this.compressor = compressor;
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public void write(Object source, RedisData sink) {
+        super.write(source, sink);
+        if (source instanceof ChatMessage) {
+            byte[] content = sink.getBucket().get(CONTENT_FIELD);
+            if (content != null) {
+                sink.getBucket().put(CONTENT_FIELD, compressor.compress(content, thresholdBytes));
+            }
+        }
+    }
+
+    @Override
+    public <R> R read(Class<R> type, RedisData source) {
+        if (ChatMessage.class.isAssignableFrom(type)) {
+            byte[] content = source.getBucket().get(CONTENT_FIELD);
+            if (isCompressedContent(content)) {
+                source.getBucket().put(CONTENT_FIELD, compressor.decompress(content));
+            }
+        }
+        return super.read(type, source);
+    }
+
+    // Private helper methods
+
+    private static boolean isCompressedContent(byte[] content) {
+        // Plain UTF-8 text may start with the marker byte, but then a continuation byte follows
+        // (0x80-0xBF) and never an envelope version
+        return ValueCompressor.isCompressed(content) && content[1] > 0 && content[1] <= ValueCompressor.VERSION;
+    }
+}
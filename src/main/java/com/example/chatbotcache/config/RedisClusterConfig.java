@@ -1,6 +1,7 @@
 package com.example.chatbotcache.config;
 
 import io.lettuce.core.ReadFrom;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
@@ -14,7 +15,7 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
@@ -52,6 +53,12 @@ public class RedisClusterConfig {
     @Value("${spring.data.redis.lettuce.shutdown-timeout:100}")
     private Duration shutdownTimeout;
 
+    @Value("${app.redis.serializer.format:compact}")
+    private String serializerFormat;
+
+    @Autowired
+    private ValueCompressor valueCompressor;
+
     @Bean
     @ConditionalOnProperty(name = "spring.data.redis.cluster.enabled", havingValue = "true")
     @Primary
@@ -121,24 +128,13 @@ public class RedisClusterConfig {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer =
-            new Jackson2JsonRedisSerializer<>(Object.class);
-
-        com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-        objectMapper.setVisibility(com.fasterxml.jackson.annotation.PropertyAccessor.ALL,
-            com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.ANY);
-        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(),
-            com.fasterxml.jackson.databind.ObjectMapper.DefaultTyping.NON_FINAL);
-        objectMapper.registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
-
-        jackson2JsonRedisSerializer.setObjectMapper(objectMapper);
+        RedisSerializer<Object> valueSerializer = RedisConfig.createValueSerializer(serializerFormat, valueCompressor);
 
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(jackson2JsonRedisSerializer);
-        template.setHashValueSerializer(jackson2JsonRedisSerializer);
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
 
-        template.setEnableTransactionSupport(true);
         template.afterPropertiesSet();
 
         return template;
@@ -3,27 +3,50 @@ package com.example.chatbotcache.config;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.CollectionType;
-import com.fasterxml.jackson.databind.type.MapType;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.example.chatbotcache.service.RedisCircuitBreaker;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.api.StatefulConnection;
+import io.lettuce.core.protocol.RedisCommand;
+import io.lettuce.core.protocol.TransactionalCommand;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.convert.RedisCustomConversions;
+import org.springframework.data.redis.core.convert.ReferenceResolver;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import redis.clients.jedis.JedisPoolConfig;
 
+import java.time.Duration;
+import java.util.Set;
+
 @Configuration
 @EnableScheduling
 public class RedisConfig {
 
+    private static final Set<String> DEDICATED_CONNECTION_COMMANDS = Set.of(
+        "MULTI", "EXEC", "DISCARD", "WATCH", "UNWATCH",
+        "BLPOP", "BRPOP", "BLMOVE", "BRPOPLPUSH", "BZPOPMIN", "BZPOPMAX", "XREAD", "XREADGROUP");
+
     @Value("${spring.data.redis.host:localhost}")
     private String redisHost;
 
@@ -42,29 +65,129 @@ public class RedisConfig {
     @Value("${spring.data.redis.jedis.pool.min-idle:0}")
     private int minIdle;
 
+    @Value("${spring.data.redis.lettuce.pool.max-active:16}")
+    private int lettuceMaxActive;
+
+    @Value("${spring.data.redis.lettuce.pool.max-idle:16}")
+    private int lettuceMaxIdle;
+
+    @Value("${spring.data.redis.lettuce.pool.min-idle:0}")
+    private int lettuceMinIdle;
+
+    @Value("${app.redis.serializer.format:compact}")
+    private String serializerFormat;
+
+    @Value("${app.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    @Value("${app.compression.threshold-bytes:512}")
+    private int compressionThresholdBytes;
+
+    @Value("${app.compression.message-threshold-bytes:64}")
+    private int messageCompressionThresholdBytes;
+
+    @Value("${app.compression.level:1}")
+    private int compressionLevel;
+
     @Bean
+    @ConditionalOnProperty(name = "app.redis.client", havingValue = "jedis")
     public JedisPoolConfig jedisPoolConfig() {
         JedisPoolConfig poolConfig = new JedisPoolConfig();
         poolConfig.setMaxTotal(maxActive);
         poolConfig.setMaxIdle(maxIdle);
         poolConfig.setMinIdle(minIdle);
-        poolConfig.setTestOnBorrow(true);
-        poolConfig.setTestOnReturn(true);
+        // Validate idle connections in the background instead of a PING per borrow and return
+        poolConfig.setTestOnBorrow(false);
+        poolConfig.setTestOnReturn(false);
         poolConfig.setTestWhileIdle(true);
         return poolConfig;
     }
 
     @Bean
+    @ConditionalOnProperty(name = "app.redis.client", havingValue = "jedis")
     public RedisConnectionFactory jedisConnectionFactory() {
         RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration();
         redisStandaloneConfiguration.setHostName(redisHost);
         redisStandaloneConfiguration.setPort(redisPort);
 
-        JedisConnectionFactory jedisConnectionFactory = new JedisConnectionFactory(
-            redisStandaloneConfiguration
+        // Jedis has no per-command deadline; the socket timeout bounds every command
+        JedisClientConfiguration clientConfiguration = JedisClientConfiguration.builder()
+            .connectTimeout(Duration.ofMillis(timeout))
+            .readTimeout(Duration.ofMillis(timeout))
+            .usePooling()
+            .poolConfig(jedisPoolConfig())
+            .build();
+
+        return new JedisConnectionFactory(redisStandaloneConfiguration, clientConfiguration);
+    }
+
+    /**
+     * Standalone Lettuce client. All non-blocking commands from every thread share one
+     * multiplexed connection and are written without waiting for earlier replies, so
+     * concurrent callers are pipelined automatically. The pool only serves commands that
+     * need a connection of their own: MULTI/EXEC and blocking reads. Each command times out
+     * when the budget of the guarded call that sent it runs out.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.redis.client", havingValue = "lettuce", matchIfMissing = true)
+    public LettuceConnectionFactory lettuceConnectionFactory() {
+        RedisStandaloneConfiguration redisStandaloneConfiguration = new RedisStandaloneConfiguration();
+        redisStandaloneConfiguration.setHostName(redisHost);
+        redisStandaloneConfiguration.setPort(redisPort);
+
+        GenericObjectPoolConfig<StatefulConnection<?, ?>> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(lettuceMaxActive);
+        poolConfig.setMaxIdle(lettuceMaxIdle);
+        poolConfig.setMinIdle(lettuceMinIdle);
+
+        TimeoutOptions timeoutOptions = TimeoutOptions.builder()
+            .timeoutSource(new TimeoutOptions.TimeoutSource() {
+                @Override
+                public long getTimeout(RedisCommand<?, ?, ?> command) {
+                    // These run on pooled dedicated connections; cutting one short would hand the
+                    // connection back still blocked or inside MULTI, so only the caller's wait is bounded
+                    if (command instanceof TransactionalCommand
+                            || DEDICATED_CONNECTION_COMMANDS.contains(command.getType().name())) {
+                        return 0;
+                    }
+                    return RedisCircuitBreaker.commandTimeoutMs(timeout);
+                }
+            })
+            .build();
+
+        LettuceClientConfiguration clientConfiguration = LettucePoolingClientConfiguration.builder()
+            .poolConfig(poolConfig)
+            .commandTimeout(Duration.ofMillis(timeout))
+            .clientOptions(ClientOptions.builder().timeoutOptions(timeoutOptions).build())
+            .build();
+
+        LettuceConnectionFactory lettuceConnectionFactory = new LettuceConnectionFactory(
+            redisStandaloneConfiguration, clientConfiguration
         );
-        jedisConnectionFactory.setPoolConfig(jedisPoolConfig());
-        return jedisConnectionFactory;
+        lettuceConnectionFactory.setShareNativeConnection(true);
+        return lettuceConnectionFactory;
+    }
+
+    @Bean(destroyMethod = "close")
+    public ValueCompressor valueCompressor() {
+        return new ValueCompressor(compressionEnabled, compressionThresholdBytes, compressionLevel);
+    }
+
+    /**
+     * Converter of the Redis repositories, declared here in place of the default one so that
+     * message content is compressed in the hash. The repository configuration only registers
+     * its own converter when none exists, and still provides the beans it is built from.
+     */
+    @Bean("redisConverter")
+    public MappingRedisConverter redisConverter(
+            @Qualifier("keyValueMappingContext") RedisMappingContext mappingContext,
+            @Qualifier("redisReferenceResolver") ReferenceResolver referenceResolver,
+            @Qualifier("redisCustomConversions") RedisCustomConversions customConversions) {
+        MappingRedisConverter converter = new MessageContentCompressingConverter(
+            mappingContext, valueCompressor(), messageCompressionThresholdBytes);
+        converter.setReferenceResolver(referenceResolver);
+        converter.setCustomConversions(customConversions);
+        return converter;
     }
 
     @Bean
@@ -72,30 +195,47 @@ public class RedisConfig {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
-        // Configure Jackson serializer
-        Jackson2JsonRedisSerializer<Object> jackson2JsonRedisSerializer =
-            new Jackson2JsonRedisSerializer<>(Object.class);
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
-        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(),
-            ObjectMapper.DefaultTyping.NON_FINAL);
-        objectMapper.registerModule(new JavaTimeModule());
-
-        jackson2JsonRedisSerializer.setObjectMapper(objectMapper);
+        RedisSerializer<Object> valueSerializer = createValueSerializer(serializerFormat, valueCompressor());
 
         // Set serializers
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(jackson2JsonRedisSerializer);
-        template.setHashValueSerializer(jackson2JsonRedisSerializer);
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
 
-        template.setEnableTransactionSupport(true);
         template.afterPropertiesSet();
 
         return template;
     }
 
+    /**
+     * Value serializer for the given format. Both formats read compact and JSON values;
+     * "json" only stops writing compact ones, for rolling upgrades from older instances.
+     */
+    public static RedisSerializer<Object> createValueSerializer(String format) {
+        return new CompactRedisSerializer(createJsonSerializer(), !"json".equalsIgnoreCase(format));
+    }
+
+    /**
+     * Value serializer that also compresses large structured values with the given compressor
+     */
+    public static RedisSerializer<Object> createValueSerializer(String format, ValueCompressor compressor) {
+        return new CompressingRedisSerializer(createValueSerializer(format), compressor);
+    }
+
+    /**
+     * Jackson serializer with default typing, the original value format
+     */
+    public static Jackson2JsonRedisSerializer<Object> createJsonSerializer() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        objectMapper.activateDefaultTyping(objectMapper.getPolymorphicTypeValidator(),
+            ObjectMapper.DefaultTyping.NON_FINAL);
+        objectMapper.registerModule(new JavaTimeModule());
+
+        return new Jackson2JsonRedisSerializer<>(objectMapper, Object.class);
+    }
+
     @Bean("customStringRedisTemplate")
     public RedisTemplate<String, String> customStringRedisTemplate(RedisConnectionFactory connectionFactory) {
         RedisTemplate<String, String> template = new RedisTemplate<>();
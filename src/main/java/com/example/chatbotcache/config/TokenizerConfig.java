@@ -0,0 +1,48 @@
+package com.example.chatbotcache.config;
+
+import com.example.chatbotcache.service.BpeTokenizer;
+import com.example.chatbotcache.service.BpeVocabulary;
+import com.example.chatbotcache.service.HeuristicTokenizer;
+import com.example.chatbotcache.service.Tokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tokenizer used for all token counts and context-window budgeting. The "bpe" engine loads
+ * a tiktoken rank file (the bundled cl100k_base by default) and startup fails if it cannot
+ * be loaded, since budgets would silently drift otherwise. The "heuristic" engine uses the
+ * word-based estimate.
+ */
+@Configuration
+public class TokenizerConfig {
+
+    public static final String BPE_ENGINE = "bpe";
+    public static final String HEURISTIC_ENGINE = "heuristic";
+
+    @Value("${app.tokenizer.engine:bpe}")
+    private String engine;
+
+    @Value("${app.tokenizer.vocabulary:classpath:tokenizer/cl100k_base.tiktoken}")
+    private String vocabulary;
+
+    @Bean
+    public Tokenizer tokenizer() {
+        return createTokenizer(engine, vocabulary);
+    }
+
+    /**
+     * Build a tokenizer for the given engine; throws IllegalStateException when the BPE
+     * vocabulary cannot be loaded
+     */
+    public static Tokenizer createTokenizer(String engine, String vocabularyLocation) {
+        if (BPE_ENGINE.equalsIgnoreCase(engine)) {
+            return new BpeTokenizer(BpeVocabulary.load(vocabularyLocation), BpeTokenizer.CL100K_PATTERN);
+        }
+        if (HEURISTIC_ENGINE.equalsIgnoreCase(engine)) {
+            return new HeuristicTokenizer();
+        }
+        throw new IllegalArgumentException("Unknown tokenizer engine " + engine + ", expected "
+            + BPE_ENGINE + " or " + HEURISTIC_ENGINE);
+    }
+}
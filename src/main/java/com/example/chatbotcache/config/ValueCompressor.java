@@ -0,0 +1,321 @@
+package com.example.chatbotcache.config;
+
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Threshold-based DEFLATE compression of serialized Redis values, optionally primed with a
+ * preset dictionary trained from chat content so that short values compress too.
+ * A compressed value is self-describing: a marker byte distinct from the JSON and compact
+ * formats, the envelope version, the dictionary ID (0 for none) and the uncompressed length.
+ * Anything without the marker is returned unchanged, so compressed and plain values coexist.
+ * Deflaters and inflaters hold native memory, so a bounded pool of them is reused and reset
+ * after each value; instances beyond the pool are ended at once and the rest on close.
+ */
+public class ValueCompressor {
+
+    public static final byte MARKER = (byte) 0xC8;
+    public static final byte VERSION = 1;
+
+    // Marker, version, dictionary ID and length
+    private static final int MIN_HEADER_BYTES = 4;
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+    private final boolean enabled;
+    private final int thresholdBytes;
+    private final int level;
+
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private volatile int activeDictionaryId = 0;
+    private volatile IntFunction<byte[]> dictionaryLoader;
+    private volatile boolean closed = false;
+
+    private final AtomicLong compressedValues = new AtomicLong(0);
+    private final AtomicLong skippedValues = new AtomicLong(0);
+    private final AtomicLong uncompressedBytes = new AtomicLong(0);
+    private final AtomicLong storedBytes = new AtomicLong(0);
+
+    public ValueCompressor(boolean enabled, int thresholdBytes, int level) {
+        this.enabled = enabled;
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    /**
+     * Compress a serialized value if it is at least the threshold size and compression saves space
+     */
+    public byte[] compress(byte[] raw) {
+        return compress(raw, thresholdBytes);
+    }
+
+    /**
+     * Compress a value with a threshold of its own, e.g. for short fields that share the
+     * trained dictionary with the larger template values
+     */
+    public byte[] compress(byte[] raw, int thresholdBytes) {
+        if (!enabled || raw == null || raw.length < thresholdBytes) {
+            return raw;
+        }
+
+        int dictionaryId = activeDictionaryId;
+        byte[] dictionary = dictionaryId != 0 ? dictionaries.get(dictionaryId) : null;
+        if (dictionary == null) {
+            dictionaryId = 0;
+        }
+
+        // Only worth storing if the result is smaller than the original
+        byte[] out = new byte[raw.length];
+        int position = 0;
+        out[position++] = MARKER;
+        out[position++] = VERSION;
+        position = writeVarint(out, position, dictionaryId);
+        position = writeVarint(out, position, raw.length);
+
+        Deflater deflater = borrowDeflater();
+        boolean finished;
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            while (!deflater.finished() && position < out.length) {
+                position += deflater.deflate(out, position, out.length - position);
+            }
+            finished = deflater.finished();
+        } finally {
+            release(deflater);
+        }
+
+        if (!finished) {
+            skippedValues.incrementAndGet();
+            return raw;
+        }
+        compressedValues.incrementAndGet();
+        uncompressedBytes.addAndGet(raw.length);
+        storedBytes.addAndGet(position);
+        return Arrays.copyOf(out, position);
+    }
+
+    /**
+     * Restore a compressed value; values without the compression marker are returned as is
+     */
+    public byte[] decompress(byte[] stored) {
+        if (!isCompressed(stored)) {
+            return stored;
+        }
+        if (stored[1] < 1 || stored[1] > VERSION) {
+            throw new SerializationException("Unsupported compressed value version " + stored[1]);
+        }
+
+        int[] position = {2};
+        int dictionaryId = (int) readVarint(stored, position);
+        int length = (int) readVarint(stored, position);
+        byte[] dictionary = dictionaryId != 0 ? getDictionary(dictionaryId) : null;
+        if (dictionaryId != 0 && dictionary == null) {
+            throw new SerializationException("Unknown compression dictionary " + dictionaryId);
+        }
+
+        byte[] raw = new byte[length];
+        Inflater inflater = borrowInflater();
+        try {
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(stored, position[0], stored.length - position[0]);
+
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int n = inflater.inflate(raw, inflated, length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != length) {
+                throw new SerializationException("Compressed value inflated to " + inflated + " of " + length + " bytes");
+            }
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt compressed value", e);
+        } finally {
+            release(inflater);
+        }
+        return raw;
+    }
+
+    public static boolean isCompressed(byte[] bytes) {
+        return bytes != null && bytes.length >= MIN_HEADER_BYTES && bytes[0] == MARKER;
+    }
+
+    /**
+     * Size of the raw DEFLATE stream for the input, for comparing dictionaries
+     */
+    public static int deflatedSize(byte[] raw, byte[] dictionary, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, raw.length)];
+            int size = 0;
+            while (!deflater.finished()) {
+                size += deflater.deflate(buffer);
+            }
+            return size;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public void registerDictionary(int dictionaryId, byte[] dictionary) {
+        if (dictionaryId <= 0 || dictionary == null || dictionary.length == 0) {
+            throw new IllegalArgumentException("Dictionary ID must be positive and the dictionary non-empty");
+        }
+        dictionaries.put(dictionaryId, dictionary);
+    }
+
+    /**
+     * Compress new values with the given registered dictionary, or without one for 0
+     */
+    public void useDictionary(int dictionaryId) {
+        if (dictionaryId != 0 && !dictionaries.containsKey(dictionaryId)) {
+            throw new IllegalArgumentException("Dictionary " + dictionaryId + " is not registered");
+        }
+        activeDictionaryId = dictionaryId;
+    }
+
+    /**
+     * Callback used to fetch a dictionary referenced by a stored value but not registered yet,
+     * e.g. one trained by another instance
+     */
+    public void setDictionaryLoader(IntFunction<byte[]> loader) {
+        this.dictionaryLoader = loader;
+    }
+
+    /**
+     * End the pooled deflaters and inflaters; instances in use are ended when they are returned
+     */
+    public void close() {
+        closed = true;
+        endPooled();
+    }
+
+    public int getActiveDictionaryId() {
+        return activeDictionaryId;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public Map<String, Object> getStats() {
+        long uncompressed = uncompressedBytes.get();
+        long stored = storedBytes.get();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("thresholdBytes", thresholdBytes);
+        stats.put("level", level);
+        stats.put("activeDictionaryId", activeDictionaryId);
+        stats.put("activeDictionaryBytes", activeDictionaryId != 0 ? dictionaries.get(activeDictionaryId).length : 0);
+        stats.put("loadedDictionaries", dictionaries.size());
+        stats.put("compressedValues", compressedValues.get());
+        stats.put("skippedValues", skippedValues.get());
+        stats.put("uncompressedBytes", uncompressed);
+        stats.put("storedBytes", stored);
+        stats.put("savedBytes", uncompressed - stored);
+        stats.put("compressionRatio", stored > 0 ? (double) uncompressed / stored : 0.0);
+        return stats;
+    }
+
+    // Private helper methods
+
+    private Deflater borrowDeflater() {
+        Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(level, true);
+    }
+
+    private Inflater borrowInflater() {
+        Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        if (closed || !deflaters.offer(deflater)) {
+            deflater.end();
+        } else if (closed) {
+            // Closed while this one was being returned
+            endPooled();
+        }
+    }
+
+    private void release(Inflater inflater) {
+        inflater.reset();
+        if (closed || !inflaters.offer(inflater)) {
+            inflater.end();
+        } else if (closed) {
+            endPooled();
+        }
+    }
+
+    private void endPooled() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    private byte[] getDictionary(int dictionaryId) {
+        byte[] dictionary = dictionaries.get(dictionaryId);
+        IntFunction<byte[]> loader = dictionaryLoader;
+        if (dictionary == null && loader != null) {
+            dictionary = loader.apply(dictionaryId);
+            if (dictionary != null && dictionary.length > 0) {
+                dictionaries.put(dictionaryId, dictionary);
+            }
+        }
+        return dictionary;
+    }
+
+    private static int writeVarint(byte[] out, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in compressed value header");
+    }
+}
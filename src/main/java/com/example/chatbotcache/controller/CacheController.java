@@ -32,7 +32,7 @@ public class CacheController {
             Map<String, Object> stats = cacheService.getCacheStats();
 
             // Get additional cache information
-            long responseCacheSize = cacheService.getCacheSize("cache:response:*");
+            long responseCacheSize = cacheService.getResponseCacheSize();
             Map<String, Double> mostActiveSessions = cacheService.getMostActiveSessions(10);
             Map<String, Double> mostActiveUsers = cacheService.getMostActiveUsers(10);
 
@@ -1,145 +1,131 @@
 package com.example.chatbotcache.controller;
 
-import com.example.chatbotcache.model.ChatMessage;
-import com.example.chatbotcache.model.MessageRole;
-import com.example.chatbotcache.model.UserPreferences;
 import com.example.chatbotcache.model.dto.ChatRequest;
 import com.example.chatbotcache.model.dto.ChatResponse;
 import com.example.chatbotcache.model.dto.ContextResponse;
-import com.example.chatbotcache.service.FallbackChatSessionService;
-import com.example.chatbotcache.service.FallbackMessageService;
+import com.example.chatbotcache.service.ChatPipelineService;
 import com.example.chatbotcache.service.MockLLMService;
-import com.example.chatbotcache.service.UserPreferencesService;
+import com.example.chatbotcache.service.RoutingChatSessionService;
+import com.example.chatbotcache.service.RoutingMessageService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/sessions/{sessionId}")
 public class ChatController {
 
+    private static final long STREAM_TIMEOUT_MS = 60_000L;
+
     @Autowired
-    private FallbackMessageService messageService;
+    private RoutingMessageService messageService;
 
     @Autowired
     private MockLLMService mockLLMService;
 
     @Autowired
-    private FallbackChatSessionService chatSessionService;
+    private RoutingChatSessionService chatSessionService;
 
     @Autowired
-    private UserPreferencesService userPreferencesService;
+    private ChatPipelineService chatPipelineService;
 
     /**
-     * Send a message and get an AI response
+     * Send a message and get an AI response. The pipeline runs on the chat executor,
+     * so the servlet thread is released while the LLM call is in flight.
      */
     @PostMapping("/chat")
-    public ResponseEntity<ChatResponse> chat(
+    public CompletableFuture<ResponseEntity<ChatResponse>> chat(
             @PathVariable String sessionId,
             @Valid @RequestBody ChatRequest request) {
-        try {
-            // Validate session exists
-            var session = chatSessionService.getSession(sessionId);
-            if (session.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
-
-            String userId = session.get().getUserId();
-
-            // Get user preferences
-            UserPreferences preferences = userPreferencesService.getUserPreferences(userId);
-
-            // Store user message
-            ChatMessage userMessage = messageService.addMessage(
-                sessionId,
-                MessageRole.USER,
-                request.getMessage(),
-                mockLLMService.estimateTokenCount(request.getMessage())
-            );
-
-            // Generate AI response with metadata
-            Map<String, Object> responseData = mockLLMService.generateResponseWithMetadata(
-                sessionId,
-                request.getMessage(),
-                preferences
-            );
-
-            // Check if generation failed
-            if (responseData.containsKey("error")) {
+        return chatPipelineService.chat(sessionId, request.getMessage())
+            .<ResponseEntity<ChatResponse>>handle((response, throwable) -> {
+                if (throwable == null) {
+                    if (response.getError() != null) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+                    }
+                    return ResponseEntity.ok(response);
+                }
+
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause() : throwable;
+                if (cause instanceof NoSuchElementException) {
+                    return ResponseEntity.notFound().build();
+                }
+                if (cause instanceof IllegalArgumentException) {
+                    return ResponseEntity.badRequest().build();
+                }
+
+                // Handle LLM service errors
                 ChatResponse errorResponse = new ChatResponse();
                 errorResponse.setSessionId(sessionId);
                 errorResponse.setUserMessage(request.getMessage());
-                errorResponse.setError((String) responseData.get("error"));
-                errorResponse.setProcessingTimeMs((Long) responseData.get("processingTimeMs"));
+                errorResponse.setError("Service temporarily unavailable: " + cause.getMessage());
 
                 return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
-            }
-
-            // Store assistant response
-            String aiResponse = (String) responseData.get("response");
-            Integer tokenCount = (Integer) responseData.get("tokenCount");
-
-            ChatMessage assistantMessage = messageService.addMessage(
-                sessionId,
-                MessageRole.ASSISTANT,
-                aiResponse,
-                tokenCount
-            );
-
-            // Update session activity
-            chatSessionService.updateLastActivity(sessionId);
-
-            // Build response
-            ChatResponse response = new ChatResponse();
-            response.setSessionId(sessionId);
-            response.setUserMessage(request.getMessage());
-            response.setAiResponse(aiResponse);
-            response.setUserMessageId(userMessage.getMessageId());
-            response.setAiMessageId(assistantMessage.getMessageId());
-            response.setTokenCount(tokenCount);
-            response.setProcessingTimeMs((Long) responseData.get("processingTimeMs"));
-            response.setModel((String) responseData.get("model"));
-            response.setTopic((String) responseData.get("topic"));
-
-            return ResponseEntity.ok(response);
-
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.badRequest().build();
-        } catch (Exception e) {
-            // Handle LLM service errors
-            ChatResponse errorResponse = new ChatResponse();
-            errorResponse.setSessionId(sessionId);
-            errorResponse.setUserMessage(request.getMessage());
-            errorResponse.setError("Service temporarily unavailable: " + e.getMessage());
+            });
+    }
 
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+    /**
+     * Send a message and stream the AI response as server-sent events.
+     * Emits a "token" event per generated token, then a "done" event carrying the
+     * stored message IDs and timings, or an "error" event if generation fails.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChat(
+            @PathVariable String sessionId,
+            @Valid @RequestBody ChatRequest request) {
+        // Validate session exists before committing to a stream
+        if (chatSessionService.getSession(sessionId).isEmpty()) {
+            return ResponseEntity.notFound().build();
         }
+
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        chatPipelineService.streamChat(sessionId, request.getMessage(), token -> sendEvent(emitter, "token", token))
+            .whenComplete((response, throwable) -> {
+                try {
+                    if (throwable == null) {
+                        emitter.send(SseEmitter.event()
+                            .name(response.getError() != null ? "error" : "done")
+                            .data(response, MediaType.APPLICATION_JSON));
+                    } else {
+                        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                            ? throwable.getCause() : throwable;
+                        ChatResponse errorResponse = new ChatResponse();
+                        errorResponse.setSessionId(sessionId);
+                        errorResponse.setUserMessage(request.getMessage());
+                        errorResponse.setError("Service temporarily unavailable: " + cause.getMessage());
+                        emitter.send(SseEmitter.event().name("error").data(errorResponse, MediaType.APPLICATION_JSON));
+                    }
+                    emitter.complete();
+                } catch (Exception e) {
+                    // Client has gone away
+                    emitter.completeWithError(e);
+                }
+            });
+
+        return ResponseEntity.ok(emitter);
     }
 
     /**
      * Continue conversation with context
      */
     @PostMapping("/chat/continue")
-    public ResponseEntity<ChatResponse> continueConversation(
+    public CompletableFuture<ResponseEntity<ChatResponse>> continueConversation(
             @PathVariable String sessionId,
             @Valid @RequestBody ChatRequest request) {
-        try {
-            // This endpoint is identical to /chat but semantically different
-            // It explicitly indicates continuation of existing conversation
-            return chat(sessionId, request);
-
-        } catch (Exception e) {
-            ChatResponse errorResponse = new ChatResponse();
-            errorResponse.setSessionId(sessionId);
-            errorResponse.setUserMessage(request.getMessage());
-            errorResponse.setError("Failed to continue conversation: " + e.getMessage());
-
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
-        }
+        // This endpoint is identical to /chat but semantically different
+        // It explicitly indicates continuation of existing conversation
+        return chat(sessionId, request);
     }
 
     /**
@@ -176,4 +162,13 @@ public class ChatController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException e) {
+            // Abort generation when the client disconnects mid-stream
+            throw new UncheckedIOException(e);
+        }
+    }
+}
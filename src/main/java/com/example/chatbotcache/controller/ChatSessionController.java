@@ -5,7 +5,7 @@ import com.example.chatbotcache.model.dto.CreateSessionRequest;
 import com.example.chatbotcache.model.dto.SessionResponse;
 import com.example.chatbotcache.model.dto.SessionStatsResponse;
 import com.example.chatbotcache.model.dto.UpdateSessionRequest;
-import com.example.chatbotcache.service.FallbackChatSessionService;
+import com.example.chatbotcache.service.RoutingChatSessionService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -21,7 +21,7 @@ import java.util.stream.Collectors;
 public class ChatSessionController {
 
     @Autowired
-    private FallbackChatSessionService chatSessionService;
+    private RoutingChatSessionService chatSessionService;
 
     /**
      * Create a new chat session
@@ -1,6 +1,8 @@
 package com.example.chatbotcache.controller;
 
+import com.example.chatbotcache.service.CompressionDictionaryService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,6 +12,7 @@ import org.springframework.web.bind.annotation.RestController;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 
 @RestController
 @RequestMapping("/api/health")
@@ -18,6 +21,9 @@ public class HealthController {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private CompressionDictionaryService compressionDictionaryService;
+
     @GetMapping("/redis")
     public ResponseEntity<Map<String, Object>> checkRedisHealth() {
         Map<String, Object> health = new HashMap<>();
@@ -74,6 +80,14 @@ public class HealthController {
                 "test_value", value
             ));
 
+            // Memory used by Redis and bytes saved by value compression since startup
+            Properties memory = redisTemplate.execute((RedisCallback<Properties>) connection ->
+                connection.serverCommands().info("memory"));
+            if (memory != null) {
+                info.put("usedMemoryBytes", memory.getProperty("used_memory"));
+            }
+            info.put("compression", compressionDictionaryService.getStats());
+
             return ResponseEntity.ok(info);
 
         } catch (Exception e) {
@@ -7,7 +7,7 @@ import com.example.chatbotcache.model.dto.MessageCountResponse;
 import com.example.chatbotcache.model.dto.MessageRequest;
 import com.example.chatbotcache.model.dto.MessageResponse;
 import com.example.chatbotcache.model.dto.MessagesPageResponse;
-import com.example.chatbotcache.service.FallbackMessageService;
+import com.example.chatbotcache.service.RoutingMessageService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -24,7 +24,7 @@ import java.util.stream.Collectors;
 public class MessageController {
 
     @Autowired
-    private FallbackMessageService messageService;
+    private RoutingMessageService messageService;
 
     /**
      * Add a new message to a session
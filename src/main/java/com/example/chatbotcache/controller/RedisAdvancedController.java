@@ -2,6 +2,7 @@ package com.example.chatbotcache.controller;
 
 import com.example.chatbotcache.service.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -9,6 +10,7 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/redis/advanced")
@@ -26,6 +28,39 @@ public class RedisAdvancedController {
     @Autowired
     private RedisHealthService healthService;
 
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private IndexBackfillService indexBackfillService;
+
+    @Autowired
+    private ChatEventStreamProcessor chatEventStreamProcessor;
+
+    @Autowired
+    private FallbackMemoryBudget fallbackMemoryBudget;
+
+    @Autowired
+    private RedisFailoverRouter failoverRouter;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private CompressionDictionaryService compressionDictionaryService;
+
+    @Autowired
+    private RedisTransactionService transactionService;
+
+    @Autowired
+    private RedisAsyncService asyncService;
+
+    @Autowired
+    private TokenCountingService tokenCountingService;
+
+    @Autowired
+    private AutoCompactionService autoCompactionService;
+
     // Stream endpoints
 
     @GetMapping("/streams/chat/{sessionId}")
@@ -61,6 +96,20 @@ public class RedisAdvancedController {
         return ResponseEntity.ok(events);
     }
 
+    @GetMapping("/streams/events/chat/consumers")
+    public ResponseEntity<Map<String, Object>> getChatEventConsumers() {
+        return ResponseEntity.ok(chatEventStreamProcessor.getStats());
+    }
+
+    @GetMapping("/streams/{streamKey}/info")
+    public ResponseEntity<Map<String, Object>> getStreamInfo(@PathVariable String streamKey) {
+        Map<String, Object> info = streamService.getStreamInfo(streamKey);
+        if (info.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(info);
+    }
+
     @GetMapping("/streams")
     public ResponseEntity<List<String>> getAllChatStreams() {
         List<String> streams = streamService.getAllChatStreams();
@@ -246,6 +295,27 @@ public class RedisAdvancedController {
         }
     }
 
+    // Index maintenance endpoints
+
+    @PostMapping("/indexes/backfill")
+    public ResponseEntity<Map<String, Object>> backfillIndexes(
+            @RequestParam(defaultValue = "100") int batchSize) {
+        try {
+            long startTime = System.currentTimeMillis();
+            Map<String, Long> indexed = indexBackfillService.backfillAll(batchSize);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("indexed", indexed);
+            response.put("durationMs", System.currentTimeMillis() - startTime);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     // Health monitoring endpoints
 
     @GetMapping("/health")
@@ -330,4 +400,163 @@ public class RedisAdvancedController {
             return ResponseEntity.badRequest().body(response);
         }
     }
-}
\ No newline at end of file
+
+    @GetMapping("/async")
+    public ResponseEntity<Map<String, Object>> getAsyncStats() {
+        return ResponseEntity.ok(asyncService.getStats());
+    }
+
+    @GetMapping("/transactions")
+    public ResponseEntity<Map<String, Object>> getTransactionStats() {
+        return ResponseEntity.ok(transactionService.getStats());
+    }
+
+    @GetMapping("/circuit-breaker")
+    public ResponseEntity<Map<String, Object>> getCircuitBreakerStatus() {
+        return ResponseEntity.ok(circuitBreaker.getStats());
+    }
+
+    @PostMapping("/circuit-breaker/reset")
+    public ResponseEntity<Map<String, Object>> resetCircuitBreaker() {
+        circuitBreaker.reset();
+        return ResponseEntity.ok(circuitBreaker.getStats());
+    }
+
+    @GetMapping("/failover")
+    public ResponseEntity<Map<String, Object>> getFailoverStatus() {
+        return ResponseEntity.ok(failoverRouter.getStats());
+    }
+
+    @GetMapping("/fallback/memory")
+    public ResponseEntity<Map<String, Object>> getFallbackMemory() {
+        return ResponseEntity.ok(fallbackMemoryBudget.getStats());
+    }
+
+    @GetMapping("/compression")
+    public ResponseEntity<Map<String, Object>> getCompressionStats() {
+        return ResponseEntity.ok(compressionDictionaryService.getStats());
+    }
+
+    /**
+     * Active tokenizer, with the token count of the given text if any
+     */
+    @GetMapping("/tokenizer")
+    public ResponseEntity<Map<String, Object>> getTokenizerStats(@RequestParam(required = false) String text) {
+        Map<String, Object> response = new HashMap<>(tokenCountingService.getStats());
+        if (text != null) {
+            response.put("tokens", tokenCountingService.estimateTokenCount(text));
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Fold the messages outside the recent window into the session's rolling summary
+     */
+    @PostMapping("/sessions/{sessionId}/compact")
+    public ResponseEntity<Map<String, Object>> compactSession(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "4000") int contextWindow) {
+        try {
+            Optional<ContextCompressionService.IncrementalCompressionResult> compaction =
+                messageService.compactSession(sessionId, contextWindow);
+            Map<String, Object> response = new HashMap<>();
+            if (compaction.isEmpty()) {
+                response.put("success", false);
+                response.put("error", "Session is already being compacted");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+            }
+
+            ContextCompressionService.IncrementalCompressionResult result = compaction.get();
+            response.put("success", true);
+            response.put("compacted", result.wasCompressed());
+            response.put("messagesSummarized", result.getSummarizedCount());
+            response.put("totalSummarizedMessages", result.getSummaryState().getMessageCount());
+            response.put("messagesRemaining", result.getCompressedMessages().size());
+            response.put("finalTokenCount", result.getFinalTokenCount());
+            response.put("tokensRemoved", result.getTokensRemoved());
+            response.put("summary", result.getConversationSummary());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Rolling summary of the messages compacted out of a session
+     */
+    @GetMapping("/sessions/{sessionId}/summary")
+    public ResponseEntity<Map<String, Object>> getSessionSummary(@PathVariable String sessionId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("sessionId", sessionId);
+            response.put("summary", messageService.getConversationSummary(sessionId));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Background compaction queue, worker and throughput statistics
+     */
+    @GetMapping("/compaction/auto")
+    public ResponseEntity<Map<String, Object>> getAutoCompactionStats() {
+        return ResponseEntity.ok(autoCompactionService.getStats());
+    }
+
+    /**
+     * Queue a session for background compaction
+     */
+    @PostMapping("/compaction/auto/sessions/{sessionId}")
+    public ResponseEntity<Map<String, Object>> enqueueCompaction(@PathVariable String sessionId) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("sessionId", sessionId);
+            response.put("queued", autoCompactionService.enqueue(sessionId));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    /**
+     * Run a budget scan and a queue drain now instead of waiting for the schedule
+     */
+    @PostMapping("/compaction/auto/run")
+    public ResponseEntity<Map<String, Object>> runAutoCompaction() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("sessionsQueued", autoCompactionService.scanSessions());
+        response.put("compactionsStarted", autoCompactionService.drainQueue());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Train a new compression dictionary from sampled message contents and cached responses
+     */
+    @PostMapping("/compression/dictionary/train")
+    public ResponseEntity<Map<String, Object>> trainCompressionDictionary() {
+        try {
+            Map<String, Object> result = compressionDictionaryService.trainDictionary();
+            return Boolean.TRUE.equals(result.get("success"))
+                ? ResponseEntity.ok(result)
+                : ResponseEntity.badRequest().body(result);
+        } catch (Exception e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.index.Indexed;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -19,9 +20,11 @@ public class ChatMessage {
     @NotBlank(message = "Message ID cannot be blank")
     private String messageId;
 
+    @Indexed
     @NotBlank(message = "Session ID cannot be blank")
     private String sessionId;
 
+    @Indexed
     @NotNull(message = "Message role cannot be null")
     private MessageRole role;
 
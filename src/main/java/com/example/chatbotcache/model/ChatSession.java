@@ -7,6 +7,7 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.index.Indexed;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -21,6 +22,7 @@ public class ChatSession {
     @NotBlank(message = "Session ID cannot be blank")
     private String sessionId;
 
+    @Indexed
     @NotBlank(message = "User ID cannot be blank")
     @Size(max = 100, message = "User ID cannot exceed 100 characters")
     private String userId;
@@ -39,6 +41,7 @@ public class ChatSession {
 
     private String title;
 
+    @Indexed
     private Boolean active;
 
     public ChatSession() {
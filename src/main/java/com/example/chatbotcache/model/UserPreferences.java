@@ -9,16 +9,15 @@ import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.Data;
-import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.redis.core.RedisHash;
+import org.springframework.data.redis.core.index.Indexed;
 
 import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.Objects;
 
 @Data
-@NoArgsConstructor
 @RedisHash("user_preferences")
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class UserPreferences {
@@ -28,6 +27,7 @@ public class UserPreferences {
     @Size(max = 100, message = "User ID cannot exceed 100 characters")
     private String userId;
 
+    @Indexed
     @Size(max = 50, message = "Model name cannot exceed 50 characters")
     private String model;
 
@@ -42,12 +42,15 @@ public class UserPreferences {
     @Size(max = 1000, message = "System prompt cannot exceed 1000 characters")
     private String systemPrompt;
 
+    @Indexed
     @Min(value = 1, message = "Context window must be at least 1")
     @Max(value = 32768, message = "Context window cannot exceed 32768")
     private Integer contextWindow;
 
+    @Indexed
     private Boolean enableCaching;
 
+    @Indexed
     private Boolean enableLogging;
 
     // Additional fields for demo service
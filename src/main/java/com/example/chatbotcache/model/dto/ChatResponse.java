@@ -13,6 +13,7 @@ public class ChatResponse {
     private String aiMessageId;
     private Integer tokenCount;
     private Long processingTimeMs;
+    private Long timeToFirstTokenMs;
     private String model;
     private String topic;
     private String error;
@@ -81,6 +82,14 @@ public class ChatResponse {
         this.processingTimeMs = processingTimeMs;
     }
 
+    public Long getTimeToFirstTokenMs() {
+        return timeToFirstTokenMs;
+    }
+
+    public void setTimeToFirstTokenMs(Long timeToFirstTokenMs) {
+        this.timeToFirstTokenMs = timeToFirstTokenMs;
+    }
+
     public String getModel() {
         return model;
     }
@@ -121,6 +130,7 @@ public class ChatResponse {
                 ", aiResponse='" + aiResponse + '\'' +
                 ", tokenCount=" + tokenCount +
                 ", processingTimeMs=" + processingTimeMs +
+                ", timeToFirstTokenMs=" + timeToFirstTokenMs +
                 ", model='" + model + '\'' +
                 ", topic='" + topic + '\'' +
                 ", error='" + error + '\'' +
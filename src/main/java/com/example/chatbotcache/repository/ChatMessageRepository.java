@@ -5,12 +5,11 @@ import com.example.chatbotcache.model.MessageRole;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ChatMessageRepository extends CrudRepository<ChatMessage, String> {
+public interface ChatMessageRepository extends CrudRepository<ChatMessage, String>, ChatMessageRepositoryCustom {
 
     /**
      * Find all messages for a specific session
@@ -32,21 +31,6 @@ public interface ChatMessageRepository extends CrudRepository<ChatMessage, Strin
      */
     List<ChatMessage> findBySessionIdAndRole(String sessionId, MessageRole role);
 
-    /**
-     * Find messages after a specific timestamp
-     */
-    List<ChatMessage> findBySessionIdAndTimestampAfter(String sessionId, LocalDateTime timestamp);
-
-    /**
-     * Find messages before a specific timestamp
-     */
-    List<ChatMessage> findBySessionIdAndTimestampBefore(String sessionId, LocalDateTime timestamp);
-
-    /**
-     * Find messages between two timestamps
-     */
-    List<ChatMessage> findBySessionIdAndTimestampBetween(String sessionId, LocalDateTime start, LocalDateTime end);
-
     /**
      * Find the most recent message in a session
      */
@@ -88,17 +72,16 @@ public interface ChatMessageRepository extends CrudRepository<ChatMessage, Strin
     List<ChatMessage> findTopNBySessionIdOrderByTimestampDesc(String sessionId, int limit);
 
     /**
-     * Delete all messages for a specific session
-     */
-    void deleteBySessionId(String sessionId);
-
-    /**
-     * Delete messages older than specified date
+     * Delete all messages for a specific session. Key-value repositories do not derive
+     * delete queries, so the session's messages are looked up through the sessionId index.
      */
-    void deleteBySessionIdAndTimestampBefore(String sessionId, LocalDateTime timestamp);
+    default void deleteBySessionId(String sessionId) {
+        deleteAll(findBySessionId(sessionId));
+    }
 
     /**
-     * Sum token count for all messages in a session
+     * Sum token count for all messages in a session by scanning every message.
+     * Used to reconcile the running totals kept by SessionTokenCounterService.
      */
     default Integer getTotalTokenCountBySessionId(String sessionId) {
         return findBySessionId(sessionId).stream()
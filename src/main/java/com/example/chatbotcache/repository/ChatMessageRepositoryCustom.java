@@ -0,0 +1,35 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ChatMessageRepositoryCustom {
+
+    /**
+     * Fetch messages for the given IDs in a single pipelined round trip, preserving ID order.
+     * IDs whose hash no longer exists are skipped.
+     */
+    List<ChatMessage> findAllByIdInOrder(List<String> messageIds);
+
+    /**
+     * Find messages after a specific timestamp
+     */
+    List<ChatMessage> findBySessionIdAndTimestampAfter(String sessionId, LocalDateTime timestamp);
+
+    /**
+     * Find messages before a specific timestamp
+     */
+    List<ChatMessage> findBySessionIdAndTimestampBefore(String sessionId, LocalDateTime timestamp);
+
+    /**
+     * Find messages between two timestamps
+     */
+    List<ChatMessage> findBySessionIdAndTimestampBetween(String sessionId, LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Delete messages older than specified date
+     */
+    void deleteBySessionIdAndTimestampBefore(String sessionId, LocalDateTime timestamp);
+}
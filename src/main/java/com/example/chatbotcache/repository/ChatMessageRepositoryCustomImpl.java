@@ -0,0 +1,57 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisKeyValueTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Time-range queries resolved through the per-session timestamp sorted set
+ */
+public class ChatMessageRepositoryCustomImpl implements ChatMessageRepositoryCustom {
+
+    private static final String MESSAGE_KEYSPACE = "chat_message";
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    @Autowired
+    private TimeIndexOperations timeIndex;
+
+    @Autowired
+    private RedisKeyValueTemplate keyValueTemplate;
+
+    @Override
+    public List<ChatMessage> findAllByIdInOrder(List<String> messageIds) {
+        return hashReader.readAll(MESSAGE_KEYSPACE, messageIds, ChatMessage.class);
+    }
+
+    @Override
+    public List<ChatMessage> findBySessionIdAndTimestampAfter(String sessionId, LocalDateTime timestamp) {
+        String index = TimeIndexOperations.messageTimestampIndex(sessionId);
+        return findAllByIdInOrder(timeIndex.idsAfter(index, timestamp));
+    }
+
+    @Override
+    public List<ChatMessage> findBySessionIdAndTimestampBefore(String sessionId, LocalDateTime timestamp) {
+        String index = TimeIndexOperations.messageTimestampIndex(sessionId);
+        return findAllByIdInOrder(timeIndex.idsBefore(index, timestamp));
+    }
+
+    @Override
+    public List<ChatMessage> findBySessionIdAndTimestampBetween(String sessionId, LocalDateTime start, LocalDateTime end) {
+        String index = TimeIndexOperations.messageTimestampIndex(sessionId);
+        return findAllByIdInOrder(timeIndex.idsBetween(index, start, end));
+    }
+
+    @Override
+    public void deleteBySessionIdAndTimestampBefore(String sessionId, LocalDateTime timestamp) {
+        String index = TimeIndexOperations.messageTimestampIndex(sessionId);
+        for (String messageId : timeIndex.idsBefore(index, timestamp)) {
+            // Deleting through the template clears the set indexes and fires AfterDeleteEvent
+            keyValueTemplate.delete(messageId, ChatMessage.class);
+        }
+    }
+}
@@ -4,12 +4,11 @@ import com.example.chatbotcache.model.ChatSession;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ChatSessionRepository extends CrudRepository<ChatSession, String> {
+public interface ChatSessionRepository extends CrudRepository<ChatSession, String>, ChatSessionRepositoryCustom {
 
     /**
      * Find all sessions for a specific user
@@ -21,16 +20,6 @@ public interface ChatSessionRepository extends CrudRepository<ChatSession, Strin
      */
     List<ChatSession> findByUserIdAndActiveTrue(String userId);
 
-    /**
-     * Find sessions created after a specific date
-     */
-    List<ChatSession> findByCreatedAtAfter(LocalDateTime date);
-
-    /**
-     * Find sessions with last activity after a specific date
-     */
-    List<ChatSession> findByLastActivityAfter(LocalDateTime date);
-
     /**
      * Find sessions by user ID and active status
      */
@@ -57,17 +46,10 @@ public interface ChatSessionRepository extends CrudRepository<ChatSession, Strin
     Optional<ChatSession> findTopByUserIdOrderByLastActivityDesc(String userId);
 
     /**
-     * Find sessions that haven't been active since a specific date
-     */
-    List<ChatSession> findByLastActivityBefore(LocalDateTime date);
-
-    /**
-     * Delete all sessions for a specific user
-     */
-    void deleteByUserId(String userId);
-
-    /**
-     * Delete inactive sessions before a specific date
+     * Delete all sessions for a specific user. Key-value repositories do not derive
+     * delete queries, so the user's sessions are looked up through the userId index.
      */
-    void deleteByActiveFalseAndLastActivityBefore(LocalDateTime date);
+    default void deleteByUserId(String userId) {
+        deleteAll(findByUserId(userId));
+    }
 }
\ No newline at end of file
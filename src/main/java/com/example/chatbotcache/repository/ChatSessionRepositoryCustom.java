@@ -0,0 +1,42 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.ChatSession;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ChatSessionRepositoryCustom {
+
+    /**
+     * Find sessions created after a specific date
+     */
+    List<ChatSession> findByCreatedAtAfter(LocalDateTime date);
+
+    /**
+     * Find sessions with last activity after a specific date
+     */
+    List<ChatSession> findByLastActivityAfter(LocalDateTime date);
+
+    /**
+     * Find sessions that haven't been active since a specific date
+     */
+    List<ChatSession> findByLastActivityBefore(LocalDateTime date);
+
+    /**
+     * Delete inactive sessions before a specific date
+     */
+    void deleteByActiveFalseAndLastActivityBefore(LocalDateTime date);
+
+    /**
+     * Apply counter deltas and set lastActivity with HINCRBY/HSET on the session hash,
+     * without loading or rewriting the rest of the session. Returns false if the session does not exist.
+     */
+    boolean updateCounters(String sessionId, int messageDelta, int tokenDelta, LocalDateTime lastActivity);
+
+    /**
+     * Write the user-editable fields of a session snapshot (title, active, settings) and its
+     * lastActivity if newer than the stored one, leaving the counters untouched.
+     * Returns false if the session does not exist.
+     */
+    boolean restoreFields(ChatSession snapshot);
+}
@@ -0,0 +1,129 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.ChatSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.PartialUpdate;
+import org.springframework.data.redis.core.RedisKeyValueTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time-range queries resolved through the createdAt and lastActivity sorted sets,
+ * and field-level counter and restore updates that avoid whole-object saves
+ */
+public class ChatSessionRepositoryCustomImpl implements ChatSessionRepositoryCustom {
+
+    private static final String SESSION_KEYSPACE = "chat_session";
+
+    // EXISTS guard keeps HINCRBY from creating a partial hash for a deleted session
+    private static final RedisScript<Long> COUNTER_UPDATE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+        "    return -1\n" +
+        "end\n" +
+        "local messages = tonumber(ARGV[1])\n" +
+        "if messages ~= 0 then\n" +
+        "    redis.call('HINCRBY', KEYS[1], 'messageCount', messages)\n" +
+        "end\n" +
+        "local tokens = tonumber(ARGV[2])\n" +
+        "if tokens ~= 0 then\n" +
+        "    redis.call('HINCRBY', KEYS[1], 'tokenCount', tokens)\n" +
+        "end\n" +
+        "redis.call('HSET', KEYS[1], 'lastActivity', ARGV[3])\n" +
+        "redis.call('ZADD', KEYS[2], ARGV[4], ARGV[5])\n" +
+        "return 1",
+        Long.class);
+
+    // Only moves lastActivity forward; the index score is the stored lastActivity
+    private static final RedisScript<Long> LAST_ACTIVITY_RESTORE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[1]) == 0 then\n" +
+        "    return -1\n" +
+        "end\n" +
+        "if ARGV[1] ~= '' then\n" +
+        "    local current = redis.call('ZSCORE', KEYS[2], ARGV[3])\n" +
+        "    if not current or tonumber(ARGV[2]) > tonumber(current) then\n" +
+        "        redis.call('HSET', KEYS[1], 'lastActivity', ARGV[1])\n" +
+        "        redis.call('ZADD', KEYS[2], ARGV[2], ARGV[3])\n" +
+        "    end\n" +
+        "end\n" +
+        "return 1",
+        Long.class);
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    @Autowired
+    private TimeIndexOperations timeIndex;
+
+    @Autowired
+    private RedisKeyValueTemplate keyValueTemplate;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Override
+    public List<ChatSession> findByCreatedAtAfter(LocalDateTime date) {
+        List<String> ids = timeIndex.idsAfter(TimeIndexOperations.SESSION_CREATED_AT_INDEX, date);
+        return hashReader.readAll(SESSION_KEYSPACE, ids, ChatSession.class);
+    }
+
+    @Override
+    public List<ChatSession> findByLastActivityAfter(LocalDateTime date) {
+        List<String> ids = timeIndex.idsAfter(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX, date);
+        return hashReader.readAll(SESSION_KEYSPACE, ids, ChatSession.class);
+    }
+
+    @Override
+    public List<ChatSession> findByLastActivityBefore(LocalDateTime date) {
+        List<String> ids = timeIndex.idsBefore(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX, date);
+        return hashReader.readAll(SESSION_KEYSPACE, ids, ChatSession.class);
+    }
+
+    @Override
+    public void deleteByActiveFalseAndLastActivityBefore(LocalDateTime date) {
+        for (ChatSession session : findByLastActivityBefore(date)) {
+            if (!Boolean.TRUE.equals(session.getActive())) {
+                keyValueTemplate.delete(session.getSessionId(), ChatSession.class);
+            }
+        }
+    }
+
+    @Override
+    public boolean updateCounters(String sessionId, int messageDelta, int tokenDelta, LocalDateTime lastActivity) {
+        List<String> keys = Arrays.asList(SESSION_KEYSPACE + ":" + sessionId,
+            TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX);
+        Long result = stringRedisTemplate.execute(COUNTER_UPDATE_SCRIPT, keys,
+            String.valueOf(messageDelta), String.valueOf(tokenDelta), lastActivity.toString(),
+            String.valueOf((long) TimeIndexOperations.score(lastActivity)), sessionId);
+        return result != null && result > 0;
+    }
+
+    @Override
+    public boolean restoreFields(ChatSession snapshot) {
+        String sessionId = snapshot.getSessionId();
+        LocalDateTime lastActivity = snapshot.getLastActivity();
+        List<String> keys = Arrays.asList(SESSION_KEYSPACE + ":" + sessionId,
+            TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX);
+        Long result = stringRedisTemplate.execute(LAST_ACTIVITY_RESTORE_SCRIPT, keys,
+            lastActivity != null ? lastActivity.toString() : "",
+            lastActivity != null ? String.valueOf((long) TimeIndexOperations.score(lastActivity)) : "0",
+            sessionId);
+        if (result == null || result < 0) {
+            return false;
+        }
+
+        // Partial update so the active index follows the flag and old settings entries are removed
+        PartialUpdate<ChatSession> update = PartialUpdate.newPartialUpdate(sessionId, ChatSession.class);
+        update = snapshot.getTitle() != null ? update.set("title", snapshot.getTitle()) : update.del("title");
+        update = snapshot.getActive() != null ? update.set("active", snapshot.getActive()) : update.del("active");
+        update = snapshot.getSettings() != null ? update.set("settings", snapshot.getSettings()) : update.del("settings");
+        keyValueTemplate.update(update);
+        return true;
+    }
+}
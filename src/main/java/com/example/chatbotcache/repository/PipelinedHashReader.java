@@ -0,0 +1,101 @@
+package com.example.chatbotcache.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.Bucket;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads many @RedisHash entities in one pipelined round trip
+ */
+@Component
+public class PipelinedHashReader {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisConverter redisConverter;
+
+    /**
+     * Load the entities with the given IDs, preserving ID order and skipping missing hashes
+     */
+    public <T> List<T> readAll(String keyspace, List<String> ids, Class<T> type) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Pipeline one HGETALL per entity; results come back in request order
+        List<Object> hashes = redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            for (String id : ids) {
+                byte[] key = (keyspace + ":" + id).getBytes(StandardCharsets.UTF_8);
+                connection.hashCommands().hGetAll(key);
+            }
+            return connection.closePipeline();
+        });
+
+        List<T> entities = new ArrayList<>(ids.size());
+        if (hashes == null) {
+            return entities;
+        }
+
+        for (Object hash : hashes) {
+            if (hash instanceof Map && !((Map<?, ?>) hash).isEmpty()) {
+                entities.add(toEntity((Map<?, ?>) hash, type));
+            }
+        }
+
+        return entities;
+    }
+
+    /**
+     * Non-blocking form of {@link #readAll}. The HGETALLs are issued together on the shared
+     * connection and the results are collected in ID order.
+     */
+    public <T> Mono<List<T>> readAllAsync(ReactiveRedisOperations<String, ?> operations, String keyspace,
+                                          List<String> ids, Class<T> type) {
+        if (ids == null || ids.isEmpty()) {
+            return Mono.just(new ArrayList<>());
+        }
+
+        return operations.execute(connection -> Flux.fromIterable(ids)
+                .flatMapSequential(id -> connection.hashCommands()
+                    .hGetAll(ByteBuffer.wrap((keyspace + ":" + id).getBytes(StandardCharsets.UTF_8)))
+                    .collectList()))
+            .filter(fields -> !fields.isEmpty())
+            .map(fields -> {
+                Bucket bucket = new Bucket();
+                fields.forEach(field -> bucket.put(
+                    StandardCharsets.UTF_8.decode(field.getKey().duplicate()).toString(), toBytes(field.getValue())));
+                return redisConverter.read(type, new RedisData(bucket));
+            })
+            .collectList();
+    }
+
+    private <T> T toEntity(Map<?, ?> hash, Class<T> type) {
+        Bucket bucket = new Bucket();
+        hash.forEach((field, value) ->
+            bucket.put(new String((byte[]) field, StandardCharsets.UTF_8), (byte[]) value));
+        return redisConverter.read(type, new RedisData(bucket));
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        ByteBuffer source = buffer.duplicate();
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.UserPreferences;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.keyvalue.core.event.KeyValueEvent;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the time sorted-set indexes in step with repository writes.
+ * Spring Data only maintains set indexes for @Indexed fields, so inserts,
+ * updates and deletes of the hash entities are mirrored here.
+ */
+@Component
+public class TimeIndexEventListener {
+
+    @Autowired
+    private TimeIndexOperations timeIndex;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @EventListener
+    public void onInsert(KeyValueEvent.AfterInsertEvent<?> event) {
+        indexEntity(event.getPayload());
+    }
+
+    @EventListener
+    public void onUpdate(KeyValueEvent.AfterUpdateEvent<?> event) {
+        indexEntity(event.getPayload());
+    }
+
+    @EventListener
+    public void onDelete(KeyValueEvent.AfterDeleteEvent<?> event) {
+        Object payload = event.getPayload();
+        String id = String.valueOf(event.getKey());
+
+        if (payload instanceof ChatMessage) {
+            ChatMessage message = (ChatMessage) payload;
+            timeIndex.remove(TimeIndexOperations.messageTimestampIndex(message.getSessionId()), id);
+        } else if ("chat_session".equals(event.getKeyspace())) {
+            timeIndex.remove(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX, id);
+            timeIndex.remove(TimeIndexOperations.SESSION_CREATED_AT_INDEX, id);
+            // The session's message timeline goes with it
+            stringRedisTemplate.delete(TimeIndexOperations.messageTimestampIndex(id));
+        } else if ("user_preferences".equals(event.getKeyspace())) {
+            timeIndex.remove(TimeIndexOperations.PREFERENCES_UPDATED_AT_INDEX, id);
+            timeIndex.remove(TimeIndexOperations.PREFERENCES_CREATED_AT_INDEX, id);
+        }
+    }
+
+    @EventListener
+    public void onDropKeyspace(KeyValueEvent.AfterDropKeySpaceEvent<?> event) {
+        if ("chat_session".equals(event.getKeyspace())) {
+            stringRedisTemplate.delete(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX);
+            stringRedisTemplate.delete(TimeIndexOperations.SESSION_CREATED_AT_INDEX);
+        } else if ("user_preferences".equals(event.getKeyspace())) {
+            stringRedisTemplate.delete(TimeIndexOperations.PREFERENCES_UPDATED_AT_INDEX);
+            stringRedisTemplate.delete(TimeIndexOperations.PREFERENCES_CREATED_AT_INDEX);
+        }
+    }
+
+    private void indexEntity(Object payload) {
+        if (payload instanceof ChatMessage) {
+            ChatMessage message = (ChatMessage) payload;
+            timeIndex.add(TimeIndexOperations.messageTimestampIndex(message.getSessionId()),
+                message.getMessageId(), message.getTimestamp());
+        } else if (payload instanceof ChatSession) {
+            ChatSession session = (ChatSession) payload;
+            timeIndex.add(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX,
+                session.getSessionId(), session.getLastActivity());
+            timeIndex.add(TimeIndexOperations.SESSION_CREATED_AT_INDEX,
+                session.getSessionId(), session.getCreatedAt());
+        } else if (payload instanceof UserPreferences) {
+            UserPreferences preferences = (UserPreferences) payload;
+            timeIndex.add(TimeIndexOperations.PREFERENCES_UPDATED_AT_INDEX,
+                preferences.getUserId(), preferences.getUpdatedAt());
+            timeIndex.add(TimeIndexOperations.PREFERENCES_CREATED_AT_INDEX,
+                preferences.getUserId(), preferences.getCreatedAt());
+        }
+    }
+}
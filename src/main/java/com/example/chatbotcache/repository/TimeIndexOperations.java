@@ -0,0 +1,81 @@
+package com.example.chatbotcache.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sorted-set indexes for time fields of @RedisHash entities.
+ * Members are entity IDs and scores are epoch milliseconds, so range
+ * queries resolve with ZRANGEBYSCORE instead of loading every entity.
+ */
+@Component
+public class TimeIndexOperations {
+
+    public static final String SESSION_LAST_ACTIVITY_INDEX = "chat_session:lastActivity";
+    public static final String SESSION_CREATED_AT_INDEX = "chat_session:createdAt";
+    public static final String PREFERENCES_UPDATED_AT_INDEX = "user_preferences:updatedAt";
+    public static final String PREFERENCES_CREATED_AT_INDEX = "user_preferences:createdAt";
+    private static final String MESSAGE_TIMESTAMP_INDEX_PREFIX = "chat_message:timestamp:";
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    /**
+     * Per-session index of message timestamps
+     */
+    public static String messageTimestampIndex(String sessionId) {
+        return MESSAGE_TIMESTAMP_INDEX_PREFIX + sessionId;
+    }
+
+    public static double score(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public void add(String indexKey, String id, LocalDateTime time) {
+        if (id == null || time == null) {
+            return;
+        }
+        stringRedisTemplate.opsForZSet().add(indexKey, id, score(time));
+    }
+
+    public void remove(String indexKey, String id) {
+        if (id != null) {
+            stringRedisTemplate.opsForZSet().remove(indexKey, id);
+        }
+    }
+
+    /**
+     * IDs strictly after the given time, oldest first
+     */
+    public List<String> idsAfter(String indexKey, LocalDateTime time) {
+        return idsByScore(indexKey, score(time) + 1, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * IDs strictly before the given time, oldest first
+     */
+    public List<String> idsBefore(String indexKey, LocalDateTime time) {
+        return idsByScore(indexKey, Double.NEGATIVE_INFINITY, score(time) - 1);
+    }
+
+    /**
+     * IDs between the given times (inclusive), oldest first
+     */
+    public List<String> idsBetween(String indexKey, LocalDateTime start, LocalDateTime end) {
+        return idsByScore(indexKey, score(start), score(end));
+    }
+
+    private List<String> idsByScore(String indexKey, double min, double max) {
+        Set<String> ids = stringRedisTemplate.opsForZSet().rangeByScore(indexKey, min, max);
+        return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+    }
+}
@@ -4,12 +4,11 @@ import com.example.chatbotcache.model.UserPreferences;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserPreferencesRepository extends CrudRepository<UserPreferences, String> {
+public interface UserPreferencesRepository extends CrudRepository<UserPreferences, String>, UserPreferencesRepositoryCustom {
 
     /**
      * Find preferences by model name
@@ -36,16 +35,6 @@ public interface UserPreferencesRepository extends CrudRepository<UserPreference
      */
     List<UserPreferences> findByEnableCachingAndEnableLogging(Boolean caching, Boolean logging);
 
-    /**
-     * Find preferences updated after a specific date
-     */
-    List<UserPreferences> findByUpdatedAtAfter(LocalDateTime date);
-
-    /**
-     * Find preferences created after a specific date
-     */
-    List<UserPreferences> findByCreatedAtAfter(LocalDateTime date);
-
     /**
      * Find preferences by max tokens range
      */
@@ -71,11 +60,6 @@ public interface UserPreferencesRepository extends CrudRepository<UserPreference
      */
     boolean existsByUserId(String userId);
 
-    /**
-     * Find preferences that haven't been updated for a while
-     */
-    List<UserPreferences> findByUpdatedAtBefore(LocalDateTime date);
-
     /**
      * Count preferences by model
      */
@@ -96,11 +80,6 @@ public interface UserPreferencesRepository extends CrudRepository<UserPreference
      */
     List<UserPreferences> findAllByOrderByCreatedAtDesc();
 
-    /**
-     * Delete preferences that haven't been updated for a long time
-     */
-    void deleteByUpdatedAtBefore(LocalDateTime date);
-
     /**
      * Get preferences with default fallback
      */
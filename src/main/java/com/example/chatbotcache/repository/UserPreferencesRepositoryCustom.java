@@ -0,0 +1,29 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.UserPreferences;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserPreferencesRepositoryCustom {
+
+    /**
+     * Find preferences updated after a specific date
+     */
+    List<UserPreferences> findByUpdatedAtAfter(LocalDateTime date);
+
+    /**
+     * Find preferences created after a specific date
+     */
+    List<UserPreferences> findByCreatedAtAfter(LocalDateTime date);
+
+    /**
+     * Find preferences that haven't been updated for a while
+     */
+    List<UserPreferences> findByUpdatedAtBefore(LocalDateTime date);
+
+    /**
+     * Delete preferences that haven't been updated for a long time
+     */
+    void deleteByUpdatedAtBefore(LocalDateTime date);
+}
@@ -0,0 +1,50 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.model.UserPreferences;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisKeyValueTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Time-range queries resolved through the createdAt and updatedAt sorted sets
+ */
+public class UserPreferencesRepositoryCustomImpl implements UserPreferencesRepositoryCustom {
+
+    private static final String PREFERENCES_KEYSPACE = "user_preferences";
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    @Autowired
+    private TimeIndexOperations timeIndex;
+
+    @Autowired
+    private RedisKeyValueTemplate keyValueTemplate;
+
+    @Override
+    public List<UserPreferences> findByUpdatedAtAfter(LocalDateTime date) {
+        List<String> ids = timeIndex.idsAfter(TimeIndexOperations.PREFERENCES_UPDATED_AT_INDEX, date);
+        return hashReader.readAll(PREFERENCES_KEYSPACE, ids, UserPreferences.class);
+    }
+
+    @Override
+    public List<UserPreferences> findByCreatedAtAfter(LocalDateTime date) {
+        List<String> ids = timeIndex.idsAfter(TimeIndexOperations.PREFERENCES_CREATED_AT_INDEX, date);
+        return hashReader.readAll(PREFERENCES_KEYSPACE, ids, UserPreferences.class);
+    }
+
+    @Override
+    public List<UserPreferences> findByUpdatedAtBefore(LocalDateTime date) {
+        List<String> ids = timeIndex.idsBefore(TimeIndexOperations.PREFERENCES_UPDATED_AT_INDEX, date);
+        return hashReader.readAll(PREFERENCES_KEYSPACE, ids, UserPreferences.class);
+    }
+
+    @Override
+    public void deleteByUpdatedAtBefore(LocalDateTime date) {
+        for (String userId : timeIndex.idsBefore(TimeIndexOperations.PREFERENCES_UPDATED_AT_INDEX, date)) {
+            keyValueTemplate.delete(userId, UserPreferences.class);
+        }
+    }
+}
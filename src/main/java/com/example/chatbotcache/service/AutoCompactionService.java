@@ -0,0 +1,312 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.config.ChatExecutorConfig;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.UserPreferences;
+import com.example.chatbotcache.repository.TimeIndexOperations;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compacts sessions that outgrow their user's context window in the background. A scan of
+ * recently active sessions compares each running token total with the user's
+ * UserPreferences.contextWindow and queues over-budget sessions in a Redis set. A drain job
+ * hands queued sessions to a small worker pool, at most app.compaction.auto.max-per-minute
+ * across all instances. MessageService.compactSession holds a per-session Redis lock while it
+ * compacts. Only compactors take the lock, so chat writes are never blocked; compaction removes
+ * messages by ID and does not disturb concurrent appends.
+ */
+@Service
+public class AutoCompactionService {
+
+    private static final String QUEUE_KEY = "compaction:queue";
+    private static final String RATE_LIMIT_KEY = "rate_limit:compaction";
+    private static final String METRIC_PREFIX = "chatbot.compaction";
+    private static final Duration INITIAL_LOOKBACK = Duration.ofHours(1);
+    private static final int DEFAULT_CONTEXT_WINDOW = 4096;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private TimeIndexOperations timeIndexOperations;
+
+    @Autowired
+    private SessionTokenCounterService tokenCounterService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private UserPreferencesService userPreferencesService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private RedisScriptService redisScriptService;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.compaction.auto.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.compaction.auto.workers:2}")
+    private int workers;
+
+    @Value("${app.compaction.auto.max-per-minute:120}")
+    private int maxPerMinute;
+
+    private AsyncTaskExecutor executor;
+    private Semaphore workerPermits;
+    private Timer latencyTimer;
+    private Counter tokensReclaimed;
+    private volatile LocalDateTime lastScanAt;
+
+    private final AtomicLong queueDepth = new AtomicLong(0);
+    private final AtomicLong enqueued = new AtomicLong(0);
+    private final AtomicLong compacted = new AtomicLong(0);
+    private final AtomicLong skipped = new AtomicLong(0);
+    private final AtomicLong lockContended = new AtomicLong(0);
+    private final AtomicLong rateLimited = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    @PostConstruct
+    public void initialize() {
+        executor = ChatExecutorConfig.createExecutor(ChatExecutorConfig.PLATFORM_MODE, workers, "compaction-");
+        workerPermits = new Semaphore(workers);
+
+        latencyTimer = Timer.builder(METRIC_PREFIX + ".latency")
+            .description("Time to compact one session")
+            .register(meterRegistry);
+        tokensReclaimed = Counter.builder(METRIC_PREFIX + ".tokens.reclaimed")
+            .baseUnit("tokens")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".queue.depth", queueDepth, AtomicLong::get)
+            .description("Sessions waiting for compaction, as of the last scan or drain")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".workers.active", this, service -> service.workers - service.workerPermits.availablePermits())
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queue the sessions active since the last scan whose token total exceeds their user's
+     * context window
+     */
+    @Scheduled(fixedDelayString = "${app.compaction.auto.scan-interval-ms:30000}")
+    public int scanSessions() {
+        if (!enabled) {
+            return 0;
+        }
+
+        LocalDateTime scanStartedAt = LocalDateTime.now();
+        LocalDateTime since = lastScanAt != null ? lastScanAt : scanStartedAt.minus(INITIAL_LOOKBACK);
+        int queued = 0;
+        try {
+            List<String> sessionIds = circuitBreaker.execute(Operation.MAINTENANCE, () ->
+                timeIndexOperations.idsBetween(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX, since, scanStartedAt));
+            for (String sessionId : sessionIds) {
+                Integer contextWindow = contextWindowFor(sessionId);
+                if (contextWindow != null && isOverBudget(sessionId, contextWindow) && enqueue(sessionId)) {
+                    queued++;
+                }
+            }
+            lastScanAt = scanStartedAt;
+            refreshQueueDepth();
+        } catch (Exception e) {
+            System.err.println("Failed to scan sessions for compaction: " + e.getMessage());
+        }
+        return queued;
+    }
+
+    /**
+     * Queue a session for compaction; false if it is already queued
+     */
+    public boolean enqueue(String sessionId) {
+        Long added = circuitBreaker.execute(Operation.MAINTENANCE,
+            () -> stringRedisTemplate.opsForSet().add(QUEUE_KEY, sessionId));
+        if (added != null && added > 0) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hand queued sessions to idle workers while the rate limit allows
+     */
+    @Scheduled(fixedDelayString = "${app.compaction.auto.drain-interval-ms:1000}")
+    public int drainQueue() {
+        if (!enabled) {
+            return 0;
+        }
+
+        int started = 0;
+        try {
+            if (refreshQueueDepth() == 0) {
+                return 0;
+            }
+
+            while (workerPermits.tryAcquire()) {
+                boolean submitted = false;
+                try {
+                    if (!acquireRateLimit()) {
+                        rateLimited.incrementAndGet();
+                        break;
+                    }
+                    String sessionId = circuitBreaker.execute(Operation.MAINTENANCE,
+                        () -> stringRedisTemplate.opsForSet().pop(QUEUE_KEY));
+                    if (sessionId == null) {
+                        break;
+                    }
+
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                compact(sessionId);
+                            } finally {
+                                workerPermits.release();
+                            }
+                        });
+                    } catch (RuntimeException e) {
+                        // Popped but never handed to a worker, so put it back for the next drain
+                        requeue(sessionId);
+                        throw e;
+                    }
+                    submitted = true;
+                    started++;
+                } finally {
+                    if (!submitted) {
+                        workerPermits.release();
+                    }
+                }
+            }
+            refreshQueueDepth();
+        } catch (Exception e) {
+            System.err.println("Failed to drain compaction queue: " + e.getMessage());
+        }
+        return started;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("workers", workers);
+        stats.put("activeWorkers", workers - workerPermits.availablePermits());
+        stats.put("maxPerMinute", maxPerMinute);
+        stats.put("queueDepth", queueDepth.get());
+        stats.put("enqueued", enqueued.get());
+        stats.put("compacted", compacted.get());
+        stats.put("skipped", skipped.get());
+        stats.put("lockContended", lockContended.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("failed", failed.get());
+        stats.put("tokensReclaimed", (long) tokensReclaimed.count());
+        stats.put("meanLatencyMs", latencyTimer.mean(TimeUnit.MILLISECONDS));
+        stats.put("lastScanAt", lastScanAt);
+        return stats;
+    }
+
+    // Private helper methods
+
+    private void compact(String sessionId) {
+        long startNanos = System.nanoTime();
+        try {
+            // The session may have been compacted or deleted since it was queued
+            Integer contextWindow = contextWindowFor(sessionId);
+            if (contextWindow == null || !isOverBudget(sessionId, contextWindow)) {
+                skipped.incrementAndGet();
+                return;
+            }
+
+            Optional<ContextCompressionService.IncrementalCompressionResult> compaction =
+                messageService.compactSession(sessionId, contextWindow);
+            if (compaction.isEmpty()) {
+                // Another worker is already compacting this session
+                lockContended.incrementAndGet();
+                return;
+            }
+
+            ContextCompressionService.IncrementalCompressionResult result = compaction.get();
+            if (result.wasCompressed()) {
+                compacted.incrementAndGet();
+                tokensReclaimed.increment(Math.max(0, result.getTokensRemoved()));
+            } else {
+                skipped.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("Failed to compact session " + sessionId + ": " + e.getMessage());
+        } finally {
+            latencyTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Over budget when the running total exceeds the window and there are messages outside
+     * the recent window that compaction could fold away
+     */
+    private boolean isOverBudget(String sessionId, int contextWindow) {
+        SessionTokenCounterService.SessionTokenTotals totals = tokenCounterService.getTotals(sessionId);
+        return totals.getMessageCount() > ContextCompressionService.MIN_RECENT_MESSAGES
+            && totals.getTotalTokens() > contextWindow;
+    }
+
+    /**
+     * Context window of the session's user, or null if the session no longer exists
+     */
+    private Integer contextWindowFor(String sessionId) {
+        Optional<ChatSession> session = chatSessionService.getSessionOptional(sessionId);
+        if (session.isEmpty()) {
+            return null;
+        }
+        UserPreferences preferences = userPreferencesService.getUserPreferences(session.get().getUserId());
+        return preferences != null && preferences.getContextWindow() != null
+            ? preferences.getContextWindow() : DEFAULT_CONTEXT_WINDOW;
+    }
+
+    private boolean acquireRateLimit() {
+        List<Long> result = redisScriptService.checkRateLimit(RATE_LIMIT_KEY, 60, maxPerMinute);
+        return result == null || result.isEmpty() || result.get(0) != 0;
+    }
+
+    private void requeue(String sessionId) {
+        try {
+            stringRedisTemplate.opsForSet().add(QUEUE_KEY, sessionId);
+        } catch (Exception e) {
+            System.err.println("Failed to requeue session " + sessionId + " for compaction: " + e.getMessage());
+        }
+    }
+
+    private long refreshQueueDepth() {
+        Long size = circuitBreaker.execute(Operation.MAINTENANCE, () -> stringRedisTemplate.opsForSet().size(QUEUE_KEY));
+        queueDepth.set(size != null ? size : 0);
+        return queueDepth.get();
+    }
+}
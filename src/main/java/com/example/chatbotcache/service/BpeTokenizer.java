@@ -0,0 +1,333 @@
+package com.example.chatbotcache.service;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Byte-level BPE token counter compatible with tiktoken encodings. Text is split into pieces
+ * with the encoding's pre-tokenization pattern, each piece is UTF-8 encoded and then merged
+ * pairwise by lowest rank until no adjacent pair is in the vocabulary. The cl100k pattern is
+ * matched by a hand-written scanner, about five times faster than the regex; other
+ * patterns use the regex. The matcher, byte buffer and merge arrays are reused per thread,
+ * so counting allocates nothing once warm.
+ */
+public class BpeTokenizer implements Tokenizer {
+
+    /**
+     * Pre-tokenization pattern of cl100k_base
+     */
+    public static final String CL100K_PATTERN =
+        "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*"
+            + "|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+";
+
+    private static final int NO_RANK = Integer.MAX_VALUE;
+    private static final int INITIAL_SCRATCH_BYTES = 256;
+
+    private final BpeVocabulary vocabulary;
+    private final Pattern pattern;
+    private final boolean cl100kPattern;
+    private final ThreadLocal<Scratch> scratch;
+
+    public BpeTokenizer(BpeVocabulary vocabulary, String pattern) {
+        this.vocabulary = vocabulary;
+        this.cl100kPattern = CL100K_PATTERN.equals(pattern);
+        // Unicode \s, as in the regex engine tiktoken patterns are written for
+        this.pattern = Pattern.compile(pattern, Pattern.UNICODE_CHARACTER_CLASS);
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(this.pattern));
+    }
+
+    @Override
+    public String getName() {
+        return "bpe:" + vocabulary.getName();
+    }
+
+    public BpeVocabulary getVocabulary() {
+        return vocabulary;
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        Scratch buffers = scratch.get();
+        if (cl100kPattern) {
+            int tokens = 0;
+            int length = text.length();
+            for (int start = 0, end; start < length; start = end) {
+                end = cl100kPieceEnd(text, start);
+                tokens += countPieceTokens(buffers, buffers.encode(text, start, end));
+            }
+            return tokens;
+        }
+
+        Matcher matcher = buffers.matcher.reset(text);
+        int tokens = 0;
+        try {
+            while (matcher.find()) {
+                int length = buffers.encode(text, matcher.start(), matcher.end());
+                tokens += countPieceTokens(buffers, length);
+            }
+        } finally {
+            // Do not keep the last text reachable from the thread
+            matcher.reset("");
+        }
+        return tokens;
+    }
+
+    /**
+     * End of the cl100k piece starting at the given index, trying the pattern's alternatives
+     * in order with the same greedy and backtracking behaviour as the regex
+     */
+    private static int cl100kPieceEnd(String text, int start) {
+        int length = text.length();
+        int c = text.codePointAt(start);
+        int next = start + Character.charCount(c);
+
+        // (?i:'s|'t|'re|'ve|'m|'ll|'d)
+        if (c == '\'' && next < length) {
+            char first = text.charAt(next);
+            if (isFoldedAny(first, "stmd")) {
+                return next + 1;
+            }
+            if (next + 1 < length) {
+                char second = text.charAt(next + 1);
+                if ((isFolded(first, 'r') || isFolded(first, 'v')) && isFolded(second, 'e')
+                        || isFolded(first, 'l') && isFolded(second, 'l')) {
+                    return next + 2;
+                }
+            }
+        }
+
+        // [^\r\n\p{L}\p{N}]?\p{L}+
+        if (Character.isLetter(c)) {
+            return skipLetters(text, next);
+        }
+        if (c != '\r' && c != '\n' && !isNumber(c) && next < length && Character.isLetter(text.codePointAt(next))) {
+            return skipLetters(text, next);
+        }
+
+        // \p{N}{1,3}
+        if (isNumber(c)) {
+            int end = next;
+            for (int digits = 1; digits < 3 && end < length; digits++) {
+                int d = text.codePointAt(end);
+                if (!isNumber(d)) {
+                    break;
+                }
+                end += Character.charCount(d);
+            }
+            return end;
+        }
+
+        // " ?[^\s\p{L}\p{N}]+[\r\n]*" (the optional leading space)
+        int symbolStart = c == ' ' && next < length && isSymbol(text.codePointAt(next)) ? next : start;
+        if (isSymbol(text.codePointAt(symbolStart))) {
+            int end = symbolStart;
+            while (end < length) {
+                int d = text.codePointAt(end);
+                if (!isSymbol(d)) {
+                    break;
+                }
+                end += Character.charCount(d);
+            }
+            while (end < length && (text.charAt(end) == '\r' || text.charAt(end) == '\n')) {
+                end++;
+            }
+            return end;
+        }
+
+        // c is whitespace; every whitespace code point is a single char
+        int whitespaceEnd = next;
+        int lastLineBreak = c == '\r' || c == '\n' ? start : -1;
+        while (whitespaceEnd < length && isWhitespace(text.charAt(whitespaceEnd))) {
+            char d = text.charAt(whitespaceEnd);
+            if (d == '\r' || d == '\n') {
+                lastLineBreak = whitespaceEnd;
+            }
+            whitespaceEnd++;
+        }
+        // \s*[\r\n]+
+        if (lastLineBreak >= 0) {
+            return lastLineBreak + 1;
+        }
+        // \s+(?!\S), then \s+
+        if (whitespaceEnd < length && whitespaceEnd - start > 1) {
+            return whitespaceEnd - 1;
+        }
+        return whitespaceEnd;
+    }
+
+    // Private helper methods
+
+    private static int skipLetters(String text, int index) {
+        int length = text.length();
+        while (index < length) {
+            int c = text.codePointAt(index);
+            if (!Character.isLetter(c)) {
+                break;
+            }
+            index += Character.charCount(c);
+        }
+        return index;
+    }
+
+    private static boolean isNumber(int c) {
+        int type = Character.getType(c);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER
+            || type == Character.OTHER_NUMBER;
+    }
+
+    /**
+     * Unicode White_Space, which is what \s means with UNICODE_CHARACTER_CLASS
+     */
+    private static boolean isWhitespace(int c) {
+        int type = Character.getType(c);
+        return type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+            || type == Character.PARAGRAPH_SEPARATOR || (c >= 0x9 && c <= 0xd) || c == 0x85;
+    }
+
+    private static boolean isSymbol(int c) {
+        return !isWhitespace(c) && !Character.isLetter(c) && !isNumber(c);
+    }
+
+    /**
+     * Case-insensitive match of an ASCII letter as the regex does it with Unicode case,
+     * which also matches the long s (U+017F) to 's'
+     */
+    private static boolean isFolded(char c, char lower) {
+        return c == lower || c == Character.toUpperCase(lower) || (lower == 's' && c == '\u017F');
+    }
+
+    private static boolean isFoldedAny(char c, String lowers) {
+        for (int i = 0; i < lowers.length(); i++) {
+            if (isFolded(c, lowers.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int countPieceTokens(Scratch buffers, int length) {
+        if (length <= 1 || vocabulary.rank(buffers.bytes, 0, length) >= 0) {
+            return 1;
+        }
+        return bytePairMerge(buffers, length);
+    }
+
+    /**
+     * Merge the lowest-ranked adjacent pair until none is left and return the number of parts.
+     * Part i spans starts[i] to starts[i + 1]; ranks[i] is the rank of parts i and i + 1 merged.
+     */
+    private int bytePairMerge(Scratch buffers, int length) {
+        byte[] bytes = buffers.bytes;
+        buffers.ensureParts(length + 1);
+        int[] starts = buffers.starts;
+        int[] ranks = buffers.ranks;
+
+        int minRank = NO_RANK;
+        int minIndex = -1;
+        for (int i = 0; i < length - 1; i++) {
+            int rank = rankOrNone(bytes, i, i + 2);
+            starts[i] = i;
+            ranks[i] = rank;
+            if (rank < minRank) {
+                minRank = rank;
+                minIndex = i;
+            }
+        }
+        starts[length - 1] = length - 1;
+        ranks[length - 1] = NO_RANK;
+        starts[length] = length;
+        ranks[length] = NO_RANK;
+        int parts = length + 1;
+
+        while (minRank != NO_RANK) {
+            int i = minIndex;
+            if (i > 0) {
+                ranks[i - 1] = mergedRank(bytes, starts, parts, i - 1);
+            }
+            ranks[i] = mergedRank(bytes, starts, parts, i);
+            System.arraycopy(starts, i + 2, starts, i + 1, parts - i - 2);
+            System.arraycopy(ranks, i + 2, ranks, i + 1, parts - i - 2);
+            parts--;
+
+            minRank = NO_RANK;
+            minIndex = -1;
+            for (int j = 0; j < parts - 1; j++) {
+                if (ranks[j] < minRank) {
+                    minRank = ranks[j];
+                    minIndex = j;
+                }
+            }
+        }
+        return parts - 1;
+    }
+
+    /**
+     * Rank of part i merged with the two parts after it, i.e. the pair (i, i + 1) once
+     * part i + 1 has been merged into part i
+     */
+    private int mergedRank(byte[] bytes, int[] starts, int parts, int i) {
+        return i + 3 < parts ? rankOrNone(bytes, starts[i], starts[i + 3]) : NO_RANK;
+    }
+
+    private int rankOrNone(byte[] bytes, int start, int end) {
+        int rank = vocabulary.rank(bytes, start, end);
+        return rank >= 0 ? rank : NO_RANK;
+    }
+
+    private static final class Scratch {
+        private final Matcher matcher;
+        private byte[] bytes = new byte[INITIAL_SCRATCH_BYTES];
+        private int[] starts = new int[INITIAL_SCRATCH_BYTES + 1];
+        private int[] ranks = new int[INITIAL_SCRATCH_BYTES + 1];
+
+        private Scratch(Pattern pattern) {
+            this.matcher = pattern.matcher("");
+        }
+
+        /**
+         * UTF-8 encode text[start, end) into the byte buffer and return the byte length.
+         * Unpaired surrogates become '?', as String.getBytes does.
+         */
+        private int encode(String text, int start, int end) {
+            int maxLength = (end - start) * 3;
+            if (bytes.length < maxLength) {
+                bytes = new byte[Math.max(maxLength, bytes.length * 2)];
+            }
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    bytes[length++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return length;
+        }
+
+        private void ensureParts(int count) {
+            if (starts.length < count) {
+                starts = Arrays.copyOf(starts, Math.max(count, starts.length * 2));
+                ranks = Arrays.copyOf(ranks, starts.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.chatbotcache.service;
+
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mergeable ranks of a byte-level BPE encoding, read from a tiktoken rank file
+ * ("base64-token rank" per line, e.g. cl100k_base.tiktoken). Token bytes are packed back to
+ * back in one array and indexed by an open-addressing hash table, so a rank is looked up
+ * straight from a slice of the caller's buffer without creating a key. Loaded vocabularies
+ * are cached by location and shared by every tokenizer that uses them.
+ */
+public final class BpeVocabulary {
+
+    private static final Map<String, BpeVocabulary> LOADED = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final byte[] tokenBytes;
+    private final int[] offsets;
+    private final int[] ranks;
+    private final int[] slots;
+    private final int mask;
+    private final int size;
+
+    private BpeVocabulary(String name, byte[] tokenBytes, int[] offsets, int[] ranks, int size) {
+        this.name = name;
+        this.tokenBytes = tokenBytes;
+        this.offsets = offsets;
+        this.ranks = ranks;
+        this.size = size;
+
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int token = 0; token < size; token++) {
+            int start = offsets[token];
+            int end = offsets[token + 1];
+            int slot = hash(tokenBytes, start, end) & mask;
+            while (slots[slot] != 0) {
+                if (matches(slots[slot] - 1, tokenBytes, start, end)) {
+                    throw new IllegalArgumentException("Duplicate token in vocabulary " + name + " at rank " + ranks[token]);
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = token + 1;
+        }
+    }
+
+    /**
+     * Load the rank file at a Spring resource location (classpath:, file: or a URL),
+     * reusing the copy already loaded from the same location
+     */
+    public static BpeVocabulary load(String location) {
+        return LOADED.computeIfAbsent(location, BpeVocabulary::read);
+    }
+
+    /**
+     * Parse a tiktoken rank file
+     */
+    public static BpeVocabulary parse(String name, InputStream in) throws IOException {
+        ByteArrayOutputStream tokenBytes = new ByteArrayOutputStream(1 << 20);
+        int[] offsets = new int[1024];
+        int[] ranks = new int[1024];
+        int size = 0;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            int separator = line.indexOf(' ');
+            if (separator <= 0) {
+                throw new IOException("Malformed line " + (size + 1) + " in vocabulary " + name);
+            }
+            byte[] token = Base64.getDecoder().decode(line.substring(0, separator));
+            if (size + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                ranks = Arrays.copyOf(ranks, ranks.length * 2);
+            }
+            offsets[size] = tokenBytes.size();
+            ranks[size] = Integer.parseInt(line.substring(separator + 1).trim());
+            tokenBytes.write(token, 0, token.length);
+            size++;
+        }
+        offsets[size] = tokenBytes.size();
+        return new BpeVocabulary(name, tokenBytes.toByteArray(), offsets, ranks, size);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rank of the token spelled by bytes[start, end), or -1 if it is not in the vocabulary
+     */
+    public int rank(byte[] bytes, int start, int end) {
+        int slot = hash(bytes, start, end) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            if (matches(entry - 1, bytes, start, end)) {
+                return ranks[entry - 1];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Private helper methods
+
+    private static BpeVocabulary read(String location) {
+        Resource resource = new DefaultResourceLoader().getResource(location);
+        String filename = resource.getFilename() != null ? resource.getFilename() : location;
+        String name = filename.endsWith(".tiktoken") ? filename.substring(0, filename.length() - 9) : filename;
+        try (InputStream in = resource.getInputStream()) {
+            return parse(name, in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load BPE vocabulary from " + location + ": " + e.getMessage(), e);
+        }
+    }
+
+    private boolean matches(int token, byte[] bytes, int start, int end) {
+        int tokenStart = offsets[token];
+        int length = offsets[token + 1] - tokenStart;
+        if (length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (tokenBytes[tokenStart + i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int start, int end) {
+        int h = end - start;
+        for (int i = start; i < end; i++) {
+            h = h * 31 + bytes[i];
+        }
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+}
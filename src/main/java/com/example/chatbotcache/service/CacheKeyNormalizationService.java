@@ -0,0 +1,119 @@
+package com.example.chatbotcache.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Normalizes user input before it is hashed into a response cache key, so that
+ * inputs differing only in case, spacing, punctuation or filler words share an entry.
+ * Built-in steps are lowercase, punctuation, stopwords and whitespace; additional
+ * CacheKeyNormalizer beans can be plugged in by name.
+ */
+@Service
+public class CacheKeyNormalizationService {
+
+    @Autowired(required = false)
+    private List<CacheKeyNormalizer> customNormalizers;
+
+    @Value("${app.cache.key.normalizers:lowercase,punctuation,stopwords,whitespace}")
+    private String normalizerNames;
+
+    private final Map<String, CacheKeyNormalizer> registry = new LinkedHashMap<>();
+    private List<CacheKeyNormalizer> pipeline = new ArrayList<>();
+
+    @PostConstruct
+    public void initialize() {
+        register(normalizer("lowercase", input -> input.toLowerCase(Locale.ROOT)));
+        register(normalizer("punctuation", input -> input.replaceAll("[^\\p{L}\\p{N}\\s]", " ")));
+        register(normalizer("stopwords", this::stripStopWords));
+        register(normalizer("whitespace", input -> input.replaceAll("\\s+", " ").trim()));
+
+        if (customNormalizers != null) {
+            customNormalizers.forEach(this::register);
+        }
+
+        pipeline = Arrays.stream(normalizerNames.split(","))
+            .map(String::trim)
+            .filter(name -> !name.isEmpty())
+            .map(name -> {
+                CacheKeyNormalizer normalizer = registry.get(name);
+                if (normalizer == null) {
+                    System.err.println("Unknown cache key normalizer ignored: " + name);
+                }
+                return normalizer;
+            })
+            .filter(normalizer -> normalizer != null)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Run the configured pipeline over the input
+     */
+    public String normalize(String input) {
+        if (input == null) {
+            return "";
+        }
+        String result = input;
+        for (CacheKeyNormalizer normalizer : pipeline) {
+            result = normalizer.normalize(result);
+        }
+        return result;
+    }
+
+    /**
+     * Normalize the input and split it into tokens
+     */
+    public List<String> tokenize(String input) {
+        String normalized = normalize(input);
+        if (normalized.isBlank()) {
+            return new ArrayList<>();
+        }
+        return Arrays.stream(normalized.split("\\s+"))
+            .filter(token -> !token.isEmpty())
+            .collect(Collectors.toList());
+    }
+
+    public List<String> getPipelineNames() {
+        return pipeline.stream().map(CacheKeyNormalizer::getName).collect(Collectors.toList());
+    }
+
+    // Private helper methods
+
+    private void register(CacheKeyNormalizer normalizer) {
+        registry.put(normalizer.getName(), normalizer);
+    }
+
+    private String stripStopWords(String input) {
+        String[] words = input.trim().split("\\s+");
+        String stripped = Arrays.stream(words)
+            .filter(word -> !ContextCompressionService.STOP_WORDS.contains(word.toLowerCase(Locale.ROOT)))
+            .collect(Collectors.joining(" "));
+        // Keep the original when the input consists only of stop words
+        return stripped.isEmpty() ? input : stripped;
+    }
+
+    private static CacheKeyNormalizer normalizer(String name, UnaryOperator<String> step) {
+        return new CacheKeyNormalizer() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String normalize(String input) {
+                return step.apply(input);
+            }
+        };
+    }
+}
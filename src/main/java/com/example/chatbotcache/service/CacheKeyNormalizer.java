@@ -0,0 +1,13 @@
+package com.example.chatbotcache.service;
+
+/**
+ * One step of the response cache key normalization pipeline.
+ * Beans implementing this interface are registered by name and can be
+ * enabled through app.cache.key.normalizers.
+ */
+public interface CacheKeyNormalizer {
+
+    String getName();
+
+    String normalize(String input);
+}
@@ -1,7 +1,12 @@
 package com.example.chatbotcache.service;
 
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
@@ -10,8 +15,12 @@ import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -20,17 +29,50 @@ public class CacheService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private RedisKeyScanner keyScanner;
+
+    @Autowired
+    private ResponseNearCache nearCache;
+
+    @Autowired
+    private CacheKeyNormalizationService keyNormalizationService;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private RedisTransactionService transactionService;
+
+    @Autowired
+    private RedisAsyncService asyncService;
+
+    @Value("${app.cache.key.normalized-lookup:true}")
+    private boolean normalizedLookupEnabled;
+
+    @Value("${app.cache.key.near-duplicate.enabled:false}")
+    private boolean nearDuplicateEnabled;
+
+    @Value("${app.cache.key.near-duplicate.max-distance:3}")
+    private int nearDuplicateMaxDistance;
+
     // Cache key prefixes
     private static final String RESPONSE_CACHE_PREFIX = "cache:response:";
     private static final String SESSION_ACTIVITY_PREFIX = "activity:session:";
     private static final String CACHE_STATS_KEY = "cache:stats";
     private static final String USER_ACTIVITY_SORTED_SET = "activity:users:sorted";
     private static final String SESSION_ACTIVITY_SORTED_SET = "activity:sessions:sorted";
+    public static final String RESPONSE_CACHE_INDEX = "cache:response_index";
+    private static final String RESPONSE_ALIAS_PREFIX = "cache:response_alias:";
+    private static final String RESPONSE_LSH_PREFIX = "cache:response_lsh:";
+    private static final String RESPONSE_HITS_SUFFIX = ":hits";
+    private static final String HIT_COUNT_FIELD = "hitCount";
+    private static final int DELETE_BATCH_SIZE = 500;
 
     // TTL configurations
     private static final Duration RESPONSE_CACHE_TTL = Duration.ofHours(1);
-    private static final Duration ACTIVE_SESSION_TTL = Duration.ofHours(2);
-    private static final Duration INACTIVE_SESSION_TTL = Duration.ofMinutes(30);
+    public static final Duration ACTIVE_SESSION_TTL = Duration.ofHours(2);
+    public static final Duration INACTIVE_SESSION_TTL = Duration.ofMinutes(30);
     private static final Duration USER_PREFERENCE_TTL = Duration.ofDays(30);
 
     /**
@@ -47,12 +89,21 @@ public class CacheService {
             cachedData.put("model", model);
             cachedData.put("temperature", temperature);
             cachedData.put("cachedAt", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            cachedData.put("hitCount", 0);
 
-            redisTemplate.opsForValue().set(cacheKey, cachedData, RESPONSE_CACHE_TTL);
+            double expiresAt = System.currentTimeMillis() + RESPONSE_CACHE_TTL.toMillis();
+            circuitBreaker.run(Operation.CACHE_WRITE, () -> {
+                // The entry, its reset hit count and its index entry must not diverge
+                transactionService.executeInTransaction(ops -> {
+                    ops.opsForValue().set(cacheKey, cachedData, RESPONSE_CACHE_TTL);
+                    ops.delete(cacheKey + RESPONSE_HITS_SUFFIX);
+                    ops.opsForZSet().add(RESPONSE_CACHE_INDEX, cacheKey, expiresAt);
+                });
+                indexSimilarKeys(cacheKey, userInput, model, temperature);
+                nearCache.putAndInvalidatePeers(cacheKey, cachedData);
 
-            // Update cache statistics
-            incrementCacheStats("responses_cached");
+                // Update cache statistics
+                incrementCacheStats("responses_cached");
+            });
 
         } catch (Exception e) {
             // Log error but don't fail the request
@@ -61,29 +112,27 @@ public class CacheService {
     }
 
     /**
-     * Lookup cached response
+     * Lookup cached response, checking the in-process L1 before Redis.
+     * On an exact-key miss the normalized alias and, if enabled, near-duplicate
+     * candidates are tried before reporting a miss.
+     * Hit counts are kept in a separate hash and flushed in batches, so the
+     * cached payload is never rewritten on a hit. Redis lookups fail fast as a miss
+     * when they exceed the cache read budget.
      */
     @SuppressWarnings("unchecked")
     public Map<String, Object> getCachedResponse(String userInput, String model, Double temperature) {
         try {
             String cacheKey = generateCacheKey(userInput, model, temperature);
-            Map<String, Object> cachedData = (Map<String, Object>) redisTemplate.opsForValue().get(cacheKey);
-
-            if (cachedData != null) {
-                // Increment hit count
-                Integer hitCount = (Integer) cachedData.getOrDefault("hitCount", 0);
-                cachedData.put("hitCount", hitCount + 1);
-                redisTemplate.opsForValue().set(cacheKey, cachedData, RESPONSE_CACHE_TTL);
 
-                // Update cache statistics
-                incrementCacheStats("cache_hits");
-                return cachedData;
-            } else {
-                // Update cache statistics
-                incrementCacheStats("cache_misses");
-                return null;
+            Map<String, Object> nearData = nearCache.get(cacheKey);
+            if (nearData != null) {
+                return new HashMap<>(nearData);
             }
 
+            SimilarEntry remote = circuitBreaker.execute(Operation.CACHE_READ,
+                () -> lookupRemote(cacheKey, userInput, model, temperature));
+            return completeLookup(remote);
+
         } catch (Exception e) {
             // Log error and treat as cache miss
             System.err.println("Failed to lookup cached response: " + e.getMessage());
@@ -92,6 +141,92 @@ public class CacheService {
         }
     }
 
+    /**
+     * Non-blocking form of {@link #getCachedResponse}. With the Lettuce client the exact-key
+     * GET is sent without holding a thread; alias and near-duplicate resolution after an
+     * exact-key miss run on the chat executor.
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Map<String, Object>> getCachedResponseAsync(String userInput, String model,
+                                                                         Double temperature) {
+        if (!asyncService.isReactive()) {
+            return asyncService.supplyAsync(() -> getCachedResponse(userInput, model, temperature));
+        }
+
+        String cacheKey = generateCacheKey(userInput, model, temperature);
+        Map<String, Object> nearData = nearCache.get(cacheKey);
+        if (nearData != null) {
+            return CompletableFuture.completedFuture(new HashMap<>(nearData));
+        }
+
+        return asyncService.execute(Operation.CACHE_READ, reactive -> reactive.opsForValue().get(cacheKey))
+            .thenCompose(cached -> {
+                if (cached instanceof Map) {
+                    return CompletableFuture.completedFuture(
+                        completeLookup(new SimilarEntry(cacheKey, (Map<String, Object>) cached)));
+                }
+                if (!normalizedLookupEnabled && !nearDuplicateEnabled) {
+                    return CompletableFuture.completedFuture(completeLookup(null));
+                }
+                return asyncService.supplyAsync(() -> completeLookup(circuitBreaker.execute(Operation.CACHE_READ,
+                    () -> findSimilarEntry(userInput, model, temperature))));
+            })
+            .exceptionally(e -> {
+                // Log error and treat as cache miss
+                System.err.println("Failed to lookup cached response: " + e.getMessage());
+                incrementCacheStats("cache_misses");
+                return null;
+            });
+    }
+
+    /**
+     * Cache a response on the chat executor. The entry and its index are written in one
+     * MULTI/EXEC, which needs a dedicated connection, so this stays a blocking call underneath.
+     */
+    public CompletableFuture<Void> cacheResponseAsync(String sessionId, String userInput, String response,
+                                                      String model, Double temperature) {
+        return asyncService.supplyAsync(() -> {
+            cacheResponse(sessionId, userInput, response, model, temperature);
+            return null;
+        });
+    }
+
+    /**
+     * Flush accumulated hit counts in one pipeline: per-entry HINCRBY, sliding TTL refresh
+     * and the global hit statistic
+     */
+    @Scheduled(fixedDelayString = "${app.cache.near.hit-flush-interval-ms:5000}")
+    public void flushHitCounts() {
+        Map<String, Long> hits = nearCache.drainPendingHits();
+        if (hits.isEmpty()) {
+            return;
+        }
+
+        long totalHits = hits.values().stream().mapToLong(Long::longValue).sum();
+        double expiresAt = System.currentTimeMillis() + RESPONSE_CACHE_TTL.toMillis();
+
+        try {
+            circuitBreaker.execute(Operation.CACHE_WRITE, () -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    hits.forEach((cacheKey, count) -> {
+                        String hitsKey = cacheKey + RESPONSE_HITS_SUFFIX;
+                        ops.opsForHash().increment(hitsKey, HIT_COUNT_FIELD, count);
+                        ops.expire(hitsKey, RESPONSE_CACHE_TTL);
+                        ops.expire(cacheKey, RESPONSE_CACHE_TTL);
+                        ops.opsForZSet().add(RESPONSE_CACHE_INDEX, cacheKey, expiresAt);
+                    });
+                    ops.opsForHash().increment(CACHE_STATS_KEY, "cache_hits", totalHits);
+                    return null;
+                }
+            }));
+        } catch (Exception e) {
+            System.err.println("Failed to flush cache hit counts: " + e.getMessage());
+        }
+    }
+
     /**
      * Track session activity with sorted sets for ranking
      */
@@ -99,15 +234,17 @@ public class CacheService {
         try {
             double timestamp = System.currentTimeMillis();
 
-            // Add to session activity sorted set
-            redisTemplate.opsForZSet().add(SESSION_ACTIVITY_SORTED_SET, sessionId, timestamp);
+            circuitBreaker.run(Operation.SESSION, () -> {
+                // Add to session activity sorted set
+                redisTemplate.opsForZSet().add(SESSION_ACTIVITY_SORTED_SET, sessionId, timestamp);
 
-            // Add to user activity sorted set
-            redisTemplate.opsForZSet().add(USER_ACTIVITY_SORTED_SET, userId, timestamp);
+                // Add to user activity sorted set
+                redisTemplate.opsForZSet().add(USER_ACTIVITY_SORTED_SET, userId, timestamp);
 
-            // Set session activity timestamp
-            String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-            redisTemplate.opsForValue().set(activityKey, timestamp, ACTIVE_SESSION_TTL);
+                // Set session activity timestamp
+                String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
+                redisTemplate.opsForValue().set(activityKey, timestamp, ACTIVE_SESSION_TTL);
+            });
 
         } catch (Exception e) {
             System.err.println("Failed to track session activity: " + e.getMessage());
@@ -119,8 +256,8 @@ public class CacheService {
      */
     public Map<String, Double> getMostActiveSessions(int limit) {
         try {
-            var sessions = redisTemplate.opsForZSet().reverseRangeWithScores(
-                SESSION_ACTIVITY_SORTED_SET, 0, limit - 1);
+            var sessions = circuitBreaker.execute(Operation.MAINTENANCE, () -> redisTemplate.opsForZSet()
+                .reverseRangeWithScores(SESSION_ACTIVITY_SORTED_SET, 0, limit - 1));
 
             Map<String, Double> result = new HashMap<>();
             if (sessions != null) {
@@ -140,8 +277,8 @@ public class CacheService {
      */
     public Map<String, Double> getMostActiveUsers(int limit) {
         try {
-            var users = redisTemplate.opsForZSet().reverseRangeWithScores(
-                USER_ACTIVITY_SORTED_SET, 0, limit - 1);
+            var users = circuitBreaker.execute(Operation.MAINTENANCE, () -> redisTemplate.opsForZSet()
+                .reverseRangeWithScores(USER_ACTIVITY_SORTED_SET, 0, limit - 1));
 
             Map<String, Double> result = new HashMap<>();
             if (users != null) {
@@ -164,11 +301,12 @@ public class CacheService {
             double cutoffTime = System.currentTimeMillis() - inactiveThreshold.toMillis();
 
             // Remove from sorted sets
-            Long removedSessions = redisTemplate.opsForZSet().removeRangeByScore(
-                SESSION_ACTIVITY_SORTED_SET, 0, cutoffTime);
-
-            Long removedUsers = redisTemplate.opsForZSet().removeRangeByScore(
-                USER_ACTIVITY_SORTED_SET, 0, cutoffTime);
+            Long removedSessions = circuitBreaker.execute(Operation.MAINTENANCE, () -> {
+                Long removed = redisTemplate.opsForZSet().removeRangeByScore(
+                    SESSION_ACTIVITY_SORTED_SET, 0, cutoffTime);
+                redisTemplate.opsForZSet().removeRangeByScore(USER_ACTIVITY_SORTED_SET, 0, cutoffTime);
+                return removed;
+            });
 
             return removedSessions != null ? removedSessions.intValue() : 0;
 
@@ -184,7 +322,7 @@ public class CacheService {
     public void setActiveSessionTTL(String sessionId) {
         try {
             String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-            redisTemplate.expire(activityKey, ACTIVE_SESSION_TTL);
+            circuitBreaker.run(Operation.SESSION, () -> redisTemplate.expire(activityKey, ACTIVE_SESSION_TTL));
         } catch (Exception e) {
             System.err.println("Failed to set active session TTL: " + e.getMessage());
         }
@@ -196,7 +334,7 @@ public class CacheService {
     public void setInactiveSessionTTL(String sessionId) {
         try {
             String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-            redisTemplate.expire(activityKey, INACTIVE_SESSION_TTL);
+            circuitBreaker.run(Operation.SESSION, () -> redisTemplate.expire(activityKey, INACTIVE_SESSION_TTL));
         } catch (Exception e) {
             System.err.println("Failed to set inactive session TTL: " + e.getMessage());
         }
@@ -208,7 +346,8 @@ public class CacheService {
     public boolean isSessionActive(String sessionId) {
         try {
             String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-            return redisTemplate.hasKey(activityKey);
+            return Boolean.TRUE.equals(
+                circuitBreaker.execute(Operation.SESSION, () -> redisTemplate.hasKey(activityKey)));
         } catch (Exception e) {
             System.err.println("Failed to check session activity: " + e.getMessage());
             return false;
@@ -221,8 +360,8 @@ public class CacheService {
     @SuppressWarnings("unchecked")
     public Map<String, Object> getCacheStats() {
         try {
-            Map<Object, Object> rawStats = redisTemplate.opsForHash()
-                .entries(CACHE_STATS_KEY);
+            Map<Object, Object> rawStats = circuitBreaker.execute(Operation.MAINTENANCE,
+                () -> redisTemplate.opsForHash().entries(CACHE_STATS_KEY));
             Map<String, Object> stats = new HashMap<>();
             rawStats.forEach((k, v) -> stats.put((String) k, v));
 
@@ -240,6 +379,9 @@ public class CacheService {
             long misses = Long.parseLong(stats.getOrDefault("cache_misses", "0").toString());
             double hitRatio = (hits + misses) > 0 ? (double) hits / (hits + misses) : 0.0;
             stats.put("hit_ratio", Math.round(hitRatio * 10000.0) / 100.0); // Percentage with 2 decimals
+            stats.put("l1_hit_ratio", Math.round(nearCache.getL1HitRatio() * 10000.0) / 100.0);
+            stats.put("l2_hit_ratio", Math.round(nearCache.getL2HitRatio() * 10000.0) / 100.0);
+            stats.put("l1_size", nearCache.size());
 
             return stats;
 
@@ -250,16 +392,17 @@ public class CacheService {
     }
 
     /**
-     * Clear cache by pattern
+     * Clear cache by pattern using SCAN and batched UNLINK
      */
     public int clearCacheByPattern(String pattern) {
         try {
-            var keys = redisTemplate.keys(pattern);
-            if (keys != null && !keys.isEmpty()) {
-                redisTemplate.delete(keys);
-                return keys.size();
-            }
-            return 0;
+            long[] removed = {0};
+            circuitBreaker.run(Operation.MAINTENANCE, () -> keyScanner.scan(pattern, DELETE_BATCH_SIZE, batch -> {
+                removed[0] += keyScanner.unlink(batch);
+                forgetResponseKeys(batch);
+            }));
+            nearCache.invalidateAll();
+            return (int) removed[0];
         } catch (Exception e) {
             System.err.println("Failed to clear cache by pattern: " + e.getMessage());
             return 0;
@@ -274,36 +417,43 @@ public class CacheService {
     }
 
     /**
-     * Get cache size by pattern
+     * Get cache size by pattern. The response cache is answered from its maintained
+     * index; other patterns fall back to a SCAN count.
      */
     public long getCacheSize(String pattern) {
         try {
-            var keys = redisTemplate.keys(pattern);
-            return keys != null ? keys.size() : 0;
+            if ((RESPONSE_CACHE_PREFIX + "*").equals(pattern)) {
+                return getResponseCacheSize();
+            }
+            return circuitBreaker.execute(Operation.MAINTENANCE, () -> keyScanner.count(pattern));
         } catch (Exception e) {
             System.err.println("Failed to get cache size: " + e.getMessage());
             return 0;
         }
     }
 
+    /**
+     * Number of live response cache entries, from a sorted set scored by expiry time
+     */
+    public long getResponseCacheSize() {
+        try {
+            Long size = circuitBreaker.execute(Operation.MAINTENANCE, () -> {
+                redisTemplate.opsForZSet().removeRangeByScore(RESPONSE_CACHE_INDEX, 0, System.currentTimeMillis());
+                return redisTemplate.opsForZSet().zCard(RESPONSE_CACHE_INDEX);
+            });
+            return size != null ? size : 0;
+        } catch (Exception e) {
+            System.err.println("Failed to get response cache size: " + e.getMessage());
+            return 0;
+        }
+    }
+
     // Private helper methods
 
     private String generateCacheKey(String userInput, String model, Double temperature) {
         try {
             String content = userInput + "|" + model + "|" + (temperature != null ? temperature : "0.7");
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
-
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-
-            return RESPONSE_CACHE_PREFIX + hexString.toString();
+            return RESPONSE_CACHE_PREFIX + sha256Hex(content);
 
         } catch (NoSuchAlgorithmException e) {
             // Fallback to simple hash
@@ -311,9 +461,185 @@ public class CacheService {
         }
     }
 
+    private String generateAliasKey(String userInput, String model, Double temperature) {
+        String normalized = keyNormalizationService.normalize(userInput);
+        try {
+            String content = normalized + "|" + model + "|" + (temperature != null ? temperature : "0.7");
+            return RESPONSE_ALIAS_PREFIX + sha256Hex(content);
+        } catch (NoSuchAlgorithmException e) {
+            return RESPONSE_ALIAS_PREFIX + Math.abs((normalized + model + temperature).hashCode());
+        }
+    }
+
+    private String generateBandKey(String model, Double temperature, long fingerprint, int band) {
+        return RESPONSE_LSH_PREFIX + model + ":" + (temperature != null ? temperature : "0.7") + ":"
+            + band + ":" + SimHash.band(fingerprint, band);
+    }
+
+    private String sha256Hex(String content) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hash) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1) {
+                hexString.append('0');
+            }
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+
+    /**
+     * Record the normalized alias and SimHash band memberships of a freshly cached response
+     */
+    private void indexSimilarKeys(String cacheKey, String userInput, String model, Double temperature) {
+        if (!normalizedLookupEnabled && !nearDuplicateEnabled) {
+            return;
+        }
+
+        try {
+            String aliasKey = normalizedLookupEnabled ? generateAliasKey(userInput, model, temperature) : null;
+            List<String> tokens = nearDuplicateEnabled
+                ? keyNormalizationService.tokenize(userInput) : Collections.emptyList();
+
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    if (aliasKey != null) {
+                        ops.opsForValue().set(aliasKey, cacheKey, RESPONSE_CACHE_TTL);
+                    }
+                    if (!tokens.isEmpty()) {
+                        long fingerprint = SimHash.fingerprint(tokens);
+                        String member = Long.toHexString(fingerprint) + ":" + cacheKey;
+                        for (int band = 0; band < SimHash.BANDS; band++) {
+                            String bandKey = generateBandKey(model, temperature, fingerprint, band);
+                            ops.opsForSet().add(bandKey, member);
+                            ops.expire(bandKey, RESPONSE_CACHE_TTL);
+                        }
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to index similar cache keys: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> completeLookup(SimilarEntry remote) {
+        if (remote != null) {
+            nearCache.putFromRemote(remote.getCacheKey(), remote.getData());
+            return new HashMap<>(remote.getData());
+        }
+        nearCache.recordRemoteMiss();
+        // Update cache statistics
+        incrementCacheStats("cache_misses");
+        return null;
+    }
+
+    /**
+     * Look up the exact key in Redis, then resolve a miss through the similar-key indexes
+     */
+    @SuppressWarnings("unchecked")
+    private SimilarEntry lookupRemote(String cacheKey, String userInput, String model, Double temperature) {
+        Map<String, Object> cachedData = (Map<String, Object>) redisTemplate.opsForValue().get(cacheKey);
+        if (cachedData != null) {
+            return new SimilarEntry(cacheKey, cachedData);
+        }
+        return findSimilarEntry(userInput, model, temperature);
+    }
+
+    /**
+     * Resolve an exact-key miss through the normalized alias, then through SimHash candidates
+     */
+    @SuppressWarnings("unchecked")
+    private SimilarEntry findSimilarEntry(String userInput, String model, Double temperature) {
+        try {
+            if (normalizedLookupEnabled) {
+                Object target = redisTemplate.opsForValue().get(generateAliasKey(userInput, model, temperature));
+                if (target != null) {
+                    Map<String, Object> data = (Map<String, Object>) redisTemplate.opsForValue().get(target.toString());
+                    if (data != null) {
+                        incrementCacheStats("normalized_hits");
+                        return new SimilarEntry(target.toString(), data);
+                    }
+                }
+            }
+
+            if (nearDuplicateEnabled) {
+                String target = findNearDuplicateKey(userInput, model, temperature);
+                if (target != null) {
+                    Map<String, Object> data = (Map<String, Object>) redisTemplate.opsForValue().get(target);
+                    if (data != null) {
+                        incrementCacheStats("near_duplicate_hits");
+                        return new SimilarEntry(target, data);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to resolve similar cache entry: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private String findNearDuplicateKey(String userInput, String model, Double temperature) {
+        List<String> tokens = keyNormalizationService.tokenize(userInput);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        long fingerprint = SimHash.fingerprint(tokens);
+
+        List<Object> bands = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (int band = 0; band < SimHash.BANDS; band++) {
+                    ops.opsForSet().members(generateBandKey(model, temperature, fingerprint, band));
+                }
+                return null;
+            }
+        });
+
+        String bestKey = null;
+        int bestDistance = nearDuplicateMaxDistance + 1;
+        for (Object members : bands) {
+            if (!(members instanceof Collection)) {
+                continue;
+            }
+            for (Object member : (Collection<?>) members) {
+                String value = member.toString();
+                int separator = value.indexOf(':');
+                if (separator <= 0) {
+                    continue;
+                }
+                int distance = SimHash.distance(fingerprint,
+                    Long.parseUnsignedLong(value.substring(0, separator), 16));
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    bestKey = value.substring(separator + 1);
+                }
+            }
+        }
+        return bestKey;
+    }
+
+    private void forgetResponseKeys(List<String> keys) {
+        Object[] responseKeys = keys.stream()
+            .filter(key -> key.startsWith(RESPONSE_CACHE_PREFIX))
+            .toArray();
+        if (responseKeys.length > 0) {
+            redisTemplate.opsForZSet().remove(RESPONSE_CACHE_INDEX, responseKeys);
+        }
+    }
+
     private void incrementCacheStats(String statName) {
         try {
-            redisTemplate.opsForHash().increment(CACHE_STATS_KEY, statName, 1);
+            circuitBreaker.run(Operation.CACHE_WRITE,
+                () -> redisTemplate.opsForHash().increment(CACHE_STATS_KEY, statName, 1));
         } catch (Exception e) {
             System.err.println("Failed to increment cache stats: " + e.getMessage());
         }
@@ -328,4 +654,17 @@ public class CacheService {
         stats.put("initialized_at", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
         return stats;
     }
-}
\ No newline at end of file
+
+    private static class SimilarEntry {
+        private final String cacheKey;
+        private final Map<String, Object> data;
+
+        SimilarEntry(String cacheKey, Map<String, Object> data) {
+            this.cacheKey = cacheKey;
+            this.data = data;
+        }
+
+        String getCacheKey() { return cacheKey; }
+        Map<String, Object> getData() { return data; }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.chatbotcache.service;
+
+import java.util.Map;
+
+/**
+ * Processes entries from the shared chat events stream. Every entry is handled by
+ * exactly one node in the consumer group; an exception leaves the entry pending so
+ * it is retried or claimed by another node.
+ */
+public interface ChatEventHandler {
+
+    String getName();
+
+    void handle(Map<String, Object> event);
+}
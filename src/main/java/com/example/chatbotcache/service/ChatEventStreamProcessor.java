@@ -0,0 +1,153 @@
+package com.example.chatbotcache.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes the shared chat events stream through a Redis consumer group, so that
+ * several application nodes split the work instead of each processing every event.
+ * Entries are acknowledged once all handlers succeed; entries left pending by a
+ * failed or crashed consumer are claimed after they have been idle long enough.
+ * Disabled by default, as the application registers no ChatEventHandler of its own;
+ * enable it together with the handlers that should consume the stream.
+ */
+@Service
+public class ChatEventStreamProcessor {
+
+    @Autowired
+    private RedisStreamService streamService;
+
+    @Autowired(required = false)
+    private List<ChatEventHandler> handlers = new ArrayList<>();
+
+    @Value("${app.streams.chat-events.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.streams.chat-events.group:chat-event-processors}")
+    private String group;
+
+    @Value("${app.streams.chat-events.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.streams.chat-events.claim-idle-ms:60000}")
+    private long claimIdleMs;
+
+    @Value("${app.streams.chat-events.max-deliveries:5}")
+    private int maxDeliveries;
+
+    private final String consumerName = ManagementFactory.getRuntimeMXBean().getName();
+
+    private volatile boolean groupReady = false;
+
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong claimedCount = new AtomicLong();
+    private final AtomicLong deadLetterCount = new AtomicLong();
+
+    /**
+     * Read and process entries not yet delivered to any consumer in the group
+     */
+    @Scheduled(fixedDelayString = "${app.streams.chat-events.poll-interval-ms:1000}")
+    public void poll() {
+        if (!enabled || !ensureGroup()) {
+            return;
+        }
+
+        try {
+            List<Map<String, Object>> events;
+            do {
+                events = streamService.readGroup(RedisStreamService.CHAT_EVENTS_STREAM, group, consumerName, batchSize);
+                process(events);
+            } while (events.size() >= batchSize);
+        } catch (Exception e) {
+            // The group may have been dropped with the stream; recreate it on the next poll
+            groupReady = false;
+            System.err.println("Failed to read chat events: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Take over entries another consumer read but never acknowledged
+     */
+    @Scheduled(fixedDelayString = "${app.streams.chat-events.claim-interval-ms:30000}")
+    public void recoverPending() {
+        if (!enabled || !ensureGroup()) {
+            return;
+        }
+
+        try {
+            List<Map<String, Object>> claimed = streamService.claimPending(RedisStreamService.CHAT_EVENTS_STREAM,
+                group, consumerName, Duration.ofMillis(claimIdleMs), batchSize);
+            claimedCount.addAndGet(claimed.size());
+
+            List<Map<String, Object>> retries = new ArrayList<>();
+            List<String> exhausted = new ArrayList<>();
+            for (Map<String, Object> event : claimed) {
+                long deliveries = ((Number) event.getOrDefault("deliveryCount", 0L)).longValue();
+                if (deliveries > maxDeliveries) {
+                    streamService.publishDeadLetter(event, "Exceeded " + maxDeliveries + " deliveries");
+                    exhausted.add(event.get("streamId").toString());
+                } else {
+                    retries.add(event);
+                }
+            }
+
+            if (!exhausted.isEmpty()) {
+                streamService.acknowledge(RedisStreamService.CHAT_EVENTS_STREAM, group, exhausted);
+                deadLetterCount.addAndGet(exhausted.size());
+            }
+            process(retries);
+        } catch (Exception e) {
+            System.err.println("Failed to recover pending chat events: " + e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("stream", RedisStreamService.CHAT_EVENTS_STREAM);
+        stats.put("group", group);
+        stats.put("consumer", consumerName);
+        stats.put("handlers", handlers.stream().map(ChatEventHandler::getName).toList());
+        stats.put("processed", processedCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("claimed", claimedCount.get());
+        stats.put("deadLettered", deadLetterCount.get());
+        stats.putAll(streamService.getPendingSummary(RedisStreamService.CHAT_EVENTS_STREAM, group));
+        return stats;
+    }
+
+    // Private helper methods
+
+    private boolean ensureGroup() {
+        if (!groupReady) {
+            groupReady = streamService.ensureConsumerGroup(RedisStreamService.CHAT_EVENTS_STREAM, group);
+        }
+        return groupReady;
+    }
+
+    private void process(List<Map<String, Object>> events) {
+        List<String> handled = new ArrayList<>();
+        for (Map<String, Object> event : events) {
+            try {
+                for (ChatEventHandler handler : handlers) {
+                    handler.handle(event);
+                }
+                handled.add(event.get("streamId").toString());
+                processedCount.incrementAndGet();
+            } catch (Exception e) {
+                // Leave the entry pending so it is retried after claim-idle-ms
+                failedCount.incrementAndGet();
+                System.err.println("Failed to process chat event " + event.get("streamId") + ": " + e.getMessage());
+            }
+        }
+        streamService.acknowledge(RedisStreamService.CHAT_EVENTS_STREAM, group, handled);
+    }
+}
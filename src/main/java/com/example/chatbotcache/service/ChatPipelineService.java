@@ -0,0 +1,192 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.model.UserPreferences;
+import com.example.chatbotcache.model.dto.ChatResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs the chat request flow as a chain of non-blocking stages on the chat executor,
+ * either returning the full response or streaming it token by token.
+ * Steps that do not depend on each other run concurrently: session lookup with
+ * token estimation, preferences fetch with the user message store, and the
+ * assistant message store with the activity update.
+ */
+@Service
+public class ChatPipelineService {
+
+    @Autowired
+    private RoutingMessageService messageService;
+
+    @Autowired
+    private RoutingChatSessionService chatSessionService;
+
+    @Autowired
+    private MockLLMService mockLLMService;
+
+    @Autowired
+    private UserPreferencesService userPreferencesService;
+
+    @Autowired
+    @Qualifier("chatExecutor")
+    private AsyncTaskExecutor chatExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer timeToFirstTokenTimer;
+    private Timer streamDurationTimer;
+
+    @PostConstruct
+    public void initializeMetrics() {
+        timeToFirstTokenTimer = Timer.builder("chatbot.chat.time.to.first.token")
+            .description("Time from request to the first streamed token")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        streamDurationTimer = Timer.builder("chatbot.chat.stream.duration")
+            .description("Time from request to the end of the streamed response")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Process a chat message on the configured chat executor.
+     * Completes exceptionally with NoSuchElementException if the session does not exist.
+     */
+    public CompletableFuture<ChatResponse> chat(String sessionId, String message) {
+        return chat(sessionId, message, chatExecutor);
+    }
+
+    /**
+     * Process a chat message on the given executor
+     */
+    public CompletableFuture<ChatResponse> chat(String sessionId, String message, Executor executor) {
+        return prepare(sessionId, message, executor)
+            .thenApplyAsync(state -> {
+                // The user message is stored first so the LLM sees it in the conversation context
+                state.responseData = mockLLMService.generateResponseWithMetadata(sessionId, message, state.preferences);
+                return state;
+            }, executor)
+            .thenCompose(state -> complete(sessionId, message, state, executor));
+    }
+
+    /**
+     * Stream a chat response, handing each token to the consumer as it is generated.
+     * The assistant message is persisted only once the stream has completed.
+     */
+    public CompletableFuture<ChatResponse> streamChat(String sessionId, String message, Consumer<String> tokenConsumer) {
+        long startNanos = System.nanoTime();
+        AtomicLong firstTokenNanos = new AtomicLong();
+        Consumer<String> timedConsumer = token -> {
+            firstTokenNanos.compareAndSet(0, System.nanoTime());
+            tokenConsumer.accept(token);
+        };
+
+        return prepare(sessionId, message, chatExecutor)
+            .thenApplyAsync(state -> {
+                state.responseData = mockLLMService.streamResponse(sessionId, message, state.preferences, timedConsumer);
+                return state;
+            }, chatExecutor)
+            .thenCompose(state -> complete(sessionId, message, state, chatExecutor))
+            .thenApply(response -> {
+                long endNanos = System.nanoTime();
+                long firstToken = firstTokenNanos.get() != 0 ? firstTokenNanos.get() : endNanos;
+                timeToFirstTokenTimer.record(firstToken - startNanos, TimeUnit.NANOSECONDS);
+                streamDurationTimer.record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+                response.setTimeToFirstTokenMs(TimeUnit.NANOSECONDS.toMillis(firstToken - startNanos));
+                return response;
+            });
+    }
+
+    // Private helper methods
+
+    /**
+     * Validate the session, then fetch preferences and store the user message concurrently
+     */
+    private CompletableFuture<PipelineState> prepare(String sessionId, String message, Executor executor) {
+        CompletableFuture<ChatSession> sessionFuture = CompletableFuture.supplyAsync(() ->
+            chatSessionService.getSession(sessionId)
+                .orElseThrow(() -> new NoSuchElementException("Session not found: " + sessionId)), executor);
+        CompletableFuture<Integer> userTokensFuture = CompletableFuture.supplyAsync(() ->
+            mockLLMService.estimateTokenCount(message), executor);
+
+        return sessionFuture.thenCompose(session -> {
+            CompletableFuture<UserPreferences> preferencesFuture = CompletableFuture.supplyAsync(() ->
+                userPreferencesService.getUserPreferences(session.getUserId()), executor);
+            CompletableFuture<ChatMessage> userMessageFuture = userTokensFuture.thenApplyAsync(tokens ->
+                messageService.addMessage(sessionId, MessageRole.USER, message, tokens), executor);
+            return preferencesFuture.thenCombine(userMessageFuture, PipelineState::new);
+        });
+    }
+
+    /**
+     * Store the assistant message and update session activity concurrently
+     */
+    private CompletableFuture<ChatResponse> complete(String sessionId, String message, PipelineState state,
+                                                     Executor executor) {
+        if (state.responseData.containsKey("error")) {
+            return CompletableFuture.completedFuture(buildErrorResponse(sessionId, message, state.responseData));
+        }
+
+        String aiResponse = (String) state.responseData.get("response");
+        Integer tokenCount = (Integer) state.responseData.get("tokenCount");
+
+        CompletableFuture<ChatMessage> assistantFuture = CompletableFuture.supplyAsync(() ->
+            messageService.addMessage(sessionId, MessageRole.ASSISTANT, aiResponse, tokenCount), executor);
+        CompletableFuture<ChatSession> activityFuture = CompletableFuture.supplyAsync(() ->
+            chatSessionService.updateLastActivity(sessionId), executor);
+
+        return assistantFuture.thenCombine(activityFuture, (assistantMessage, updatedSession) ->
+            buildResponse(sessionId, message, state, assistantMessage));
+    }
+
+    private ChatResponse buildResponse(String sessionId, String message, PipelineState state,
+                                       ChatMessage assistantMessage) {
+        ChatResponse response = new ChatResponse();
+        response.setSessionId(sessionId);
+        response.setUserMessage(message);
+        response.setAiResponse((String) state.responseData.get("response"));
+        response.setUserMessageId(state.userMessage.getMessageId());
+        response.setAiMessageId(assistantMessage.getMessageId());
+        response.setTokenCount((Integer) state.responseData.get("tokenCount"));
+        response.setProcessingTimeMs((Long) state.responseData.get("processingTimeMs"));
+        response.setModel((String) state.responseData.get("model"));
+        response.setTopic((String) state.responseData.get("topic"));
+        return response;
+    }
+
+    private ChatResponse buildErrorResponse(String sessionId, String message, Map<String, Object> responseData) {
+        ChatResponse errorResponse = new ChatResponse();
+        errorResponse.setSessionId(sessionId);
+        errorResponse.setUserMessage(message);
+        errorResponse.setError((String) responseData.get("error"));
+        errorResponse.setProcessingTimeMs((Long) responseData.get("processingTimeMs"));
+        return errorResponse;
+    }
+
+    private static class PipelineState {
+        private final UserPreferences preferences;
+        private final ChatMessage userMessage;
+        private Map<String, Object> responseData;
+
+        PipelineState(UserPreferences preferences, ChatMessage userMessage) {
+            this.preferences = preferences;
+            this.userMessage = userMessage;
+        }
+    }
+}
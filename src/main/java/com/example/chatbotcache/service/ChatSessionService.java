@@ -22,6 +22,12 @@ public class ChatSessionService {
     @Autowired
     private UserSessionTrackingService userSessionTrackingService;
 
+    @Autowired
+    private SessionTokenCounterService tokenCounterService;
+
+    @Autowired
+    private ConversationSummaryService conversationSummaryService;
+
     /**
      * Create a new chat session
      */
@@ -36,6 +42,9 @@ public class ChatSessionService {
         // Track the session for the user
         userSessionTrackingService.trackUserSession(userId, sessionId);
 
+        // Start token totals at zero so they never need a full recount
+        tokenCounterService.initialize(sessionId);
+
         return savedSession;
     }
 
@@ -81,6 +90,7 @@ public class ChatSessionService {
     public ChatSession updateLastActivity(String sessionId) {
         ChatSession session = getSessionOrThrow(sessionId);
         session.updateLastActivity();
+        updateCounters(sessionId, 0, 0, session.getLastActivity());
 
         // Track activity in cache for sorted sets and TTL management
         cacheService.trackSessionActivity(sessionId, session.getUserId());
@@ -89,7 +99,24 @@ public class ChatSessionService {
         // Track activity in user session tracking
         userSessionTrackingService.updateSessionActivity(sessionId);
 
-        return chatSessionRepository.save(session);
+        return session;
+    }
+
+    /**
+     * Write back a session that was created or changed in the in-memory store during a
+     * Redis outage. New sessions are saved as they are; for existing sessions only the
+     * user-editable fields and a newer lastActivity are written, so the counters kept
+     * in Redis are not overwritten.
+     */
+    public void restoreSession(ChatSession snapshot) {
+        validateSessionId(snapshot.getSessionId());
+
+        if (chatSessionRepository.restoreFields(snapshot)) {
+            return;
+        }
+        chatSessionRepository.save(snapshot);
+        userSessionTrackingService.trackUserSession(snapshot.getUserId(), snapshot.getSessionId());
+        tokenCounterService.initialize(snapshot.getSessionId());
     }
 
     /**
@@ -110,6 +137,8 @@ public class ChatSessionService {
                 }
 
                 chatSessionRepository.deleteById(sessionId);
+                tokenCounterService.clear(sessionId);
+                conversationSummaryService.clear(sessionId);
                 return true;
             }
             return false;
@@ -172,20 +201,28 @@ public class ChatSessionService {
      * Increment message count for a session
      */
     public ChatSession incrementMessageCount(String sessionId) {
-        ChatSession session = getSessionOrThrow(sessionId);
-        session.incrementMessageCount();
-        session.updateLastActivity();
-        return chatSessionRepository.save(session);
+        validateSessionId(sessionId);
+        updateCounters(sessionId, 1, 0, LocalDateTime.now());
+        return getSessionOrThrow(sessionId);
     }
 
     /**
      * Add tokens to session count
      */
     public ChatSession addTokensToSession(String sessionId, int tokens) {
-        ChatSession session = getSessionOrThrow(sessionId);
-        session.addTokens(tokens);
-        session.updateLastActivity();
-        return chatSessionRepository.save(session);
+        validateSessionId(sessionId);
+        updateCounters(sessionId, 0, tokens, LocalDateTime.now());
+        return getSessionOrThrow(sessionId);
+    }
+
+    /**
+     * Count one appended message and its tokens in a single field-level update.
+     * Concurrent appends to the same session never overwrite each other's counts.
+     */
+    public void recordMessageAppended(String sessionId, Integer tokenCount) {
+        validateSessionId(sessionId);
+        int tokens = tokenCount != null && tokenCount > 0 ? tokenCount : 0;
+        updateCounters(sessionId, 1, tokens, LocalDateTime.now());
     }
 
     /**
@@ -242,6 +279,12 @@ public class ChatSessionService {
 
     // Private helper methods
 
+    private void updateCounters(String sessionId, int messageDelta, int tokenDelta, LocalDateTime lastActivity) {
+        if (!chatSessionRepository.updateCounters(sessionId, messageDelta, tokenDelta, lastActivity)) {
+            throw new IllegalArgumentException("Session not found: " + sessionId);
+        }
+    }
+
     private String generateSessionId() {
         return "session_" + UUID.randomUUID().toString().replace("-", "");
     }
@@ -0,0 +1,294 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.config.ValueCompressor;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.repository.PipelinedHashReader;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trains, stores and distributes the preset dictionary used by ValueCompressor.
+ * The dictionary is built from phrases that recur across sampled message contents and
+ * cached responses, so that values too short to compress well on their own still share
+ * their common phrasing with it. Dictionaries are kept in Redis under their ID and never
+ * changed, so every instance can decompress values written with any of them.
+ */
+@Service
+public class CompressionDictionaryService {
+
+    private static final String DICTIONARY_PREFIX = "compression:dictionary:";
+    private static final String DICTIONARY_SEQUENCE_KEY = "compression:dictionary:sequence";
+    private static final String CURRENT_DICTIONARY_KEY = "compression:dictionary:current";
+    private static final String MESSAGE_KEYSPACE = "chat_message";
+
+    private static final int MAX_NGRAM_WORDS = 4;
+    private static final int MIN_SEGMENT_LENGTH = 4;
+    private static final int MIN_SAMPLES = 20;
+
+    @Autowired
+    private ValueCompressor valueCompressor;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    @Value("${app.compression.dictionary.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.compression.dictionary.size-bytes:16384}")
+    private int sizeBytes;
+
+    @Value("${app.compression.dictionary.sample-size:500}")
+    private int sampleSize;
+
+    @PostConstruct
+    public void initialize() {
+        valueCompressor.setDictionaryLoader(this::loadDictionary);
+        if (!enabled) {
+            return;
+        }
+        try {
+            activateCurrentDictionary();
+        } catch (Exception e) {
+            System.err.println("Failed to load compression dictionary: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Train the first dictionary once enough content exists; later ones are trained on request
+     */
+    @Scheduled(initialDelayString = "${app.compression.dictionary.check-interval-ms:600000}",
+               fixedDelayString = "${app.compression.dictionary.check-interval-ms:600000}")
+    public void bootstrapDictionary() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!activateCurrentDictionary()) {
+                trainDictionary();
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to bootstrap compression dictionary: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sample stored content, train a new dictionary and make it current for new writes
+     */
+    public Map<String, Object> trainDictionary() {
+        Map<String, Object> result = new HashMap<>();
+        List<String> samples = sampleContents();
+        result.put("samples", samples.size());
+        if (samples.size() < MIN_SAMPLES) {
+            result.put("success", false);
+            result.put("error", "Need at least " + MIN_SAMPLES + " content samples, found " + samples.size());
+            return result;
+        }
+
+        // Hold back every fifth sample to measure the dictionary on content it was not trained on
+        List<String> training = new ArrayList<>();
+        List<String> holdout = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i++) {
+            (i % 5 == 4 ? holdout : training).add(samples.get(i));
+        }
+
+        byte[] dictionary = buildDictionary(training, sizeBytes);
+        if (dictionary.length == 0) {
+            result.put("success", false);
+            result.put("error", "Samples share no repeated phrases");
+            return result;
+        }
+
+        long dictionaryId = circuitBreaker.execute(Operation.MAINTENANCE, () -> {
+            Long id = stringRedisTemplate.opsForValue().increment(DICTIONARY_SEQUENCE_KEY);
+            stringRedisTemplate.opsForValue().set(DICTIONARY_PREFIX + id, Base64.getEncoder().encodeToString(dictionary));
+            stringRedisTemplate.opsForValue().set(CURRENT_DICTIONARY_KEY, String.valueOf(id));
+            return id;
+        });
+        valueCompressor.registerDictionary((int) dictionaryId, dictionary);
+        valueCompressor.useDictionary((int) dictionaryId);
+
+        long rawBytes = 0;
+        long plainBytes = 0;
+        long dictionaryBytes = 0;
+        for (String sample : holdout) {
+            byte[] raw = sample.getBytes(StandardCharsets.UTF_8);
+            rawBytes += raw.length;
+            plainBytes += ValueCompressor.deflatedSize(raw, null, valueCompressor.getLevel());
+            dictionaryBytes += ValueCompressor.deflatedSize(raw, dictionary, valueCompressor.getLevel());
+        }
+
+        result.put("success", true);
+        result.put("dictionaryId", dictionaryId);
+        result.put("dictionaryBytes", dictionary.length);
+        result.put("holdoutSamples", holdout.size());
+        result.put("holdoutRawBytes", rawBytes);
+        result.put("holdoutCompressedBytes", plainBytes);
+        result.put("holdoutCompressedWithDictionaryBytes", dictionaryBytes);
+        result.put("ratioWithoutDictionary", plainBytes > 0 ? (double) rawBytes / plainBytes : 0.0);
+        result.put("ratioWithDictionary", dictionaryBytes > 0 ? (double) rawBytes / dictionaryBytes : 0.0);
+        return result;
+    }
+
+    /**
+     * Build a preset dictionary from word n-grams that occur in more than one sample. Segments
+     * are scored by the bytes they could save across samples; DEFLATE reaches the end of the
+     * dictionary with the shortest distances, so the best segments are placed last.
+     */
+    public static byte[] buildDictionary(List<String> samples, int maxBytes) {
+        Map<String, Integer> documentFrequency = new HashMap<>();
+        for (String sample : samples) {
+            String[] words = sample.trim().split("\\s+");
+            Set<String> seen = new HashSet<>();
+            for (int n = 1; n <= MAX_NGRAM_WORDS; n++) {
+                for (int i = 0; i + n <= words.length; i++) {
+                    String segment = String.join(" ", Arrays.asList(words).subList(i, i + n));
+                    if (segment.length() >= MIN_SEGMENT_LENGTH) {
+                        seen.add(segment);
+                    }
+                }
+            }
+            seen.forEach(segment -> documentFrequency.merge(segment, 1, Integer::sum));
+        }
+
+        List<Map.Entry<String, Integer>> candidates = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : documentFrequency.entrySet()) {
+            if (entry.getValue() > 1) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(score(b), score(a)));
+        if (candidates.size() > maxBytes / MIN_SEGMENT_LENGTH) {
+            candidates = candidates.subList(0, maxBytes / MIN_SEGMENT_LENGTH);
+        }
+
+        List<String> selected = new ArrayList<>();
+        StringBuilder covered = new StringBuilder();
+        int totalBytes = 0;
+        for (Map.Entry<String, Integer> candidate : candidates) {
+            String segment = candidate.getKey();
+            int segmentBytes = segment.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (totalBytes + segmentBytes > maxBytes) {
+                continue;
+            }
+            // A shorter phrase already contained in a chosen one adds nothing
+            if (covered.indexOf(segment) >= 0) {
+                continue;
+            }
+            selected.add(segment);
+            covered.append(segment).append('\n');
+            totalBytes += segmentBytes;
+        }
+
+        Collections.reverse(selected);
+        StringBuilder dictionary = new StringBuilder(totalBytes);
+        for (String segment : selected) {
+            dictionary.append(segment).append(' ');
+        }
+        return dictionary.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>(valueCompressor.getStats());
+        stats.put("dictionaryTrainingEnabled", enabled);
+        stats.put("dictionarySizeBytes", sizeBytes);
+        return stats;
+    }
+
+    // Private helper methods
+
+    private static long score(Map.Entry<String, Integer> candidate) {
+        return (long) (candidate.getValue() - 1) * candidate.getKey().length();
+    }
+
+    private boolean activateCurrentDictionary() {
+        String current = circuitBreaker.execute(Operation.MAINTENANCE,
+            () -> stringRedisTemplate.opsForValue().get(CURRENT_DICTIONARY_KEY));
+        if (current == null) {
+            return false;
+        }
+        int dictionaryId = Integer.parseInt(current);
+        if (dictionaryId == valueCompressor.getActiveDictionaryId()) {
+            return true;
+        }
+        byte[] dictionary = loadDictionary(dictionaryId);
+        if (dictionary == null) {
+            return false;
+        }
+        valueCompressor.registerDictionary(dictionaryId, dictionary);
+        valueCompressor.useDictionary(dictionaryId);
+        return true;
+    }
+
+    private byte[] loadDictionary(int dictionaryId) {
+        try {
+            String encoded = circuitBreaker.execute(Operation.MAINTENANCE,
+                () -> stringRedisTemplate.opsForValue().get(DICTIONARY_PREFIX + dictionaryId));
+            return encoded != null ? Base64.getDecoder().decode(encoded) : null;
+        } catch (Exception e) {
+            System.err.println("Failed to load compression dictionary " + dictionaryId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private List<String> sampleContents() {
+        List<String> samples = new ArrayList<>();
+
+        List<String> messageIds = circuitBreaker.execute(Operation.MAINTENANCE,
+            () -> stringRedisTemplate.opsForSet().randomMembers(MESSAGE_KEYSPACE, sampleSize));
+        if (messageIds != null && !messageIds.isEmpty()) {
+            List<ChatMessage> messages = circuitBreaker.execute(Operation.MAINTENANCE,
+                () -> hashReader.readAll(MESSAGE_KEYSPACE, new ArrayList<>(new HashSet<>(messageIds)), ChatMessage.class));
+            for (ChatMessage message : messages) {
+                if (message.getContent() != null && !message.getContent().isBlank()) {
+                    samples.add(message.getContent());
+                }
+            }
+        }
+
+        List<Object> responseKeys = circuitBreaker.execute(Operation.MAINTENANCE,
+            () -> redisTemplate.opsForZSet().randomMembers(CacheService.RESPONSE_CACHE_INDEX, sampleSize));
+        if (responseKeys != null && !responseKeys.isEmpty()) {
+            List<String> keys = new ArrayList<>();
+            for (Object responseKey : new HashSet<>(responseKeys)) {
+                keys.add(responseKey.toString());
+            }
+            List<Object> cachedValues = circuitBreaker.execute(Operation.MAINTENANCE,
+                () -> redisTemplate.opsForValue().multiGet(keys));
+            if (cachedValues != null) {
+                for (Object cached : cachedValues) {
+                    if (cached instanceof Map<?, ?> cachedData && cachedData.get("response") != null) {
+                        samples.add(cachedData.get("response").toString());
+                    }
+                }
+            }
+        }
+        return samples;
+    }
+}
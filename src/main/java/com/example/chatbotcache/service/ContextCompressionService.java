@@ -5,9 +5,8 @@ import com.example.chatbotcache.model.MessageRole;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 
 @Service
 public class ContextCompressionService {
@@ -17,27 +16,49 @@ public class ContextCompressionService {
 
     private static final int DEFAULT_CONTEXT_WINDOW = 4000;
     private static final int COMPRESSION_TARGET_TOKENS = 2000;
-    private static final int MIN_RECENT_MESSAGES = 10;
-    private static final int MAX_SUMMARY_TOKENS = 500;
-
+    public static final int MIN_RECENT_MESSAGES = 10;
+    private static final int MAX_TOPICS = 3;
+    private static final int MAX_KEY_EXCHANGES = 5;
+
+    private static final Pattern IMPORTANT_PATTERN = Pattern.compile(
+        "\\?|how|what|why|when|where|important|problem|error|issue",
+        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+    /**
+     * Common English words ignored for topic extraction and cache key normalization
+     */
+    public static final Set<String> STOP_WORDS = Set.of("the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for", "of", "with", "by", "is", "are", "was", "were", "been", "be", "have", "has", "had", "do", "does", "did", "will", "would", "could", "should", "may", "might", "can", "i", "you", "he", "she", "it", "we", "they", "me", "him", "her", "us", "them", "my", "your", "his", "its", "our", "their", "this", "that", "these", "those");
+
+    /**
+     * Keep the most recent messages and summarize the rest when the context exceeds the window.
+     * Messages are split by index, and each message's tokens are counted once in one
+     * reverse pass. The older part is summarized in one forward pass.
+     */
     public CompressionResult compressContext(List<ChatMessage> messages, int contextWindowSize) {
         if (messages == null || messages.isEmpty()) {
             return new CompressionResult(messages, "", false, 0, 0);
         }
 
-        int totalTokens = tokenCountingService.estimateTokenCount(messages);
+        int size = messages.size();
+        int recentStart = Math.max(0, size - MIN_RECENT_MESSAGES);
+        int totalTokens = 0;
+        int recentTokens = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            int messageTokens = tokenCountingService.estimateTokenCount(messages.get(i));
+            totalTokens += messageTokens;
+            if (i >= recentStart) {
+                recentTokens += messageTokens;
+            }
+        }
 
         if (totalTokens <= contextWindowSize) {
             return new CompressionResult(messages, "", false, totalTokens, 0);
         }
 
-        int targetTokens = Math.min(COMPRESSION_TARGET_TOKENS, contextWindowSize - MAX_SUMMARY_TOKENS);
-
-        List<ChatMessage> recentMessages = preserveRecentMessages(messages, targetTokens);
-        String conversationSummary = generateConversationSummary(messages, recentMessages);
+        List<ChatMessage> recentMessages = new ArrayList<>(messages.subList(recentStart, size));
+        String conversationSummary = createSummary(messages.subList(0, recentStart));
 
-        int finalTokenCount = tokenCountingService.estimateTokenCount(recentMessages) +
-                             tokenCountingService.estimateTokenCount(conversationSummary);
+        int finalTokenCount = recentTokens + tokenCountingService.estimateTokenCount(conversationSummary);
         int tokensRemoved = totalTokens - finalTokenCount;
 
         return new CompressionResult(recentMessages, conversationSummary, true, finalTokenCount, tokensRemoved);
@@ -47,127 +68,169 @@ public class ContextCompressionService {
         return compressContext(messages, DEFAULT_CONTEXT_WINDOW);
     }
 
-    private List<ChatMessage> preserveRecentMessages(List<ChatMessage> messages, int targetTokens) {
-        if (messages.size() <= MIN_RECENT_MESSAGES) {
-            return new ArrayList<>(messages);
+    /**
+     * Incremental form of {@link #compressContext(List, int)} for a session whose older messages
+     * were already folded into a stored summary state. Only the given messages are scanned:
+     * those outside the recent window are folded into a delta that is merged with the stored
+     * state, so the cost depends on the messages added since the last compaction, not on the
+     * length of the whole conversation.
+     */
+    public IncrementalCompressionResult compressIncrementally(SummaryState storedState, List<ChatMessage> messages,
+                                                              int contextWindowSize) {
+        SummaryState stored = storedState != null ? storedState : new SummaryState();
+        List<ChatMessage> remaining = messages != null ? messages : List.of();
+        String storedSummary = renderSummary(stored);
+
+        int size = remaining.size();
+        int recentStart = Math.max(0, size - MIN_RECENT_MESSAGES);
+        int totalTokens = tokenCountingService.estimateTokenCount(storedSummary);
+        int recentTokens = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            int messageTokens = tokenCountingService.estimateTokenCount(remaining.get(i));
+            totalTokens += messageTokens;
+            if (i >= recentStart) {
+                recentTokens += messageTokens;
+            }
         }
 
-        List<ChatMessage> recentMessages = new ArrayList<>();
-        int currentTokens = 0;
-        int messagesPreserved = 0;
+        if (totalTokens <= contextWindowSize || recentStart == 0) {
+            return new IncrementalCompressionResult(remaining, storedSummary, false, totalTokens, 0,
+                stored, new SummaryState(), 0);
+        }
 
-        for (int i = messages.size() - 1; i >= 0 && messagesPreserved < MIN_RECENT_MESSAGES; i--) {
-            ChatMessage message = messages.get(i);
-            int messageTokens = tokenCountingService.estimateTokenCount(message);
+        SummaryState delta = new SummaryState();
+        fold(delta, remaining.subList(0, recentStart), MAX_KEY_EXCHANGES - stored.getKeyExchanges().size());
+        SummaryState merged = stored.copy().merge(delta);
+        String conversationSummary = renderSummary(merged);
 
-            if (currentTokens + messageTokens <= targetTokens || messagesPreserved < MIN_RECENT_MESSAGES) {
-                recentMessages.add(0, message);
-                currentTokens += messageTokens;
-                messagesPreserved++;
-            } else {
-                break;
-            }
-        }
+        int finalTokenCount = recentTokens + tokenCountingService.estimateTokenCount(conversationSummary);
+        return new IncrementalCompressionResult(new ArrayList<>(remaining.subList(recentStart, size)),
+            conversationSummary, true, finalTokenCount, totalTokens - finalTokenCount, merged, delta, recentStart);
+    }
 
-        return recentMessages;
+    /**
+     * Summary state of the given messages
+     */
+    public SummaryState summarize(List<ChatMessage> messages) {
+        SummaryState state = new SummaryState();
+        fold(state, messages, MAX_KEY_EXCHANGES);
+        return state;
     }
 
-    private String generateConversationSummary(List<ChatMessage> allMessages, List<ChatMessage> recentMessages) {
-        List<ChatMessage> messagesToSummarize = new ArrayList<>();
+    /**
+     * Summary text for a state; empty when no messages have been summarized
+     */
+    public String renderSummary(SummaryState state) {
+        if (state == null || state.getMessageCount() == 0) {
+            return "";
+        }
 
-        for (ChatMessage message : allMessages) {
-            if (!recentMessages.contains(message)) {
-                messagesToSummarize.add(message);
-            }
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Previous conversation summary (%d messages):\n", state.getMessageCount()));
+        summary.append(String.format("- %d user messages, %d assistant messages\n",
+            state.getUserMessages(), state.getAssistantMessages()));
+
+        if (!state.getTopicCounts().isEmpty()) {
+            summary.append("- Main topics: ")
+                .append(String.join(", ", topTopics(state.getTopicCounts(), MAX_TOPICS))).append("\n");
         }
 
-        if (messagesToSummarize.isEmpty()) {
-            return "";
+        if (!state.getKeyExchanges().isEmpty()) {
+            summary.append("- Key exchanges:\n");
+            for (String exchange : state.getKeyExchanges()) {
+                summary.append("  ").append(exchange).append("\n");
+            }
         }
 
-        return createSummary(messagesToSummarize);
+        return summary.toString();
     }
 
     private String createSummary(List<ChatMessage> messages) {
-        if (messages.isEmpty()) {
-            return "";
-        }
+        return renderSummary(summarize(messages));
+    }
 
-        Map<String, Integer> topicCounts = new HashMap<>();
-        List<String> keyExchanges = new ArrayList<>();
-        int userMessages = 0;
-        int assistantMessages = 0;
+    /**
+     * Add the messages to the state in one forward pass, keeping at most maxNewExchanges
+     * of their key exchanges
+     */
+    private void fold(SummaryState state, List<ChatMessage> messages, int maxNewExchanges) {
+        StringBuilder word = new StringBuilder();
+        int exchangeLimit = state.keyExchanges.size() + Math.max(0, maxNewExchanges);
 
         for (ChatMessage message : messages) {
+            state.messageCount++;
             if (message.getRole() == MessageRole.USER) {
-                userMessages++;
-                extractTopics(message.getContent(), topicCounts);
+                state.userMessages++;
+                extractTopics(message.getContent(), state.topicCounts, word);
 
-                if (isImportantMessage(message.getContent())) {
-                    keyExchanges.add("User: " + truncateContent(message.getContent(), 50));
+                if (state.keyExchanges.size() < exchangeLimit && isImportantMessage(message.getContent())) {
+                    state.keyExchanges.add("User: " + truncateContent(message.getContent(), 50));
                 }
             } else if (message.getRole() == MessageRole.ASSISTANT) {
-                assistantMessages++;
+                state.assistantMessages++;
 
-                if (isImportantMessage(message.getContent())) {
-                    keyExchanges.add("Assistant: " + truncateContent(message.getContent(), 50));
+                if (state.keyExchanges.size() < exchangeLimit && isImportantMessage(message.getContent())) {
+                    state.keyExchanges.add("Assistant: " + truncateContent(message.getContent(), 50));
                 }
             }
         }
-
-        StringBuilder summary = new StringBuilder();
-        summary.append(String.format("Previous conversation summary (%d messages):\n", messages.size()));
-        summary.append(String.format("- %d user messages, %d assistant messages\n", userMessages, assistantMessages));
-
-        if (!topicCounts.isEmpty()) {
-            String topTopics = topicCounts.entrySet().stream()
-                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                    .limit(3)
-                    .map(Map.Entry::getKey)
-                    .collect(Collectors.joining(", "));
-            summary.append("- Main topics: ").append(topTopics).append("\n");
-        }
-
-        if (!keyExchanges.isEmpty()) {
-            summary.append("- Key exchanges:\n");
-            keyExchanges.stream().limit(5).forEach(exchange ->
-                summary.append("  ").append(exchange).append("\n"));
-        }
-
-        return summary.toString();
     }
 
-    private void extractTopics(String content, Map<String, Integer> topicCounts) {
+    /**
+     * Count words longer than three characters that are not stop words. Text is lowercased,
+     * characters other than ASCII letters, digits and whitespace are dropped, and words are
+     * split on whitespace, in one pass over the content.
+     */
+    private void extractTopics(String content, Map<String, Integer> topicCounts, StringBuilder word) {
         if (content == null) return;
 
-        String[] words = content.toLowerCase()
-                .replaceAll("[^a-zA-Z0-9\\s]", "")
-                .split("\\s+");
-
-        Set<String> stopWords = Set.of("the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for", "of", "with", "by", "is", "are", "was", "were", "been", "be", "have", "has", "had", "do", "does", "did", "will", "would", "could", "should", "may", "might", "can", "i", "you", "he", "she", "it", "we", "they", "me", "him", "her", "us", "them", "my", "your", "his", "her", "its", "our", "their", "this", "that", "these", "those");
+        word.setLength(0);
+        int length = content.length();
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? Character.toLowerCase(content.charAt(i)) : ' ';
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                word.append(c);
+            } else if (c == ' ' || (c >= '\t' && c <= '\r')) {
+                if (word.length() > 3) {
+                    String topic = word.toString();
+                    if (!STOP_WORDS.contains(topic)) {
+                        topicCounts.put(topic, topicCounts.getOrDefault(topic, 0) + 1);
+                    }
+                }
+                word.setLength(0);
+            }
+        }
+    }
 
-        for (String word : words) {
-            if (word.length() > 3 && !stopWords.contains(word)) {
-                topicCounts.put(word, topicCounts.getOrDefault(word, 0) + 1);
+    /**
+     * The most frequent topics, highest count first; ties keep the map's iteration order
+     */
+    private static List<String> topTopics(Map<String, Integer> topicCounts, int limit) {
+        List<Map.Entry<String, Integer>> top = new ArrayList<>(limit + 1);
+        for (Map.Entry<String, Integer> entry : topicCounts.entrySet()) {
+            int position = top.size();
+            while (position > 0 && top.get(position - 1).getValue() < entry.getValue()) {
+                position--;
+            }
+            if (position < limit) {
+                top.add(position, entry);
+                if (top.size() > limit) {
+                    top.remove(limit);
+                }
             }
         }
+
+        List<String> topics = new ArrayList<>(top.size());
+        for (Map.Entry<String, Integer> entry : top) {
+            topics.add(entry.getKey());
+        }
+        return topics;
     }
 
     private boolean isImportantMessage(String content) {
         if (content == null) return false;
 
-        String lower = content.toLowerCase();
-        return lower.contains("?") ||
-               lower.contains("how") ||
-               lower.contains("what") ||
-               lower.contains("why") ||
-               lower.contains("when") ||
-               lower.contains("where") ||
-               lower.contains("important") ||
-               lower.contains("problem") ||
-               lower.contains("error") ||
-               lower.contains("issue") ||
-               content.length() > 100;
+        return content.length() > 100 || IMPORTANT_PATTERN.matcher(content).find();
     }
 
     private String truncateContent(String content, int maxLength) {
@@ -235,6 +298,81 @@ public class ContextCompressionService {
         }
     }
 
+    /**
+     * Result of an incremental compression. The summarized count is the number of leading
+     * messages folded into the delta; they can be dropped from the session once the delta
+     * has been stored.
+     */
+    public static class IncrementalCompressionResult extends CompressionResult {
+        private final SummaryState summaryState;
+        private final SummaryState delta;
+        private final int summarizedCount;
+
+        public IncrementalCompressionResult(List<ChatMessage> compressedMessages, String conversationSummary,
+                                            boolean wasCompressed, int finalTokenCount, int tokensRemoved,
+                                            SummaryState summaryState, SummaryState delta, int summarizedCount) {
+            super(compressedMessages, conversationSummary, wasCompressed, finalTokenCount, tokensRemoved);
+            this.summaryState = summaryState;
+            this.delta = delta;
+            this.summarizedCount = summarizedCount;
+        }
+
+        public SummaryState getSummaryState() { return summaryState; }
+        public SummaryState getDelta() { return delta; }
+        public int getSummarizedCount() { return summarizedCount; }
+    }
+
+    /**
+     * Mergeable summary of older messages: message and role counts, topic counts and the
+     * first key exchanges. Merging the states of two consecutive runs of messages gives the
+     * state of the whole run, except for topic ties, which may be ordered differently.
+     */
+    public static class SummaryState {
+        private int messageCount;
+        private int userMessages;
+        private int assistantMessages;
+        private final Map<String, Integer> topicCounts;
+        private final List<String> keyExchanges;
+
+        public SummaryState() {
+            this(0, 0, 0, new HashMap<>(), new ArrayList<>(MAX_KEY_EXCHANGES));
+        }
+
+        public SummaryState(int messageCount, int userMessages, int assistantMessages,
+                            Map<String, Integer> topicCounts, List<String> keyExchanges) {
+            this.messageCount = messageCount;
+            this.userMessages = userMessages;
+            this.assistantMessages = assistantMessages;
+            this.topicCounts = new HashMap<>(topicCounts);
+            this.keyExchanges = new ArrayList<>(keyExchanges);
+        }
+
+        /**
+         * Add a later state to this one; key exchanges are kept up to the summary limit
+         */
+        public SummaryState merge(SummaryState later) {
+            messageCount += later.messageCount;
+            userMessages += later.userMessages;
+            assistantMessages += later.assistantMessages;
+            later.topicCounts.forEach((topic, count) -> topicCounts.put(topic, topicCounts.getOrDefault(topic, 0) + count));
+            for (String exchange : later.keyExchanges) {
+                if (keyExchanges.size() >= MAX_KEY_EXCHANGES) break;
+                keyExchanges.add(exchange);
+            }
+            return this;
+        }
+
+        public SummaryState copy() {
+            return new SummaryState(messageCount, userMessages, assistantMessages, topicCounts, keyExchanges);
+        }
+
+        public int getMessageCount() { return messageCount; }
+        public int getUserMessages() { return userMessages; }
+        public int getAssistantMessages() { return assistantMessages; }
+        public Map<String, Integer> getTopicCounts() { return topicCounts; }
+        public List<String> getKeyExchanges() { return keyExchanges; }
+    }
+
     public static class ContextAnalysis {
         private final int totalTokens;
         private final int messageCount;
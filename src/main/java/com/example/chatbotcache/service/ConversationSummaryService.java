@@ -0,0 +1,132 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.service.ContextCompressionService.SummaryState;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the rolling summary of a session's compacted messages in a Redis hash next to the
+ * session. Each compaction adds its delta with HINCRBY and HSETNX, so concurrent updates merge
+ * in Redis, and a read assembles the counters back into one summary state.
+ */
+@Service
+public class ConversationSummaryService {
+
+    private static final String SUMMARY_PREFIX = "summary:session:";
+    private static final String MESSAGES_FIELD = "messages";
+    private static final String USER_FIELD = "USER";
+    private static final String ASSISTANT_FIELD = "ASSISTANT";
+    private static final String TOPIC_FIELD_PREFIX = "topic:";
+    private static final String EXCHANGE_FIELD_PREFIX = "exchange:";
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private RedisTransactionService transactionService;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private ContextCompressionService contextCompressionService;
+
+    /**
+     * Redis key holding the summary state of a session
+     */
+    public String getSummaryKey(String sessionId) {
+        return SUMMARY_PREFIX + sessionId;
+    }
+
+    /**
+     * Stored summary state of a session; empty when nothing has been compacted yet
+     */
+    public SummaryState getState(String sessionId) {
+        Map<Object, Object> raw = circuitBreaker.execute(Operation.MESSAGE_READ,
+            () -> stringRedisTemplate.opsForHash().entries(getSummaryKey(sessionId)));
+        return toState(raw);
+    }
+
+    /**
+     * Summary text of a session's compacted messages
+     */
+    public String getSummary(String sessionId) {
+        return contextCompressionService.renderSummary(getState(sessionId));
+    }
+
+    /**
+     * Add the delta of one compaction to the stored state. The delta's key exchanges follow
+     * the stored ones, so existingExchanges is the number of exchanges already stored.
+     */
+    public void applyDelta(String sessionId, int existingExchanges, SummaryState delta) {
+        if (delta == null || delta.getMessageCount() == 0) {
+            return;
+        }
+
+        String key = getSummaryKey(sessionId);
+        circuitBreaker.run(Operation.MESSAGE_WRITE, () -> transactionService.executeInTransaction(stringRedisTemplate, ops -> {
+            ops.opsForHash().increment(key, MESSAGES_FIELD, delta.getMessageCount());
+            ops.opsForHash().increment(key, USER_FIELD, delta.getUserMessages());
+            ops.opsForHash().increment(key, ASSISTANT_FIELD, delta.getAssistantMessages());
+            delta.getTopicCounts().forEach((topic, count) ->
+                ops.opsForHash().increment(key, TOPIC_FIELD_PREFIX + topic, count));
+            List<String> exchanges = delta.getKeyExchanges();
+            for (int i = 0; i < exchanges.size(); i++) {
+                ops.opsForHash().putIfAbsent(key, EXCHANGE_FIELD_PREFIX + (existingExchanges + i), exchanges.get(i));
+            }
+        }));
+    }
+
+    /**
+     * Remove the stored summary of a session
+     */
+    public void clear(String sessionId) {
+        try {
+            stringRedisTemplate.delete(getSummaryKey(sessionId));
+        } catch (Exception e) {
+            System.err.println("Failed to clear conversation summary for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    // Private helper methods
+
+    private SummaryState toState(Map<Object, Object> raw) {
+        if (raw == null || raw.isEmpty()) {
+            return new SummaryState();
+        }
+
+        Map<String, Integer> topicCounts = new HashMap<>();
+        Map<Integer, String> exchanges = new TreeMap<>();
+        int messages = 0;
+        int userMessages = 0;
+        int assistantMessages = 0;
+
+        for (Map.Entry<Object, Object> entry : raw.entrySet()) {
+            String field = entry.getKey().toString();
+            String value = entry.getValue().toString();
+            if (field.startsWith(TOPIC_FIELD_PREFIX)) {
+                topicCounts.put(field.substring(TOPIC_FIELD_PREFIX.length()), Integer.parseInt(value));
+            } else if (field.startsWith(EXCHANGE_FIELD_PREFIX)) {
+                exchanges.put(Integer.parseInt(field.substring(EXCHANGE_FIELD_PREFIX.length())), value);
+            } else if (MESSAGES_FIELD.equals(field)) {
+                messages = Integer.parseInt(value);
+            } else if (USER_FIELD.equals(field)) {
+                userMessages = Integer.parseInt(value);
+            } else if (ASSISTANT_FIELD.equals(field)) {
+                assistantMessages = Integer.parseInt(value);
+            }
+        }
+
+        return new SummaryState(messages, userMessages, assistantMessages, topicCounts, new ArrayList<>(exchanges.values()));
+    }
+}
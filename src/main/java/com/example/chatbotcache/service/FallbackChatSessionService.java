@@ -15,9 +15,12 @@ public class FallbackChatSessionService {
 
     private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
     private final CacheService cacheService;
+    private final FallbackMemoryBudget memoryBudget;
 
-    public FallbackChatSessionService(CacheService cacheService) {
+    public FallbackChatSessionService(CacheService cacheService, FallbackMemoryBudget memoryBudget) {
         this.cacheService = cacheService;
+        this.memoryBudget = memoryBudget;
+        memoryBudget.onEviction(sessions::remove);
     }
 
     public ChatSession createSession(String userId, String title) {
@@ -25,7 +28,7 @@ public class FallbackChatSessionService {
 
         String sessionId = generateSessionId();
         ChatSession session = new ChatSession(sessionId, userId, title);
-        sessions.put(sessionId, session);
+        store(session);
 
         return session;
     }
@@ -36,6 +39,7 @@ public class FallbackChatSessionService {
 
     public Optional<ChatSession> getSession(String sessionId) {
         validateSessionId(sessionId);
+        memoryBudget.recordAccess(sessionId);
         return Optional.ofNullable(sessions.get(sessionId));
     }
 
@@ -57,13 +61,15 @@ public class FallbackChatSessionService {
             System.out.println("Cache service unavailable, skipping activity tracking");
         }
 
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
     public boolean deleteSession(String sessionId) {
         validateSessionId(sessionId);
-        return sessions.remove(sessionId) != null;
+        boolean removed = sessions.remove(sessionId) != null;
+        memoryBudget.remove(sessionId);
+        return removed;
     }
 
     public List<ChatSession> getUserSessions(String userId) {
@@ -91,7 +97,7 @@ public class FallbackChatSessionService {
             // Silently fail if Redis is not available
         }
 
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
@@ -99,7 +105,7 @@ public class FallbackChatSessionService {
         ChatSession session = getSessionOrThrow(sessionId);
         session.setActive(true);
         session.updateLastActivity();
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
@@ -107,7 +113,7 @@ public class FallbackChatSessionService {
         ChatSession session = getSessionOrThrow(sessionId);
         session.setTitle(title);
         session.updateLastActivity();
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
@@ -115,7 +121,7 @@ public class FallbackChatSessionService {
         ChatSession session = getSessionOrThrow(sessionId);
         session.incrementMessageCount();
         session.updateLastActivity();
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
@@ -123,7 +129,7 @@ public class FallbackChatSessionService {
         ChatSession session = getSessionOrThrow(sessionId);
         session.addTokens(tokens);
         session.updateLastActivity();
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
@@ -131,7 +137,7 @@ public class FallbackChatSessionService {
         ChatSession session = getSessionOrThrow(sessionId);
         session.setSetting(key, value);
         session.updateLastActivity();
-        sessions.put(sessionId, session);
+        store(session);
         return session;
     }
 
@@ -165,10 +171,19 @@ public class FallbackChatSessionService {
             }
         }
 
-        toRemove.forEach(sessions::remove);
+        toRemove.forEach(memoryBudget::remove);
         return toRemove.size();
     }
 
+    /**
+     * Store a session as-is, replacing any existing copy
+     */
+    public ChatSession store(ChatSession session) {
+        sessions.put(session.getSessionId(), session);
+        memoryBudget.recordSession(session);
+        return session;
+    }
+
     // Private helper methods
 
     private String generateSessionId() {
@@ -0,0 +1,253 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Global memory budget for the in-memory fallback stores.
+ * Every session held by FallbackChatSessionService or FallbackMessageService has one
+ * footprint here, weighted by the estimated bytes of the session and its messages.
+ * Caffeine evicts whole sessions across the budget with W-TinyLFU and expires them
+ * on the same active/inactive TTLs CacheService applies in Redis; registered stores
+ * drop their data for a session when it is evicted.
+ */
+@Service
+public class FallbackMemoryBudget {
+
+    private static final String METRIC_PREFIX = "chatbot.fallback";
+
+    // Rough per-object costs for headers, references and boxed fields
+    private static final int SESSION_OVERHEAD_BYTES = 512;
+    private static final int MESSAGE_OVERHEAD_BYTES = 256;
+    private static final int SETTING_OVERHEAD_BYTES = 96;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.fallback.memory.max-bytes:67108864}")
+    private long maxBytes;
+
+    private final List<Consumer<String>> evictionHandlers = new CopyOnWriteArrayList<>();
+    private final AtomicLong messageCount = new AtomicLong(0);
+
+    private Cache<String, Footprint> footprints;
+    private Counter sizeEvictions;
+    private Counter expiryEvictions;
+
+    @PostConstruct
+    public void initialize() {
+        footprints = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String sessionId, Footprint footprint) -> footprint.weight())
+            .expireAfter(new SessionTtlExpiry())
+            .scheduler(Scheduler.systemScheduler())
+            .evictionListener(this::onEviction)
+            .build();
+
+        sizeEvictions = evictionCounter("size");
+        expiryEvictions = evictionCounter("expired");
+        Gauge.builder(METRIC_PREFIX + ".entries", footprints, Cache::estimatedSize)
+            .tag("store", "sessions").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".entries", messageCount, AtomicLong::get)
+            .tag("store", "messages").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".memory.estimated.bytes", this, FallbackMemoryBudget::getEstimatedBytes)
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".memory.budget.bytes", this, budget -> budget.maxBytes)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Register a callback that drops a session's data from a store when the session is evicted
+     */
+    public void onEviction(Consumer<String> handler) {
+        evictionHandlers.add(handler);
+    }
+
+    /**
+     * Record a session write. Writes reset the session's TTL, like setActiveSessionTTL in Redis.
+     */
+    public void recordSession(ChatSession session) {
+        long bytes = estimateBytes(session);
+        boolean active = !Boolean.FALSE.equals(session.getActive());
+        footprints.asMap().compute(session.getSessionId(), (id, current) ->
+            (current != null ? current : Footprint.EMPTY).withSession(bytes, active));
+    }
+
+    /**
+     * Record messages added to or removed from a session. Removals for a session that is
+     * no longer tracked are ignored.
+     */
+    public void recordMessages(String sessionId, int countDelta, long bytesDelta) {
+        footprints.asMap().compute(sessionId, (id, current) -> {
+            if (current == null && countDelta <= 0) {
+                return null;
+            }
+            Footprint base = current != null ? current : Footprint.EMPTY;
+            int applied = Math.max(countDelta, -base.messageCount);
+            messageCount.addAndGet(applied);
+            return base.withMessages(applied, bytesDelta);
+        });
+    }
+
+    /**
+     * Count a read toward the session's access frequency without extending its TTL
+     */
+    public void recordAccess(String sessionId) {
+        footprints.getIfPresent(sessionId);
+    }
+
+    /**
+     * Drop a session from the budget and from every registered store
+     */
+    public void remove(String sessionId) {
+        Footprint removed = footprints.asMap().remove(sessionId);
+        if (removed != null) {
+            messageCount.addAndGet(-removed.messageCount);
+        }
+        evictionHandlers.forEach(handler -> handler.accept(sessionId));
+    }
+
+    public long getEstimatedBytes() {
+        return footprints.policy().eviction()
+            .map(eviction -> eviction.weightedSize().orElse(0L))
+            .orElse(0L);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sessions", footprints.estimatedSize());
+        stats.put("messages", messageCount.get());
+        stats.put("estimatedBytes", getEstimatedBytes());
+        stats.put("budgetBytes", maxBytes);
+        stats.put("sizeEvictions", (long) sizeEvictions.count());
+        stats.put("expiryEvictions", (long) expiryEvictions.count());
+        return stats;
+    }
+
+    public static long estimateBytes(ChatMessage message) {
+        return MESSAGE_OVERHEAD_BYTES
+            + stringBytes(message.getMessageId())
+            + stringBytes(message.getSessionId())
+            + stringBytes(message.getContent());
+    }
+
+    public static long estimateBytes(ChatSession session) {
+        long bytes = SESSION_OVERHEAD_BYTES
+            + stringBytes(session.getSessionId())
+            + stringBytes(session.getUserId())
+            + stringBytes(session.getTitle());
+        if (session.getSettings() != null) {
+            for (Map.Entry<String, Object> setting : session.getSettings().entrySet()) {
+                bytes += SETTING_OVERHEAD_BYTES + stringBytes(setting.getKey())
+                    + stringBytes(String.valueOf(setting.getValue()));
+            }
+        }
+        return bytes;
+    }
+
+    // Private helper methods
+
+    private void onEviction(String sessionId, Footprint footprint, RemovalCause cause) {
+        if (sessionId == null || footprint == null) {
+            return;
+        }
+        if (cause == RemovalCause.SIZE) {
+            sizeEvictions.increment();
+        } else if (cause == RemovalCause.EXPIRED) {
+            expiryEvictions.increment();
+        }
+        messageCount.addAndGet(-footprint.messageCount);
+        evictionHandlers.forEach(handler -> handler.accept(sessionId));
+    }
+
+    private Counter evictionCounter(String cause) {
+        return Counter.builder(METRIC_PREFIX + ".evictions")
+            .tag("cause", cause)
+            .register(meterRegistry);
+    }
+
+    private static long stringBytes(String value) {
+        // Header plus UTF-16 storage; compact Latin-1 strings use less
+        return value != null ? STRING_OVERHEAD_BYTES + 2L * value.length() : 0;
+    }
+
+    /**
+     * Estimated size and TTL class of one session across the fallback stores
+     */
+    private static final class Footprint {
+        private static final Footprint EMPTY = new Footprint(0, 0, 0, true);
+
+        private final long sessionBytes;
+        private final long messageBytes;
+        private final int messageCount;
+        private final boolean active;
+
+        private Footprint(long sessionBytes, long messageBytes, int messageCount, boolean active) {
+            this.sessionBytes = sessionBytes;
+            this.messageBytes = messageBytes;
+            this.messageCount = messageCount;
+            this.active = active;
+        }
+
+        private Footprint withSession(long bytes, boolean sessionActive) {
+            return new Footprint(bytes, messageBytes, messageCount, sessionActive);
+        }
+
+        private Footprint withMessages(int countDelta, long bytesDelta) {
+            return new Footprint(sessionBytes, Math.max(0, messageBytes + bytesDelta),
+                messageCount + countDelta, active);
+        }
+
+        private int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, sessionBytes + messageBytes);
+        }
+    }
+
+    /**
+     * Writes reset the TTL to the active or inactive session TTL; reads leave it alone
+     */
+    private static final class SessionTtlExpiry implements Expiry<String, Footprint> {
+
+        @Override
+        public long expireAfterCreate(String sessionId, Footprint footprint, long currentTime) {
+            return ttlNanos(footprint);
+        }
+
+        @Override
+        public long expireAfterUpdate(String sessionId, Footprint footprint, long currentTime,
+                                      long currentDuration) {
+            return ttlNanos(footprint);
+        }
+
+        @Override
+        public long expireAfterRead(String sessionId, Footprint footprint, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+
+        private long ttlNanos(Footprint footprint) {
+            return (footprint.active ? CacheService.ACTIVE_SESSION_TTL : CacheService.INACTIVE_SESSION_TTL)
+                .toNanos();
+        }
+    }
+}
@@ -2,34 +2,57 @@ package com.example.chatbotcache.service;
 
 import com.example.chatbotcache.model.ChatMessage;
 import com.example.chatbotcache.model.MessageRole;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Service
 @Primary
 public class FallbackMessageService {
 
-    private final Map<String, List<ChatMessage>> sessionMessages = new ConcurrentHashMap<>();
+    private final Map<String, SessionMessageBuffer> sessionMessages = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> sessionTokenTotals = new ConcurrentHashMap<>();
     private static final int MAX_MESSAGES_PER_SESSION = 50;
 
+    @Autowired
+    private FallbackMemoryBudget memoryBudget;
+
+    @PostConstruct
+    public void initialize() {
+        // Drop a session's messages when the global memory budget evicts or expires it
+        memoryBudget.onEviction(this::dropSession);
+    }
+
     public ChatMessage saveMessage(String sessionId, String content, MessageRole role) {
+        return saveMessage(sessionId, content, role, null);
+    }
+
+    public ChatMessage saveMessage(String sessionId, String content, MessageRole role, Integer tokenCount) {
         validateSessionId(sessionId);
         validateContent(content);
 
         String messageId = generateMessageId();
-        ChatMessage message = new ChatMessage(messageId, sessionId, role, content);
+        return storeMessage(new ChatMessage(messageId, sessionId, role, content, tokenCount));
+    }
 
-        sessionMessages.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(message);
+    /**
+     * Store a message as-is, keeping its ID and timestamp
+     */
+    public ChatMessage storeMessage(ChatMessage message) {
+        String sessionId = message.getSessionId();
 
-        // Limit messages per session
-        List<ChatMessage> messages = sessionMessages.get(sessionId);
-        if (messages.size() > MAX_MESSAGES_PER_SESSION) {
-            messages.remove(0); // Remove oldest message
-        }
+        // The ring buffer keeps the newest MAX_MESSAGES_PER_SESSION and hands back the one it evicted
+        ChatMessage evicted = bufferFor(sessionId).append(message);
+        adjustTokenTotal(sessionId, tokensOf(message) - (evicted != null ? tokensOf(evicted) : 0));
+        long evictedBytes = evicted != null ? FallbackMemoryBudget.estimateBytes(evicted) : 0;
+        memoryBudget.recordMessages(sessionId, evicted != null ? 0 : 1,
+            FallbackMemoryBudget.estimateBytes(message) - evictedBytes);
 
         return message;
     }
@@ -46,17 +69,19 @@ public class FallbackMessageService {
         return saveMessage(sessionId, content, MessageRole.SYSTEM);
     }
 
+    /**
+     * Snapshot of the session's messages, oldest first. Safe to iterate while other threads append.
+     */
     public List<ChatMessage> getSessionMessages(String sessionId) {
         validateSessionId(sessionId);
-        return sessionMessages.getOrDefault(sessionId, new ArrayList<>());
+        SessionMessageBuffer buffer = sessionMessages.get(sessionId);
+        return buffer != null ? buffer.snapshot() : new ArrayList<>();
     }
 
     public List<ChatMessage> getSessionMessages(String sessionId, int limit) {
-        List<ChatMessage> messages = getSessionMessages(sessionId);
-        if (messages.size() <= limit) {
-            return messages;
-        }
-        return messages.subList(Math.max(0, messages.size() - limit), messages.size());
+        validateSessionId(sessionId);
+        SessionMessageBuffer buffer = sessionMessages.get(sessionId);
+        return buffer != null ? buffer.latest(limit) : new ArrayList<>();
     }
 
     public List<ChatMessage> getSessionMessagesWithPagination(String sessionId, int page, int size) {
@@ -68,12 +93,12 @@ public class FallbackMessageService {
             return new ArrayList<>();
         }
 
-        return messages.subList(start, end);
+        return new ArrayList<>(messages.subList(start, end));
     }
 
     public Optional<ChatMessage> getMessage(String messageId) {
-        for (List<ChatMessage> messages : sessionMessages.values()) {
-            for (ChatMessage message : messages) {
+        for (SessionMessageBuffer buffer : sessionMessages.values()) {
+            for (ChatMessage message : buffer.snapshot()) {
                 if (messageId.equals(message.getMessageId())) {
                     return Optional.of(message);
                 }
@@ -83,8 +108,11 @@ public class FallbackMessageService {
     }
 
     public boolean deleteMessage(String messageId) {
-        for (List<ChatMessage> messages : sessionMessages.values()) {
-            if (messages.removeIf(message -> messageId.equals(message.getMessageId()))) {
+        for (SessionMessageBuffer buffer : sessionMessages.values()) {
+            ChatMessage removed = buffer.remove(messageId);
+            if (removed != null) {
+                adjustTokenTotal(removed.getSessionId(), -tokensOf(removed));
+                memoryBudget.recordMessages(removed.getSessionId(), -1, -FallbackMemoryBudget.estimateBytes(removed));
                 return true;
             }
         }
@@ -93,13 +121,20 @@ public class FallbackMessageService {
 
     public int deleteSessionMessages(String sessionId) {
         validateSessionId(sessionId);
-        List<ChatMessage> messages = sessionMessages.remove(sessionId);
-        return messages != null ? messages.size() : 0;
+        SessionMessageBuffer buffer = dropSession(sessionId);
+        if (buffer == null) {
+            return 0;
+        }
+        List<ChatMessage> messages = buffer.snapshot();
+        memoryBudget.recordMessages(sessionId, -messages.size(),
+            -messages.stream().mapToLong(FallbackMemoryBudget::estimateBytes).sum());
+        return messages.size();
     }
 
     public long countSessionMessages(String sessionId) {
         validateSessionId(sessionId);
-        return sessionMessages.getOrDefault(sessionId, new ArrayList<>()).size();
+        SessionMessageBuffer buffer = sessionMessages.get(sessionId);
+        return buffer != null ? buffer.size() : 0;
     }
 
     public List<ChatMessage> searchMessages(String sessionId, String searchTerm) {
@@ -147,11 +182,11 @@ public class FallbackMessageService {
     // Methods expected by controllers
 
     public ChatMessage addMessage(String sessionId, MessageRole role, String content, Integer tokenCount) {
-        return saveMessage(sessionId, content, role);
+        return saveMessage(sessionId, content, role, tokenCount);
     }
 
     public ChatMessage addMessage(String sessionId, MessageRole role, String content, int tokenCount) {
-        return saveMessage(sessionId, content, role);
+        return saveMessage(sessionId, content, role, tokenCount);
     }
 
     public List<ChatMessage> getMessages(String sessionId, int page, int size) {
@@ -171,14 +206,15 @@ public class FallbackMessageService {
     }
 
     public Optional<ChatMessage> getLastMessage(String sessionId) {
-        List<ChatMessage> messages = getSessionMessages(sessionId);
-        return messages.isEmpty() ? Optional.empty() : Optional.of(messages.get(messages.size() - 1));
+        validateSessionId(sessionId);
+        SessionMessageBuffer buffer = sessionMessages.get(sessionId);
+        return buffer != null ? Optional.ofNullable(buffer.last()) : Optional.empty();
     }
 
     public long getTotalTokenCount(String sessionId) {
-        return getSessionMessages(sessionId).stream()
-                .mapToLong(msg -> msg.getTokenCount() != null ? msg.getTokenCount() : 0)
-                .sum();
+        validateSessionId(sessionId);
+        AtomicLong total = sessionTokenTotals.get(sessionId);
+        return total != null ? total.get() : 0;
     }
 
     public int getTotalTokenCountAsInt(String sessionId) {
@@ -191,20 +227,34 @@ public class FallbackMessageService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Kept for API compatibility; the ring buffer evicts on append, so there is never anything to trim
+     */
     public int cleanupOldMessages(String sessionId) {
-        List<ChatMessage> messages = sessionMessages.get(sessionId);
-        if (messages != null && messages.size() > MAX_MESSAGES_PER_SESSION) {
-            int toRemove = messages.size() - MAX_MESSAGES_PER_SESSION;
-            for (int i = 0; i < toRemove; i++) {
-                messages.remove(0);
-            }
-            return toRemove;
-        }
         return 0;
     }
 
     // Private helper methods
 
+    private SessionMessageBuffer dropSession(String sessionId) {
+        sessionTokenTotals.remove(sessionId);
+        return sessionMessages.remove(sessionId);
+    }
+
+    private SessionMessageBuffer bufferFor(String sessionId) {
+        return sessionMessages.computeIfAbsent(sessionId, k -> new SessionMessageBuffer(MAX_MESSAGES_PER_SESSION));
+    }
+
+    private void adjustTokenTotal(String sessionId, int delta) {
+        if (delta != 0) {
+            sessionTokenTotals.computeIfAbsent(sessionId, k -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+
+    private int tokensOf(ChatMessage message) {
+        return message.getTokenCount() != null ? message.getTokenCount() : 0;
+    }
+
     private String generateMessageId() {
         return "msg_" + UUID.randomUUID().toString().replace("-", "");
     }
@@ -0,0 +1,131 @@
+package com.example.chatbotcache.service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Word-based estimate used when no BPE vocabulary is available: 1.3 tokens per word plus
+ * one per punctuation mark. Text is scanned once without allocating.
+ */
+public class HeuristicTokenizer implements Tokenizer {
+
+    private static final Pattern WORD_PATTERN = Pattern.compile("\\b\\w+\\b");
+
+    /**
+     * Whether \b treats non-ASCII letters and digits as word characters while \w does not,
+     * as it does before JDK 19. Words directly next to such characters then do not count.
+     */
+    private static final boolean UNICODE_WORD_BOUNDARY = !WORD_PATTERN.matcher("a\u00e9").find();
+
+    private static final double AVERAGE_TOKENS_PER_WORD = 1.3;
+    private static final int PUNCTUATION_TOKEN_COUNT = 1;
+
+    @Override
+    public String getName() {
+        return "heuristic";
+    }
+
+    /**
+     * Estimate tokens as 1.3 per word plus one per punctuation mark, counted in a single
+     * pass without allocating. A word is a run of ASCII letters, digits and underscores,
+     * matching what the pattern \b\w+\b would find.
+     */
+    @Override
+    public int countTokens(String text) {
+        if (text == null) {
+            return 0;
+        }
+
+        int length = text.length();
+        long wordCount = 0;
+        long punctuationCount = 0;
+        boolean blank = true;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                int start = i;
+                do {
+                    i++;
+                } while (i < length && isWordChar(text.charAt(i)));
+                if (!UNICODE_WORD_BOUNDARY || (!isBoundaryWordBefore(text, start) && !isBoundaryWordAt(text, i))) {
+                    wordCount++;
+                }
+                blank = false;
+                continue;
+            }
+            // Same test as String.trim()
+            if (c > ' ') {
+                blank = false;
+                if (isPunctuation(c)) {
+                    punctuationCount++;
+                }
+            }
+            i++;
+        }
+
+        if (blank) {
+            return 0;
+        }
+
+        int estimatedTokens = (int) Math.ceil(wordCount * AVERAGE_TOKENS_PER_WORD) +
+                             (int) punctuationCount * PUNCTUATION_TOKEN_COUNT;
+
+        return Math.max(estimatedTokens, 1);
+    }
+
+    // Private helper methods
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isPunctuation(char c) {
+        switch (c) {
+            case '.': case ',': case '!': case '?': case ';': case ':':
+            case '"': case '\'': case '(': case ')': case '[': case ']': case '{': case '}':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isBoundaryWordBefore(String text, int index) {
+        if (index == 0 || text.charAt(index - 1) < 0x80) {
+            return false;
+        }
+        int ch = Character.codePointBefore(text, index);
+        return isBoundaryWord(ch) || (isNonSpacingMark(ch) && hasBaseCharacter(text, index - 1));
+    }
+
+    private static boolean isBoundaryWordAt(String text, int index) {
+        if (index >= text.length() || text.charAt(index) < 0x80) {
+            return false;
+        }
+        int ch = Character.codePointAt(text, index);
+        return isBoundaryWord(ch) || (isNonSpacingMark(ch) && hasBaseCharacter(text, index));
+    }
+
+    private static boolean isBoundaryWord(int ch) {
+        return ch == '_' || Character.isLetterOrDigit(ch);
+    }
+
+    private static boolean isNonSpacingMark(int ch) {
+        return Character.getType(ch) == Character.NON_SPACING_MARK;
+    }
+
+    /**
+     * A combining mark counts as a word character only when it follows a letter or digit
+     */
+    private static boolean hasBaseCharacter(String text, int index) {
+        for (int i = index; i >= 0; i--) {
+            int ch = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(ch)) {
+                return true;
+            }
+            if (!isNonSpacingMark(ch)) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
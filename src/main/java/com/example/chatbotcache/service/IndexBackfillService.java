@@ -0,0 +1,89 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.UserPreferences;
+import com.example.chatbotcache.repository.ChatMessageRepository;
+import com.example.chatbotcache.repository.ChatSessionRepository;
+import com.example.chatbotcache.repository.PipelinedHashReader;
+import com.example.chatbotcache.repository.UserPreferencesRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds secondary indexes for entities written before the indexes existed.
+ * Each keyspace ID set is walked with SSCAN and entities are re-saved in batches,
+ * which rewrites the @Indexed sets and fires the events that fill the time sorted sets.
+ */
+@Service
+public class IndexBackfillService {
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+
+    @Autowired
+    private UserPreferencesRepository userPreferencesRepository;
+
+    /**
+     * Backfill indexes for every keyspace, returning the number of entities re-indexed per keyspace
+     */
+    public Map<String, Long> backfillAll(int batchSize) {
+        int size = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        Map<String, Long> results = new LinkedHashMap<>();
+        results.put("chat_session", backfill("chat_session", ChatSession.class, chatSessionRepository, size));
+        results.put("chat_message", backfill("chat_message", ChatMessage.class, chatMessageRepository, size));
+        results.put("user_preferences", backfill("user_preferences", UserPreferences.class, userPreferencesRepository, size));
+        return results;
+    }
+
+    private <T> long backfill(String keyspace, Class<T> type, CrudRepository<T, String> repository, int batchSize) {
+        long indexed = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet().scan(keyspace, options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= batchSize) {
+                    indexed += reindex(keyspace, type, repository, batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                indexed += reindex(keyspace, type, repository, batch);
+            }
+        } catch (Exception e) {
+            System.err.println("Index backfill failed for keyspace " + keyspace + ": " + e.getMessage());
+        }
+
+        return indexed;
+    }
+
+    private <T> long reindex(String keyspace, Class<T> type, CrudRepository<T, String> repository, List<String> ids) {
+        List<T> entities = hashReader.readAll(keyspace, ids, type);
+        repository.saveAll(entities);
+        return entities.size();
+    }
+}
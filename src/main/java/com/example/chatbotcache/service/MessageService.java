@@ -3,14 +3,41 @@ package com.example.chatbotcache.service;
 import com.example.chatbotcache.model.ChatMessage;
 import com.example.chatbotcache.model.MessageRole;
 import com.example.chatbotcache.repository.ChatMessageRepository;
+import com.example.chatbotcache.repository.PipelinedHashReader;
+import com.example.chatbotcache.repository.TimeIndexOperations;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.convert.IndexedData;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.convert.SimpleIndexedPropertyValue;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,6 +45,30 @@ public class MessageService {
 
     private static final int MAX_MESSAGES_PER_SESSION = 50;
     private static final String MESSAGE_LIST_KEY_PREFIX = "messages:";
+    private static final String MESSAGE_KEYSPACE = "chat_message";
+    private static final String SESSION_KEYSPACE = "chat_session";
+    private static final int SESSION_OWNER_CACHE_SIZE = 10_000;
+    private static final String COMPACTION_LOCK_PREFIX = "compaction:lock:";
+
+    // Compacted messages are normally the head of the list, which one LTRIM drops; otherwise
+    // each is removed by ID so entries appended or trimmed meanwhile are left alone
+    private static final String REMOVE_LIST_ENTRIES_SCRIPT =
+        "local n = #ARGV " +
+        "local head = redis.call('lrange', KEYS[1], 0, n - 1) " +
+        "local prefix = #head == n " +
+        "for i = 1, #head do if head[i] ~= ARGV[i] then prefix = false break end end " +
+        "if prefix then redis.call('ltrim', KEYS[1], n, -1) return n end " +
+        "local removed = 0 " +
+        "for i = 1, n do removed = removed + redis.call('lrem', KEYS[1], 1, ARGV[i]) end " +
+        "return removed";
+
+    private static final RedisScript<Long> RENEW_LOCK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end return 0",
+        Long.class);
+
+    private static final RedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end return 0",
+        Long.class);
 
     @Autowired
     private ChatMessageRepository chatMessageRepository;
@@ -25,6 +76,10 @@ public class MessageService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
     @Autowired
     private ChatSessionService chatSessionService;
 
@@ -34,47 +89,83 @@ public class MessageService {
     @Autowired(required = false)
     private RedisPubSubService pubSubService;
 
+    @Autowired
+    private RedisScriptService redisScriptService;
+
+    @Autowired
+    private SessionTokenCounterService tokenCounterService;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private RedisAsyncService asyncService;
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    @Autowired
+    private TokenCountingService tokenCountingService;
+
+    @Autowired
+    private ContextCompressionService contextCompressionService;
+
+    @Autowired
+    private ConversationSummaryService conversationSummaryService;
+
+    @Autowired
+    private RedisConverter redisConverter;
+
+    @Value("${app.messages.scripted-append:true}")
+    private boolean scriptedAppendEnabled;
+
+    @Value("${app.compaction.auto.lock-ttl-ms:60000}")
+    private long compactionLockTtlMs;
+
+    private final Cache<String, String> sessionOwners = Caffeine.newBuilder()
+        .maximumSize(SESSION_OWNER_CACHE_SIZE)
+        .expireAfterAccess(Duration.ofHours(1))
+        .build();
+
     /**
-     * Add a message to a session using Redis Lists for ordering
+     * Add a message to a session using Redis Lists for ordering.
+     * Uses a single Lua round trip when possible and falls back to the
+     * sequential path when scripting is unavailable (e.g. cross-slot keys in cluster mode).
+     * Both attempts share one message write budget.
      */
     public ChatMessage addMessage(String sessionId, MessageRole role, String content, Integer tokenCount) {
         validateSessionId(sessionId);
         validateContent(content);
 
-        // Create message
-        String messageId = generateMessageId();
-        ChatMessage message = new ChatMessage(messageId, sessionId, role, content, tokenCount);
-
-        // Sanitize content
-        message.setContent(sanitizeContent(content));
-
-        // Save message to repository
-        ChatMessage savedMessage = chatMessageRepository.save(message);
-
-        // Add to Redis list for ordering and fast retrieval
-        String listKey = getMessageListKey(sessionId);
-        redisTemplate.opsForList().rightPush(listKey, messageId);
-
-        // Trim list to max size (keep most recent messages)
-        redisTemplate.opsForList().trim(listKey, -MAX_MESSAGES_PER_SESSION, -1);
+        ChatMessage message = createMessage(sessionId, role, content, tokenCount);
+        return circuitBreaker.execute(Operation.MESSAGE_WRITE, () -> append(message, content));
+    }
 
-        // Update session
-        chatSessionService.incrementMessageCount(sessionId);
-        if (tokenCount != null && tokenCount > 0) {
-            chatSessionService.addTokensToSession(sessionId, tokenCount);
-        }
+    /**
+     * Append a message that already has its ID and timestamp, e.g. one written to the
+     * in-memory store during a Redis outage. Messages already present are skipped, so
+     * replaying the same message twice is harmless.
+     */
+    public ChatMessage appendExisting(ChatMessage message) {
+        validateSessionId(message.getSessionId());
+        validateContent(message.getContent());
 
-        // Publish to streams and pub/sub if available
-        if (streamService != null) {
-            streamService.publishChatMessage(sessionId, savedMessage);
-        }
-        if (pubSubService != null) {
-            pubSubService.publishChatMessage(sessionId,
-                chatSessionService.getSessionOrThrow(sessionId).getUserId(),
-                messageId, content, role.name());
-        }
+        return circuitBreaker.execute(Operation.MESSAGE_WRITE, () -> {
+            if (chatMessageRepository.existsById(message.getMessageId())) {
+                return message;
+            }
+            return append(message, message.getContent());
+        });
+    }
 
-        return savedMessage;
+    /**
+     * Add a message using one round trip per command
+     */
+    public ChatMessage addMessageSequential(String sessionId, MessageRole role, String content, Integer tokenCount) {
+        validateSessionId(sessionId);
+        validateContent(content);
+        ChatMessage message = createMessage(sessionId, role, content, tokenCount);
+        return circuitBreaker.execute(Operation.MESSAGE_WRITE, () -> appendSequential(message, content));
     }
 
     /**
@@ -97,23 +188,21 @@ public class MessageService {
         long start = (long) page * size;
         long end = start + size - 1;
 
-        List<Object> messageIds = redisTemplate.opsForList().range(listKey, -end - 1, -start - 1);
+        return circuitBreaker.execute(Operation.MESSAGE_READ, () -> {
+            List<Object> messageIds = redisTemplate.opsForList().range(listKey, -end - 1, -start - 1);
 
-        if (messageIds == null || messageIds.isEmpty()) {
-            // Fallback to repository if Redis list is empty
-            return chatMessageRepository.findBySessionIdOrderByTimestampDesc(sessionId)
-                    .stream()
-                    .skip(start)
-                    .limit(size)
-                    .collect(Collectors.toList());
-        }
+            if (messageIds == null || messageIds.isEmpty()) {
+                // Fallback to repository if Redis list is empty
+                return chatMessageRepository.findBySessionIdOrderByTimestampDesc(sessionId)
+                        .stream()
+                        .skip(start)
+                        .limit(size)
+                        .collect(Collectors.toList());
+            }
 
-        // Fetch messages from repository by IDs
-        return messageIds.stream()
-                .map(id -> chatMessageRepository.findById(id.toString()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+            // Hydrate the whole page in one pipelined round trip
+            return chatMessageRepository.findAllByIdInOrder(toMessageIds(messageIds));
+        });
     }
 
     /**
@@ -121,7 +210,8 @@ public class MessageService {
      */
     public List<ChatMessage> getAllMessages(String sessionId) {
         validateSessionId(sessionId);
-        return chatMessageRepository.findBySessionIdOrderByTimestampAsc(sessionId);
+        return circuitBreaker.execute(Operation.MESSAGE_READ,
+            () -> chatMessageRepository.findBySessionIdOrderByTimestampAsc(sessionId));
     }
 
     /**
@@ -129,25 +219,21 @@ public class MessageService {
      */
     public List<ChatMessage> getRecentMessages(String sessionId, int limit) {
         validateSessionId(sessionId);
-        if (limit <= 0 || limit > MAX_MESSAGES_PER_SESSION) {
-            limit = 10;
-        }
+        int count = limit <= 0 || limit > MAX_MESSAGES_PER_SESSION ? 10 : limit;
 
         String listKey = getMessageListKey(sessionId);
-        List<Object> messageIds = redisTemplate.opsForList().range(listKey, -limit, -1);
-
-        if (messageIds == null || messageIds.isEmpty()) {
-            return chatMessageRepository.findBySessionIdOrderByTimestampDesc(sessionId)
-                    .stream()
-                    .limit(limit)
-                    .collect(Collectors.toList());
-        }
+        return circuitBreaker.execute(Operation.MESSAGE_READ, () -> {
+            List<Object> messageIds = redisTemplate.opsForList().range(listKey, -count, -1);
+
+            if (messageIds == null || messageIds.isEmpty()) {
+                return chatMessageRepository.findBySessionIdOrderByTimestampDesc(sessionId)
+                        .stream()
+                        .limit(count)
+                        .collect(Collectors.toList());
+            }
 
-        return messageIds.stream()
-                .map(id -> chatMessageRepository.findById(id.toString()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
+            return chatMessageRepository.findAllByIdInOrder(toMessageIds(messageIds));
+        });
     }
 
     /**
@@ -157,14 +243,104 @@ public class MessageService {
         validateSessionId(sessionId);
 
         String listKey = getMessageListKey(sessionId);
-        Long count = redisTemplate.opsForList().size(listKey);
+        return circuitBreaker.execute(Operation.MESSAGE_READ, () -> {
+            Long count = redisTemplate.opsForList().size(listKey);
+
+            if (count == null || count == 0) {
+                // Fallback to repository count
+                return chatMessageRepository.countBySessionId(sessionId);
+            }
+
+            return count;
+        });
+    }
+
+    /**
+     * Non-blocking form of {@link #addMessage(String, MessageRole, String, Integer)}.
+     * With the Lettuce client the append script is sent without holding a thread; if it
+     * fails, or scripting or Lettuce is unavailable, the blocking append runs on the chat executor.
+     */
+    public CompletableFuture<ChatMessage> addMessageAsync(String sessionId, MessageRole role, String content,
+                                                          Integer tokenCount) {
+        validateSessionId(sessionId);
+        validateContent(content);
+
+        ChatMessage message = createMessage(sessionId, role, content, tokenCount);
+        if (!scriptedAppendEnabled || streamService == null || pubSubService == null || !asyncService.isReactive()) {
+            return asyncService.supplyAsync(
+                () -> circuitBreaker.execute(Operation.MESSAGE_WRITE, () -> append(message, content)));
+        }
+
+        ScriptedAppend scripted;
+        try {
+            scripted = prepareScriptedAppend(message, content, LocalDateTime.now());
+        } catch (InvalidDataAccessApiUsageException e) {
+            return asyncService.supplyAsync(
+                () -> circuitBreaker.execute(Operation.MESSAGE_WRITE, () -> append(message, content)));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return asyncService.execute(Operation.MESSAGE_WRITE,
+                reactive -> redisScriptService.atomicMessageAppend(reactive, scripted.keys, scripted.args))
+            .handle((listLength, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                    // A timed-out script may still have been applied, so only retry clear failures
+                    if (!(cause instanceof DataAccessException) || cause instanceof QueryTimeoutException) {
+                        throw error instanceof CompletionException
+                            ? (CompletionException) error : new CompletionException(cause);
+                    }
+                    System.err.println("Scripted message append failed, using sequential append: " + cause.getMessage());
+                    return null;
+                }
+                if (listLength == null || listLength < 0) {
+                    throw new IllegalArgumentException("Session not found: " + sessionId);
+                }
+                return message;
+            })
+            .thenCompose(appended -> appended != null
+                ? CompletableFuture.completedFuture(appended)
+                : asyncService.supplyAsync(
+                    () -> circuitBreaker.execute(Operation.MESSAGE_WRITE, () -> appendSequential(message, content))));
+    }
+
+    /**
+     * Non-blocking form of {@link #getRecentMessages(String, int)}
+     */
+    public CompletableFuture<List<ChatMessage>> getRecentMessagesAsync(String sessionId, int limit) {
+        validateSessionId(sessionId);
+        if (!asyncService.isReactive()) {
+            return asyncService.supplyAsync(() -> getRecentMessages(sessionId, limit));
+        }
+
+        int count = limit <= 0 || limit > MAX_MESSAGES_PER_SESSION ? 10 : limit;
+        String listKey = getMessageListKey(sessionId);
+        return asyncService.execute(Operation.MESSAGE_READ, reactive -> reactive.opsForList()
+                .range(listKey, -count, -1)
+                .collectList()
+                .filter(messageIds -> !messageIds.isEmpty())
+                .flatMap(messageIds -> hashReader.readAllAsync(reactive, MESSAGE_KEYSPACE,
+                    toMessageIds(messageIds), ChatMessage.class)))
+            .thenCompose(messages -> messages != null
+                ? CompletableFuture.completedFuture(messages)
+                : asyncService.supplyAsync(() -> getRecentMessages(sessionId, limit)));
+    }
 
-        if (count == null || count == 0) {
-            // Fallback to repository count
-            return chatMessageRepository.countBySessionId(sessionId);
+    /**
+     * Non-blocking form of {@link #getMessageCount(String)}
+     */
+    public CompletableFuture<Long> getMessageCountAsync(String sessionId) {
+        validateSessionId(sessionId);
+        if (!asyncService.isReactive()) {
+            return asyncService.supplyAsync(() -> getMessageCount(sessionId));
         }
 
-        return count;
+        String listKey = getMessageListKey(sessionId);
+        return asyncService.execute(Operation.MESSAGE_READ, reactive -> reactive.opsForList().size(listKey))
+            .thenCompose(count -> count != null && count > 0
+                ? CompletableFuture.completedFuture(count)
+                : asyncService.supplyAsync(() -> getMessageCount(sessionId)));
     }
 
     /**
@@ -203,12 +379,19 @@ public class MessageService {
     }
 
     /**
-     * Get total token count for a session
+     * Get total token count for a session from the running counter
      */
     public int getTotalTokenCount(String sessionId) {
         validateSessionId(sessionId);
-        Integer total = chatMessageRepository.getTotalTokenCountBySessionId(sessionId);
-        return total != null ? total : 0;
+        return (int) tokenCounterService.getTotalTokens(sessionId);
+    }
+
+    /**
+     * Get total and per-role token counts for a session
+     */
+    public SessionTokenCounterService.SessionTokenTotals getTokenTotals(String sessionId) {
+        validateSessionId(sessionId);
+        return tokenCounterService.getTotals(sessionId);
     }
 
     /**
@@ -223,6 +406,10 @@ public class MessageService {
         // Delete Redis list
         String listKey = getMessageListKey(sessionId);
         redisTemplate.delete(listKey);
+
+        // Session has no messages left
+        tokenCounterService.initialize(sessionId);
+        conversationSummaryService.clear(sessionId);
     }
 
     /**
@@ -239,6 +426,8 @@ public class MessageService {
             List<Object> toDelete = redisTemplate.opsForList().range(listKey, 0, currentSize - MAX_MESSAGES_PER_SESSION - 1);
 
             if (toDelete != null && !toDelete.isEmpty()) {
+                List<ChatMessage> deletedMessages = chatMessageRepository.findAllByIdInOrder(toMessageIds(toDelete));
+
                 // Delete from repository
                 for (Object messageId : toDelete) {
                     chatMessageRepository.deleteById(messageId.toString());
@@ -246,6 +435,7 @@ public class MessageService {
 
                 // Trim Redis list
                 redisTemplate.opsForList().trim(listKey, -MAX_MESSAGES_PER_SESSION, -1);
+                tokenCounterService.removeMessages(sessionId, deletedMessages);
 
                 return toDelete.size();
             }
@@ -262,6 +452,7 @@ public class MessageService {
 
         // Delete existing messages
         deleteSessionMessages(sessionId);
+        List<ChatMessage> storedMessages = new ArrayList<>();
 
         // Add conversation summary as first message if provided
         if (conversationSummary != null && !conversationSummary.trim().isEmpty()) {
@@ -274,6 +465,7 @@ public class MessageService {
             );
             summaryMessage.setTimestamp(LocalDateTime.now().minusMinutes(1)); // Place before other messages
             chatMessageRepository.save(summaryMessage);
+            storedMessages.add(summaryMessage);
 
             String listKey = getMessageListKey(sessionId);
             redisTemplate.opsForList().rightPush(listKey, summaryMessage.getMessageId());
@@ -294,11 +486,260 @@ public class MessageService {
 
             chatMessageRepository.save(newMessage);
             redisTemplate.opsForList().rightPush(listKey, newMessage.getMessageId());
+            storedMessages.add(newMessage);
         }
+
+        // Token totals now reflect only the compressed history
+        tokenCounterService.rebuild(sessionId, storedMessages);
+    }
+
+    /**
+     * Compact a session in place: messages that fall out of the recent window are folded into
+     * the session's stored summary and then removed, while the recent messages keep their IDs.
+     * Only messages added since the last compaction are summarized and nothing is rewritten.
+     * Runs under the session's compaction lock; empty when another compaction holds it. The lock
+     * is renewed before the writes, and the compaction fails if it expired in the meantime.
+     */
+    public Optional<ContextCompressionService.IncrementalCompressionResult> compactSession(String sessionId, int contextWindowSize) {
+        validateSessionId(sessionId);
+
+        String lockKey = COMPACTION_LOCK_PREFIX + sessionId;
+        String lockToken = UUID.randomUUID().toString();
+        Boolean locked = stringRedisTemplate.opsForValue()
+            .setIfAbsent(lockKey, lockToken, Duration.ofMillis(compactionLockTtlMs));
+        if (!Boolean.TRUE.equals(locked)) {
+            return Optional.empty();
+        }
+
+        try {
+            List<ChatMessage> messages = getAllMessages(sessionId);
+            ContextCompressionService.SummaryState storedState = conversationSummaryService.getState(sessionId);
+            ContextCompressionService.IncrementalCompressionResult result =
+                contextCompressionService.compressIncrementally(storedState, messages, contextWindowSize);
+
+            int summarized = result.getSummarizedCount();
+            if (summarized > 0) {
+                // The writes below must not overlap another compaction that took over an expired lock
+                if (!renewCompactionLock(lockKey, lockToken)) {
+                    throw new IllegalStateException("Compaction lock expired for session: " + sessionId);
+                }
+                // Store the summary first so a failed trim never loses messages from it
+                conversationSummaryService.applyDelta(sessionId, storedState.getKeyExchanges().size(), result.getDelta());
+                removeOldestMessages(sessionId, messages.subList(0, summarized));
+            }
+            return Optional.of(result);
+        } finally {
+            releaseCompactionLock(lockKey, lockToken);
+        }
+    }
+
+    /**
+     * Summary of the messages removed from a session by compaction
+     */
+    public String getConversationSummary(String sessionId) {
+        validateSessionId(sessionId);
+        return conversationSummaryService.getSummary(sessionId);
     }
 
     // Private helper methods
 
+    /**
+     * Remove compacted messages in one pipeline: the list entries through the trim script,
+     * then each message hash with its index entries, as the repository's delete would
+     */
+    private void removeOldestMessages(String sessionId, List<ChatMessage> oldest) {
+        byte[][] keysAndArgs = new byte[oldest.size() + 1][];
+        keysAndArgs[0] = getMessageListKey(sessionId).getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < oldest.size(); i++) {
+            keysAndArgs[i + 1] = listValueSerializer().serialize(oldest.get(i).getMessageId());
+        }
+        byte[] timestampIndex = TimeIndexOperations.messageTimestampIndex(sessionId).getBytes(StandardCharsets.UTF_8);
+
+        circuitBreaker.run(Operation.MESSAGE_WRITE, () -> redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+            connection.openPipeline();
+            connection.scriptingCommands().eval(REMOVE_LIST_ENTRIES_SCRIPT.getBytes(StandardCharsets.UTF_8),
+                ReturnType.INTEGER, 1, keysAndArgs);
+            for (ChatMessage message : oldest) {
+                RedisData data = new RedisData();
+                redisConverter.write(message, data);
+                byte[] id = message.getMessageId().getBytes(StandardCharsets.UTF_8);
+                String messageKey = data.getKeyspace() + ":" + data.getId();
+
+                connection.keyCommands().del(messageKey.getBytes(StandardCharsets.UTF_8),
+                    (messageKey + ":idx").getBytes(StandardCharsets.UTF_8));
+                connection.setCommands().sRem(data.getKeyspace().getBytes(StandardCharsets.UTF_8), id);
+                for (IndexedData index : data.getIndexedData()) {
+                    connection.setCommands().sRem(indexKey(index).getBytes(StandardCharsets.UTF_8), id);
+                }
+                connection.zSetCommands().zRem(timestampIndex, id);
+            }
+            return connection.closePipeline();
+        }));
+        tokenCounterService.removeMessages(sessionId, oldest);
+    }
+
+    /**
+     * Extend the compaction lock to a full TTL; false if it expired and is no longer ours
+     */
+    private boolean renewCompactionLock(String lockKey, String lockToken) {
+        Long renewed = stringRedisTemplate.execute(RENEW_LOCK_SCRIPT, Collections.singletonList(lockKey),
+            lockToken, String.valueOf(compactionLockTtlMs));
+        return renewed != null && renewed == 1;
+    }
+
+    private void releaseCompactionLock(String lockKey, String lockToken) {
+        try {
+            stringRedisTemplate.execute(RELEASE_LOCK_SCRIPT, Collections.singletonList(lockKey), lockToken);
+        } catch (Exception e) {
+            System.err.println("Failed to release compaction lock " + lockKey + ": " + e.getMessage());
+        }
+    }
+
+    private ChatMessage createMessage(String sessionId, MessageRole role, String content, Integer tokenCount) {
+        ChatMessage message = new ChatMessage(generateMessageId(), sessionId, role, content, tokenCount);
+        message.setContent(sanitizeContent(content));
+        return message;
+    }
+
+    private ChatMessage append(ChatMessage message, String originalContent) {
+        if (scriptedAppendEnabled && streamService != null && pubSubService != null) {
+            try {
+                return appendScripted(message, originalContent);
+            } catch (DataAccessException e) {
+                System.err.println("Scripted message append failed, using sequential append: " + e.getMessage());
+            }
+        }
+        return appendSequential(message, originalContent);
+    }
+
+    private ChatMessage appendScripted(ChatMessage message, String originalContent) {
+        String sessionId = message.getSessionId();
+        ScriptedAppend scripted = prepareScriptedAppend(message, originalContent, LocalDateTime.now());
+        Long listLength = redisScriptService.atomicMessageAppend(scripted.keys, scripted.args);
+
+        if (listLength == null || listLength < 0) {
+            throw new IllegalArgumentException("Session not found: " + sessionId);
+        }
+
+        return message;
+    }
+
+    /**
+     * Keys and arguments of the append script. The message hash and its index keys come from
+     * the repository's converter, and the pub/sub payload is the one the sequential path
+     * publishes, so both paths leave the same data behind.
+     */
+    private ScriptedAppend prepareScriptedAppend(ChatMessage message, String originalContent,
+                                                 LocalDateTime lastActivity) {
+        String sessionId = message.getSessionId();
+        RedisData data = new RedisData();
+        redisConverter.write(message, data);
+        String messageKey = data.getKeyspace() + ":" + data.getId();
+
+        List<String> keys = new ArrayList<>(Arrays.asList(
+            messageKey,
+            data.getKeyspace(),
+            getMessageListKey(sessionId),
+            SESSION_KEYSPACE + ":" + sessionId,
+            streamService.getChatStreamKey(sessionId),
+            tokenCounterService.getCounterKey(sessionId),
+            messageKey + ":idx",
+            TimeIndexOperations.messageTimestampIndex(sessionId),
+            TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX,
+            RedisStreamService.CHAT_EVENTS_STREAM
+        ));
+        for (IndexedData index : data.getIndexedData()) {
+            keys.add(indexKey(index));
+        }
+
+        byte[] payload = pubSubService.buildChatMessagePayload(sessionId, getSessionOwner(sessionId),
+            message.getMessageId(), originalContent, message.getRole().name(), lastActivity);
+        List<Object> args = redisScriptService.atomicMessageAppendArgs(
+            message.getMessageId(),
+            sessionId,
+            message.getRole().name(),
+            message.getTokenCount(),
+            MAX_MESSAGES_PER_SESSION,
+            lastActivity.toString(),
+            data.getBucket().asMap(),
+            streamService.buildChatMessageEntry(message),
+            streamService.getChatStreamMaxLength(),
+            streamService.getChatEventsMaxLength(),
+            RedisPubSubService.CHAT_MESSAGES_CHANNEL,
+            payload,
+            (long) TimeIndexOperations.score(message.getTimestamp()),
+            (long) TimeIndexOperations.score(lastActivity),
+            listValueSerializer().serialize(message.getMessageId())
+        );
+        return new ScriptedAppend(keys, args);
+    }
+
+    /**
+     * Set key of a simple index, named the way the repository names it
+     */
+    private String indexKey(IndexedData index) {
+        if (!(index instanceof SimpleIndexedPropertyValue)) {
+            // Makes append() fall back to the sequential path, which the repository indexes itself
+            throw new InvalidDataAccessApiUsageException("Scripted append cannot maintain index " + index.getIndexName());
+        }
+        Object value = ((SimpleIndexedPropertyValue) index).getValue();
+        ConversionService conversions = redisConverter.getConversionService();
+        byte[] valueBytes = conversions.canConvert(value.getClass(), byte[].class)
+            ? conversions.convert(value, byte[].class)
+            : value.toString().getBytes(StandardCharsets.UTF_8);
+        return index.getKeyspace() + ":" + index.getIndexName() + ":" + new String(valueBytes, StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> listValueSerializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    /**
+     * User ID of a session, which never changes once the session exists
+     */
+    private String getSessionOwner(String sessionId) {
+        return sessionOwners.get(sessionId, id -> chatSessionService.getSessionOrThrow(id).getUserId());
+    }
+
+    private ChatMessage appendSequential(ChatMessage message, String content) {
+        String sessionId = message.getSessionId();
+        String messageId = message.getMessageId();
+        MessageRole role = message.getRole();
+        Integer tokenCount = message.getTokenCount();
+
+        // Save message to repository
+        ChatMessage savedMessage = chatMessageRepository.save(message);
+
+        // Add to Redis list for ordering and fast retrieval
+        String listKey = getMessageListKey(sessionId);
+        redisTemplate.opsForList().rightPush(listKey, messageId);
+
+        // Trim list to max size (keep most recent messages)
+        redisTemplate.opsForList().trim(listKey, -MAX_MESSAGES_PER_SESSION, -1);
+
+        // Update session
+        chatSessionService.recordMessageAppended(sessionId, tokenCount);
+        tokenCounterService.recordMessage(sessionId, role, tokenCount);
+
+        // Publish to streams and pub/sub if available
+        if (streamService != null) {
+            streamService.publishChatMessage(sessionId, savedMessage);
+        }
+        if (pubSubService != null) {
+            pubSubService.publishChatMessage(pubSubService.buildChatMessagePayload(sessionId,
+                getSessionOwner(sessionId), messageId, content, role.name(), LocalDateTime.now()));
+        }
+
+        return savedMessage;
+    }
+
+    private List<String> toMessageIds(List<Object> rawIds) {
+        return rawIds.stream()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+    }
+
     private String generateMessageId() {
         return "msg_" + UUID.randomUUID().toString().replace("-", "");
     }
@@ -342,10 +783,16 @@ public class MessageService {
     }
 
     private int estimateTokenCount(String content) {
-        if (content == null || content.isEmpty()) {
-            return 0;
+        return tokenCountingService.estimateTokenCount(content);
+    }
+
+    private static final class ScriptedAppend {
+        private final List<String> keys;
+        private final List<Object> args;
+
+        private ScriptedAppend(List<String> keys, List<Object> args) {
+            this.keys = keys;
+            this.args = args;
         }
-        // Simple token estimation: ~4 characters per token
-        return Math.max(1, content.length() / 4);
     }
-}
\ No newline at end of file
+}
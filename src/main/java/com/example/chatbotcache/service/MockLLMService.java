@@ -10,6 +10,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
@@ -24,6 +26,9 @@ public class MockLLMService {
     @Autowired
     private CacheService cacheService;
 
+    @Autowired
+    private TokenCountingService tokenCountingService;
+
     // Response patterns for different types of user input
     private final Map<String, List<String>> responsePatterns = Map.of(
         "greeting", Arrays.asList(
@@ -87,6 +92,8 @@ public class MockLLMService {
         "web development", "databases", "cloud computing", "security", "general"
     );
 
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("\\S+\\s*|\\s+");
+
     // Configuration for error simulation
     private final double errorRate = 0.05; // 5% chance of errors
     private final double timeoutRate = 0.02; // 2% chance of timeout
@@ -110,6 +117,75 @@ public class MockLLMService {
         // Simulate processing delay
         simulateDelay(preferences);
 
+        String response = composeResponse(sessionId, userInput, preferences);
+
+        // Cache the response if caching is enabled
+        if (preferences == null || preferences.getEnableCaching() == null || preferences.getEnableCaching()) {
+            cacheService.cacheResponse(sessionId, userInput, response, model, temperature);
+        }
+
+        return response;
+    }
+
+    /**
+     * Stream a response token by token with realistic inter-token delays.
+     * The first token arrives after a short prefill delay instead of the full generation time.
+     * The complete text is cached once the stream finishes.
+     */
+    public Map<String, Object> streamResponse(String sessionId, String userInput, UserPreferences preferences,
+                                              Consumer<String> tokenConsumer) {
+        long startTime = System.currentTimeMillis();
+        String model = preferences != null ? preferences.getModel() : "mock-llm-v1";
+        Double temperature = preferences != null ? preferences.getTemperature() : 0.7;
+        boolean cachingEnabled = preferences == null || preferences.getEnableCaching() == null
+            || preferences.getEnableCaching();
+
+        String response = null;
+        boolean cached = false;
+        if (cachingEnabled) {
+            Map<String, Object> cachedResponse = cacheService.getCachedResponse(userInput, model, temperature);
+            if (cachedResponse != null) {
+                response = (String) cachedResponse.get("response");
+                cached = true;
+            }
+        }
+
+        if (response == null) {
+            simulateFirstTokenDelay(preferences);
+            response = composeResponse(sessionId, userInput, preferences);
+        }
+
+        Long timeToFirstToken = null;
+        for (String token : splitIntoTokens(response)) {
+            if (timeToFirstToken != null) {
+                simulateInterTokenDelay(cached);
+            }
+            tokenConsumer.accept(token);
+            if (timeToFirstToken == null) {
+                timeToFirstToken = System.currentTimeMillis() - startTime;
+            }
+        }
+
+        if (cachingEnabled && !cached) {
+            cacheService.cacheResponse(sessionId, userInput, response, model, temperature);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("response", response);
+        result.put("tokenCount", estimateTokenCount(response));
+        result.put("processingTimeMs", System.currentTimeMillis() - startTime);
+        result.put("timeToFirstTokenMs", timeToFirstToken != null ? timeToFirstToken : System.currentTimeMillis() - startTime);
+        result.put("model", model);
+        result.put("cached", cached);
+        result.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        result.put("topic", getCurrentTopic(sessionId));
+        return result;
+    }
+
+    /**
+     * Produce the response text, applying error simulation and conversation context
+     */
+    private String composeResponse(String sessionId, String userInput, UserPreferences preferences) {
         // Simulate errors occasionally
         if (shouldSimulateError()) {
             throw new RuntimeException("Simulated LLM service error");
@@ -128,21 +204,17 @@ public class MockLLMService {
             throw new RuntimeException("Rate limit exceeded. Please try again later.");
         }
 
-        // Get conversation context
+        // Get conversation context, trimmed to the user's context window
         List<ChatMessage> recentMessages = getConversationContext(sessionId);
+        if (preferences != null && preferences.getContextWindow() != null) {
+            recentMessages = tokenCountingService.fitToContextWindow(recentMessages, preferences.getContextWindow());
+        }
 
         // Determine response pattern based on input
         String patternType = determinePatternType(userInput);
 
         // Generate context-aware response
-        String response = generateContextAwareResponse(patternType, userInput, recentMessages, preferences);
-
-        // Cache the response if caching is enabled
-        if (preferences == null || preferences.getEnableCaching() == null || preferences.getEnableCaching()) {
-            cacheService.cacheResponse(sessionId, userInput, response, model, temperature);
-        }
-
-        return response;
+        return generateContextAwareResponse(patternType, userInput, recentMessages, preferences);
     }
 
     /**
@@ -260,11 +332,7 @@ public class MockLLMService {
      * Estimate token count for the response
      */
     public int estimateTokenCount(String text) {
-        if (text == null || text.isEmpty()) {
-            return 0;
-        }
-        // Simple estimation: ~4 characters per token
-        return Math.max(1, text.length() / 4);
+        return tokenCountingService.estimateTokenCount(text);
     }
 
     /**
@@ -297,8 +365,44 @@ public class MockLLMService {
         }
     }
 
+    /**
+     * Simulate prompt processing before the first streamed token
+     */
+    private void simulateFirstTokenDelay(UserPreferences preferences) {
+        int baseDelay = 50;
+        if (preferences != null && preferences.getTemperature() != null) {
+            baseDelay = (int) (baseDelay + (preferences.getTemperature() * 100));
+        }
+        sleep(ThreadLocalRandom.current().nextInt(baseDelay, baseDelay + 250));
+    }
+
+    /**
+     * Simulate decoding time between streamed tokens; cached replays stream faster
+     */
+    private void simulateInterTokenDelay(boolean cached) {
+        sleep(cached ? ThreadLocalRandom.current().nextInt(2, 8) : ThreadLocalRandom.current().nextInt(15, 60));
+    }
+
+    private void sleep(int millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     // Helper methods
 
+    private List<String> splitIntoTokens(String response) {
+        // Word-level tokens keep their trailing whitespace so the client can concatenate them
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN_PATTERN.matcher(response);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        return tokens;
+    }
+
     private String getRandomResponse(List<String> responses) {
         if (responses.isEmpty()) {
             return "I understand.";
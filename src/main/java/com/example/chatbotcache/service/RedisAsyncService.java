@@ -0,0 +1,122 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking Redis access for the async service variants.
+ * With the Lettuce client, commands go through a ReactiveRedisTemplate that shares the
+ * serializers of the blocking template and the one multiplexed connection, so a caller
+ * holds no thread and no pooled connection while its commands are in flight. With Jedis,
+ * which has no non-blocking API, callers fall back to running the blocking call on the chat
+ * executor.
+ */
+@Service
+public class RedisAsyncService {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("chatExecutor")
+    private AsyncTaskExecutor chatExecutor;
+
+    private ReactiveRedisTemplate<String, Object> reactiveTemplate;
+
+    private final AtomicLong inFlight = new AtomicLong(0);
+    private final AtomicLong peakInFlight = new AtomicLong(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void initialize() {
+        if (redisTemplate.getConnectionFactory() instanceof ReactiveRedisConnectionFactory reactiveFactory) {
+            RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+            RedisSerializationContext<String, Object> context = RedisSerializationContext
+                .<String, Object>newSerializationContext(StringRedisSerializer.UTF_8)
+                .value(valueSerializer)
+                .hashValue(valueSerializer)
+                .build();
+            reactiveTemplate = new ReactiveRedisTemplate<>(reactiveFactory, context);
+        }
+
+        Gauge.builder("chatbot.redis.async.in.flight", inFlight, AtomicLong::get)
+            .description("Non-blocking Redis calls awaiting a reply")
+            .register(meterRegistry);
+    }
+
+    /**
+     * True when non-blocking commands are available (Lettuce client)
+     */
+    public boolean isReactive() {
+        return reactiveTemplate != null;
+    }
+
+    /**
+     * Issue a non-blocking call within the budget of its operation class.
+     * The returned future completes on the chat executor rather than a Redis I/O thread,
+     * so continuations may make blocking calls. Requires the Lettuce client; check
+     * {@link #isReactive()} first.
+     */
+    public <T> CompletableFuture<T> execute(Operation operation,
+                                            Function<ReactiveRedisTemplate<String, Object>, Mono<T>> call) {
+        if (reactiveTemplate == null) {
+            return CompletableFuture.failedFuture(
+                new IllegalStateException("Non-blocking Redis calls require app.redis.client=lettuce"));
+        }
+
+        long current = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(current, Math::max);
+        return circuitBreaker.executeAsync(operation, () -> call.apply(reactiveTemplate).toFuture())
+            .whenCompleteAsync((result, error) -> {
+                inFlight.decrementAndGet();
+                (error == null ? completed : failed).incrementAndGet();
+            }, chatExecutor);
+    }
+
+    /**
+     * Run a blocking call on the chat executor, for steps without a non-blocking form
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(call, chatExecutor);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("reactive", isReactive());
+        stats.put("connectionFactory", redisTemplate.getConnectionFactory() != null
+            ? redisTemplate.getConnectionFactory().getClass().getSimpleName() : null);
+        stats.put("inFlight", inFlight.get());
+        stats.put("peakInFlight", peakInFlight.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,519 @@
+package com.example.chatbotcache.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker and adaptive timeouts for Redis calls.
+ * Each guarded call runs on the caller's thread against a per-operation budget: a multiple
+ * of the recent p99 latency of that operation class, clamped between a floor and the
+ * class's ceiling, so cache reads give up after tens of milliseconds while message writes
+ * may use the full client timeout. The budget is enforced by the client's command timeouts.
+ * Timeouts and connection failures open the breaker once they exceed the failure-rate
+ * threshold over a sliding window of calls; a failing RedisHealthService check opens it
+ * immediately and a passing one lets trial calls through. Rejections and timeouts surface
+ * as DataAccessExceptions, so callers that already handle Redis failures fail fast instead
+ * of waiting out the client timeout.
+ */
+@Service
+public class RedisCircuitBreaker {
+
+    private static final String METRIC_PREFIX = "chatbot.redis.circuit";
+    private static final int LATENCY_SAMPLES = 256;
+    private static final int BUDGET_REFRESH_INTERVAL = 32;
+    private static final int MIN_LATENCY_SAMPLES = 50;
+
+    // System.nanoTime() deadline of the guarded call running on this thread
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    public enum Operation {
+        CACHE_READ("cache-read"),
+        CACHE_WRITE("cache-write"),
+        SESSION("session"),
+        STREAM("stream"),
+        MESSAGE_READ("message-read"),
+        MESSAGE_WRITE("message-write"),
+        MAINTENANCE("maintenance");
+
+        private final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.redis.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.redis.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+
+    @Value("${app.redis.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls;
+
+    @Value("${app.redis.circuit-breaker.window-size:100}")
+    private int windowSize;
+
+    @Value("${app.redis.circuit-breaker.open-duration-ms:5000}")
+    private long openDurationMs;
+
+    @Value("${app.redis.circuit-breaker.half-open-calls:5}")
+    private int halfOpenCalls;
+
+    @Value("${app.redis.timeouts.latency-multiplier:4}")
+    private double latencyMultiplier;
+
+    @Value("${app.redis.timeouts.floor-ms:20}")
+    private long floorMs;
+
+    @Value("${app.redis.timeouts.cache-read-ms:100}")
+    private long cacheReadMs;
+
+    @Value("${app.redis.timeouts.cache-write-ms:250}")
+    private long cacheWriteMs;
+
+    @Value("${app.redis.timeouts.session-ms:500}")
+    private long sessionMs;
+
+    @Value("${app.redis.timeouts.stream-ms:500}")
+    private long streamMs;
+
+    @Value("${app.redis.timeouts.message-read-ms:1000}")
+    private long messageReadMs;
+
+    @Value("${app.redis.timeouts.message-write-ms:2000}")
+    private long messageWriteMs;
+
+    @Value("${app.redis.timeouts.maintenance-ms:2000}")
+    private long maintenanceMs;
+
+    private final Map<Operation, OperationStats> operations = new EnumMap<>(Operation.class);
+    private final AtomicInteger halfOpenPermits = new AtomicInteger(0);
+
+    // Sliding window of call outcomes; guarded by this
+    private boolean[] window;
+    private int windowIndex = 0;
+    private int windowCalls = 0;
+    private int windowFailures = 0;
+    private int halfOpenSuccesses = 0;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt = 0;
+    private volatile String lastTransitionReason;
+    private volatile LocalDateTime lastTransition;
+
+    @PostConstruct
+    public void initialize() {
+        window = new boolean[Math.max(1, windowSize)];
+
+        Map<Operation, Long> ceilings = new EnumMap<>(Operation.class);
+        ceilings.put(Operation.CACHE_READ, cacheReadMs);
+        ceilings.put(Operation.CACHE_WRITE, cacheWriteMs);
+        ceilings.put(Operation.SESSION, sessionMs);
+        ceilings.put(Operation.STREAM, streamMs);
+        ceilings.put(Operation.MESSAGE_READ, messageReadMs);
+        ceilings.put(Operation.MESSAGE_WRITE, messageWriteMs);
+        ceilings.put(Operation.MAINTENANCE, maintenanceMs);
+
+        for (Operation operation : Operation.values()) {
+            OperationStats stats = new OperationStats(ceilings.get(operation),
+                operationCounter(operation, "rejections"), operationCounter(operation, "timeouts"));
+            operations.put(operation, stats);
+            Gauge.builder("chatbot.redis.timeout.budget", stats, OperationStats::getBudgetMs)
+                .tag("operation", operation.getKey())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+            Gauge.builder("chatbot.redis.latency.p99", stats, OperationStats::getP99Ms)
+                .tag("operation", operation.getKey())
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        }
+        Gauge.builder(METRIC_PREFIX + ".state", this, breaker -> breaker.state.ordinal())
+            .description("0 = closed, 1 = half-open, 2 = open")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Run a Redis call on the calling thread within the budget of its operation class.
+     * The budget is a deadline for the whole call that the client enforces per command
+     * (see {@link #commandTimeoutMs}), so a timed-out command fails in the client and the
+     * connection stays usable. Throws RedisConnectionFailureException when the breaker
+     * rejects the call and QueryTimeoutException when the budget runs out.
+     */
+    public <T> T execute(Operation operation, Supplier<T> call) {
+        if (!enabled || DEADLINE.get() != null) {
+            // Nested guarded calls run inside the budget of the outermost one
+            return call.get();
+        }
+
+        OperationStats stats = operations.get(operation);
+        if (!tryAcquirePermission()) {
+            stats.rejections.increment();
+            throw new RedisConnectionFailureException(
+                "Redis circuit breaker is open, rejected " + operation.getKey() + " call");
+        }
+
+        long budgetMs = stats.getBudgetMs();
+        long start = System.nanoTime();
+        DEADLINE.set(start + TimeUnit.MILLISECONDS.toNanos(budgetMs));
+        try {
+            T result = call.get();
+            long elapsedNanos = System.nanoTime() - start;
+            if (elapsedNanos > TimeUnit.MILLISECONDS.toNanos(budgetMs)) {
+                // Clients without per-command deadlines (Jedis) only stop at their socket timeout
+                stats.timeouts.increment();
+                onFailure(budgetExceeded(operation, budgetMs));
+            } else {
+                onSuccess(stats, elapsedNanos);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (isTimeout(e)) {
+                stats.timeouts.increment();
+                onFailure(budgetExceeded(operation, budgetMs));
+                throw new QueryTimeoutException(budgetExceeded(operation, budgetMs), e);
+            }
+            if (isRedisFailure(e)) {
+                onFailure(e.getMessage());
+            } else {
+                onSuccess(stats, System.nanoTime() - start);
+            }
+            throw e;
+        } finally {
+            DEADLINE.remove();
+        }
+    }
+
+    /**
+     * Timeout for a command sent from the current thread: what is left of the budget of the
+     * guarded call in progress, or the client default outside guarded calls. Read by the
+     * Lettuce client when it writes each command.
+     */
+    public static long commandTimeoutMs(long defaultTimeoutMs) {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) {
+            return defaultTimeoutMs;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Guard a non-blocking Redis call: the returned future fails with the same exceptions
+     * as {@link #execute} when the breaker rejects the call or the budget runs out
+     */
+    public <T> CompletableFuture<T> executeAsync(Operation operation, Supplier<CompletableFuture<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        OperationStats stats = operations.get(operation);
+        if (!tryAcquirePermission()) {
+            stats.rejections.increment();
+            return CompletableFuture.failedFuture(new RedisConnectionFailureException(
+                "Redis circuit breaker is open, rejected " + operation.getKey() + " call"));
+        }
+
+        long budgetMs = stats.getBudgetMs();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.orTimeout(budgetMs, TimeUnit.MILLISECONDS).whenComplete((value, error) -> {
+            if (error == null) {
+                onSuccess(stats, System.nanoTime() - start);
+                result.complete(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (isTimeout(cause)) {
+                stats.timeouts.increment();
+                onFailure(budgetExceeded(operation, budgetMs));
+                result.completeExceptionally(new QueryTimeoutException(budgetExceeded(operation, budgetMs), cause));
+                return;
+            }
+            if (isRedisFailure(cause)) {
+                onFailure(cause.getMessage());
+            } else {
+                onSuccess(stats, System.nanoTime() - start);
+            }
+            result.completeExceptionally(cause);
+        });
+        return result;
+    }
+
+    public void run(Operation operation, Runnable call) {
+        execute(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Feed a RedisHealthService check into the breaker: a failing check opens it, a passing
+     * check moves an open breaker to half-open so trial calls can confirm the recovery
+     */
+    public void onHealthCheck(RedisHealthService.RedisHealthStatus status) {
+        if (!enabled || status == null) {
+            return;
+        }
+        synchronized (this) {
+            if (!status.isHealthy()) {
+                if (state != State.OPEN) {
+                    transitionTo(State.OPEN, "Health check failed"
+                        + (status.getError() != null ? ": " + status.getError() : ""));
+                } else {
+                    openedAt = System.currentTimeMillis();
+                }
+            } else if (state == State.OPEN) {
+                transitionTo(State.HALF_OPEN, "Health check passed");
+            }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isOpen() {
+        return enabled && state == State.OPEN
+            && System.currentTimeMillis() - openedAt < openDurationMs;
+    }
+
+    /**
+     * Force the breaker closed, discarding the failure window
+     */
+    public synchronized void reset() {
+        transitionTo(State.CLOSED, "Manual reset");
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("state", state.name());
+        stats.put("lastTransition", lastTransition);
+        stats.put("lastTransitionReason", lastTransitionReason);
+        synchronized (this) {
+            stats.put("windowCalls", windowCalls);
+            stats.put("windowFailures", windowFailures);
+            stats.put("failureRate", windowCalls > 0 ? 100.0 * windowFailures / windowCalls : 0.0);
+        }
+
+        Map<String, Object> perOperation = new HashMap<>();
+        operations.forEach((operation, operationStats) -> {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("budgetMs", operationStats.getBudgetMs());
+            entry.put("ceilingMs", operationStats.ceilingMs);
+            entry.put("p99Ms", operationStats.getP99Ms());
+            entry.put("rejections", (long) operationStats.rejections.count());
+            entry.put("timeouts", (long) operationStats.timeouts.count());
+            perOperation.put(operation.getKey(), entry);
+        });
+        stats.put("operations", perOperation);
+        return stats;
+    }
+
+    // Private helper methods
+
+    private boolean tryAcquirePermission() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                return false;
+            }
+            synchronized (this) {
+                if (state == State.OPEN) {
+                    transitionTo(State.HALF_OPEN, "Open duration elapsed");
+                }
+            }
+        }
+        return state == State.CLOSED || halfOpenPermits.getAndDecrement() > 0;
+    }
+
+    private void onSuccess(OperationStats stats, long elapsedNanos) {
+        stats.recordLatency(elapsedNanos, floorMs, latencyMultiplier);
+        if (state == State.CLOSED) {
+            synchronized (this) {
+                recordOutcome(false);
+            }
+            return;
+        }
+        synchronized (this) {
+            if (state == State.HALF_OPEN && ++halfOpenSuccesses >= halfOpenCalls) {
+                transitionTo(State.CLOSED, "Trial calls succeeded");
+            }
+        }
+    }
+
+    private synchronized void onFailure(String reason) {
+        if (state == State.HALF_OPEN) {
+            transitionTo(State.OPEN, "Trial call failed: " + reason);
+            return;
+        }
+        if (state == State.CLOSED) {
+            recordOutcome(true);
+            if (windowCalls >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+                transitionTo(State.OPEN, "Failure rate " + (100 * windowFailures / windowCalls) + "%: " + reason);
+            }
+        }
+    }
+
+    private void recordOutcome(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(State target, String reason) {
+        State previous = state;
+        state = target;
+        lastTransition = LocalDateTime.now();
+        lastTransitionReason = reason;
+
+        Arrays.fill(window, false);
+        windowIndex = 0;
+        windowCalls = 0;
+        windowFailures = 0;
+        halfOpenSuccesses = 0;
+        if (target == State.OPEN) {
+            openedAt = System.currentTimeMillis();
+        }
+        halfOpenPermits.set(target == State.HALF_OPEN ? halfOpenCalls : 0);
+
+        Counter.builder(METRIC_PREFIX + ".transitions")
+            .tag("state", target.name().toLowerCase())
+            .register(meterRegistry)
+            .increment();
+        if (previous != target) {
+            System.err.println("Redis circuit breaker " + previous + " -> " + target + ": " + reason);
+        }
+    }
+
+    private Counter operationCounter(Operation operation, String name) {
+        return Counter.builder(METRIC_PREFIX + "." + name)
+            .tag("operation", operation.getKey())
+            .register(meterRegistry);
+    }
+
+    private String budgetExceeded(Operation operation, long budgetMs) {
+        return "Redis " + operation.getKey() + " call exceeded its " + budgetMs + " ms budget";
+    }
+
+    private boolean isTimeout(Throwable e) {
+        // Repository callers may wrap the client's timeout in a plain RuntimeException
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof QueryTimeoutException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isRedisFailure(Throwable e) {
+        // Connection failures and timeouts; command errors such as BUSYGROUP or WRONGTYPE mean Redis answered
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataAccessResourceFailureException || t instanceof TransientDataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recent latencies of one operation class and the budget derived from them
+     */
+    private static final class OperationStats {
+        private final long ceilingMs;
+        private final Counter rejections;
+        private final Counter timeouts;
+        private final long[] samples = new long[LATENCY_SAMPLES];
+
+        // Guarded by samples
+        private int next = 0;
+        private long recorded = 0;
+
+        private volatile long budgetMs;
+        private volatile double p99Ms = 0;
+
+        private OperationStats(long ceilingMs, Counter rejections, Counter timeouts) {
+            this.ceilingMs = ceilingMs;
+            this.rejections = rejections;
+            this.timeouts = timeouts;
+            this.budgetMs = ceilingMs;
+        }
+
+        private void recordLatency(long elapsedNanos, long floorMs, double multiplier) {
+            long[] copy = null;
+            synchronized (samples) {
+                samples[next] = elapsedNanos;
+                next = (next + 1) % samples.length;
+                recorded++;
+                if (recorded >= MIN_LATENCY_SAMPLES && recorded % BUDGET_REFRESH_INTERVAL == 0) {
+                    copy = Arrays.copyOf(samples, (int) Math.min(recorded, samples.length));
+                }
+            }
+            if (copy == null) {
+                return;
+            }
+
+            Arrays.sort(copy);
+            double p99 = copy[(int) Math.ceil(copy.length * 0.99) - 1] / 1_000_000.0;
+            p99Ms = p99;
+            budgetMs = Math.min(ceilingMs, Math.max(floorMs, (long) Math.ceil(p99 * multiplier)));
+        }
+
+        private long getBudgetMs() {
+            return budgetMs;
+        }
+
+        private double getP99Ms() {
+            return p99Ms;
+        }
+    }
+}
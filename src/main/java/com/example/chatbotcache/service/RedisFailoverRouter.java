@@ -0,0 +1,363 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether session and message operations go to Redis or to the in-memory
+ * fallback stores. While Redis is healthy, reads and writes go to Redis and writes are
+ * mirrored into memory so the fallback stores stay warm. The first Redis failure
+ * switches to memory; writes made while degraded are journaled and replayed to Redis
+ * in batches once it is reachable again, and Redis is used again only after the
+ * journal has drained. Degraded writes to one session are serialized so the journal keeps
+ * their order; writes to different sessions proceed in parallel. A journaled write that
+ * Redis rejects for any reason other than being unreachable is dead-lettered.
+ */
+@Service
+public class RedisFailoverRouter {
+
+    @Autowired
+    private RedisHealthService redisHealthService;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private ChatSessionService redisSessionService;
+
+    @Autowired
+    private MessageService redisMessageService;
+
+    @Autowired
+    private FallbackChatSessionService memorySessionService;
+
+    @Autowired
+    private FallbackMessageService memoryMessageService;
+
+    @Value("${app.failover.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.failover.resync-batch-size:100}")
+    private int resyncBatchSize;
+
+    @Value("${app.failover.max-pending-writes:100000}")
+    private int maxPendingWrites;
+
+    @Value("${app.failover.max-dead-letters:1000}")
+    private int maxDeadLetters;
+
+    private static final int SESSION_LOCK_STRIPES = 64;
+
+    private final ConcurrentLinkedDeque<PendingWrite> journal = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger journalSize = new AtomicInteger(0);
+    private final ConcurrentLinkedDeque<PendingWrite> deadLetters = new ConcurrentLinkedDeque<>();
+    private final Object[] sessionLocks = new Object[SESSION_LOCK_STRIPES];
+    private final AtomicInteger degradedWritesInFlight = new AtomicInteger(0);
+    private final AtomicBoolean resyncing = new AtomicBoolean(false);
+
+    private volatile boolean degraded = false;
+    private volatile String lastFailure;
+    private volatile LocalDateTime degradedSince;
+    private volatile LocalDateTime lastResync;
+
+    private final AtomicLong failovers = new AtomicLong(0);
+    private final AtomicLong replayedWrites = new AtomicLong(0);
+    private final AtomicLong droppedWrites = new AtomicLong(0);
+    private final AtomicLong deadLetteredWrites = new AtomicLong(0);
+
+    public RedisFailoverRouter() {
+        for (int i = 0; i < sessionLocks.length; i++) {
+            sessionLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Run a read against Redis, or against memory when degraded or when Redis fails
+     */
+    public <T> T read(Supplier<T> redisRead, Supplier<T> memoryRead) {
+        if (routeToRedis()) {
+            try {
+                return redisRead.get();
+            } catch (RuntimeException e) {
+                if (!isRedisFailure(e)) {
+                    throw e;
+                }
+                markDegraded(e);
+            }
+        }
+        return memoryRead.get();
+    }
+
+    /**
+     * Run a write against Redis and mirror the result into memory. When degraded, or when the
+     * Redis write fails, write to memory instead and journal the change for replay. The
+     * session ID orders degraded writes; it is null for a write that creates the session.
+     */
+    public <T> T write(String sessionId, Supplier<T> redisWrite, Consumer<T> mirror,
+                       Supplier<T> memoryWrite, Function<T, PendingWrite> pendingWrite) {
+        if (routeToRedis()) {
+            try {
+                T result = redisWrite.get();
+                mirrorQuietly(mirror, result);
+                return result;
+            } catch (RuntimeException e) {
+                if (!isRedisFailure(e)) {
+                    throw e;
+                }
+                markDegraded(e);
+            }
+        }
+
+        degradedWritesInFlight.incrementAndGet();
+        try {
+            // Memory write and journal entry in the same order for every write to this session
+            synchronized (sessionLock(sessionId)) {
+                T result = memoryWrite.get();
+                PendingWrite pending = pendingWrite.apply(result);
+                if (pending != null) {
+                    enqueue(pending);
+                }
+                return result;
+            }
+        } finally {
+            degradedWritesInFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Replay journaled writes once Redis answers again, then switch reads and writes back to Redis
+     */
+    @Scheduled(fixedDelayString = "${app.failover.resync-interval-ms:5000}")
+    public void resync() {
+        if (!enabled || (!degraded && journal.isEmpty())) {
+            return;
+        }
+        if (!redisHealthService.checkRedisHealth().isHealthy()) {
+            return;
+        }
+        // One replayer at a time, so no journaled write is applied twice
+        if (!resyncing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            while (replayBatch() > 0) {
+                // Keep draining while Redis accepts the writes
+            }
+
+            // A degraded write that journals after this check is replayed by the next resync
+            if (journal.isEmpty() && degradedWritesInFlight.get() == 0) {
+                degraded = false;
+                degradedSince = null;
+                lastResync = LocalDateTime.now();
+            }
+        } catch (RuntimeException e) {
+            lastFailure = e.getMessage();
+            System.err.println("Write-behind resync stopped, " + journalSize.get() + " writes pending: " + e.getMessage());
+        } finally {
+            resyncing.set(false);
+        }
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public int getPendingWrites() {
+        return journalSize.get();
+    }
+
+    /**
+     * Journaled writes that Redis rejected during replay, oldest first
+     */
+    public List<PendingWrite> getDeadLetters() {
+        return new ArrayList<>(deadLetters);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("mode", routeToRedis() ? "redis" : "memory");
+        stats.put("degraded", degraded);
+        stats.put("pendingWrites", journalSize.get());
+        stats.put("failovers", failovers.get());
+        stats.put("replayedWrites", replayedWrites.get());
+        stats.put("droppedWrites", droppedWrites.get());
+        stats.put("deadLetteredWrites", deadLetteredWrites.get());
+        stats.put("deadLetters", deadLetters.size());
+        stats.put("degradedSince", degradedSince);
+        stats.put("lastResync", lastResync);
+        stats.put("lastFailure", lastFailure);
+        return stats;
+    }
+
+    // Private helper methods
+
+    private boolean routeToRedis() {
+        if (!enabled) {
+            return false;
+        }
+        if (!degraded && !redisHealthService.isHealthy()) {
+            markDegraded(new IllegalStateException("Redis health check failing"));
+        } else if (!degraded && circuitBreaker.isOpen()) {
+            markDegraded(new IllegalStateException("Redis circuit breaker open"));
+        }
+        return !degraded;
+    }
+
+    private void markDegraded(Exception cause) {
+        lastFailure = cause.getMessage();
+        if (!degraded) {
+            degraded = true;
+            degradedSince = LocalDateTime.now();
+            failovers.incrementAndGet();
+            System.err.println("Redis unavailable, serving sessions and messages from memory: " + cause.getMessage());
+        }
+    }
+
+    private boolean isRedisFailure(Throwable e) {
+        // ChatSessionService wraps repository failures in a plain RuntimeException
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> void mirrorQuietly(Consumer<T> mirror, T result) {
+        if (mirror == null || result == null) {
+            return;
+        }
+        try {
+            mirror.accept(result);
+        } catch (RuntimeException e) {
+            System.err.println("Failed to mirror Redis write into memory: " + e.getMessage());
+        }
+    }
+
+    private Object sessionLock(String sessionId) {
+        int hash = sessionId != null ? sessionId.hashCode() : 0;
+        return sessionLocks[Math.floorMod(hash, sessionLocks.length)];
+    }
+
+    private void enqueue(PendingWrite pending) {
+        journal.addLast(pending);
+        if (journalSize.incrementAndGet() > maxPendingWrites && journal.pollFirst() != null) {
+            journalSize.decrementAndGet();
+            droppedWrites.incrementAndGet();
+        }
+    }
+
+    /**
+     * Apply up to one batch of journaled writes in order. A write is removed from the journal
+     * only after Redis has accepted or rejected it, so an outage mid-batch resumes from that write.
+     */
+    private int replayBatch() {
+        int replayed = 0;
+        while (replayed < resyncBatchSize) {
+            PendingWrite pending = journal.peekFirst();
+            if (pending == null) {
+                break;
+            }
+            try {
+                replay(pending);
+            } catch (RuntimeException e) {
+                if (isRedisFailure(e)) {
+                    throw e;
+                }
+                // Retrying would fail the same way and hold up every write behind it
+                deadLetter(pending, e);
+            }
+            journal.pollFirst();
+            journalSize.decrementAndGet();
+            replayedWrites.incrementAndGet();
+            replayed++;
+        }
+        return replayed;
+    }
+
+    private void deadLetter(PendingWrite pending, RuntimeException cause) {
+        deadLetters.addLast(pending);
+        deadLetteredWrites.incrementAndGet();
+        if (deadLetters.size() > maxDeadLetters) {
+            deadLetters.pollFirst();
+        }
+        System.err.println("Dead-lettering unreplayable " + pending.getType() + " for " + pending.getSessionId()
+            + ": " + cause.getMessage());
+    }
+
+    private void replay(PendingWrite pending) {
+        String sessionId = pending.getSessionId();
+        switch (pending.getType()) {
+            case SESSION -> {
+                // Replay the latest in-memory state rather than every intermediate change
+                Optional<ChatSession> snapshot = memorySessionService.getSession(sessionId);
+                snapshot.ifPresent(redisSessionService::restoreSession);
+            }
+            case SESSION_DELETE -> {
+                redisSessionService.deleteSession(sessionId);
+                redisMessageService.deleteSessionMessages(sessionId);
+            }
+            case MESSAGE -> redisMessageService.appendExisting(pending.getMessage());
+            case SESSION_MESSAGES_DELETE -> redisMessageService.deleteSessionMessages(sessionId);
+        }
+    }
+
+    /**
+     * A write made to the in-memory stores while Redis was unavailable
+     */
+    public static class PendingWrite {
+
+        public enum Type { SESSION, SESSION_DELETE, MESSAGE, SESSION_MESSAGES_DELETE }
+
+        private final Type type;
+        private final String sessionId;
+        private final ChatMessage message;
+
+        private PendingWrite(Type type, String sessionId, ChatMessage message) {
+            this.type = type;
+            this.sessionId = sessionId;
+            this.message = message;
+        }
+
+        public static PendingWrite session(String sessionId) {
+            return new PendingWrite(Type.SESSION, sessionId, null);
+        }
+
+        public static PendingWrite sessionDelete(String sessionId) {
+            return new PendingWrite(Type.SESSION_DELETE, sessionId, null);
+        }
+
+        public static PendingWrite message(ChatMessage message) {
+            return new PendingWrite(Type.MESSAGE, message.getSessionId(), message);
+        }
+
+        public static PendingWrite sessionMessagesDelete(String sessionId) {
+            return new PendingWrite(Type.SESSION_MESSAGES_DELETE, sessionId, null);
+        }
+
+        public Type getType() { return type; }
+        public String getSessionId() { return sessionId; }
+        public ChatMessage getMessage() { return message; }
+    }
+}
@@ -26,6 +26,9 @@ public class RedisHealthService {
     @Autowired(required = false)
     private RedisPubSubService pubSubService;
 
+    @Autowired(required = false)
+    private RedisCircuitBreaker circuitBreaker;
+
     private final AtomicBoolean isHealthy = new AtomicBoolean(true);
     private final AtomicLong lastHealthCheck = new AtomicLong(System.currentTimeMillis());
     private final AtomicLong consecutiveFailures = new AtomicLong(0);
@@ -130,7 +133,11 @@ public class RedisHealthService {
                         .withError(e.getMessage());
         }
 
-        return statusBuilder.build();
+        RedisHealthStatus status = statusBuilder.build();
+        if (circuitBreaker != null) {
+            circuitBreaker.onHealthCheck(status);
+        }
+        return status;
     }
 
     private void checkClusterHealth(RedisHealthStatus.Builder statusBuilder) {
@@ -187,6 +194,9 @@ public class RedisHealthService {
             java.time.ZoneId.systemDefault()));
         summary.put("consecutiveFailures", consecutiveFailures.get());
         summary.put("clusterMode", isClusterMode.get());
+        if (circuitBreaker != null) {
+            summary.put("circuitBreaker", circuitBreaker.getState().name());
+        }
 
         if (lastHealthStatus != null) {
             summary.put("responseTime", lastHealthStatus.getResponseTime());
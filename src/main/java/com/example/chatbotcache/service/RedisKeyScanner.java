@@ -0,0 +1,120 @@
+package com.example.chatbotcache.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Cursor-based key iteration built on SCAN, used in place of KEYS.
+ * Keys are handed to the caller in bounded batches and the next SCAN page is only
+ * requested once the caller has processed the current batch, so slow consumers
+ * throttle the iteration instead of buffering the keyspace in memory.
+ * In cluster mode every master node is scanned in turn.
+ */
+@Service
+public class RedisKeyScanner {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${app.redis.scan.count:500}")
+    private int scanCount;
+
+    /**
+     * Stream keys matching the pattern to the consumer in batches of at most batchSize.
+     * Returns the number of keys visited.
+     */
+    public long scan(String pattern, int batchSize, Consumer<List<String>> batchConsumer) {
+        int size = batchSize > 0 ? batchSize : scanCount;
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(scanCount).build();
+
+        Long visited = redisTemplate.execute((RedisCallback<Long>) connection -> {
+            if (connection instanceof RedisClusterConnection) {
+                RedisClusterConnection clusterConnection = (RedisClusterConnection) connection;
+                long total = 0;
+                for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+                    if (node.isMaster()) {
+                        total += drain(clusterConnection.scan(node, options), size, batchConsumer);
+                    }
+                }
+                return total;
+            }
+            return drain(connection.keyCommands().scan(options), size, batchConsumer);
+        });
+
+        return visited != null ? visited : 0;
+    }
+
+    /**
+     * Collect all keys matching the pattern. Only for patterns known to match a bounded set of keys.
+     */
+    public List<String> collect(String pattern) {
+        List<String> keys = new ArrayList<>();
+        scan(pattern, scanCount, keys::addAll);
+        return keys;
+    }
+
+    /**
+     * Count keys matching the pattern without materializing them
+     */
+    public long count(String pattern) {
+        return scan(pattern, scanCount, batch -> { });
+    }
+
+    /**
+     * Unlink every key matching the pattern in batches. Returns the number of keys removed.
+     */
+    public long unlinkMatching(String pattern, int batchSize) {
+        long[] removed = {0};
+        scan(pattern, batchSize, batch -> removed[0] += unlink(batch));
+        return removed[0];
+    }
+
+    /**
+     * Unlink a batch of keys; memory is reclaimed off the Redis event loop
+     */
+    public long unlink(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return 0;
+        }
+        Long removed = redisTemplate.unlink(keys);
+        return removed != null ? removed : 0;
+    }
+
+    // Private helper methods
+
+    private long drain(Cursor<byte[]> cursor, int batchSize, Consumer<List<String>> batchConsumer) {
+        long visited = 0;
+        List<String> batch = new ArrayList<>(batchSize);
+
+        try (cursor) {
+            while (cursor.hasNext()) {
+                batch.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                if (batch.size() >= batchSize) {
+                    visited += batch.size();
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            visited += batch.size();
+            batchConsumer.accept(batch);
+        }
+
+        return visited;
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.chatbotcache.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
@@ -9,6 +11,7 @@ import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
@@ -52,20 +55,47 @@ public class RedisPubSubService {
 
     private void setupChannelListener(String channel) {
         MessageListenerAdapter listenerAdapter = new MessageListenerAdapter(new ChannelMessageListener(channel), "onMessage");
+        // Not a bean, so the adapter has to resolve its listener method itself
+        listenerAdapter.afterPropertiesSet();
         messageListenerContainer.addMessageListener(listenerAdapter, new ChannelTopic(channel));
         channelListeners.put(channel, new CopyOnWriteArrayList<>());
     }
 
     public void publishChatMessage(String sessionId, String userId, String messageId, String content, String role) {
+        publishChatMessage(buildChatMessagePayload(sessionId, userId, messageId, content, role, LocalDateTime.now()));
+    }
+
+    /**
+     * Publish a chat message event built with {@link #buildChatMessagePayload}
+     */
+    public void publishChatMessage(byte[] payload) {
+        try {
+            publishRaw(CHAT_MESSAGES_CHANNEL, payload);
+        } catch (Exception e) {
+            System.err.println("Failed to publish message to channel " + CHAT_MESSAGES_CHANNEL + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Chat message event as published on {@link #CHAT_MESSAGES_CHANNEL}: UTF-8 JSON, the format
+     * channel listeners parse. The scripted append publishes these bytes as they are, so
+     * subscribers see one format whichever append path ran.
+     */
+    public byte[] buildChatMessagePayload(String sessionId, String userId, String messageId, String content,
+                                          String role, LocalDateTime timestamp) {
         Map<String, Object> message = new HashMap<>();
         message.put("sessionId", sessionId);
         message.put("userId", userId);
         message.put("messageId", messageId);
         message.put("content", content);
         message.put("role", role);
-        message.put("timestamp", LocalDateTime.now().toString());
+        message.put("timestamp", timestamp.toString());
 
-        publishToChannel(CHAT_MESSAGES_CHANNEL, message);
+        try {
+            return objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize chat message event: " + e.getMessage(), e);
+        }
     }
 
     public void publishSessionEvent(String sessionId, String userId, String eventType, Map<String, Object> eventData) {
@@ -121,10 +151,17 @@ public class RedisPubSubService {
         publishToChannel(CACHE_EVENTS_CHANNEL, event);
     }
 
+    /**
+     * Publish bytes as they are, bypassing the template's value serializer
+     */
+    private void publishRaw(String channel, byte[] payload) {
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        redisTemplate.execute((RedisCallback<Long>) connection -> connection.publish(channelBytes, payload));
+    }
+
     private void publishToChannel(String channel, Map<String, Object> message) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(message);
-            redisTemplate.convertAndSend(channel, jsonMessage);
+            publishRaw(channel, objectMapper.writeValueAsBytes(message));
         } catch (Exception e) {
             System.err.println("Failed to publish message to channel " + channel + ": " + e.getMessage());
         }
@@ -2,10 +2,19 @@ package com.example.chatbotcache.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
@@ -18,25 +27,50 @@ public class RedisScriptService {
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    @Autowired
+    private RedisKeyScanner keyScanner;
+
+    /**
+     * Script arguments: byte arrays are passed through, anything else as its UTF-8 string
+     */
+    private static final RedisSerializer<Object> SCRIPT_ARG_SERIALIZER = new RedisSerializer<>() {
+        @Override
+        public byte[] serialize(Object value) {
+            if (value instanceof byte[] bytes) {
+                return bytes;
+            }
+            return value != null ? value.toString().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+        }
+    };
+
     // Pre-compiled scripts for better performance
     private RedisScript<Long> atomicSessionUpdateScript;
     private RedisScript<Long> atomicMessageAddScript;
+    private RedisScript<Long> atomicMessageAppendScript;
+    private RedisScript<Long> tokenCounterUpdateScript;
+    private RedisScript<String> streamAppendScript;
+    private RedisScript<Long> streamTrimScript;
     private RedisScript<List> rateLimitScript;
     private RedisScript<Long> cacheWithTtlScript;
-    private RedisScript<Long> cleanupExpiredKeysScript;
     private RedisScript<Map> sessionStatsScript;
-    private RedisScript<Long> bulkDeleteScript;
 
     @PostConstruct
     public void initializeScripts() {
         // Initialize all Lua scripts
         initializeAtomicSessionUpdateScript();
         initializeAtomicMessageAddScript();
+        initializeAtomicMessageAppendScript();
+        initializeTokenCounterUpdateScript();
+        initializeStreamAppendScript();
+        initializeStreamTrimScript();
         initializeRateLimitScript();
         initializeCacheWithTtlScript();
-        initializeCleanupExpiredKeysScript();
         initializeSessionStatsScript();
-        initializeBulkDeleteScript();
     }
 
     private void initializeAtomicSessionUpdateScript() {
@@ -86,6 +120,137 @@ public class RedisScriptService {
         atomicMessageAddScript = new DefaultRedisScript<>(luaScript, Long.class);
     }
 
+    private void initializeAtomicMessageAppendScript() {
+        String luaScript =
+            "local messageKey = KEYS[1]\n" +
+            "local messageKeyspace = KEYS[2]\n" +
+            "local messageListKey = KEYS[3]\n" +
+            "local sessionKey = KEYS[4]\n" +
+            "local streamKey = KEYS[5]\n" +
+            "local tokenCounterKey = KEYS[6]\n" +
+            "local messageIndexHelperKey = KEYS[7]\n" +
+            "local timestampIndexKey = KEYS[8]\n" +
+            "local lastActivityIndexKey = KEYS[9]\n" +
+            "local chatEventsStreamKey = KEYS[10]\n" +
+            "\n" +
+            "-- Refuse to append to a session that does not exist\n" +
+            "if redis.call('EXISTS', sessionKey) == 0 then\n" +
+            "    return -1\n" +
+            "end\n" +
+            "\n" +
+            "-- Write the message hash as converted by the repository mapping\n" +
+            "local hashEnd = 14 + tonumber(ARGV[14])\n" +
+            "local fields = {}\n" +
+            "for i = 15, hashEnd do\n" +
+            "    fields[#fields + 1] = ARGV[i]\n" +
+            "end\n" +
+            "redis.call('HSET', messageKey, unpack(fields))\n" +
+            "redis.call('SADD', messageKeyspace, ARGV[1])\n" +
+            "\n" +
+            "-- Maintain the @Indexed sets (KEYS[11..]) and the timestamp sorted set\n" +
+            "for i = 11, #KEYS do\n" +
+            "    redis.call('SADD', KEYS[i], ARGV[1])\n" +
+            "    redis.call('SADD', messageIndexHelperKey, KEYS[i])\n" +
+            "end\n" +
+            "redis.call('ZADD', timestampIndexKey, ARGV[11], ARGV[1])\n" +
+            "\n" +
+            "-- Add message to list, encoded like the list's other entries, and trim to max messages\n" +
+            "local maxMessages = tonumber(ARGV[5])\n" +
+            "redis.call('RPUSH', messageListKey, ARGV[13])\n" +
+            "redis.call('LTRIM', messageListKey, -maxMessages, -1)\n" +
+            "\n" +
+            "-- Update session counters in place\n" +
+            "redis.call('HINCRBY', sessionKey, 'messageCount', 1)\n" +
+            "local tokens = tonumber(ARGV[4])\n" +
+            "if tokens and tokens > 0 then\n" +
+            "    redis.call('HINCRBY', sessionKey, 'tokenCount', tokens)\n" +
+            "end\n" +
+            "redis.call('HSET', sessionKey, 'lastActivity', ARGV[6])\n" +
+            "redis.call('ZADD', lastActivityIndexKey, ARGV[12], ARGV[2])\n" +
+            "\n" +
+            "-- Update the running token totals if they have been initialized\n" +
+            "if redis.call('EXISTS', tokenCounterKey) == 1 then\n" +
+            "    redis.call('HINCRBY', tokenCounterKey, 'messages', 1)\n" +
+            "    if tokens and tokens > 0 then\n" +
+            "        redis.call('HINCRBY', tokenCounterKey, 'total', tokens)\n" +
+            "        redis.call('HINCRBY', tokenCounterKey, ARGV[3], tokens)\n" +
+            "    end\n" +
+            "end\n" +
+            "\n" +
+            "-- Append to the session chat stream and the shared chat events stream\n" +
+            "local entry = {}\n" +
+            "for i = hashEnd + 1, #ARGV do\n" +
+            "    entry[#entry + 1] = ARGV[i]\n" +
+            "end\n" +
+            "redis.call('XADD', streamKey, 'MAXLEN', '~', ARGV[8], '*', unpack(entry))\n" +
+            "redis.call('XADD', chatEventsStreamKey, 'MAXLEN', '~', ARGV[7], '*', unpack(entry))\n" +
+            "\n" +
+            "-- Publish the chat event, serialized by the caller\n" +
+            "redis.call('PUBLISH', ARGV[9], ARGV[10])\n" +
+            "\n" +
+            "-- Return current list length\n" +
+            "return redis.call('LLEN', messageListKey)";
+
+        atomicMessageAppendScript = new DefaultRedisScript<>(luaScript, Long.class);
+    }
+
+    private void initializeTokenCounterUpdateScript() {
+        String luaScript =
+            "local counterKey = KEYS[1]\n" +
+            "local mode = ARGV[1]\n" +
+            "\n" +
+            "if mode == 'set' then\n" +
+            "    -- Replace the totals with a freshly computed snapshot\n" +
+            "    redis.call('DEL', counterKey)\n" +
+            "    redis.call('HSET', counterKey, 'reconciledAt', ARGV[2])\n" +
+            "elseif redis.call('EXISTS', counterKey) == 0 then\n" +
+            "    -- Not initialized yet; the next read recomputes it\n" +
+            "    return 0\n" +
+            "end\n" +
+            "\n" +
+            "for i = 3, #ARGV, 2 do\n" +
+            "    redis.call('HINCRBY', counterKey, ARGV[i], tonumber(ARGV[i + 1]))\n" +
+            "end\n" +
+            "\n" +
+            "return 1";
+
+        tokenCounterUpdateScript = new DefaultRedisScript<>(luaScript, Long.class);
+    }
+
+    private void initializeStreamAppendScript() {
+        String luaScript =
+            "-- ARGV[i] is the approximate MAXLEN for KEYS[i]; the remaining ARGV are field/value pairs\n" +
+            "local entry = {}\n" +
+            "for i = #KEYS + 1, #ARGV do\n" +
+            "    entry[#entry + 1] = ARGV[i]\n" +
+            "end\n" +
+            "\n" +
+            "local firstId = false\n" +
+            "for i = 1, #KEYS do\n" +
+            "    local id = redis.call('XADD', KEYS[i], 'MAXLEN', '~', ARGV[i], '*', unpack(entry))\n" +
+            "    firstId = firstId or id\n" +
+            "end\n" +
+            "\n" +
+            "return firstId";
+
+        streamAppendScript = new DefaultRedisScript<>(luaScript, String.class);
+    }
+
+    private void initializeStreamTrimScript() {
+        String luaScript =
+            "-- Stream IDs start with their millisecond timestamp, so MINID trims by age\n" +
+            "local trimmed = 0\n" +
+            "for i = 1, #KEYS do\n" +
+            "    if redis.call('TYPE', KEYS[i])['ok'] == 'stream' then\n" +
+            "        trimmed = trimmed + redis.call('XTRIM', KEYS[i], 'MINID', '~', ARGV[1])\n" +
+            "    end\n" +
+            "end\n" +
+            "\n" +
+            "return trimmed";
+
+        streamTrimScript = new DefaultRedisScript<>(luaScript, Long.class);
+    }
+
     private void initializeRateLimitScript() {
         String luaScript =
             "local key = KEYS[1]\n" +
@@ -130,38 +295,6 @@ public class RedisScriptService {
         cacheWithTtlScript = new DefaultRedisScript<>(luaScript, Long.class);
     }
 
-    private void initializeCleanupExpiredKeysScript() {
-        String luaScript =
-            "local pattern = ARGV[1]\n" +
-            "local maxAge = tonumber(ARGV[2])\n" +
-            "local currentTime = tonumber(ARGV[3])\n" +
-            "local batchSize = tonumber(ARGV[4] or 100)\n" +
-            "\n" +
-            "local keys = redis.call('KEYS', pattern)\n" +
-            "local deletedCount = 0\n" +
-            "local processed = 0\n" +
-            "\n" +
-            "for i = 1, #keys do\n" +
-            "    if processed >= batchSize then\n" +
-            "        break\n" +
-            "    end\n" +
-            "    \n" +
-            "    local key = keys[i]\n" +
-            "    local lastActivity = redis.call('HGET', key, 'lastActivity')\n" +
-            "    \n" +
-            "    if lastActivity and tonumber(lastActivity) < (currentTime - maxAge) then\n" +
-            "        redis.call('DEL', key)\n" +
-            "        deletedCount = deletedCount + 1\n" +
-            "    end\n" +
-            "    \n" +
-            "    processed = processed + 1\n" +
-            "end\n" +
-            "\n" +
-            "return deletedCount";
-
-        cleanupExpiredKeysScript = new DefaultRedisScript<>(luaScript, Long.class);
-    }
-
     private void initializeSessionStatsScript() {
         String luaScript =
             "local sessionKey = KEYS[1]\n" +
@@ -182,24 +315,6 @@ public class RedisScriptService {
         sessionStatsScript = new DefaultRedisScript<>(luaScript, Map.class);
     }
 
-    private void initializeBulkDeleteScript() {
-        String luaScript =
-            "local pattern = ARGV[1]\n" +
-            "local batchSize = tonumber(ARGV[2] or 100)\n" +
-            "\n" +
-            "local keys = redis.call('KEYS', pattern)\n" +
-            "local deletedCount = 0\n" +
-            "\n" +
-            "for i = 1, math.min(#keys, batchSize) do\n" +
-            "    redis.call('DEL', keys[i])\n" +
-            "    deletedCount = deletedCount + 1\n" +
-            "end\n" +
-            "\n" +
-            "return deletedCount";
-
-        bulkDeleteScript = new DefaultRedisScript<>(luaScript, Long.class);
-    }
-
     // Public methods to execute scripts
 
     public Long atomicSessionUpdate(String sessionKey, int messageCount, int tokenCount,
@@ -216,6 +331,103 @@ public class RedisScriptService {
         return redisTemplate.execute(atomicMessageAddScript, keys, args);
     }
 
+    /**
+     * Append a message in a single round trip: message hash, secondary indexes, list push and trim,
+     * session counters, token totals, chat and chat-event stream entries and pub/sub event.
+     * Keys come from the caller, with the message's index keys last; arguments from
+     * {@link #atomicMessageAppendArgs}. Returns the new list length, or -1 if the session hash
+     * does not exist.
+     */
+    public Long atomicMessageAppend(List<String> keys, List<Object> args) {
+        return redisTemplate.execute(atomicMessageAppendScript, SCRIPT_ARG_SERIALIZER,
+                new GenericToStringSerializer<>(Long.class), keys, args.toArray());
+    }
+
+    /**
+     * Non-blocking form of {@link #atomicMessageAppend(List, List)}
+     */
+    public Mono<Long> atomicMessageAppend(ReactiveRedisOperations<String, ?> operations,
+                                          List<String> keys, List<Object> args) {
+        return operations.execute(atomicMessageAppendScript, keys, args,
+                RedisElementWriter.from(SCRIPT_ARG_SERIALIZER),
+                RedisElementReader.from(new GenericToStringSerializer<>(Long.class)))
+            .next();
+    }
+
+    /**
+     * Arguments of the append script. The hash fields are the message as written by the
+     * repository's converter, the list entry is the message ID as the list's value serializer
+     * encodes it and the payload is the serialized pub/sub event, so the script stores and
+     * publishes exactly what the sequential append does.
+     */
+    public List<Object> atomicMessageAppendArgs(String messageId, String sessionId, String role,
+                                                Integer tokenCount, int maxMessages, String lastActivity,
+                                                Map<String, byte[]> hashFields, Map<String, String> streamEntry,
+                                                int streamMaxLength, int eventsStreamMaxLength, String channel,
+                                                byte[] payload, long timestampScore, long lastActivityScore,
+                                                byte[] listEntry) {
+        List<Object> args = new ArrayList<>(Arrays.asList(messageId, sessionId, role,
+                tokenCount != null ? tokenCount.toString() : "", String.valueOf(maxMessages), lastActivity,
+                String.valueOf(eventsStreamMaxLength), String.valueOf(streamMaxLength), channel, payload,
+                String.valueOf(timestampScore), String.valueOf(lastActivityScore), listEntry,
+                String.valueOf(hashFields.size() * 2)));
+        hashFields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        streamEntry.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        return args;
+    }
+
+    /**
+     * XADD the same entry to each stream with approximate MAXLEN trimming in one round trip.
+     * Returns the ID generated for the first stream.
+     */
+    public String appendToStreams(Map<String, Integer> streamMaxLengths, Map<String, String> fields) {
+        List<String> keys = new ArrayList<>(streamMaxLengths.keySet());
+        List<String> args = new ArrayList<>();
+        keys.forEach(key -> args.add(String.valueOf(streamMaxLengths.get(key))));
+        fields.forEach((field, value) -> {
+            args.add(field);
+            args.add(value);
+        });
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        return redisTemplate.execute(streamAppendScript, serializer, serializer, keys, args.toArray());
+    }
+
+    /**
+     * Trim entries older than the given epoch millis from each stream. Keys that are
+     * not streams are left alone.
+     */
+    public Long trimStreamsBefore(List<String> streamKeys, long minTimestampMillis) {
+        if (streamKeys.isEmpty()) {
+            return 0L;
+        }
+        return redisTemplate.execute(streamTrimScript, new StringRedisSerializer(),
+                new GenericToStringSerializer<>(Long.class), streamKeys, String.valueOf(minTimestampMillis));
+    }
+
+    /**
+     * Apply field deltas to a token counter hash, or replace it entirely when
+     * {@code replace} is true. Deltas are ignored if the counter does not exist yet.
+     */
+    public Long updateTokenCounter(String counterKey, boolean replace, long reconciledAt,
+                                   Map<String, Long> fieldDeltas) {
+        List<String> keys = Collections.singletonList(counterKey);
+        List<String> args = new ArrayList<>();
+        args.add(replace ? "set" : "incr");
+        args.add(String.valueOf(reconciledAt));
+        fieldDeltas.forEach((field, delta) -> {
+            args.add(field);
+            args.add(String.valueOf(delta));
+        });
+        return redisTemplate.execute(tokenCounterUpdateScript, new StringRedisSerializer(),
+                new GenericToStringSerializer<>(Long.class), keys, args.toArray());
+    }
+
     public List<Long> checkRateLimit(String key, int windowSeconds, int limit) {
         List<String> keys = Collections.singletonList(key);
         Object[] args = {windowSeconds, limit, System.currentTimeMillis()};
@@ -230,10 +442,18 @@ public class RedisScriptService {
         return redisTemplate.execute(cacheWithTtlScript, keys, args);
     }
 
+    /**
+     * Unlink hashes matching the pattern whose numeric lastActivity is older than maxAgeSeconds.
+     * Keys are walked with SCAN in batches; keys that are not hashes are skipped.
+     */
     public Long cleanupExpiredKeys(String pattern, long maxAgeSeconds, int batchSize) {
-        List<String> keys = Collections.emptyList();
-        Object[] args = {pattern, maxAgeSeconds, System.currentTimeMillis() / 1000, batchSize};
-        return redisTemplate.execute(cleanupExpiredKeysScript, keys, args);
+        double cutoff = System.currentTimeMillis() / 1000.0 - maxAgeSeconds;
+        long[] deleted = {0};
+        keyScanner.scan(pattern, batchSize, batch -> {
+            List<String> expired = findExpiredHashes(batch, cutoff);
+            deleted[0] += keyScanner.unlink(expired);
+        });
+        return deleted[0];
     }
 
     public Map<String, Object> getSessionStats(String sessionKey, String messageListKey) {
@@ -244,10 +464,11 @@ public class RedisScriptService {
         return result;
     }
 
+    /**
+     * Unlink every key matching the pattern, batchSize keys per UNLINK
+     */
     public Long bulkDelete(String pattern, int batchSize) {
-        List<String> keys = Collections.emptyList();
-        Object[] args = {pattern, batchSize};
-        return redisTemplate.execute(bulkDeleteScript, keys, args);
+        return keyScanner.unlinkMatching(pattern, batchSize);
     }
 
     // Convenience methods for common operations
@@ -312,4 +533,51 @@ public class RedisScriptService {
         String messageListKey = "messages:" + sessionId;
         return getSessionStats(sessionKey, messageListKey);
     }
-}
\ No newline at end of file
+
+    // Private helper methods
+
+    private List<String> findExpiredHashes(List<String> keys, double cutoff) {
+        // First pipeline: key types, so HGET is never sent to a non-hash key
+        List<Object> types = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.keyCommands().type(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+
+        List<String> hashKeys = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (types.get(i) == DataType.HASH) {
+                hashKeys.add(keys.get(i));
+            }
+        }
+        if (hashKeys.isEmpty()) {
+            return hashKeys;
+        }
+
+        // Second pipeline: lastActivity of each hash, read back as plain strings
+        byte[] field = "lastActivity".getBytes(StandardCharsets.UTF_8);
+        List<Object> activity = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : hashKeys) {
+                connection.hashCommands().hGet(key.getBytes(StandardCharsets.UTF_8), field);
+            }
+            return null;
+        }, new StringRedisSerializer());
+
+        List<String> expired = new ArrayList<>();
+        for (int i = 0; i < hashKeys.size(); i++) {
+            Object value = activity.get(i);
+            if (value == null) {
+                continue;
+            }
+            try {
+                if (Double.parseDouble(value.toString()) < cutoff) {
+                    expired.add(hashKeys.get(i));
+                }
+            } catch (NumberFormatException e) {
+                // Non-numeric lastActivity values are left alone
+            }
+        }
+        return expired;
+    }
+}
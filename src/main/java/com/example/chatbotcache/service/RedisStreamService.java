@@ -1,11 +1,28 @@
 package com.example.chatbotcache.service;
 
 import com.example.chatbotcache.model.ChatMessage;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -14,38 +31,78 @@ import java.util.stream.Collectors;
 public class RedisStreamService {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private RedisScriptService redisScriptService;
+
+    @Autowired
+    private RedisKeyScanner keyScanner;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Value("${app.streams.chat-events.max-length:10000}")
+    private int chatEventsMaxLength;
+
+    public static final String CHAT_EVENTS_STREAM = "chat:events";
+    public static final String CHAT_EVENTS_DEAD_LETTER_STREAM = "chat:events:dead";
 
     private static final String CHAT_STREAM_PREFIX = "chat:stream:";
     private static final String SESSION_ACTIVITY_STREAM = "session:activity";
     private static final String USER_ACTIVITY_STREAM = "user:activity";
     private static final String SYSTEM_EVENTS_STREAM = "system:events";
-
+    private static final int CHAT_STREAM_MAX_LENGTH = 100;
+    private static final int SESSION_ACTIVITY_MAX_LENGTH = 1000;
+    private static final int USER_ACTIVITY_MAX_LENGTH = 500;
+    private static final int SYSTEM_EVENTS_MAX_LENGTH = 200;
+    private static final int DEAD_LETTER_MAX_LENGTH = 1000;
+    private static final String STREAM_ID_FIELD = "streamId";
+
+    /**
+     * XADD the message to its session stream and to the shared chat events stream
+     */
     public void publishChatMessage(String sessionId, ChatMessage message) {
         try {
-            String streamKey = CHAT_STREAM_PREFIX + sessionId;
+            Map<String, Integer> streams = new LinkedHashMap<>();
+            streams.put(getChatStreamKey(sessionId), CHAT_STREAM_MAX_LENGTH);
+            streams.put(CHAT_EVENTS_STREAM, chatEventsMaxLength);
+            Map<String, String> entry = buildChatMessageEntry(message);
+            circuitBreaker.run(Operation.STREAM, () -> redisScriptService.appendToStreams(streams, entry));
+        } catch (Exception e) {
+            // Log error but don't fail the operation
+            System.err.println("Failed to publish chat message to stream: " + e.getMessage());
+        }
+    }
 
-            Map<String, Object> messageData = new HashMap<>();
-            messageData.put("messageId", message.getMessageId());
-            messageData.put("sessionId", message.getSessionId());
-            messageData.put("role", message.getRole().name());
-            messageData.put("content", message.getContent());
-            messageData.put("timestamp", message.getTimestamp().toString());
-            messageData.put("tokenCount", message.getTokenCount());
+    public String getChatStreamKey(String sessionId) {
+        return CHAT_STREAM_PREFIX + sessionId;
+    }
 
-            // Use Redis list as a simple stream
-            redisTemplate.opsForList().rightPush(streamKey, messageData);
+    public int getChatStreamMaxLength() {
+        return CHAT_STREAM_MAX_LENGTH;
+    }
 
-            // Trim to keep only recent messages (last 100)
-            redisTemplate.opsForList().trim(streamKey, -100, -1);
+    public int getChatEventsMaxLength() {
+        return chatEventsMaxLength;
+    }
 
-        } catch (Exception e) {
-            // Log error but don't fail the operation
-            System.err.println("Failed to publish chat message to stream: " + e.getMessage());
+    /**
+     * Stream entry fields for a chat message. Stream values are flat strings, so a
+     * missing token count is simply omitted.
+     */
+    public Map<String, String> buildChatMessageEntry(ChatMessage message) {
+        Map<String, String> messageData = new LinkedHashMap<>();
+        messageData.put("messageId", message.getMessageId());
+        messageData.put("sessionId", message.getSessionId());
+        messageData.put("role", message.getRole().name());
+        messageData.put("content", message.getContent());
+        messageData.put("timestamp", message.getTimestamp().toString());
+        if (message.getTokenCount() != null) {
+            messageData.put("tokenCount", message.getTokenCount().toString());
         }
+        return messageData;
     }
 
     public void publishSessionActivity(String sessionId, String userId, String activityType) {
@@ -56,10 +113,7 @@ public class RedisStreamService {
             activityData.put("activityType", activityType);
             activityData.put("timestamp", System.currentTimeMillis());
 
-            redisTemplate.opsForList().rightPush(SESSION_ACTIVITY_STREAM, activityData);
-
-            // Trim to keep only recent activities (last 1000)
-            redisTemplate.opsForList().trim(SESSION_ACTIVITY_STREAM, -1000, -1);
+            append(SESSION_ACTIVITY_STREAM, SESSION_ACTIVITY_MAX_LENGTH, activityData);
 
         } catch (Exception e) {
             System.err.println("Failed to publish session activity: " + e.getMessage());
@@ -76,10 +130,7 @@ public class RedisStreamService {
                 activityData.putAll(metadata);
             }
 
-            redisTemplate.opsForList().rightPush(USER_ACTIVITY_STREAM, activityData);
-
-            // Trim to keep only recent activities (last 500)
-            redisTemplate.opsForList().trim(USER_ACTIVITY_STREAM, -500, -1);
+            append(USER_ACTIVITY_STREAM, USER_ACTIVITY_MAX_LENGTH, activityData);
 
         } catch (Exception e) {
             System.err.println("Failed to publish user activity: " + e.getMessage());
@@ -96,43 +147,35 @@ public class RedisStreamService {
                 eventData.putAll(data);
             }
 
-            redisTemplate.opsForList().rightPush(SYSTEM_EVENTS_STREAM, eventData);
-
-            // Trim to keep only recent events (last 200)
-            redisTemplate.opsForList().trim(SYSTEM_EVENTS_STREAM, -200, -1);
+            append(SYSTEM_EVENTS_STREAM, SYSTEM_EVENTS_MAX_LENGTH, eventData);
 
         } catch (Exception e) {
             System.err.println("Failed to publish system event: " + e.getMessage());
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public List<Map<String, Object>> readChatMessages(String sessionId, String fromId, int count) {
+    /**
+     * Move a chat event that keeps failing out of the shared stream's pending list
+     */
+    public void publishDeadLetter(Map<String, Object> event, String reason) {
         try {
-            String streamKey = CHAT_STREAM_PREFIX + sessionId;
-
-            List<Object> messages = redisTemplate.opsForList().range(streamKey, -count, -1);
-            if (messages == null) {
-                return new ArrayList<>();
-            }
-
-            return messages.stream()
-                    .map(obj -> {
-                        if (obj instanceof Map) {
-                            Map<String, Object> data = new HashMap<>((Map<String, Object>) obj);
-                            data.put("streamId", UUID.randomUUID().toString());
-                            return data;
-                        }
-                        return new HashMap<String, Object>();
-                    })
-                    .collect(Collectors.toList());
-
+            Map<String, Object> deadLetter = new HashMap<>(event);
+            deadLetter.put("originalStreamId", deadLetter.remove(STREAM_ID_FIELD));
+            deadLetter.put("reason", reason);
+            append(CHAT_EVENTS_DEAD_LETTER_STREAM, DEAD_LETTER_MAX_LENGTH, deadLetter);
         } catch (Exception e) {
-            System.err.println("Failed to read chat messages from stream: " + e.getMessage());
-            return new ArrayList<>();
+            System.err.println("Failed to publish dead letter: " + e.getMessage());
         }
     }
 
+    /**
+     * Read chat messages for a session. Without fromId the latest count entries are returned;
+     * with fromId only entries after that stream ID are read.
+     */
+    public List<Map<String, Object>> readChatMessages(String sessionId, String fromId, int count) {
+        return readFromStream(getChatStreamKey(sessionId), fromId, count);
+    }
+
     public List<Map<String, Object>> readSessionActivity(String fromId, int count) {
         return readFromStream(SESSION_ACTIVITY_STREAM, fromId, count);
     }
@@ -145,23 +188,29 @@ public class RedisStreamService {
         return readFromStream(SYSTEM_EVENTS_STREAM, fromId, count);
     }
 
-    @SuppressWarnings("unchecked")
     private List<Map<String, Object>> readFromStream(String streamKey, String fromId, int count) {
         try {
-            List<Object> events = redisTemplate.opsForList().range(streamKey, -count, -1);
-            if (events == null) {
+            List<MapRecord<String, Object, Object>> records = circuitBreaker.execute(Operation.STREAM, () -> {
+                StreamOperations<String, Object, Object> ops = stringRedisTemplate.opsForStream();
+                if (fromId == null || fromId.isBlank()) {
+                    // XREVRANGE + - COUNT n, returned oldest first
+                    List<MapRecord<String, Object, Object>> latest =
+                        ops.reverseRange(streamKey, Range.unbounded(), Limit.limit().count(count));
+                    List<MapRecord<String, Object, Object>> oldestFirst =
+                        latest != null ? new ArrayList<>(latest) : new ArrayList<>();
+                    Collections.reverse(oldestFirst);
+                    return oldestFirst;
+                }
+                // XREAD COUNT n STREAMS key fromId returns only entries after fromId
+                return ops.read(StreamReadOptions.empty().count(count),
+                    StreamOffset.create(streamKey, ReadOffset.from(fromId)));
+            });
+
+            if (records == null) {
                 return new ArrayList<>();
             }
-
-            return events.stream()
-                    .map(obj -> {
-                        if (obj instanceof Map) {
-                            Map<String, Object> data = new HashMap<>((Map<String, Object>) obj);
-                            data.put("streamId", UUID.randomUUID().toString());
-                            return data;
-                        }
-                        return new HashMap<String, Object>();
-                    })
+            return records.stream()
+                    .map(this::toEntry)
                     .collect(Collectors.toList());
 
         } catch (Exception e) {
@@ -170,15 +219,92 @@ public class RedisStreamService {
         }
     }
 
-    public Map<String, Long> getStreamInfo(String streamKey) {
+    // Consumer groups
+
+    /**
+     * Create the consumer group at the start of the stream, creating the stream if needed.
+     * Returns true if the group exists afterwards.
+     */
+    public boolean ensureConsumerGroup(String streamKey, String group) {
         try {
-            Map<String, Long> streamInfo = new HashMap<>();
-            Long length = redisTemplate.opsForList().size(streamKey);
-            streamInfo.put("length", length != null ? length : 0L);
-            streamInfo.put("radixTreeKeys", 0L);
-            streamInfo.put("radixTreeNodes", 0L);
-            streamInfo.put("groups", 0L);
-            streamInfo.put("lastGeneratedId", System.currentTimeMillis());
+            circuitBreaker.execute(Operation.STREAM, () -> stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                connection.streamCommands().xGroupCreate(
+                    streamKey.getBytes(StandardCharsets.UTF_8), group, ReadOffset.from("0"), true)));
+            return true;
+        } catch (Exception e) {
+            if (isBusyGroup(e)) {
+                return true;
+            }
+            System.err.println("Failed to create consumer group " + group + " on " + streamKey + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * XREADGROUP entries never delivered to any consumer of the group. Entries stay
+     * pending until acknowledged.
+     */
+    public List<Map<String, Object>> readGroup(String streamKey, String group, String consumer, int count) {
+        List<MapRecord<String, Object, Object>> records = circuitBreaker.execute(Operation.STREAM,
+            () -> stringRedisTemplate.opsForStream().read(
+                Consumer.from(group, consumer),
+                StreamReadOptions.empty().count(count),
+                StreamOffset.create(streamKey, ReadOffset.lastConsumed())));
+
+        if (records == null) {
+            return new ArrayList<>();
+        }
+        return records.stream()
+                .map(this::toEntry)
+                .collect(Collectors.toList());
+    }
+
+    public long acknowledge(String streamKey, String group, Collection<String> streamIds) {
+        if (streamIds.isEmpty()) {
+            return 0;
+        }
+        Long acknowledged = circuitBreaker.execute(Operation.STREAM, () -> stringRedisTemplate.opsForStream()
+            .acknowledge(streamKey, group, streamIds.toArray(new String[0])));
+        return acknowledged != null ? acknowledged : 0;
+    }
+
+    /**
+     * Claim up to count pending entries that have been idle for at least minIdle, e.g. because
+     * the consumer that read them crashed, wherever they are in the pending entries list.
+     * Each entry carries its deliveryCount.
+     */
+    public List<Map<String, Object>> claimPending(String streamKey, String group, String consumer,
+                                                  Duration minIdle, int count) {
+        return circuitBreaker.execute(Operation.STREAM,
+            () -> claimIdleEntries(streamKey, group, consumer, minIdle, count));
+    }
+
+    public Map<String, Object> getPendingSummary(String streamKey, String group) {
+        Map<String, Object> summary = new HashMap<>();
+        try {
+            PendingMessagesSummary pending = circuitBreaker.execute(Operation.STREAM,
+                () -> stringRedisTemplate.opsForStream().pending(streamKey, group));
+            summary.put("pending", pending != null ? pending.getTotalPendingMessages() : 0L);
+            summary.put("pendingPerConsumer",
+                pending != null ? pending.getPendingMessagesPerConsumer() : Collections.emptyMap());
+        } catch (Exception e) {
+            summary.put("error", e.getMessage());
+        }
+        return summary;
+    }
+
+    public Map<String, Object> getStreamInfo(String streamKey) {
+        try {
+            StreamInfo.XInfoStream info = circuitBreaker.execute(Operation.STREAM,
+                () -> stringRedisTemplate.opsForStream().info(streamKey));
+            Map<String, Object> streamInfo = new HashMap<>();
+            streamInfo.put("length", info.streamLength());
+            streamInfo.put("radixTreeKeys", info.radixTreeKeySize());
+            streamInfo.put("radixTreeNodes", info.radixTreeNodesSize());
+            streamInfo.put("groups", info.groupCount());
+            streamInfo.put("lastGeneratedId", info.lastGeneratedId());
+            streamInfo.put("firstEntryId", info.firstEntryId());
+            streamInfo.put("lastEntryId", info.lastEntryId());
             return streamInfo;
         } catch (Exception e) {
             System.err.println("Failed to get stream info for " + streamKey + ": " + e.getMessage());
@@ -188,31 +314,32 @@ public class RedisStreamService {
 
     public List<String> getAllChatStreams() {
         try {
-            Set<String> keys = redisTemplate.keys(CHAT_STREAM_PREFIX + "*");
-            return keys != null ? new ArrayList<>(keys) : new ArrayList<>();
+            return circuitBreaker.execute(Operation.MAINTENANCE, () -> keyScanner.collect(CHAT_STREAM_PREFIX + "*"));
         } catch (Exception e) {
             System.err.println("Failed to get chat streams: " + e.getMessage());
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Trim entries older than maxAge from the chat and activity streams. The shared chat
+     * events stream is bounded by MAXLEN only so that unacknowledged entries survive.
+     */
     public void cleanupOldStreams(Duration maxAge) {
+        long minTimestamp = System.currentTimeMillis() - maxAge.toMillis();
         try {
-            // Clean up chat streams by deleting old ones
-            List<String> chatStreams = getAllChatStreams();
-            for (String streamKey : chatStreams) {
-                try {
-                    // Simple cleanup: trim to last 50 items
-                    redisTemplate.opsForList().trim(streamKey, -50, -1);
-                } catch (Exception e) {
-                    System.err.println("Failed to cleanup stream " + streamKey + ": " + e.getMessage());
-                }
-            }
-
-            // Clean up activity streams
-            redisTemplate.opsForList().trim(SESSION_ACTIVITY_STREAM, -500, -1);
-            redisTemplate.opsForList().trim(USER_ACTIVITY_STREAM, -250, -1);
-            redisTemplate.opsForList().trim(SYSTEM_EVENTS_STREAM, -100, -1);
+            circuitBreaker.run(Operation.MAINTENANCE, () -> {
+                keyScanner.scan(CHAT_STREAM_PREFIX + "*", 0, batch -> {
+                    try {
+                        redisScriptService.trimStreamsBefore(batch, minTimestamp);
+                    } catch (Exception e) {
+                        System.err.println("Failed to cleanup chat streams: " + e.getMessage());
+                    }
+                });
+
+                redisScriptService.trimStreamsBefore(
+                    Arrays.asList(SESSION_ACTIVITY_STREAM, USER_ACTIVITY_STREAM, SYSTEM_EVENTS_STREAM), minTimestamp);
+            });
 
         } catch (Exception e) {
             System.err.println("Failed to cleanup old streams: " + e.getMessage());
@@ -221,12 +348,89 @@ public class RedisStreamService {
 
     public void deleteStream(String streamKey) {
         try {
-            redisTemplate.delete(streamKey);
+            circuitBreaker.run(Operation.STREAM, () -> stringRedisTemplate.delete(streamKey));
         } catch (Exception e) {
             System.err.println("Failed to delete stream " + streamKey + ": " + e.getMessage());
         }
     }
 
+    // Private helper methods
+
+    private void append(String streamKey, int maxLength, Map<String, Object> data) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        data.forEach((field, value) -> {
+            if (value != null) {
+                fields.put(field, value.toString());
+            }
+        });
+        circuitBreaker.run(Operation.STREAM,
+            () -> redisScriptService.appendToStreams(Collections.singletonMap(streamKey, maxLength), fields));
+    }
+
+    private List<Map<String, Object>> claimIdleEntries(String streamKey, String group, String consumer,
+                                                       Duration minIdle, int count) {
+        StreamOperations<String, Object, Object> ops = stringRedisTemplate.opsForStream();
+        Map<String, Long> deliveryCounts = new HashMap<>();
+        List<RecordId> idleIds = new ArrayList<>();
+
+        // XPENDING lists entries by ID rather than idle time, so page through the pending
+        // entries list until enough idle ones are found or it is exhausted
+        Range<String> range = Range.unbounded();
+        while (idleIds.size() < count) {
+            PendingMessages pending = ops.pending(streamKey, group, range, count);
+            if (pending == null || pending.isEmpty()) {
+                break;
+            }
+            for (PendingMessage message : pending) {
+                if (idleIds.size() < count && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                    idleIds.add(message.getId());
+                    deliveryCounts.put(message.getIdAsString(), message.getTotalDeliveryCount());
+                }
+            }
+            if (pending.size() < count) {
+                break;
+            }
+            range = Range.rightUnbounded(Range.Bound.inclusive(nextId(pending.get(pending.size() - 1).getId())));
+        }
+        if (idleIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<MapRecord<String, Object, Object>> claimed =
+            ops.claim(streamKey, group, consumer, minIdle, idleIds.toArray(new RecordId[0]));
+        if (claimed == null) {
+            return new ArrayList<>();
+        }
+        return claimed.stream()
+                .map(record -> {
+                    Map<String, Object> entry = toEntry(record);
+                    // XCLAIM itself counts as a delivery
+                    entry.put("deliveryCount", deliveryCounts.getOrDefault(record.getId().getValue(), 0L) + 1);
+                    return entry;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private static String nextId(RecordId id) {
+        return id.getTimestamp() + "-" + (id.getSequence() + 1);
+    }
+
+    private Map<String, Object> toEntry(MapRecord<String, Object, Object> record) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        record.getValue().forEach((field, value) -> data.put(field.toString(), value));
+        data.put(STREAM_ID_FIELD, record.getId().getValue());
+        return data;
+    }
+
+    private boolean isBusyGroup(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public static class StreamActivity {
         private final String streamId;
         private final Map<String, Object> data;
@@ -242,4 +446,4 @@ public class RedisStreamService {
         public Map<String, Object> getData() { return data; }
         public long getTimestamp() { return timestamp; }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package com.example.chatbotcache.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Explicitly scoped MULTI/EXEC and pipelines for the few multi-key writes that must apply
+ * together. The shared RedisTemplate is not transactional, so every other call borrows a
+ * pooled connection for a single command; only the commands issued inside these callbacks
+ * share one connection, and only for the duration of the callback.
+ */
+@Service
+public class RedisTransactionService {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private final AtomicLong transactions = new AtomicLong(0);
+    private final AtomicLong abortedTransactions = new AtomicLong(0);
+    private final AtomicLong pipelines = new AtomicLong(0);
+
+    /**
+     * Queue the commands issued by the callback between MULTI and EXEC on one connection
+     * and return their results. Commands inside the callback return null; use the results list.
+     */
+    public List<Object> executeInTransaction(Consumer<RedisOperations<String, Object>> commands) {
+        return executeInTransaction(redisTemplate, commands);
+    }
+
+    /**
+     * Same as {@link #executeInTransaction(Consumer)} for another template, e.g. a string template
+     */
+    public <K, V> List<Object> executeInTransaction(RedisTemplate<K, V> template,
+                                                    Consumer<RedisOperations<K, V>> commands) {
+        List<Object> results = template.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <SK, SV> List<Object> execute(RedisOperations<SK, SV> operations) throws DataAccessException {
+                RedisOperations<K, V> ops = (RedisOperations<K, V>) operations;
+                ops.multi();
+                try {
+                    commands.accept(ops);
+                } catch (RuntimeException e) {
+                    ops.discard();
+                    abortedTransactions.incrementAndGet();
+                    throw e;
+                }
+                return ops.exec();
+            }
+        });
+        transactions.incrementAndGet();
+        return results;
+    }
+
+    /**
+     * Send the commands issued by the callback in one round trip without MULTI/EXEC.
+     * Each command applies on its own; use this for batches that need speed, not atomicity.
+     */
+    public List<Object> executePipelined(Consumer<RedisOperations<String, Object>> commands) {
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+        pipelines.incrementAndGet();
+        return results;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("transactions", transactions.get());
+        stats.put("abortedTransactions", abortedTransactions.get());
+        stats.put("pipelines", pipelines.get());
+        return stats;
+    }
+}
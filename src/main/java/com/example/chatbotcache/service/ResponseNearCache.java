@@ -0,0 +1,202 @@
+package com.example.chatbotcache.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process L1 cache in front of the Redis response cache (L2).
+ * Caffeine bounds the L1 by size with W-TinyLFU eviction. Writes and clears on
+ * any node are broadcast on the cache events channel so peers drop stale entries.
+ * Hits are accumulated locally and drained by CacheService in batches.
+ */
+@Service
+public class ResponseNearCache {
+
+    private static final String INVALIDATE_EVENT = "L1_INVALIDATE";
+    private static final String CLEAR_EVENT = "L1_CLEAR";
+    private static final String METRIC_PREFIX = "chatbot.cache.response";
+
+    @Autowired
+    private RedisPubSubService pubSubService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cache.near.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.cache.near.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.cache.near.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, LongAdder> pendingHits = new ConcurrentHashMap<>();
+
+    private final AtomicLong l1Hits = new AtomicLong(0);
+    private final AtomicLong l1Misses = new AtomicLong(0);
+    private final AtomicLong l2Hits = new AtomicLong(0);
+    private final AtomicLong l2Misses = new AtomicLong(0);
+
+    private Cache<String, Map<String, Object>> cache;
+    private Counter l1HitCounter;
+    private Counter l1MissCounter;
+    private Counter l2HitCounter;
+    private Counter l2MissCounter;
+
+    @PostConstruct
+    public void initialize() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "response_l1");
+        l1HitCounter = lookupCounter("l1", "hit");
+        l1MissCounter = lookupCounter("l1", "miss");
+        l2HitCounter = lookupCounter("l2", "hit");
+        l2MissCounter = lookupCounter("l2", "miss");
+        Gauge.builder(METRIC_PREFIX + ".hit.ratio", this, ResponseNearCache::getL1HitRatio)
+            .tag("tier", "l1").register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + ".hit.ratio", this, ResponseNearCache::getL2HitRatio)
+            .tag("tier", "l2").register(meterRegistry);
+
+        pubSubService.subscribe(RedisPubSubService.CACHE_EVENTS_CHANNEL, this::onCacheEvent);
+    }
+
+    /**
+     * Look up an entry in L1, recording the L1 hit or miss
+     */
+    public Map<String, Object> get(String cacheKey) {
+        Map<String, Object> value = enabled ? cache.getIfPresent(cacheKey) : null;
+        if (value != null) {
+            l1Hits.incrementAndGet();
+            l1HitCounter.increment();
+            recordHit(cacheKey);
+        } else {
+            l1Misses.incrementAndGet();
+            l1MissCounter.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Populate L1 after an L2 hit
+     */
+    public void putFromRemote(String cacheKey, Map<String, Object> value) {
+        l2Hits.incrementAndGet();
+        l2HitCounter.increment();
+        recordHit(cacheKey);
+        if (enabled) {
+            cache.put(cacheKey, Collections.unmodifiableMap(value));
+        }
+    }
+
+    public void recordRemoteMiss() {
+        l2Misses.incrementAndGet();
+        l2MissCounter.increment();
+    }
+
+    /**
+     * Store a freshly written entry locally and tell peers to drop their copy
+     */
+    public void putAndInvalidatePeers(String cacheKey, Map<String, Object> value) {
+        if (!enabled) {
+            return;
+        }
+        cache.put(cacheKey, Collections.unmodifiableMap(value));
+        publish(INVALIDATE_EVENT, cacheKey);
+    }
+
+    /**
+     * Drop every L1 entry on all nodes
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        publish(CLEAR_EVENT, null);
+    }
+
+    /**
+     * Remove and return the hit counts accumulated since the last drain
+     */
+    public Map<String, Long> drainPendingHits() {
+        Map<String, Long> drained = new HashMap<>();
+        for (String cacheKey : pendingHits.keySet()) {
+            LongAdder adder = pendingHits.remove(cacheKey);
+            if (adder != null) {
+                drained.put(cacheKey, adder.sum());
+            }
+        }
+        return drained;
+    }
+
+    public double getL1HitRatio() {
+        return ratio(l1Hits.get(), l1Misses.get());
+    }
+
+    public double getL2HitRatio() {
+        return ratio(l2Hits.get(), l2Misses.get());
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    // Private helper methods
+
+    private void recordHit(String cacheKey) {
+        pendingHits.computeIfAbsent(cacheKey, key -> new LongAdder()).increment();
+    }
+
+    private void onCacheEvent(String channel, Map<String, Object> message) {
+        Object eventType = message.get("eventType");
+        if (nodeId.equals(message.get("origin"))) {
+            return;
+        }
+        if (INVALIDATE_EVENT.equals(eventType)) {
+            Object key = message.get("key");
+            if (key != null) {
+                cache.invalidate(key.toString());
+            }
+        } else if (CLEAR_EVENT.equals(eventType)) {
+            cache.invalidateAll();
+        }
+    }
+
+    private void publish(String eventType, String cacheKey) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("origin", nodeId);
+        pubSubService.publishCacheEvent(eventType, cacheKey, null, metadata);
+    }
+
+    private Counter lookupCounter(String tier, String result) {
+        return Counter.builder(METRIC_PREFIX + ".lookups")
+            .tag("tier", tier)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.service.RedisFailoverRouter.PendingWrite;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Session operations routed to Redis or to the in-memory store by RedisFailoverRouter
+ */
+@Service
+public class RoutingChatSessionService {
+
+    @Autowired
+    private RedisFailoverRouter router;
+
+    @Autowired
+    private ChatSessionService redisSessionService;
+
+    @Autowired
+    private FallbackChatSessionService memorySessionService;
+
+    public ChatSession createSession(String userId, String title) {
+        return router.write(null,
+            () -> redisSessionService.createSession(userId, title),
+            memorySessionService::store,
+            () -> memorySessionService.createSession(userId, title),
+            session -> PendingWrite.session(session.getSessionId()));
+    }
+
+    public ChatSession createSession(String userId) {
+        return createSession(userId, "New Chat Session");
+    }
+
+    public Optional<ChatSession> getSession(String sessionId) {
+        return router.read(
+            () -> {
+                Optional<ChatSession> session = redisSessionService.getSessionOptional(sessionId);
+                // Keep the standby copy warm for sessions that are in use
+                session.ifPresent(memorySessionService::store);
+                return session;
+            },
+            () -> memorySessionService.getSession(sessionId));
+    }
+
+    public ChatSession getSessionOrThrow(String sessionId) {
+        return getSession(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Session not found: " + sessionId));
+    }
+
+    public ChatSession updateLastActivity(String sessionId) {
+        return router.write(sessionId,
+            () -> redisSessionService.updateLastActivity(sessionId),
+            memorySessionService::store,
+            () -> {
+                // Skip the Redis activity tracking the fallback service would attempt
+                ChatSession session = memorySessionService.getSessionOrThrow(sessionId);
+                session.updateLastActivity();
+                return memorySessionService.store(session);
+            },
+            session -> PendingWrite.session(sessionId));
+    }
+
+    public boolean deleteSession(String sessionId) {
+        return router.write(sessionId,
+            () -> redisSessionService.deleteSession(sessionId),
+            deleted -> memorySessionService.deleteSession(sessionId),
+            () -> memorySessionService.deleteSession(sessionId),
+            deleted -> PendingWrite.sessionDelete(sessionId));
+    }
+
+    public List<ChatSession> getUserSessions(String userId) {
+        return router.read(
+            () -> redisSessionService.getUserSessions(userId),
+            () -> memorySessionService.getUserSessions(userId));
+    }
+
+    public List<ChatSession> getActiveUserSessions(String userId) {
+        return router.read(
+            () -> redisSessionService.getActiveUserSessions(userId),
+            () -> memorySessionService.getActiveUserSessions(userId));
+    }
+
+    public ChatSession deactivateSession(String sessionId) {
+        return router.write(sessionId,
+            () -> redisSessionService.deactivateSession(sessionId),
+            memorySessionService::store,
+            () -> {
+                ChatSession session = memorySessionService.getSessionOrThrow(sessionId);
+                session.setActive(false);
+                session.updateLastActivity();
+                return memorySessionService.store(session);
+            },
+            session -> PendingWrite.session(sessionId));
+    }
+
+    public ChatSession reactivateSession(String sessionId) {
+        return router.write(sessionId,
+            () -> redisSessionService.reactivateSession(sessionId),
+            memorySessionService::store,
+            () -> memorySessionService.reactivateSession(sessionId),
+            session -> PendingWrite.session(sessionId));
+    }
+
+    public ChatSession updateSessionTitle(String sessionId, String title) {
+        return router.write(sessionId,
+            () -> redisSessionService.updateSessionTitle(sessionId, title),
+            memorySessionService::store,
+            () -> memorySessionService.updateSessionTitle(sessionId, title),
+            session -> PendingWrite.session(sessionId));
+    }
+
+    public long countUserSessions(String userId) {
+        return router.read(
+            () -> redisSessionService.countUserSessions(userId),
+            () -> memorySessionService.countUserSessions(userId));
+    }
+
+    public long countActiveUserSessions(String userId) {
+        return router.read(
+            () -> redisSessionService.countActiveUserSessions(userId),
+            () -> memorySessionService.countActiveUserSessions(userId));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.service.RedisFailoverRouter.PendingWrite;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Message operations routed to Redis or to the in-memory store by RedisFailoverRouter
+ */
+@Service
+public class RoutingMessageService {
+
+    @Autowired
+    private RedisFailoverRouter router;
+
+    @Autowired
+    private MessageService redisMessageService;
+
+    @Autowired
+    private FallbackMessageService memoryMessageService;
+
+    public ChatMessage addMessage(String sessionId, MessageRole role, String content, Integer tokenCount) {
+        return router.write(sessionId,
+            () -> redisMessageService.addMessage(sessionId, role, content, tokenCount),
+            memoryMessageService::storeMessage,
+            () -> memoryMessageService.addMessage(sessionId, role, content, tokenCount),
+            PendingWrite::message);
+    }
+
+    public List<ChatMessage> getMessages(String sessionId, int page, int size) {
+        return router.read(
+            () -> redisMessageService.getMessages(sessionId, page, size),
+            () -> memoryMessageService.getMessages(sessionId, page, size));
+    }
+
+    public List<ChatMessage> getAllMessages(String sessionId) {
+        return router.read(
+            () -> redisMessageService.getAllMessages(sessionId),
+            () -> memoryMessageService.getAllMessages(sessionId));
+    }
+
+    public List<ChatMessage> getRecentMessages(String sessionId, int limit) {
+        return router.read(
+            () -> redisMessageService.getRecentMessages(sessionId, limit),
+            () -> memoryMessageService.getRecentMessages(sessionId, limit));
+    }
+
+    public long getMessageCount(String sessionId) {
+        return router.read(
+            () -> redisMessageService.getMessageCount(sessionId),
+            () -> memoryMessageService.getMessageCount(sessionId));
+    }
+
+    public List<ChatMessage> getMessagesByRole(String sessionId, MessageRole role) {
+        return router.read(
+            () -> redisMessageService.getMessagesByRole(sessionId, role),
+            () -> memoryMessageService.getMessagesByRole(sessionId, role));
+    }
+
+    public List<ChatMessage> getMessagesAfter(String sessionId, LocalDateTime after) {
+        return router.read(
+            () -> redisMessageService.getMessagesAfter(sessionId, after),
+            () -> memoryMessageService.getMessagesAfter(sessionId, after));
+    }
+
+    public List<ChatMessage> searchMessages(String sessionId, String searchTerm) {
+        return router.read(
+            () -> redisMessageService.searchMessages(sessionId, searchTerm),
+            () -> memoryMessageService.searchMessages(sessionId, searchTerm));
+    }
+
+    public Optional<ChatMessage> getLastMessage(String sessionId) {
+        return router.read(
+            () -> redisMessageService.getLastMessage(sessionId),
+            () -> memoryMessageService.getLastMessage(sessionId));
+    }
+
+    public long getTotalTokenCount(String sessionId) {
+        return router.read(
+            () -> (long) redisMessageService.getTotalTokenCount(sessionId),
+            () -> memoryMessageService.getTotalTokenCount(sessionId));
+    }
+
+    public int deleteSessionMessages(String sessionId) {
+        return router.write(sessionId,
+            () -> {
+                int count = (int) redisMessageService.getMessageCount(sessionId);
+                redisMessageService.deleteSessionMessages(sessionId);
+                return count;
+            },
+            count -> memoryMessageService.deleteSessionMessages(sessionId),
+            () -> memoryMessageService.deleteSessionMessages(sessionId),
+            count -> PendingWrite.sessionMessagesDelete(sessionId));
+    }
+
+    public int cleanupOldMessages(String sessionId) {
+        // The in-memory ring buffer is already bounded, so there is nothing to journal
+        return router.read(
+            () -> redisMessageService.cleanupOldMessages(sessionId),
+            () -> memoryMessageService.cleanupOldMessages(sessionId));
+    }
+}
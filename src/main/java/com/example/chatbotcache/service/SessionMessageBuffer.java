@@ -0,0 +1,150 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity ring of the most recent messages of one session.
+ * Appends and evictions are O(1) under the buffer's own lock, so writers only contend
+ * with other writers of the same session. Reads never lock: they read the published
+ * sequence and copy the slots behind it, stopping at the first slot a concurrent append
+ * has already reused, so every read sees a contiguous, ordered suffix of the history.
+ */
+public final class SessionMessageBuffer {
+
+    private final int capacity;
+    private final AtomicReferenceArray<Slot> slots;
+    private final Object writeLock = new Object();
+
+    // Sequence number the next append will use; written only under writeLock
+    private volatile long published = 0;
+    private volatile int size = 0;
+    // Odd while a remove is shifting slots; readers retry when it changes under them
+    private volatile long removals = 0;
+
+    public SessionMessageBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Append a message, returning the message evicted to make room for it, or null
+     */
+    public ChatMessage append(ChatMessage message) {
+        synchronized (writeLock) {
+            long sequence = published;
+            int index = index(sequence);
+            Slot previous = slots.get(index);
+            slots.set(index, new Slot(sequence, message));
+
+            ChatMessage evicted = previous != null ? previous.message : null;
+            if (evicted == null) {
+                size++;
+            }
+            published = sequence + 1;
+            return evicted;
+        }
+    }
+
+    /**
+     * Remove a message by ID, shifting the newer messages down one slot so the next append
+     * fills the gap instead of evicting
+     */
+    public ChatMessage remove(String messageId) {
+        synchronized (writeLock) {
+            long end = published;
+            for (long sequence = end - size; sequence < end; sequence++) {
+                Slot slot = slots.get(index(sequence));
+                if (messageId.equals(slot.message.getMessageId())) {
+                    removals++;
+                    for (long next = sequence + 1; next < end; next++) {
+                        slots.set(index(next - 1), new Slot(next - 1, slots.get(index(next)).message));
+                    }
+                    slots.set(index(end - 1), null);
+                    published = end - 1;
+                    size--;
+                    removals++;
+                    return slot.message;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * All buffered messages, oldest first
+     */
+    public List<ChatMessage> snapshot() {
+        return latest(capacity);
+    }
+
+    /**
+     * Up to limit of the newest messages, oldest first
+     */
+    public List<ChatMessage> latest(int limit) {
+        while (true) {
+            long version = removals;
+            if ((version & 1) == 0) {
+                List<ChatMessage> messages = read(limit);
+                if (removals == version) {
+                    return messages;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public ChatMessage last() {
+        List<ChatMessage> latest = latest(1);
+        return latest.isEmpty() ? null : latest.get(0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Private helper methods
+
+    private List<ChatMessage> read(int limit) {
+        long end = published;
+        long start = Math.max(0, end - capacity);
+        List<ChatMessage> messages = new ArrayList<>(Math.max(0, Math.min(limit, capacity)));
+
+        for (long sequence = end - 1; sequence >= start && messages.size() < limit; sequence--) {
+            Slot slot = slots.get(index(sequence));
+            if (slot == null || slot.sequence != sequence) {
+                // Reused by a newer append, and so is every older slot
+                break;
+            }
+            messages.add(slot.message);
+        }
+
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private static final class Slot {
+        private final long sequence;
+        private final ChatMessage message;
+
+        private Slot(long sequence, ChatMessage message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
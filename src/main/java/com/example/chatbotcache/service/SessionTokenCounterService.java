@@ -0,0 +1,273 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.repository.PipelinedHashReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a running per-session token total (with a per-role breakdown) in a Redis hash
+ * so that token totals can be read in O(1) instead of scanning every message.
+ */
+@Service
+public class SessionTokenCounterService {
+
+    private static final String TOKEN_COUNTER_PREFIX = "tokens:session:";
+    private static final String MESSAGE_LIST_KEY_PREFIX = "messages:";
+    private static final String MESSAGE_KEYSPACE = "chat_message";
+    private static final String RECONCILE_QUEUE_KEY = "tokens:reconcile";
+    private static final String TOTAL_FIELD = "total";
+    private static final String MESSAGES_FIELD = "messages";
+    private static final String RECONCILED_AT_FIELD = "reconciledAt";
+    private static final Duration RECONCILE_INTERVAL = Duration.ofHours(1);
+    private static final int RECONCILE_BATCH_SIZE = 100;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisScriptService redisScriptService;
+
+    @Autowired
+    private PipelinedHashReader hashReader;
+
+    /**
+     * Redis key holding the counters for a session
+     */
+    public String getCounterKey(String sessionId) {
+        return TOKEN_COUNTER_PREFIX + sessionId;
+    }
+
+    /**
+     * Initialize empty counters for a new session
+     */
+    public void initialize(String sessionId) {
+        rebuild(sessionId, List.of());
+    }
+
+    /**
+     * Add a newly stored message to the running totals
+     */
+    public void recordMessage(String sessionId, MessageRole role, Integer tokenCount) {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        deltas.put(MESSAGES_FIELD, 1L);
+        if (tokenCount != null && tokenCount > 0) {
+            deltas.put(TOTAL_FIELD, tokenCount.longValue());
+            deltas.put(role.name(), tokenCount.longValue());
+        }
+        applyDeltas(sessionId, deltas);
+    }
+
+    /**
+     * Subtract deleted messages from the running totals
+     */
+    public void removeMessages(String sessionId, List<ChatMessage> messages) {
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        deltas.put(MESSAGES_FIELD, (long) -messages.size());
+        for (ChatMessage message : messages) {
+            int tokens = tokensOf(message);
+            if (tokens > 0) {
+                deltas.merge(TOTAL_FIELD, (long) -tokens, Long::sum);
+                deltas.merge(message.getRole().name(), (long) -tokens, Long::sum);
+            }
+        }
+        applyDeltas(sessionId, deltas);
+    }
+
+    /**
+     * Replace the totals with the sum of the given messages
+     */
+    public void rebuild(String sessionId, List<ChatMessage> messages) {
+        try {
+            redisScriptService.updateTokenCounter(getCounterKey(sessionId), true,
+                    System.currentTimeMillis(), summarize(messages));
+        } catch (Exception e) {
+            System.err.println("Failed to rebuild token counters for session " + sessionId + ": " + e.getMessage());
+            clear(sessionId);
+        }
+    }
+
+    /**
+     * Remove the counters for a session
+     */
+    public void clear(String sessionId) {
+        try {
+            redisTemplate.delete(getCounterKey(sessionId));
+        } catch (Exception e) {
+            System.err.println("Failed to clear token counters for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the running totals, recomputing them from the session's message list if they are missing
+     */
+    public SessionTokenTotals getTotals(String sessionId) {
+        Map<Object, Object> raw = redisTemplate.opsForHash().entries(getCounterKey(sessionId));
+
+        if (raw == null || raw.isEmpty()) {
+            return reconcile(sessionId);
+        }
+
+        long reconciledAt = toLong(raw.get(RECONCILED_AT_FIELD));
+        if (System.currentTimeMillis() - reconciledAt > RECONCILE_INTERVAL.toMillis()) {
+            markForReconciliation(sessionId);
+        }
+
+        Map<String, Long> fields = new LinkedHashMap<>();
+        raw.forEach((field, value) -> fields.put(field.toString(), toLong(value)));
+        return toTotals(fields);
+    }
+
+    /**
+     * Get the running token total for a session
+     */
+    public long getTotalTokens(String sessionId) {
+        return getTotals(sessionId).getTotalTokens();
+    }
+
+    /**
+     * Queue a session for recomputation by the reconciliation job
+     */
+    public void markForReconciliation(String sessionId) {
+        try {
+            redisTemplate.opsForSet().add(RECONCILE_QUEUE_KEY, sessionId);
+        } catch (Exception e) {
+            System.err.println("Failed to queue token reconciliation for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recompute totals for sessions whose counters may have drifted
+     */
+    @Scheduled(fixedDelay = 60000)
+    public int reconcileQueuedSessions() {
+        int reconciled = 0;
+        try {
+            List<Object> sessionIds = redisTemplate.opsForSet().pop(RECONCILE_QUEUE_KEY, RECONCILE_BATCH_SIZE);
+            if (sessionIds == null) {
+                return 0;
+            }
+
+            for (Object sessionId : sessionIds) {
+                reconcile(sessionId.toString());
+                reconciled++;
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to reconcile token counters: " + e.getMessage());
+        }
+        return reconciled;
+    }
+
+    // Private helper methods
+
+    /**
+     * Replace the totals with the sum of the messages in the session's list, the same set the
+     * message count is read from. Reading the list, loading its messages and writing the totals
+     * are separate commands, so a message appended or removed in between is counted by its own
+     * delta and again or never by the rebuild. The list's length and last entry are compared
+     * afterwards, and if they changed the session is queued to be recomputed again.
+     */
+    private SessionTokenTotals reconcile(String sessionId) {
+        String listKey = MESSAGE_LIST_KEY_PREFIX + sessionId;
+        List<String> messageIds = toIds(redisTemplate.opsForList().range(listKey, 0, -1));
+        List<ChatMessage> messages = messageIds.isEmpty()
+            ? List.of()
+            : hashReader.readAll(MESSAGE_KEYSPACE, messageIds, ChatMessage.class);
+        rebuild(sessionId, messages);
+
+        Long length = redisTemplate.opsForList().size(listKey);
+        Object lastId = redisTemplate.opsForList().index(listKey, -1);
+        String readLastId = messageIds.isEmpty() ? null : messageIds.get(messageIds.size() - 1);
+        if (length == null || length != messageIds.size()
+                || !Objects.equals(lastId != null ? lastId.toString() : null, readLastId)) {
+            markForReconciliation(sessionId);
+        }
+        return toTotals(summarize(messages));
+    }
+
+    private List<String> toIds(List<Object> rawIds) {
+        if (rawIds == null || rawIds.isEmpty()) {
+            return List.of();
+        }
+        return rawIds.stream()
+                .map(Object::toString)
+                .collect(Collectors.toList());
+    }
+
+    private void applyDeltas(String sessionId, Map<String, Long> deltas) {
+        try {
+            redisScriptService.updateTokenCounter(getCounterKey(sessionId), false, 0L, deltas);
+        } catch (Exception e) {
+            System.err.println("Failed to update token counters for session " + sessionId + ": " + e.getMessage());
+            markForReconciliation(sessionId);
+        }
+    }
+
+    private Map<String, Long> summarize(List<ChatMessage> messages) {
+        Map<String, Long> fields = new LinkedHashMap<>();
+        fields.put(TOTAL_FIELD, 0L);
+        fields.put(MESSAGES_FIELD, (long) messages.size());
+        for (ChatMessage message : messages) {
+            int tokens = tokensOf(message);
+            fields.merge(TOTAL_FIELD, (long) tokens, Long::sum);
+            if (message.getRole() != null && tokens > 0) {
+                fields.merge(message.getRole().name(), (long) tokens, Long::sum);
+            }
+        }
+        return fields;
+    }
+
+    private SessionTokenTotals toTotals(Map<String, Long> fields) {
+        Map<MessageRole, Long> roleTokens = new EnumMap<>(MessageRole.class);
+        for (MessageRole role : MessageRole.values()) {
+            roleTokens.put(role, fields.getOrDefault(role.name(), 0L));
+        }
+        return new SessionTokenTotals(
+            fields.getOrDefault(TOTAL_FIELD, 0L),
+            fields.getOrDefault(MESSAGES_FIELD, 0L),
+            roleTokens
+        );
+    }
+
+    private int tokensOf(ChatMessage message) {
+        return message.getTokenCount() != null ? message.getTokenCount() : 0;
+    }
+
+    private long toLong(Object value) {
+        if (value == null) return 0L;
+        if (value instanceof Number) return ((Number) value).longValue();
+        return Long.parseLong(value.toString());
+    }
+
+    public static class SessionTokenTotals {
+        private final long totalTokens;
+        private final long messageCount;
+        private final Map<MessageRole, Long> roleTokens;
+
+        public SessionTokenTotals(long totalTokens, long messageCount, Map<MessageRole, Long> roleTokens) {
+            this.totalTokens = totalTokens;
+            this.messageCount = messageCount;
+            this.roleTokens = roleTokens;
+        }
+
+        public long getTotalTokens() { return totalTokens; }
+        public long getMessageCount() { return messageCount; }
+        public Map<MessageRole, Long> getRoleTokens() { return roleTokens; }
+        public long getTokensForRole(MessageRole role) { return roleTokens.getOrDefault(role, 0L); }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.chatbotcache.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+/**
+ * 64-bit SimHash fingerprints for near-duplicate detection. Inputs whose token
+ * sets overlap heavily produce fingerprints with a small Hamming distance.
+ */
+public final class SimHash {
+
+    public static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    public static long fingerprint(Collection<String> tokens) {
+        int[] weights = new int[64];
+        for (String token : tokens) {
+            long hash = hash64(token);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1L) == 1L ? 1 : -1;
+            }
+        }
+
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Value of one 16-bit band. Two fingerprints within distance BANDS - 1
+     * are guaranteed to agree on at least one band.
+     */
+    public static int band(long fingerprint, int index) {
+        return (int) ((fingerprint >>> (index * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+    }
+
+    private static long hash64(String token) {
+        long hash = FNV_OFFSET;
+        for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        // Finalize with a splitmix64 step so short tokens spread across all bits
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
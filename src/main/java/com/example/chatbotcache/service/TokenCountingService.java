@@ -1,46 +1,57 @@
 package com.example.chatbotcache.service;
 
 import com.example.chatbotcache.model.ChatMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 @Service
 public class TokenCountingService {
 
-    private static final Pattern WORD_PATTERN = Pattern.compile("\\b\\w+\\b");
-    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[.,!?;:\"'()\\[\\]{}]");
-    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+    private static final int ROLE_TOKEN_COUNT = 3;
+    private static final long MAX_MEMOIZED_MESSAGES = 100_000;
 
-    private static final double AVERAGE_TOKENS_PER_WORD = 1.3;
-    private static final int PUNCTUATION_TOKEN_COUNT = 1;
+    // Weak keys compare by identity, so each message instance keeps its own estimate
+    private final Cache<ChatMessage, MemoizedEstimate> messageEstimates = Caffeine.newBuilder()
+        .weakKeys()
+        .maximumSize(MAX_MEMOIZED_MESSAGES)
+        .build();
 
-    public int estimateTokenCount(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return 0;
-        }
-
-        text = text.trim();
+    @Autowired
+    private Tokenizer tokenizer;
 
-        long wordCount = WORD_PATTERN.matcher(text).results().count();
-        long punctuationCount = PUNCTUATION_PATTERN.matcher(text).results().count();
-
-        int estimatedTokens = (int) Math.ceil(wordCount * AVERAGE_TOKENS_PER_WORD) +
-                             (int) punctuationCount * PUNCTUATION_TOKEN_COUNT;
-
-        return Math.max(estimatedTokens, 1);
+    /**
+     * Token count of the text with the configured tokenizer
+     */
+    public int estimateTokenCount(String text) {
+        return text == null ? 0 : tokenizer.countTokens(text);
     }
 
+    /**
+     * Estimate for a message's content plus its role. The estimate is remembered for the
+     * message instance until its content changes.
+     */
     public int estimateTokenCount(ChatMessage message) {
         if (message == null || message.getContent() == null) {
             return 0;
         }
 
-        int contentTokens = estimateTokenCount(message.getContent());
-        int roleTokens = 3;
+        String content = message.getContent();
+        MemoizedEstimate memoized = messageEstimates.getIfPresent(message);
+        if (memoized != null && memoized.content.equals(content)) {
+            return memoized.tokens;
+        }
 
-        return contentTokens + roleTokens;
+        int tokens = estimateTokenCount(content) + ROLE_TOKEN_COUNT;
+        messageEstimates.put(message, new MemoizedEstimate(content, tokens));
+        return tokens;
     }
 
     public int estimateTokenCount(List<ChatMessage> messages) {
@@ -48,9 +59,11 @@ public class TokenCountingService {
             return 0;
         }
 
-        return messages.stream()
-                .mapToInt(this::estimateTokenCount)
-                .sum();
+        int totalTokens = 0;
+        for (ChatMessage message : messages) {
+            totalTokens += estimateTokenCount(message);
+        }
+        return totalTokens;
     }
 
     public TokenSummary analyzeSession(List<ChatMessage> messages) {
@@ -98,6 +111,48 @@ public class TokenCountingService {
         return totalTokens - targetTokens;
     }
 
+    /**
+     * The most recent messages, in their original order, whose combined token count fits
+     * the context window. Messages are dropped oldest first.
+     */
+    public List<ChatMessage> fitToContextWindow(List<ChatMessage> messages, int contextWindowSize) {
+        if (messages == null || messages.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        int totalTokens = 0;
+        int first = messages.size();
+        while (first > 0) {
+            int tokens = estimateTokenCount(messages.get(first - 1));
+            if (totalTokens + tokens > contextWindowSize) {
+                break;
+            }
+            totalTokens += tokens;
+            first--;
+        }
+        return new ArrayList<>(messages.subList(first, messages.size()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tokenizer", tokenizer.getName());
+        if (tokenizer instanceof BpeTokenizer bpeTokenizer) {
+            stats.put("vocabularySize", bpeTokenizer.getVocabulary().size());
+        }
+        stats.put("memoizedMessages", messageEstimates.estimatedSize());
+        return stats;
+    }
+
+    private static final class MemoizedEstimate {
+        private final String content;
+        private final int tokens;
+
+        private MemoizedEstimate(String content, int tokens) {
+            this.content = content;
+            this.tokens = tokens;
+        }
+    }
+
     public static class TokenSummary {
         private final int totalTokens;
         private final int userTokens;
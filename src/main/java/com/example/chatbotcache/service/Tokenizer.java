@@ -0,0 +1,18 @@
+package com.example.chatbotcache.service;
+
+/**
+ * Counts model tokens in text. All token budgeting goes through the one Tokenizer bean,
+ * chosen with app.tokenizer.engine; implementations must be thread-safe.
+ */
+public interface Tokenizer {
+
+    /**
+     * Engine name reported in stats, e.g. "bpe:cl100k_base"
+     */
+    String getName();
+
+    /**
+     * Number of tokens the text encodes to; 0 for null or empty text
+     */
+    int countTokens(String text);
+}
@@ -2,6 +2,7 @@ package com.example.chatbotcache.service;
 
 import com.example.chatbotcache.model.ChatSession;
 import com.example.chatbotcache.repository.ChatSessionRepository;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.RedisTemplate;
@@ -21,6 +22,12 @@ public class UserSessionTrackingService {
     @Autowired
     private ChatSessionRepository chatSessionRepository;
 
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private RedisTransactionService transactionService;
+
     private static final String USER_SESSIONS_PREFIX = "user:sessions:";
     private static final String ACTIVE_SESSIONS_KEY = "sessions:active";
     private static final String SESSION_ACTIVITY_PREFIX = "session:activity:";
@@ -30,11 +37,12 @@ public class UserSessionTrackingService {
     public void trackUserSession(String userId, String sessionId) {
         String userSessionsKey = USER_SESSIONS_PREFIX + userId;
 
-        redisTemplate.opsForSet().add(userSessionsKey, sessionId);
-        redisTemplate.expire(userSessionsKey, java.time.Duration.ofDays(30));
-
         long timestamp = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
-        redisTemplate.opsForZSet().add(ACTIVE_SESSIONS_KEY, sessionId, timestamp);
+        circuitBreaker.run(Operation.SESSION, () -> transactionService.executeInTransaction(ops -> {
+            ops.opsForSet().add(userSessionsKey, sessionId);
+            ops.expire(userSessionsKey, java.time.Duration.ofDays(30));
+            ops.opsForZSet().add(ACTIVE_SESSIONS_KEY, sessionId, timestamp);
+        }));
 
         updateSessionActivity(sessionId);
 
@@ -44,16 +52,18 @@ public class UserSessionTrackingService {
     public void removeUserSession(String userId, String sessionId) {
         String userSessionsKey = USER_SESSIONS_PREFIX + userId;
 
-        redisTemplate.opsForSet().remove(userSessionsKey, sessionId);
-        redisTemplate.opsForZSet().remove(ACTIVE_SESSIONS_KEY, sessionId);
-
         String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-        redisTemplate.delete(activityKey);
+        circuitBreaker.run(Operation.SESSION, () -> transactionService.executeInTransaction(ops -> {
+            ops.opsForSet().remove(userSessionsKey, sessionId);
+            ops.opsForZSet().remove(ACTIVE_SESSIONS_KEY, sessionId);
+            ops.delete(activityKey);
+        }));
     }
 
     public Set<String> getUserSessions(String userId) {
         String userSessionsKey = USER_SESSIONS_PREFIX + userId;
-        Set<Object> sessions = redisTemplate.opsForSet().members(userSessionsKey);
+        Set<Object> sessions = circuitBreaker.execute(Operation.SESSION,
+                () -> redisTemplate.opsForSet().members(userSessionsKey));
 
         if (sessions == null) {
             return new HashSet<>();
@@ -97,35 +107,38 @@ public class UserSessionTrackingService {
 
     public void updateSessionActivity(String sessionId) {
         long timestamp = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
-        redisTemplate.opsForZSet().add(ACTIVE_SESSIONS_KEY, sessionId, timestamp);
-
         String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-        redisTemplate.opsForValue().set(activityKey, timestamp);
-        redisTemplate.expire(activityKey, java.time.Duration.ofHours(2));
+        circuitBreaker.run(Operation.SESSION, () -> transactionService.executeInTransaction(ops -> {
+            ops.opsForZSet().add(ACTIVE_SESSIONS_KEY, sessionId, timestamp);
+            ops.opsForValue().set(activityKey, timestamp, java.time.Duration.ofHours(2));
+        }));
     }
 
     public boolean isSessionActive(String sessionId) {
         LocalDateTime cutoff = LocalDateTime.now().minusMinutes(SESSION_ACTIVITY_WINDOW_MINUTES);
         long cutoffTimestamp = cutoff.toEpochSecond(ZoneOffset.UTC);
 
-        Double score = redisTemplate.opsForZSet().score(ACTIVE_SESSIONS_KEY, sessionId);
+        Double score = circuitBreaker.execute(Operation.SESSION,
+                () -> redisTemplate.opsForZSet().score(ACTIVE_SESSIONS_KEY, sessionId));
         return score != null && score >= cutoffTimestamp;
     }
 
     public LocalDateTime getLastSessionActivity(String sessionId) {
         String activityKey = SESSION_ACTIVITY_PREFIX + sessionId;
-        Object timestamp = redisTemplate.opsForValue().get(activityKey);
+        return circuitBreaker.execute(Operation.SESSION, () -> {
+            Object timestamp = redisTemplate.opsForValue().get(activityKey);
 
-        if (timestamp instanceof Number) {
-            return LocalDateTime.ofEpochSecond(((Number) timestamp).longValue(), 0, ZoneOffset.UTC);
-        }
+            if (timestamp instanceof Number) {
+                return LocalDateTime.ofEpochSecond(((Number) timestamp).longValue(), 0, ZoneOffset.UTC);
+            }
 
-        Double score = redisTemplate.opsForZSet().score(ACTIVE_SESSIONS_KEY, sessionId);
-        if (score != null) {
-            return LocalDateTime.ofEpochSecond(score.longValue(), 0, ZoneOffset.UTC);
-        }
+            Double score = redisTemplate.opsForZSet().score(ACTIVE_SESSIONS_KEY, sessionId);
+            if (score != null) {
+                return LocalDateTime.ofEpochSecond(score.longValue(), 0, ZoneOffset.UTC);
+            }
 
-        return LocalDateTime.now().minusHours(1);
+            return LocalDateTime.now().minusHours(1);
+        });
     }
 
     public void cleanupInactiveSessions(String userId) {
@@ -171,31 +184,33 @@ public class UserSessionTrackingService {
     }
 
     public SessionActivitySummary getSessionActivitySummary() {
-        long totalSessions = redisTemplate.opsForZSet().zCard(ACTIVE_SESSIONS_KEY);
-
         LocalDateTime now = LocalDateTime.now();
         long activeThreshold = now.minusMinutes(SESSION_ACTIVITY_WINDOW_MINUTES).toEpochSecond(ZoneOffset.UTC);
         long recentThreshold = now.minusHours(1).toEpochSecond(ZoneOffset.UTC);
         long todayThreshold = now.minusHours(24).toEpochSecond(ZoneOffset.UTC);
 
-        Long activeSessions = redisTemplate.opsForZSet().count(ACTIVE_SESSIONS_KEY, activeThreshold, Double.MAX_VALUE);
-        Long recentSessions = redisTemplate.opsForZSet().count(ACTIVE_SESSIONS_KEY, recentThreshold, Double.MAX_VALUE);
-        Long todaySessions = redisTemplate.opsForZSet().count(ACTIVE_SESSIONS_KEY, todayThreshold, Double.MAX_VALUE);
+        return circuitBreaker.execute(Operation.MAINTENANCE, () -> {
+            long totalSessions = redisTemplate.opsForZSet().zCard(ACTIVE_SESSIONS_KEY);
+
+            Long activeSessions = redisTemplate.opsForZSet().count(ACTIVE_SESSIONS_KEY, activeThreshold, Double.MAX_VALUE);
+            Long recentSessions = redisTemplate.opsForZSet().count(ACTIVE_SESSIONS_KEY, recentThreshold, Double.MAX_VALUE);
+            Long todaySessions = redisTemplate.opsForZSet().count(ACTIVE_SESSIONS_KEY, todayThreshold, Double.MAX_VALUE);
 
-        return new SessionActivitySummary(
-            totalSessions,
-            activeSessions != null ? activeSessions : 0,
-            recentSessions != null ? recentSessions : 0,
-            todaySessions != null ? todaySessions : 0
-        );
+            return new SessionActivitySummary(
+                totalSessions,
+                activeSessions != null ? activeSessions : 0,
+                recentSessions != null ? recentSessions : 0,
+                todaySessions != null ? todaySessions : 0
+            );
+        });
     }
 
     public List<String> getActiveSessions() {
         LocalDateTime cutoff = LocalDateTime.now().minusMinutes(SESSION_ACTIVITY_WINDOW_MINUTES);
         long cutoffTimestamp = cutoff.toEpochSecond(ZoneOffset.UTC);
 
-        Set<Object> activeSessions = redisTemplate.opsForZSet()
-                .rangeByScore(ACTIVE_SESSIONS_KEY, cutoffTimestamp, Double.MAX_VALUE);
+        Set<Object> activeSessions = circuitBreaker.execute(Operation.SESSION, () -> redisTemplate.opsForZSet()
+                .rangeByScore(ACTIVE_SESSIONS_KEY, cutoffTimestamp, Double.MAX_VALUE));
 
         if (activeSessions == null) {
             return new ArrayList<>();
@@ -210,7 +225,8 @@ public class UserSessionTrackingService {
         LocalDateTime cutoff = LocalDateTime.now().minusDays(7);
         long cutoffTimestamp = cutoff.toEpochSecond(ZoneOffset.UTC);
 
-        redisTemplate.opsForZSet().removeRangeByScore(ACTIVE_SESSIONS_KEY, 0, cutoffTimestamp);
+        circuitBreaker.run(Operation.MAINTENANCE,
+                () -> redisTemplate.opsForZSet().removeRangeByScore(ACTIVE_SESSIONS_KEY, 0, cutoffTimestamp));
     }
 
     public static class UserSessionInfo {
@@ -0,0 +1,9 @@
+package com.example.chatbotcache;
+
+import org.junit.jupiter.api.Test;
+
+class ContextLoadsTest extends RedisIntegrationTest {
+    @Test
+    void loads() {
+    }
+}
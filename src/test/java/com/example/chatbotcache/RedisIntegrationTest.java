@@ -0,0 +1,68 @@
+package com.example.chatbotcache;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base class for tests that run the application against a real Redis. One embedded Redis
+ * server is started per test JVM on a free port and shared by every Spring context. It
+ * persists every write to an append-only file, so a test can stop and restart it without
+ * losing data.
+ */
+@SpringBootTest(properties = {
+    "logging.level.org.springframework.data.redis=INFO",
+    "logging.level.com.example.chatbotcache=INFO"
+})
+public abstract class RedisIntegrationTest {
+
+    protected static final int REDIS_PORT = freePort();
+    protected static final RedisServer REDIS = startRedis();
+
+    @DynamicPropertySource
+    static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", () -> "localhost");
+        registry.add("spring.data.redis.port", () -> REDIS_PORT);
+    }
+
+    // Private helper methods
+
+    private static RedisServer startRedis() {
+        try {
+            Path dataDir = Files.createTempDirectory("embedded-redis");
+            RedisServer server = RedisServer.newRedisServer()
+                .port(REDIS_PORT)
+                .setting("bind 127.0.0.1")
+                .setting("appendonly yes")
+                .setting("appendfsync always")
+                .setting("dir " + dataDir.toAbsolutePath())
+                .build();
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.stop();
+                } catch (IOException e) {
+                    System.err.println("Failed to stop embedded Redis: " + e.getMessage());
+                }
+            }));
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start embedded Redis on port " + REDIS_PORT, e);
+        }
+    }
+
+    private static int freePort() {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
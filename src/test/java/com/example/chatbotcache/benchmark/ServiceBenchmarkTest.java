@@ -0,0 +1,515 @@
+package com.example.chatbotcache.benchmark;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.config.ChatExecutorConfig;
+import com.example.chatbotcache.config.RedisConfig;
+import com.example.chatbotcache.config.ValueCompressor;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.service.CacheService;
+import com.example.chatbotcache.service.ChatPipelineService;
+import com.example.chatbotcache.service.ChatSessionService;
+import com.example.chatbotcache.service.ContextCompressionService;
+import com.example.chatbotcache.service.FallbackChatSessionService;
+import com.example.chatbotcache.service.FallbackMessageService;
+import com.example.chatbotcache.service.MessageService;
+import com.example.chatbotcache.service.RedisKeyScanner;
+import com.example.chatbotcache.service.TokenCountingService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Micro-benchmarks for the service-layer hot paths, run against the real beans and the
+ * embedded Redis stand-in. Each benchmark follows the JMH average-time model: warmup
+ * iterations, then measured iterations of a fixed number of operations, with every result
+ * written to a volatile sink so the JIT cannot drop the work. Results use JMH's JSON field
+ * names and are written to benchmarks.output; with benchmarks.baseline pointing at an
+ * earlier results file, any benchmark slower by more than the threshold fails the run.
+ *
+ * Skipped in the normal build; run with
+ * mvn test -Dtest=ServiceBenchmarkTest -Dbenchmarks=true [-Dbenchmarks.baseline=previous.json]
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class ServiceBenchmarkTest extends RedisIntegrationTest {
+
+    private static final String BENCHMARK_USER = "benchmark-user";
+    private static final int REDIS_OPERATION_DIVISOR = 10;
+    private static final int LONG_TEXT_LENGTH = 10_000;
+    private static final int LONG_SESSION_MESSAGES = 5_000;
+    private static final int LONG_SESSION_OPERATION_DIVISOR = 1_000;
+    // One operation is a burst of concurrent chat requests, each waiting on the mock LLM
+    private static final int CHAT_BURST_SIZE = Integer.getInteger("benchmarks.chat-burst", 200);
+    private static final int[] CHAT_PLATFORM_THREADS = {20, 200};
+    // One operation is a burst of writes from a pool of threads, each write in its own transaction
+    private static final int TEMPLATE_THREADS = 16;
+    private static final int TEMPLATE_BURST_SIZE = 256;
+    private static final int TEMPLATE_OPERATIONS = 10;
+    // Two-sided 99% confidence, as JMH reports for scoreError
+    private static final double CONFIDENCE_Z = 2.576;
+
+    private static final String[] SAMPLE_TEXTS = {
+        "Can you explain how Redis sorted sets keep members ordered by score, and when I should use them instead of lists?",
+        "Sure! A sorted set stores unique members with a floating-point score. Range queries by score or rank are O(log N + M).",
+        "What's the difference between EXPIRE and a TTL set with SET ... EX? Does either one reset when I update the key?",
+        "SET with EX replaces the value and its TTL in one command; a plain SET clears the TTL, while HSET on a hash keeps it.",
+        "Summarize our conversation so far: we compared lists, streams and sorted sets for chat history, and chose streams.",
+        "Please write a short Java example that reads the last ten messages of a session, newest first, with pagination.",
+        "Here's one approach: LRANGE the session's message list with negative indexes, then load each message hash by ID.",
+        "How much memory would 10,000 sessions of 50 messages each use, assuming about 400 bytes of content per message?"
+    };
+
+    @Autowired
+    private TokenCountingService tokenCountingService;
+
+    @Autowired
+    private ContextCompressionService contextCompressionService;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private FallbackMessageService fallbackMessageService;
+
+    @Autowired
+    private FallbackChatSessionService fallbackChatSessionService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ChatPipelineService chatPipelineService;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisKeyScanner keyScanner;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Settings settings = new Settings(
+        Integer.getInteger("benchmarks.warmup", 3),
+        Integer.getInteger("benchmarks.iterations", 5),
+        Integer.getInteger("benchmarks.operations", 10_000));
+    private final double regressionThresholdPercent =
+        Double.parseDouble(System.getProperty("benchmarks.regression-threshold-percent", "10"));
+
+    private volatile Object sink;
+
+    @Test
+    void runBenchmarks() throws IOException {
+        List<Map<String, Object>> results = new ArrayList<>();
+        results.addAll(runMemorySuite(settings));
+        results.addAll(runRedisSuite(settings.scaledDown(REDIS_OPERATION_DIVISOR)));
+        results.addAll(runTemplateSuite(new Settings(settings.warmupIterations, settings.measurementIterations,
+            TEMPLATE_OPERATIONS)));
+        results.addAll(runChatExecutorSuite(new Settings(1, settings.measurementIterations, 1)));
+
+        List<Map<String, Object>> regressions = findRegressions(results);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("runId", UUID.randomUUID().toString());
+        run.put("startedAt", LocalDateTime.now().toString());
+        run.put("jvm", Map.of(
+            "version", System.getProperty("java.version"),
+            "availableProcessors", Runtime.getRuntime().availableProcessors(),
+            "maxMemoryBytes", Runtime.getRuntime().maxMemory()));
+        run.put("warmupIterations", settings.warmupIterations);
+        run.put("measurementIterations", settings.measurementIterations);
+        run.put("operationsPerIteration", settings.operationsPerIteration);
+        run.put("results", results);
+        run.put("regressions", regressions);
+
+        Path output = Paths.get(System.getProperty("benchmarks.output", "target/benchmarks/results.json"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(output.toFile(), run);
+
+        assertTrue(regressions.isEmpty(), "Regressions against the baseline: " + regressions);
+    }
+
+    // Private helper methods
+
+    private List<Map<String, Object>> runMemorySuite(Settings settings) {
+        List<Map<String, Object>> results = new ArrayList<>();
+
+        results.add(measure("tokenCounting.estimateTokenCount", settings,
+            i -> tokenCountingService.estimateTokenCount(sampleText(i))));
+        String longText = longText(LONG_TEXT_LENGTH);
+        results.add(measure("tokenCounting.estimateTokenCount.10k", settings,
+            i -> tokenCountingService.estimateTokenCount(longText)));
+        ChatMessage longMessage = new ChatMessage("msg_benchmark_long", "benchmark", MessageRole.USER, longText);
+        results.add(measure("tokenCounting.estimateTokenCount.message10k", settings,
+            i -> tokenCountingService.estimateTokenCount(longMessage)));
+
+        List<ChatMessage> conversation = sampleConversation("benchmark", 60);
+        results.add(measure("contextCompression.compressContext", settings,
+            i -> contextCompressionService.compressContext(conversation)));
+        List<ChatMessage> longConversation = sampleConversation("benchmark", LONG_SESSION_MESSAGES);
+        results.add(measure("contextCompression.compressContext.5000", settings.scaledDown(LONG_SESSION_OPERATION_DIVISOR),
+            i -> contextCompressionService.compressContext(longConversation)));
+        ContextCompressionService.SummaryState longSessionState = contextCompressionService.summarize(
+            longConversation.subList(0, LONG_SESSION_MESSAGES - conversation.size()));
+        results.add(measure("contextCompression.compressIncrementally.5000", settings,
+            i -> contextCompressionService.compressIncrementally(longSessionState, conversation, 4000)));
+
+        // A near-cache hit is the cache key derivation plus one in-process lookup
+        cacheService.cacheResponse("benchmark", SAMPLE_TEXTS[0], SAMPLE_TEXTS[1], "gpt-4", 0.7);
+        results.add(measure("cacheService.lookupNearCacheHit", settings,
+            i -> cacheService.getCachedResponse(SAMPLE_TEXTS[0], "gpt-4", 0.7)));
+
+        Map<String, Object> cachedResponse = new LinkedHashMap<>();
+        cachedResponse.put("response", longText(1_500));
+        cachedResponse.put("sessionId", "benchmark");
+        cachedResponse.put("model", "gpt-4");
+        cachedResponse.put("temperature", 0.7);
+        cachedResponse.put("cachedAt", LocalDateTime.now().toString());
+        RedisSerializer<Object> json = RedisConfig.createJsonSerializer();
+        RedisSerializer<Object> compact = RedisConfig.createValueSerializer("compact");
+        ValueCompressor compressor = new ValueCompressor(true, 256, 1);
+        RedisSerializer<Object> compressed = RedisConfig.createValueSerializer("compact", compressor);
+        try {
+            results.add(measure("serializer.json.roundTrip", settings,
+                i -> json.deserialize(json.serialize(cachedResponse))));
+            results.add(measure("serializer.compact.roundTrip", settings,
+                i -> compact.deserialize(compact.serialize(cachedResponse))));
+            results.add(measure("serializer.compressed.roundTrip", settings,
+                i -> compressed.deserialize(compressed.serialize(cachedResponse))));
+        } finally {
+            compressor.close();
+        }
+
+        String sessionId = "benchmark_" + UUID.randomUUID();
+        ChatSession fallbackSession = fallbackChatSessionService.createSession(BENCHMARK_USER, "Benchmark");
+        try {
+            results.add(measure("fallback.messages.append", settings,
+                i -> fallbackMessageService.saveMessage(sessionId, sampleText(i), MessageRole.USER, 20)));
+            results.add(measure("fallback.messages.recent", settings,
+                i -> fallbackMessageService.getSessionMessages(sessionId, 10)));
+            results.add(measure("fallback.sessions.get", settings,
+                i -> fallbackChatSessionService.getSession(fallbackSession.getSessionId())));
+        } finally {
+            fallbackMessageService.deleteSessionMessages(sessionId);
+            fallbackChatSessionService.deleteSession(fallbackSession.getSessionId());
+        }
+        return results;
+    }
+
+    private List<Map<String, Object>> runRedisSuite(Settings settings) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        ChatSession session = chatSessionService.createSession(BENCHMARK_USER, "Redis benchmark");
+        String sessionId = session.getSessionId();
+        String cachedInput = "benchmark cached input " + sessionId;
+        try {
+            // The scripted append is one EVAL; the sequential path issues each write as its own round trip
+            results.add(measure("redis.messages.appendSequential", settings,
+                i -> messageService.addMessageSequential(sessionId, MessageRole.USER, sampleText(i), 20)));
+            results.add(measure("redis.messages.append", settings,
+                i -> messageService.addMessage(sessionId, MessageRole.USER, sampleText(i), 20)));
+            results.add(measure("redis.messages.recent", settings,
+                i -> messageService.getRecentMessages(sessionId, 10)));
+            results.add(measure("redis.sessions.get", settings,
+                i -> chatSessionService.getSessionOptional(sessionId)));
+
+            cacheService.cacheResponse(sessionId, cachedInput, SAMPLE_TEXTS[1], "gpt-4", 0.7);
+            results.add(measure("redis.cache.lookupHit", settings,
+                i -> cacheService.getCachedResponse(cachedInput, "gpt-4", 0.7)));
+            results.add(measure("redis.cache.lookupMiss", settings,
+                i -> cacheService.getCachedResponse(sampleText(i) + " " + i, "gpt-4", 0.7)));
+        } finally {
+            messageService.deleteSessionMessages(sessionId);
+            chatSessionService.deleteSession(sessionId);
+        }
+        return results;
+    }
+
+    /**
+     * The shared template against a copy with template-wide transaction support, under the same
+     * concurrent writes, each inside a Spring transaction. The copy binds a dedicated connection
+     * to every transaction and sends its writes in MULTI/EXEC when it commits; the shared
+     * template sends them straight away over the multiplexed connection.
+     */
+    private List<Map<String, Object>> runTemplateSuite(Settings settings) {
+        RedisTemplate<String, Object> transactional = new RedisTemplate<>();
+        transactional.setConnectionFactory(redisTemplate.getConnectionFactory());
+        transactional.setKeySerializer(redisTemplate.getKeySerializer());
+        transactional.setValueSerializer(redisTemplate.getValueSerializer());
+        transactional.setHashKeySerializer(redisTemplate.getHashKeySerializer());
+        transactional.setHashValueSerializer(redisTemplate.getHashValueSerializer());
+        transactional.setEnableTransactionSupport(true);
+        transactional.afterPropertiesSet();
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        TransactionTemplate transactions = new TransactionTemplate(new SynchronizationOnlyTransactionManager());
+        String prefix = "benchmark:template:" + UUID.randomUUID() + ":";
+        ExecutorService pool = Executors.newFixedThreadPool(TEMPLATE_THREADS);
+        try {
+            results.add(measureTransactionalWrites("template.shared.transactionalWrites", settings,
+                pool, transactions, redisTemplate, prefix));
+            results.add(measureTransactionalWrites("template.transactionSupport.transactionalWrites", settings,
+                pool, transactions, transactional, prefix));
+        } finally {
+            pool.shutdownNow();
+            keyScanner.unlinkMatching(prefix + "*", 500);
+        }
+        return results;
+    }
+
+    private Map<String, Object> measureTransactionalWrites(String name, Settings settings, ExecutorService pool,
+                                                           TransactionTemplate transactions,
+                                                           RedisTemplate<String, Object> template, String prefix) {
+        Map<String, Object> result = measure(name, settings, i -> {
+            List<CompletableFuture<?>> writes = new ArrayList<>(TEMPLATE_BURST_SIZE);
+            for (int w = 0; w < TEMPLATE_BURST_SIZE; w++) {
+                String key = prefix + (w % 100);
+                int value = w;
+                writes.add(CompletableFuture.runAsync(() -> transactions.executeWithoutResult(status -> {
+                    template.opsForValue().set(key, value, Duration.ofMinutes(5));
+                    template.opsForValue().increment(key + ":writes");
+                }), pool));
+            }
+            return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).join();
+        });
+        result.put("transactionsPerOperation", TEMPLATE_BURST_SIZE);
+        result.put("transactionsPerSecond", (Double) result.get("opsPerSecond") * TEMPLATE_BURST_SIZE);
+        return result;
+    }
+
+    /**
+     * Chat pipeline throughput on bounded platform pools and, where the JVM supports them,
+     * on virtual threads. The mock LLM blocks for most of each request, so a small pool
+     * queues requests that virtual threads would run concurrently.
+     */
+    private List<Map<String, Object>> runChatExecutorSuite(Settings settings) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        ChatSession session = chatSessionService.createSession(BENCHMARK_USER, "Chat executor benchmark");
+        String sessionId = session.getSessionId();
+        try {
+            for (int threads : CHAT_PLATFORM_THREADS) {
+                AsyncTaskExecutor executor = ChatExecutorConfig.createExecutor(ChatExecutorConfig.PLATFORM_MODE, threads);
+                try {
+                    results.add(measureChatBurst("chatExecutor.platform" + threads, settings, sessionId, executor));
+                } finally {
+                    ((ThreadPoolTaskExecutor) executor).shutdown();
+                }
+            }
+            AsyncTaskExecutor virtual = ChatExecutorConfig.createExecutor(ChatExecutorConfig.VIRTUAL_MODE, 1);
+            if (ChatExecutorConfig.isVirtual(virtual)) {
+                results.add(measureChatBurst("chatExecutor.virtual", settings, sessionId, virtual));
+            } else {
+                ((ThreadPoolTaskExecutor) virtual).shutdown();
+            }
+        } finally {
+            messageService.deleteSessionMessages(sessionId);
+            chatSessionService.deleteSession(sessionId);
+        }
+        return results;
+    }
+
+    private Map<String, Object> measureChatBurst(String name, Settings settings, String sessionId,
+                                                 AsyncTaskExecutor executor) {
+        AtomicInteger errors = new AtomicInteger(0);
+        Map<String, Object> result = measure(name, settings, i -> {
+            List<CompletableFuture<?>> requests = new ArrayList<>(CHAT_BURST_SIZE);
+            for (int r = 0; r < CHAT_BURST_SIZE; r++) {
+                requests.add(chatPipelineService.chat(sessionId, sampleText(r), executor)
+                    .handle((response, error) -> {
+                        // The mock LLM fails a small share of requests on purpose
+                        if (error != null || response.getError() != null) {
+                            errors.incrementAndGet();
+                        }
+                        return null;
+                    }));
+            }
+            return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).join();
+        });
+        result.put("requestsPerOperation", CHAT_BURST_SIZE);
+        result.put("requestsPerSecond", (Double) result.get("opsPerSecond") * CHAT_BURST_SIZE);
+        result.put("errors", errors.get());
+        return result;
+    }
+
+    private Map<String, Object> measure(String name, Settings settings, Workload workload) {
+        for (int w = 0; w < settings.warmupIterations; w++) {
+            runIteration(workload, settings.operationsPerIteration);
+        }
+
+        double[] scores = new double[settings.measurementIterations];
+        for (int m = 0; m < scores.length; m++) {
+            scores[m] = (double) runIteration(workload, settings.operationsPerIteration) / settings.operationsPerIteration;
+        }
+
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (double score : scores) {
+            sum += score;
+            min = Math.min(min, score);
+            max = Math.max(max, score);
+        }
+        double mean = sum / scores.length;
+        double squares = 0;
+        for (double score : scores) {
+            squares += (score - mean) * (score - mean);
+        }
+        double stdev = scores.length > 1 ? Math.sqrt(squares / (scores.length - 1)) : 0.0;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("benchmark", name);
+        result.put("mode", "avgt");
+        result.put("cnt", scores.length);
+        result.put("operationsPerIteration", settings.operationsPerIteration);
+        result.put("score", mean);
+        result.put("scoreError", CONFIDENCE_Z * stdev / Math.sqrt(scores.length));
+        result.put("scoreUnit", "ns/op");
+        result.put("min", min);
+        result.put("max", max);
+        result.put("opsPerSecond", mean > 0 ? 1_000_000_000.0 / mean : 0.0);
+        return result;
+    }
+
+    private long runIteration(Workload workload, int operations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            sink = workload.run(i);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Benchmarks slower than in the baseline results file by more than the threshold
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> findRegressions(List<Map<String, Object>> results) throws IOException {
+        List<Map<String, Object>> regressions = new ArrayList<>();
+        String baseline = System.getProperty("benchmarks.baseline");
+        if (baseline == null || baseline.isBlank()) {
+            return regressions;
+        }
+
+        Map<String, Object> previousRun = objectMapper.readValue(Paths.get(baseline).toFile(),
+            new TypeReference<Map<String, Object>>() {});
+        Map<String, Double> previousScores = new LinkedHashMap<>();
+        for (Map<String, Object> previous : (List<Map<String, Object>>) previousRun.get("results")) {
+            previousScores.put((String) previous.get("benchmark"), ((Number) previous.get("score")).doubleValue());
+        }
+        for (Map<String, Object> result : results) {
+            Double previous = previousScores.get((String) result.get("benchmark"));
+            double score = (Double) result.get("score");
+            if (previous != null && previous > 0 && score > previous * (1 + regressionThresholdPercent / 100)) {
+                Map<String, Object> regression = new LinkedHashMap<>();
+                regression.put("benchmark", result.get("benchmark"));
+                regression.put("previousScore", previous);
+                regression.put("score", score);
+                regression.put("changePercent", 100 * (score - previous) / previous);
+                regressions.add(regression);
+            }
+        }
+        return regressions;
+    }
+
+    private static String sampleText(int i) {
+        return SAMPLE_TEXTS[i % SAMPLE_TEXTS.length];
+    }
+
+    private static String longText(int length) {
+        StringBuilder text = new StringBuilder(length + SAMPLE_TEXTS[0].length());
+        for (int i = 0; text.length() < length; i++) {
+            text.append(sampleText(i)).append(' ');
+        }
+        return text.substring(0, length);
+    }
+
+    private static List<ChatMessage> sampleConversation(String sessionId, int size) {
+        List<ChatMessage> messages = new ArrayList<>(size);
+        LocalDateTime start = LocalDateTime.now().minusMinutes(size).withNano(0);
+        for (int i = 0; i < size; i++) {
+            String content = sampleText(i) + " " + sampleText(i + 3) + " " + sampleText(i + 5);
+            ChatMessage message = new ChatMessage("msg_benchmark_" + i, sessionId,
+                i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT, content, 60);
+            message.setTimestamp(start.plusMinutes(i));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * One benchmarked operation; the argument is the operation's index within the iteration
+     */
+    private interface Workload {
+        Object run(int i);
+    }
+
+    /**
+     * Transaction manager without a resource of its own, so a TransactionTemplate only drives
+     * the synchronizations that a template with transaction support registers
+     */
+    private static final class SynchronizationOnlyTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+
+    private static final class Settings {
+        private final int warmupIterations;
+        private final int measurementIterations;
+        private final int operationsPerIteration;
+
+        private Settings(int warmupIterations, int measurementIterations, int operationsPerIteration) {
+            this.warmupIterations = warmupIterations;
+            this.measurementIterations = measurementIterations;
+            this.operationsPerIteration = operationsPerIteration;
+        }
+
+        private Settings scaledDown(int divisor) {
+            return new Settings(warmupIterations, measurementIterations, Math.max(1, operationsPerIteration / divisor));
+        }
+    }
+}
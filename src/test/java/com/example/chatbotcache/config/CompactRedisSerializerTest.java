@@ -0,0 +1,100 @@
+package com.example.chatbotcache.config;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The compact format must round-trip the values the app caches and stay smaller than the
+ * JSON it replaces; everything else keeps the JSON encoding.
+ */
+class CompactRedisSerializerTest {
+
+    private static final String CONTENT = "The quick brown fox jumps over the lazy dog. ".repeat(9);
+
+    private final RedisSerializer<Object> json = RedisConfig.createJsonSerializer();
+    private final RedisSerializer<Object> compact = RedisConfig.createValueSerializer("compact");
+
+    @Test
+    void cachedResponseRoundTripsAndShrinks() {
+        Map<String, Object> cachedResponse = new HashMap<>();
+        cachedResponse.put("response", CONTENT);
+        cachedResponse.put("sessionId", "session_1");
+        cachedResponse.put("model", "gpt-3.5-turbo");
+        cachedResponse.put("temperature", 0.7);
+        cachedResponse.put("tokens", 100);
+        cachedResponse.put("cachedAt", "2024-01-01T12:00:00");
+
+        assertRoundTripsSmaller(cachedResponse);
+    }
+
+    @Test
+    void chatEventRoundTripsAndShrinks() {
+        Map<String, Object> chatEvent = new HashMap<>();
+        chatEvent.put("messageId", "msg_1");
+        chatEvent.put("sessionId", "session_1");
+        chatEvent.put("role", "ASSISTANT");
+        chatEvent.put("content", CONTENT);
+        chatEvent.put("tokenCount", 100L);
+        chatEvent.put("timestamp", LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_000_000));
+        chatEvent.put("tags", new LinkedHashSet<>(List.of("greeting", "faq")));
+        chatEvent.put("flagged", false);
+
+        assertRoundTripsSmaller(chatEvent);
+    }
+
+    @Test
+    void scalarsKeepTheirJsonBytes() {
+        for (Object value : new Object[] {"hello", 42, 42L, 1.5, true}) {
+            byte[] bytes = compact.serialize(value);
+            assertFalse(CompactRedisSerializer.isCompact(bytes));
+            assertEquals(new String(json.serialize(value)), new String(bytes));
+        }
+    }
+
+    @Test
+    void entitiesFallBackToJson() {
+        ChatMessage message = new ChatMessage("msg_1", "session_1", MessageRole.USER, CONTENT, 100);
+        message.setTimestamp(message.getTimestamp().withNano(0));
+
+        byte[] bytes = compact.serialize(message);
+        assertFalse(CompactRedisSerializer.isCompact(bytes));
+
+        ChatMessage read = assertInstanceOf(ChatMessage.class, compact.deserialize(bytes));
+        assertEquals(message.getMessageId(), read.getMessageId());
+        assertEquals(message.getContent(), read.getContent());
+        assertEquals(message.getTimestamp(), read.getTimestamp());
+    }
+
+    @Test
+    void compactReaderAcceptsJsonWrittenValues() {
+        Map<String, Object> value = new HashMap<>();
+        value.put("response", CONTENT);
+        value.put("tokens", 100);
+        assertEquals(value, compact.deserialize(json.serialize(value)));
+    }
+
+    // Private helper methods
+
+    private void assertRoundTripsSmaller(Object value) {
+        byte[] compactBytes = compact.serialize(value);
+        byte[] jsonBytes = json.serialize(value);
+
+        assertTrue(CompactRedisSerializer.isCompact(compactBytes));
+        assertEquals(value, compact.deserialize(compactBytes));
+        assertTrue(compactBytes.length < jsonBytes.length,
+            "compact " + compactBytes.length + " bytes, json " + jsonBytes.length + " bytes");
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chatbotcache.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValueCompressorTest {
+
+    private static final byte[] VALUE = "The quick brown fox jumps over the lazy dog. ".repeat(40)
+        .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DICTIONARY = "quick brown fox lazy dog ".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void pooledInstancesRoundTripAcrossThreads() throws Exception {
+        ValueCompressor compressor = new ValueCompressor(true, 64, 1);
+        compressor.registerDictionary(1, DICTIONARY);
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                // Alternate dictionaries so a pooled instance that kept its dictionary would corrupt values
+                int dictionaryId = i % 2;
+                tasks.add(pool.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        compressor.useDictionary(dictionaryId);
+                        byte[] stored = compressor.compress(VALUE);
+                        assertTrue(ValueCompressor.isCompressed(stored));
+                        assertArrayEquals(VALUE, compressor.decompress(stored));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdownNow();
+            compressor.close();
+        }
+    }
+
+    @Test
+    void keepsWorkingAfterClose() {
+        ValueCompressor compressor = new ValueCompressor(true, 64, 1);
+        byte[] stored = compressor.compress(VALUE);
+        compressor.close();
+
+        assertArrayEquals(VALUE, compressor.decompress(stored));
+        assertArrayEquals(VALUE, compressor.decompress(compressor.compress(VALUE)));
+    }
+
+    @Test
+    void smallValuesAreLeftAlone() {
+        ValueCompressor compressor = new ValueCompressor(true, 64, 1);
+        byte[] small = "short".getBytes(StandardCharsets.UTF_8);
+        assertFalse(ValueCompressor.isCompressed(compressor.compress(small)));
+        compressor.close();
+    }
+}
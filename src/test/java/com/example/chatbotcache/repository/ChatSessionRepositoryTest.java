@@ -0,0 +1,58 @@
+package com.example.chatbotcache.repository;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Deleting a user's sessions removes their hashes and index entries and leaves other users'
+ * sessions alone
+ */
+class ChatSessionRepositoryTest extends RedisIntegrationTest {
+
+    private final String userId = "repository-test-" + UUID.randomUUID();
+    private final String otherUserId = "repository-test-" + UUID.randomUUID();
+
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @AfterEach
+    void tearDown() {
+        chatSessionRepository.deleteByUserId(userId);
+        chatSessionRepository.deleteByUserId(otherUserId);
+    }
+
+    @Test
+    void deleteByUserIdRemovesOnlyThatUsersSessions() {
+        ChatSession first = chatSessionRepository.save(new ChatSession("session-" + UUID.randomUUID(), userId, "First"));
+        ChatSession second = chatSessionRepository.save(new ChatSession("session-" + UUID.randomUUID(), userId, "Second"));
+        ChatSession other = chatSessionRepository.save(new ChatSession("session-" + UUID.randomUUID(), otherUserId, "Other"));
+
+        chatSessionRepository.deleteByUserId(userId);
+
+        assertTrue(chatSessionRepository.findByUserId(userId).isEmpty());
+        for (ChatSession deleted : new ChatSession[] {first, second}) {
+            assertFalse(chatSessionRepository.existsById(deleted.getSessionId()));
+            assertNull(stringRedisTemplate.opsForZSet()
+                .score(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX, deleted.getSessionId()));
+        }
+        assertFalse(stringRedisTemplate.hasKey("chat_session:userId:" + userId));
+        assertEquals(1, chatSessionRepository.findByUserId(otherUserId).size());
+        assertTrue(chatSessionRepository.existsById(other.getSessionId()));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The async message and cache reads must return what the blocking reads return, and one
+ * node must be able to keep thousands of commands in flight on the shared connection.
+ */
+class AsyncReadsTest extends RedisIntegrationTest {
+
+    private static final int[] WINDOWS = {16, 32, 64, 128, 256, 512, 1024, 2048, 4096};
+    private static final int MIN_STAGE_OPERATIONS = 500;
+    private static final long MESSAGE_READ_CEILING_MS = 1000;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private RedisAsyncService asyncService;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        ChatSession session = chatSessionService.createSession("async-test-user", "Async read test");
+        sessionId = session.getSessionId();
+        for (int i = 0; i < 10; i++) {
+            messageService.addMessage(sessionId, MessageRole.USER, "Async message " + i, 4);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        circuitBreaker.reset();
+        messageService.deleteSessionMessages(sessionId);
+        chatSessionService.deleteSession(sessionId);
+    }
+
+    @Test
+    void asyncRecentMessagesMatchBlockingRead() {
+        List<String> blocking = messageIds(messageService.getRecentMessages(sessionId, 10));
+        List<String> async = messageIds(messageService.getRecentMessagesAsync(sessionId, 10).join());
+
+        assertEquals(10, blocking.size());
+        assertEquals(blocking, async);
+        assertEquals(10L, messageService.getMessageCountAsync(sessionId).join());
+    }
+
+    @Test
+    void thousandsOfCommandsInFlight() throws InterruptedException {
+        assertTrue(asyncService.isReactive());
+        LettuceConnectionFactory lettuce = assertInstanceOf(LettuceConnectionFactory.class, connectionFactory);
+        assertTrue(lettuce.getShareNativeConnection());
+
+        // Each LLEN waits behind the whole window, so its latency grows with the window; doubling
+        // it per stage keeps that latency within the budget learned in the stage before. The floor
+        // is raised to the read ceiling so that a single GC or JIT stall on a small test machine
+        // does not open the breaker and fail the rest of the ramp.
+        long floorMs = (long) ReflectionTestUtils.getField(circuitBreaker, "floorMs");
+        ReflectionTestUtils.setField(circuitBreaker, "floorMs", MESSAGE_READ_CEILING_MS);
+        int failures = 0;
+        try {
+            for (int window : WINDOWS) {
+                failures += countInFlight(window, Math.max(MIN_STAGE_OPERATIONS, window * 5));
+            }
+        } finally {
+            ReflectionTestUtils.setField(circuitBreaker, "floorMs", floorMs);
+        }
+
+        assertEquals(0, failures);
+        assertTrue((long) asyncService.getStats().get("peakInFlight") >= WINDOWS[WINDOWS.length - 1]);
+    }
+
+    @Test
+    void asyncCacheRoundTrip() {
+        String input = "What is async Redis? " + UUID.randomUUID();
+        cacheService.cacheResponseAsync(sessionId, input, "A non-blocking client", "gpt-3.5-turbo", 0.7).join();
+
+        Map<String, Object> cached = cacheService.getCachedResponseAsync(input, "gpt-3.5-turbo", 0.7).join();
+        assertNotNull(cached);
+        assertEquals("A non-blocking client", cached.get("response"));
+    }
+
+    // Private helper methods
+
+    /**
+     * Issue single-command reads, keeping up to window of them awaiting a reply. Returns the
+     * number of reads that failed or returned a wrong count.
+     */
+    private int countInFlight(int window, int operations) throws InterruptedException {
+        Semaphore permits = new Semaphore(window);
+        AtomicInteger failures = new AtomicInteger(0);
+        List<CompletableFuture<Long>> reads = new ArrayList<>(operations);
+        for (int i = 0; i < operations; i++) {
+            permits.acquire();
+            reads.add(messageService.getMessageCountAsync(sessionId)
+                .whenComplete((count, error) -> {
+                    if (error != null || count == null || count != 10L) {
+                        failures.incrementAndGet();
+                    }
+                    permits.release();
+                }));
+        }
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
+        return failures.get();
+    }
+
+    private List<String> messageIds(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getMessageId).toList();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A session popped from the compaction queue must not be lost when no worker accepts it
+ */
+class AutoCompactionServiceTest extends RedisIntegrationTest {
+
+    private static final String QUEUE_KEY = "compaction:queue";
+
+    @Autowired
+    private AutoCompactionService autoCompactionService;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @Test
+    void rejectedSessionIsRequeued() {
+        Object executor = ReflectionTestUtils.getField(autoCompactionService, "executor");
+        ReflectionTestUtils.setField(autoCompactionService, "executor", new RejectingExecutor());
+        String sessionId = "requeue-test-" + UUID.randomUUID();
+        try {
+            autoCompactionService.enqueue(sessionId);
+
+            assertEquals(0, autoCompactionService.drainQueue());
+            assertTrue(stringRedisTemplate.opsForSet().isMember(QUEUE_KEY, sessionId));
+        } finally {
+            ReflectionTestUtils.setField(autoCompactionService, "executor", executor);
+            stringRedisTemplate.opsForSet().remove(QUEUE_KEY, sessionId);
+        }
+    }
+
+    private static final class RejectingExecutor implements AsyncTaskExecutor {
+
+        @Override
+        public void execute(Runnable task) {
+            throw new TaskRejectedException("No workers");
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            throw new TaskRejectedException("No workers");
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            throw new TaskRejectedException("No workers");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.config.TokenizerConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Counts from the bundled cl100k_base vocabulary must match tiktoken's
+ */
+class BpeTokenizerTest {
+
+    private static final String VOCABULARY = "classpath:tokenizer/cl100k_base.tiktoken";
+
+    private final Tokenizer tokenizer = TokenizerConfig.createTokenizer(TokenizerConfig.BPE_ENGINE, VOCABULARY);
+
+    @Test
+    void loadsTheBundledVocabulary() {
+        BpeTokenizer bpe = assertInstanceOf(BpeTokenizer.class, tokenizer);
+        assertEquals("cl100k_base", bpe.getVocabulary().getName());
+        assertEquals(100_256, bpe.getVocabulary().size());
+    }
+
+    @Test
+    void matchesKnownCl100kCounts() {
+        assertEquals(0, tokenizer.countTokens(""));
+        assertEquals(2, tokenizer.countTokens("hello world"));
+        assertEquals(6, tokenizer.countTokens("tiktoken is great!"));
+        assertEquals(4, tokenizer.countTokens("Hello, world!"));
+        assertEquals(10, tokenizer.countTokens("The quick brown fox jumps over the lazy dog."));
+        assertEquals(14, tokenizer.countTokens("I'm sure they'll say it's 12345678 tokens."));
+        assertEquals(7, tokenizer.countTokens("    indented code();\n\n\tnext line"));
+        assertEquals(12, tokenizer.countTokens("https://example.com/path?q=redis&n=42"));
+        assertEquals(15, tokenizer.countTokens(
+            "naïve café — 東京タワー 🚀"));
+    }
+
+    @Test
+    void missingVocabularyFailsInsteadOfFallingBack() {
+        assertThrows(IllegalStateException.class,
+            () -> TokenizerConfig.createTokenizer(TokenizerConfig.BPE_ENGINE, "classpath:tokenizer/missing.tiktoken"));
+    }
+
+    @Test
+    void unknownEngineIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> TokenizerConfig.createTokenizer("sentencepiece", VOCABULARY));
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The processor reads new chat events through its consumer group, acknowledges the ones its
+ * handlers accept, claims failed ones once they are idle wherever they sit in the pending
+ * entries list, and dead-letters them after max-deliveries.
+ */
+@TestPropertySource(properties = {
+    "app.streams.chat-events.enabled=true",
+    "app.streams.chat-events.group=chat-event-processor-test",
+    "app.streams.chat-events.batch-size=2",
+    "app.streams.chat-events.claim-idle-ms=100",
+    "app.streams.chat-events.max-deliveries=2",
+    // Only the runs at startup are scheduled; the test drives the processor itself
+    "app.streams.chat-events.poll-interval-ms=3600000",
+    "app.streams.chat-events.claim-interval-ms=3600000"
+})
+class ChatEventStreamProcessorTest extends RedisIntegrationTest {
+
+    private static final String GROUP = "chat-event-processor-test";
+    private static final long CLAIM_IDLE_MS = 100;
+
+    @Autowired
+    private ChatEventStreamProcessor processor;
+
+    @Autowired
+    private RedisStreamService streamService;
+
+    @Autowired
+    private RecordingHandler handler;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        sessionId = "stream-test-" + UUID.randomUUID();
+        handler.sessionId = sessionId;
+        // Acknowledge whatever earlier tests left on the shared stream
+        processor.poll();
+        acknowledgePending();
+        handler.attempts.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        acknowledgePending();
+        handler.sessionId = null;
+    }
+
+    @Test
+    void handledEventsAreAcknowledged() {
+        publish("ok-1", "hello");
+        publish("ok-2", "world");
+        publish("ok-3", "again");
+
+        processor.poll();
+
+        assertEquals(Map.of("ok-1", 1, "ok-2", 1, "ok-3", 1), handler.attempts);
+        assertTrue(pendingIds().isEmpty());
+    }
+
+    @Test
+    void idleEntriesAreClaimedPastBusyOnes() throws InterruptedException {
+        publish("busy-1", "fail");
+        publish("busy-2", "fail");
+        publish("idle-1", "fail");
+        publish("idle-2", "fail");
+        processor.poll();
+        assertEquals(4, pendingIds().size());
+
+        Thread.sleep(CLAIM_IDLE_MS * 2);
+        // Another consumer is working on the oldest entries, which fill the first page
+        List<RecordId> oldest = pendingIds().subList(0, 2);
+        stringRedisTemplate.opsForStream().claim(RedisStreamService.CHAT_EVENTS_STREAM, GROUP, "other-consumer",
+            Duration.ZERO, oldest.toArray(new RecordId[0]));
+
+        processor.recoverPending();
+
+        assertEquals(Map.of("busy-1", 1, "busy-2", 1, "idle-1", 2, "idle-2", 2), handler.attempts);
+    }
+
+    @Test
+    void entriesAreDeadLetteredAfterMaxDeliveries() throws InterruptedException {
+        publish("poison", "fail");
+        publish("fine", "hello");
+
+        processor.poll();
+        for (int i = 0; i < 2; i++) {
+            Thread.sleep(CLAIM_IDLE_MS * 2);
+            processor.recoverPending();
+        }
+
+        // Delivered by the read and one claim; the second claim exceeds max-deliveries
+        assertEquals(Map.of("poison", 2, "fine", 1), handler.attempts);
+        assertTrue(pendingIds().isEmpty());
+
+        List<Map<Object, Object>> deadLetters = stringRedisTemplate.opsForStream()
+            .reverseRange(RedisStreamService.CHAT_EVENTS_DEAD_LETTER_STREAM, Range.unbounded()).stream()
+            .map(MapRecord::getValue)
+            .filter(entry -> sessionId.equals(entry.get("sessionId")))
+            .collect(Collectors.toList());
+        assertEquals(1, deadLetters.size());
+        assertEquals("poison", deadLetters.get(0).get("messageId"));
+        assertEquals("Exceeded 2 deliveries", deadLetters.get(0).get("reason"));
+    }
+
+    // Private helper methods
+
+    private void publish(String messageId, String content) {
+        streamService.publishChatMessage(sessionId, new ChatMessage(messageId, sessionId, MessageRole.USER, content, 1));
+    }
+
+    private void acknowledgePending() {
+        List<String> ids = pendingIds().stream().map(RecordId::getValue).collect(Collectors.toList());
+        streamService.acknowledge(RedisStreamService.CHAT_EVENTS_STREAM, GROUP, ids);
+    }
+
+    private List<RecordId> pendingIds() {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+            .pending(RedisStreamService.CHAT_EVENTS_STREAM, GROUP, Range.unbounded(), 100);
+        return pending.stream().map(PendingMessage::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Counts deliveries of the current session's events and fails those with content "fail"
+     */
+    static class RecordingHandler implements ChatEventHandler {
+        final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+        volatile String sessionId;
+
+        @Override
+        public String getName() {
+            return "recording";
+        }
+
+        @Override
+        public void handle(Map<String, Object> event) {
+            if (sessionId == null || !sessionId.equals(event.get("sessionId"))) {
+                return;
+            }
+            attempts.merge(event.get("messageId").toString(), 1, Integer::sum);
+            if ("fail".equals(event.get("content"))) {
+                throw new IllegalStateException("Rejected " + event.get("messageId"));
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class HandlerConfig {
+        @Bean
+        RecordingHandler recordingHandler() {
+            return new RecordingHandler();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Many writers bumping one session's counters at once must not lose increments
+ */
+class ChatSessionCounterConcurrencyTest extends RedisIntegrationTest {
+
+    private static final int WRITERS = 64;
+    private static final int APPENDS_PER_WRITER = 50;
+    private static final int TOKENS_PER_APPEND = 3;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        sessionId = chatSessionService.createSession("counter-test-user", "Session counter concurrency test")
+            .getSessionId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatSessionService.deleteSession(sessionId);
+    }
+
+    @Test
+    void concurrentAppendsKeepEveryIncrement() throws Exception {
+        ExecutorService writerPool = Executors.newFixedThreadPool(WRITERS);
+        try {
+            CountDownLatch startGate = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(WRITERS);
+            for (int i = 0; i < WRITERS; i++) {
+                futures.add(writerPool.submit(() -> {
+                    startGate.await();
+                    for (int j = 0; j < APPENDS_PER_WRITER; j++) {
+                        chatSessionService.recordMessageAppended(sessionId, TOKENS_PER_APPEND);
+                    }
+                    return null;
+                }));
+            }
+
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            writerPool.shutdownNow();
+        }
+
+        ChatSession session = chatSessionService.getSessionOrThrow(sessionId);
+        long expectedMessages = (long) WRITERS * APPENDS_PER_WRITER;
+        assertEquals(expectedMessages, session.getMessageCount().longValue());
+        assertEquals(expectedMessages * TOKENS_PER_APPEND, session.getTokenCount().longValue());
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.repository.ChatSessionRepository;
+import com.example.chatbotcache.repository.TimeIndexOperations;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Restoring a session snapshot from the in-memory store writes only the user-editable fields
+ * and a newer lastActivity, so counters updated in Redis meanwhile are kept.
+ */
+class ChatSessionRestoreTest extends RedisIntegrationTest {
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ChatSessionRepository chatSessionRepository;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    private ChatSession session;
+
+    @BeforeEach
+    void setUp() {
+        session = chatSessionService.createSession("restore-test-user", "Original title");
+        chatSessionService.setSessionSetting(session.getSessionId(), "model", "gpt-4");
+        chatSessionService.setSessionSetting(session.getSessionId(), "temperature", "0.2");
+        chatSessionService.recordMessageAppended(session.getSessionId(), 40);
+        chatSessionService.recordMessageAppended(session.getSessionId(), 60);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatSessionService.deleteSession(session.getSessionId());
+    }
+
+    @Test
+    void restoresEditableFieldsAndKeepsCounters() {
+        ChatSession stored = chatSessionService.getSession(session.getSessionId());
+        ChatSession snapshot = snapshot("Renamed offline", false, Map.of("model", "gpt-3.5-turbo"),
+            stored.getLastActivity().minusMinutes(5));
+
+        chatSessionService.restoreSession(snapshot);
+
+        ChatSession restored = chatSessionService.getSession(session.getSessionId());
+        assertEquals("Renamed offline", restored.getTitle());
+        assertFalse(restored.getActive());
+        assertEquals(Map.of("model", "gpt-3.5-turbo"), restored.getSettings());
+        assertEquals(2, restored.getMessageCount());
+        assertEquals(100, restored.getTokenCount());
+        assertEquals(stored.getLastActivity(), restored.getLastActivity());
+        assertEquals(stored.getCreatedAt(), restored.getCreatedAt());
+
+        // Booleans are stored as 0 and 1, and so is the index value
+        assertTrue(stringRedisTemplate.opsForSet().isMember("chat_session:active:0", session.getSessionId()));
+        assertFalse(stringRedisTemplate.opsForSet().isMember("chat_session:active:1", session.getSessionId()));
+    }
+
+    @Test
+    void movesLastActivityForwardOnly() {
+        LocalDateTime later = LocalDateTime.now().plusMinutes(10).truncatedTo(ChronoUnit.MILLIS);
+
+        chatSessionService.restoreSession(snapshot("Original title", true, Map.of(), later));
+
+        ChatSession restored = chatSessionService.getSession(session.getSessionId());
+        assertEquals(later, restored.getLastActivity());
+        assertEquals(Double.valueOf(TimeIndexOperations.score(later)), stringRedisTemplate.opsForZSet()
+            .score(TimeIndexOperations.SESSION_LAST_ACTIVITY_INDEX, session.getSessionId()));
+        assertEquals(2, restored.getMessageCount());
+    }
+
+    @Test
+    void savesSessionMissingFromRedis() {
+        ChatSession created = new ChatSession("restore-" + UUID.randomUUID(), "restore-test-user", "Created offline");
+        try {
+            chatSessionService.restoreSession(created);
+
+            ChatSession restored = chatSessionRepository.findById(created.getSessionId()).orElseThrow();
+            assertEquals("Created offline", restored.getTitle());
+            assertEquals(0, restored.getMessageCount());
+        } finally {
+            chatSessionService.deleteSession(created.getSessionId());
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * A snapshot as the in-memory store would hold it, with counters that are out of date
+     */
+    private ChatSession snapshot(String title, boolean active, Map<String, Object> settings, LocalDateTime lastActivity) {
+        ChatSession snapshot = new ChatSession(session.getSessionId(), session.getUserId(), title);
+        snapshot.setActive(active);
+        snapshot.setSettings(settings);
+        snapshot.setLastActivity(lastActivity);
+        snapshot.setCreatedAt(session.getCreatedAt().minusDays(1));
+        snapshot.setMessageCount(0);
+        snapshot.setTokenCount(0);
+        return snapshot;
+    }
+}
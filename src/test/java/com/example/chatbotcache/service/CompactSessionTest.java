@@ -0,0 +1,119 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.repository.TimeIndexOperations;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compaction runs under the session's lock and removes the summarized messages, their list
+ * entries and their index entries, leaving the recent messages in order.
+ */
+class CompactSessionTest extends RedisIntegrationTest {
+
+    private static final int MESSAGES = 16;
+    private static final int CONTEXT_WINDOW = 50;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ConversationSummaryService conversationSummaryService;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    private final List<String> messageIds = new ArrayList<>();
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        ChatSession session = chatSessionService.createSession("compact-test-user", "Compaction test");
+        sessionId = session.getSessionId();
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageRole role = i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT;
+            messageIds.add(messageService.addMessage(sessionId, role,
+                "Message " + i + " about caching conversations in Redis", 30).getMessageId());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        stringRedisTemplate.delete("compaction:lock:" + sessionId);
+        messageService.deleteSessionMessages(sessionId);
+        chatSessionService.deleteSession(sessionId);
+    }
+
+    @Test
+    void removesSummarizedPrefixAndItsIndexEntries() {
+        Optional<ContextCompressionService.IncrementalCompressionResult> compaction =
+            messageService.compactSession(sessionId, CONTEXT_WINDOW);
+
+        assertTrue(compaction.isPresent());
+        int summarized = compaction.get().getSummarizedCount();
+        assertEquals(MESSAGES - ContextCompressionService.MIN_RECENT_MESSAGES, summarized);
+
+        List<String> remaining = messageService.getAllMessages(sessionId).stream()
+            .map(ChatMessage::getMessageId).toList();
+        assertEquals(messageIds.subList(summarized, MESSAGES), remaining);
+
+        for (String removed : messageIds.subList(0, summarized)) {
+            assertFalse(stringRedisTemplate.hasKey("chat_message:" + removed));
+            assertFalse(stringRedisTemplate.hasKey("chat_message:" + removed + ":idx"));
+            assertFalse(stringRedisTemplate.opsForSet().isMember("chat_message", removed));
+            assertFalse(stringRedisTemplate.opsForSet().isMember("chat_message:sessionId:" + sessionId, removed));
+            assertNull(stringRedisTemplate.opsForZSet().score(TimeIndexOperations.messageTimestampIndex(sessionId), removed));
+        }
+        assertEquals(ContextCompressionService.MIN_RECENT_MESSAGES,
+            messageService.getTokenTotals(sessionId).getMessageCount());
+        assertTrue(stringRedisTemplate.opsForSet().isMember("chat_message:sessionId:" + sessionId, remaining.get(0)));
+        assertFalse(stringRedisTemplate.hasKey("compaction:lock:" + sessionId));
+    }
+
+    @Test
+    void skipsWhileAnotherCompactionHoldsTheLock() {
+        stringRedisTemplate.opsForValue().set("compaction:lock:" + sessionId, "other-worker", Duration.ofMinutes(1));
+
+        assertTrue(messageService.compactSession(sessionId, CONTEXT_WINDOW).isEmpty());
+        assertEquals(MESSAGES, messageService.getAllMessages(sessionId).size());
+        assertEquals("other-worker", stringRedisTemplate.opsForValue().get("compaction:lock:" + sessionId));
+    }
+
+    @Test
+    void failsWithoutWritingWhenTheLockExpires() {
+        long lockTtlMs = (long) ReflectionTestUtils.getField(messageService, "compactionLockTtlMs");
+        // Expires while the messages are read, before the summary is stored
+        ReflectionTestUtils.setField(messageService, "compactionLockTtlMs", 1L);
+        try {
+            assertThrows(IllegalStateException.class, () -> messageService.compactSession(sessionId, CONTEXT_WINDOW));
+        } finally {
+            ReflectionTestUtils.setField(messageService, "compactionLockTtlMs", lockTtlMs);
+        }
+
+        assertEquals(MESSAGES, messageService.getAllMessages(sessionId).size());
+        assertEquals(0, conversationSummaryService.getState(sessionId).getMessageCount());
+    }
+}
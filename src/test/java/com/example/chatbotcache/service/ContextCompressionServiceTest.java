@@ -0,0 +1,96 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Golden output of compressContext for a fixed session: the summary text, including topic
+ * order and key exchanges, and the preserved recent messages must stay exactly as the
+ * original implementation produced them.
+ */
+class ContextCompressionServiceTest {
+
+    private static final int CONTEXT_WINDOW = 50;
+
+    private static final String[][] OLDER_MESSAGES = {
+        {"USER", "How do I cache chat sessions in Redis?"},
+        {"ASSISTANT", "Store each session as a hash and keep message ids in a list."},
+        {"USER", "Redis entries expire after an hour, is that a problem for cache hits"},
+        {"ASSISTANT", "Refresh the TTL on every read so active sessions stay in Redis."},
+        {"USER", "Should Redis cache keys for each chat use a Redis prefix"},
+        {"ASSISTANT", "Use the chat_message prefix for message hashes and chat_session for sessions; "
+            + "that keeps the two keyspaces apart."}
+    };
+
+    private static final String EXPECTED_SUMMARY =
+        "Previous conversation summary (6 messages):\n"
+        + "- 3 user messages, 3 assistant messages\n"
+        + "- Main topics: redis, cache, chat\n"
+        + "- Key exchanges:\n"
+        + "  User: How do I cache chat sessions in Redis?\n"
+        + "  User: Redis entries expire after an hour, is that a prob...\n"
+        + "  Assistant: Use the chat_message prefix for message hashes and...\n";
+
+    private final ContextCompressionService compressionService = createService();
+
+    @Test
+    void compressesFixedSessionToGoldenOutput() {
+        List<ChatMessage> messages = session();
+
+        ContextCompressionService.CompressionResult result = compressionService.compressContext(messages, CONTEXT_WINDOW);
+
+        assertTrue(result.wasCompressed());
+        assertEquals(EXPECTED_SUMMARY, result.getConversationSummary());
+
+        List<ChatMessage> preserved = result.getCompressedMessages();
+        assertEquals(ContextCompressionService.MIN_RECENT_MESSAGES, preserved.size());
+        for (int i = 0; i < preserved.size(); i++) {
+            assertSame(messages.get(OLDER_MESSAGES.length + i), preserved.get(i));
+        }
+        assertEquals(151, result.getFinalTokenCount());
+        assertEquals(42, result.getTokensRemoved());
+    }
+
+    @Test
+    void leavesSessionWithinWindowUnchanged() {
+        List<ChatMessage> messages = session();
+
+        ContextCompressionService.CompressionResult result = compressionService.compressContext(messages);
+
+        assertEquals(false, result.wasCompressed());
+        assertEquals("", result.getConversationSummary());
+        assertSame(messages, result.getCompressedMessages());
+    }
+
+    // Private helper methods
+
+    private static ContextCompressionService createService() {
+        TokenCountingService tokenCountingService = new TokenCountingService();
+        ReflectionTestUtils.setField(tokenCountingService, "tokenizer", new HeuristicTokenizer());
+        ContextCompressionService service = new ContextCompressionService();
+        ReflectionTestUtils.setField(service, "tokenCountingService", tokenCountingService);
+        return service;
+    }
+
+    private static List<ChatMessage> session() {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (String[] message : OLDER_MESSAGES) {
+            messages.add(new ChatMessage("older-" + messages.size(), "golden-session",
+                MessageRole.valueOf(message[0]), message[1]));
+        }
+        for (int i = 0; i < ContextCompressionService.MIN_RECENT_MESSAGES; i++) {
+            MessageRole role = i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT;
+            messages.add(new ChatMessage("recent-" + i, "golden-session", role, "Recent message " + i));
+        }
+        return messages;
+    }
+}
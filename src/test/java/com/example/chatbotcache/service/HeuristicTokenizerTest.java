@@ -0,0 +1,88 @@
+package com.example.chatbotcache.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The single-pass count must match the regex estimator it replaced, including on the inputs
+ * where \b and \w disagree: non-ASCII letters, combining marks and surrogate pairs.
+ */
+class HeuristicTokenizerTest {
+
+    private static final Pattern WORD_PATTERN = Pattern.compile("\\b\\w+\\b");
+    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[.,!?;:\"'()\\[\\]{}]");
+
+    private static final String[] FRAGMENTS = {
+        "a", "Z", "7", "_", "word", "Redis", "42", " ", "  ", "\t", "\n", "\r", "\u000b", "\u0000", "\u001f",
+        ".", ",", "!", "?", ";", ":", "\"", "'", "(", ")", "[", "]", "{", "}", "-", "/", "@",
+        "é", "É", "ß", "ñ", "Ж", "Ω", "٠", "²",
+        "́", "̈", "⃝", "ः",
+        "東京", "タワー", " ", " ", "​", "﻿",
+        "🚀", "𝐀", "𐐀", "\ud83d", "\ude80"
+    };
+
+    private final HeuristicTokenizer tokenizer = new HeuristicTokenizer();
+
+    @Test
+    void matchesRegexEstimatorOnEdgeCases() {
+        String[] inputs = {
+            null, "", " ", "   ", "\t\n\r", "\u000b\u0000\u001f", " ", "   ",
+            "hello", "Hello, world!", "  padded words  ", "snake_case and 123 numbers",
+            "café au lait", "naïve", "été", "wordé", "éword",
+            "é", "café bar", "áb", " ́word", "word ́", "x́̈y",
+            "ЖЖ ascii Ж", "東京 tower", "tower東京",
+            "rocket 🚀 launch", "🚀word", "word𝐀", "𝐀word",
+            "lone \ud83d surrogate", "lone\ude80surrogate",
+            "(a) [b] {c} \"d\" 'e'", "?!.,;:", "a.b.c", "x² + y²", "٠١ digits"
+        };
+
+        for (String input : inputs) {
+            assertEquals(regexEstimate(input), tokenizer.countTokens(input), describe(input));
+        }
+    }
+
+    @Test
+    void matchesRegexEstimatorOnRandomText() {
+        Random random = new Random(20231013);
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder text = new StringBuilder();
+            int fragments = random.nextInt(12);
+            for (int j = 0; j < fragments; j++) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            String input = text.toString();
+            assertEquals(regexEstimate(input), tokenizer.countTokens(input), describe(input));
+        }
+    }
+
+    // Private helper methods
+
+    /**
+     * The original estimator: 1.3 tokens per \b\w+\b match plus one per punctuation mark
+     */
+    private static int regexEstimate(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return 0;
+        }
+        text = text.trim();
+
+        long wordCount = WORD_PATTERN.matcher(text).results().count();
+        long punctuationCount = PUNCTUATION_PATTERN.matcher(text).results().count();
+
+        int estimatedTokens = (int) Math.ceil(wordCount * 1.3) + (int) punctuationCount;
+        return Math.max(estimatedTokens, 1);
+    }
+
+    private static String describe(String input) {
+        if (input == null) {
+            return "null";
+        }
+        StringBuilder codes = new StringBuilder();
+        input.chars().forEach(c -> codes.append(String.format("\\u%04x", c)));
+        return codes.toString();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.repository.ChatMessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The scripted and sequential append paths must leave the same data in Redis and publish
+ * the same notification.
+ */
+class MessageAppendTest extends RedisIntegrationTest {
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    private RedisPubSubService pubSubService;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    private final BlockingQueue<Map<String, Object>> notifications = new LinkedBlockingQueue<>();
+    private final RedisPubSubService.NotificationListener listener = (channel, message) -> notifications.add(message);
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        ChatSession session = chatSessionService.createSession("append-test-user", "Append test");
+        sessionId = session.getSessionId();
+        pubSubService.subscribe(RedisPubSubService.CHAT_MESSAGES_CHANNEL, listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pubSubService.unsubscribe(RedisPubSubService.CHAT_MESSAGES_CHANNEL, listener);
+        messageService.deleteSessionMessages(sessionId);
+        chatSessionService.deleteSession(sessionId);
+    }
+
+    @Test
+    void scriptedAndSequentialAppendsWriteTheSameHash() {
+        ChatMessage sequential = messageService.addMessageSequential(sessionId, MessageRole.USER, "Hello there", 3);
+        ChatMessage scripted = messageService.addMessage(sessionId, MessageRole.USER, "Hello there", 3);
+
+        Map<Object, Object> sequentialHash = hash(sequential);
+        Map<Object, Object> scriptedHash = hash(scripted);
+        assertEquals(sequentialHash.keySet(), scriptedHash.keySet());
+        for (String field : new String[] {"_class", "sessionId", "role", "content", "tokenCount"}) {
+            assertEquals(sequentialHash.get(field), scriptedHash.get(field), field);
+        }
+
+        ChatMessage read = chatMessageRepository.findById(scripted.getMessageId()).orElse(null);
+        assertNotNull(read);
+        assertEquals(scripted.getContent(), read.getContent());
+        assertEquals(scripted.getTimestamp(), read.getTimestamp());
+        assertEquals(3, read.getTokenCount());
+    }
+
+    @Test
+    void scriptedAppendMaintainsRepositoryIndexes() {
+        ChatMessage sequential = messageService.addMessageSequential(sessionId, MessageRole.ASSISTANT, "First", 1);
+        ChatMessage scripted = messageService.addMessage(sessionId, MessageRole.ASSISTANT, "Second", 1);
+
+        Set<String> bySession = chatMessageRepository.findBySessionId(sessionId).stream()
+            .map(ChatMessage::getMessageId)
+            .collect(Collectors.toSet());
+        assertEquals(Set.of(sequential.getMessageId(), scripted.getMessageId()), bySession);
+        assertEquals(List.of(sequential.getMessageId(), scripted.getMessageId()),
+            messageService.getRecentMessages(sessionId, 10).stream().map(ChatMessage::getMessageId).toList());
+        assertTrue(stringRedisTemplate.opsForSet().isMember("chat_message", scripted.getMessageId()));
+        assertEquals(indexKeysOf(sequential), indexKeysOf(scripted));
+    }
+
+    @Test
+    void bothPathsPublishTheSameNotification() throws InterruptedException {
+        messageService.addMessageSequential(sessionId, MessageRole.USER, "Ping", 1);
+        messageService.addMessage(sessionId, MessageRole.USER, "Ping", 1);
+
+        Map<String, Object> sequential = notifications.poll(5, TimeUnit.SECONDS);
+        Map<String, Object> scripted = notifications.poll(5, TimeUnit.SECONDS);
+        assertNotNull(sequential);
+        assertNotNull(scripted);
+        assertEquals(sequential.keySet(), scripted.keySet());
+        assertEquals("append-test-user", scripted.get("userId"));
+        assertEquals(sequential.get("content"), scripted.get("content"));
+        assertEquals(sequential.get("role"), scripted.get("role"));
+    }
+
+    @Test
+    void asyncAppendUsesTheScript() {
+        ChatMessage message = messageService.addMessageAsync(sessionId, MessageRole.USER, "Async hello", 2).join();
+
+        assertTrue(chatMessageRepository.existsById(message.getMessageId()));
+        assertEquals(1, messageService.getMessageCount(sessionId));
+        assertEquals(2, messageService.getTokenTotals(sessionId).getTotalTokens());
+    }
+
+    // Private helper methods
+
+    private Map<Object, Object> hash(ChatMessage message) {
+        return stringRedisTemplate.opsForHash().entries("chat_message:" + message.getMessageId());
+    }
+
+    private Set<String> indexKeysOf(ChatMessage message) {
+        return stringRedisTemplate.opsForSet().members("chat_message:" + message.getMessageId() + ":idx");
+    }
+}
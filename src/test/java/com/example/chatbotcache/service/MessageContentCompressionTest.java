@@ -0,0 +1,109 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.config.ValueCompressor;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.repository.ChatMessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Message content above the message threshold is stored compressed in the hash on every write
+ * path and read back as plain text by the repository and the pipelined reader.
+ */
+class MessageContentCompressionTest extends RedisIntegrationTest {
+
+    private static final String LONG_CONTENT = "Redis keeps the conversation history in a list of message IDs "
+        + "and each message in a hash, so the conversation history can be read back in one round trip.";
+    private static final String SHORT_CONTENT = "Thanks!";
+    // Starts with the marker byte followed by a UTF-8 continuation byte
+    private static final String MARKER_CONTENT = "Ȁ starts with the same byte as a compressed value, "
+        + "which must not be mistaken for one when it is read back.";
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private ChatMessageRepository chatMessageRepository;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        ChatSession session = chatSessionService.createSession("content-compression-user", "Compression test");
+        sessionId = session.getSessionId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        messageService.deleteSessionMessages(sessionId);
+        chatSessionService.deleteSession(sessionId);
+    }
+
+    @Test
+    void longContentIsStoredCompressedOnEveryWritePath() {
+        ChatMessage scripted = messageService.addMessage(sessionId, MessageRole.USER, LONG_CONTENT, 40);
+        ChatMessage sequential = messageService.addMessageSequential(sessionId, MessageRole.ASSISTANT, LONG_CONTENT, 40);
+        ChatMessage saved = chatMessageRepository.save(
+            new ChatMessage(sessionId + "-saved", sessionId, MessageRole.USER, LONG_CONTENT, 40));
+
+        for (ChatMessage message : List.of(scripted, sequential, saved)) {
+            byte[] stored = storedContent(message.getMessageId());
+            assertTrue(ValueCompressor.isCompressed(stored), message.getMessageId());
+            assertTrue(stored.length < LONG_CONTENT.getBytes(StandardCharsets.UTF_8).length);
+            assertEquals(LONG_CONTENT, chatMessageRepository.findById(message.getMessageId()).orElseThrow().getContent());
+        }
+        chatMessageRepository.deleteById(saved.getMessageId());
+
+        List<ChatMessage> pipelined = chatMessageRepository.findAllByIdInOrder(
+            List.of(scripted.getMessageId(), sequential.getMessageId()));
+        assertEquals(2, pipelined.size());
+        pipelined.forEach(message -> assertEquals(LONG_CONTENT, message.getContent()));
+    }
+
+    @Test
+    void shortAndMarkerLikeContentReadBackUnchanged() {
+        ChatMessage shortMessage = messageService.addMessage(sessionId, MessageRole.USER, SHORT_CONTENT, 2);
+        assertArrayEquals(SHORT_CONTENT.getBytes(StandardCharsets.UTF_8), storedContent(shortMessage.getMessageId()));
+
+        // Stored as plain text, as it was before content compression
+        ChatMessage plain = messageService.addMessage(sessionId, MessageRole.ASSISTANT, SHORT_CONTENT, 2);
+        stringRedisTemplate.opsForHash().put("chat_message:" + plain.getMessageId(), "content", MARKER_CONTENT);
+        byte[] stored = storedContent(plain.getMessageId());
+        assertEquals(ValueCompressor.MARKER, stored[0]);
+
+        List<String> contents = messageService.getAllMessages(sessionId).stream().map(ChatMessage::getContent).toList();
+        assertEquals(List.of(SHORT_CONTENT, MARKER_CONTENT), contents);
+        assertFalse(ValueCompressor.isCompressed(storedContent(shortMessage.getMessageId())));
+    }
+
+    // Private helper methods
+
+    private byte[] storedContent(String messageId) {
+        byte[] key = ("chat_message:" + messageId).getBytes(StandardCharsets.UTF_8);
+        byte[] field = "content".getBytes(StandardCharsets.UTF_8);
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.hashCommands().hGet(key, field));
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.service.RedisCircuitBreaker.Operation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedisCircuitBreakerTest extends RedisIntegrationTest {
+
+    private static final Duration SLEEP = Duration.ofMillis(300);
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private RedisTransactionService transactionService;
+
+    @Autowired
+    @Qualifier("customStringRedisTemplate")
+    private RedisTemplate<String, String> stringRedisTemplate;
+
+    @AfterEach
+    void tearDown() {
+        circuitBreaker.reset();
+        // Unguarded, so it waits out any DEBUG SLEEP still holding the server
+        stringRedisTemplate.delete("breaker-test");
+    }
+
+    @Test
+    void guardedCallsRunOnTheCallersThread() {
+        Thread caller = Thread.currentThread();
+
+        Thread runner = circuitBreaker.execute(Operation.CACHE_READ, Thread::currentThread);
+
+        assertSame(caller, runner);
+    }
+
+    @Test
+    void clientTimesOutACommandThatOutlivesTheBudget() {
+        long start = System.nanoTime();
+
+        assertThrows(QueryTimeoutException.class, () -> circuitBreaker.execute(Operation.CACHE_READ, this::sleepServer));
+
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        assertTrue(elapsedMs < SLEEP.toMillis() - 50, "timed out after " + elapsedMs + " ms");
+    }
+
+    @Test
+    void connectionsStayUsableAfterATimeout() {
+        for (int i = 0; i < 2; i++) {
+            assertThrows(QueryTimeoutException.class, () -> circuitBreaker.execute(Operation.CACHE_READ, this::sleepServer));
+        }
+
+        // The late DEBUG SLEEP replies are matched to the timed-out commands, not to these
+        stringRedisTemplate.opsForValue().set("breaker-test", "value");
+        assertEquals("value", stringRedisTemplate.opsForValue().get("breaker-test"));
+    }
+
+    @Test
+    void commandsOutsideGuardedCallsUseTheClientDefault() {
+        assertEquals(2000, RedisCircuitBreaker.commandTimeoutMs(2000));
+
+        long insideBudget = circuitBreaker.execute(Operation.CACHE_READ, () -> RedisCircuitBreaker.commandTimeoutMs(2000));
+
+        assertTrue(insideBudget >= 1 && insideBudget <= 100, "remaining budget " + insideBudget);
+    }
+
+    @Test
+    void transactionsAreNotCutShortOnPooledConnections() {
+        // MULTI waits behind the sleeping server for longer than the session budget
+        circuitBreaker.execute(Operation.CACHE_READ, () -> {
+            try {
+                return sleepServer();
+            } catch (QueryTimeoutException e) {
+                return null;
+            }
+        });
+
+        circuitBreaker.run(Operation.CACHE_WRITE, () -> transactionService.executeInTransaction(stringRedisTemplate,
+            ops -> ops.opsForValue().set("breaker-test", "in-transaction")));
+        assertEquals("in-transaction", stringRedisTemplate.opsForValue().get("breaker-test"));
+
+        // The pooled connection came back outside MULTI
+        stringRedisTemplate.opsForValue().set("breaker-test", "after");
+        assertEquals("after", stringRedisTemplate.opsForValue().get("breaker-test"));
+    }
+
+    // Private helper methods
+
+    /**
+     * Hold the whole server for a while; DEBUG SLEEP is sent on the shared connection
+     */
+    private Object sleepServer() {
+        String seconds = String.valueOf(SLEEP.toMillis() / 1000.0);
+        return stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+            connection.execute("DEBUG", "SLEEP".getBytes(StandardCharsets.UTF_8), seconds.getBytes(StandardCharsets.UTF_8)));
+    }
+}
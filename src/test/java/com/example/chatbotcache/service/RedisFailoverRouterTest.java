@@ -0,0 +1,130 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.service.RedisFailoverRouter.PendingWrite;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes made while Redis is down are served from memory and replayed once it is back
+ */
+class RedisFailoverRouterTest extends RedisIntegrationTest {
+
+    private static final long RESYNC_TIMEOUT_MS = 30_000;
+
+    @Autowired
+    private RedisFailoverRouter failoverRouter;
+
+    @Autowired
+    private RoutingChatSessionService routingChatSessionService;
+
+    @Autowired
+    private RoutingMessageService routingMessageService;
+
+    @Autowired
+    private MessageService messageService;
+
+    private final List<String> sessionIds = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        awaitResync();
+        for (String sessionId : sessionIds) {
+            routingMessageService.deleteSessionMessages(sessionId);
+            routingChatSessionService.deleteSession(sessionId);
+        }
+    }
+
+    @Test
+    void writesDuringAnOutageAreReplayedInOrderAfterRestart() throws Exception {
+        String sessionId = routingChatSessionService.createSession("failover-test-user", "Failover resync test")
+            .getSessionId();
+        sessionIds.add(sessionId);
+
+        List<String> expectedContents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expectedContents.add(addMessage(sessionId, "Before outage " + i));
+        }
+
+        REDIS.stop();
+        try {
+            for (int i = 0; i < 10; i++) {
+                expectedContents.add(addMessage(sessionId, "During outage " + i));
+            }
+            assertTrue(failoverRouter.isDegraded());
+            assertEquals(10, failoverRouter.getPendingWrites());
+            assertEquals(expectedContents, contents(routingMessageService.getAllMessages(sessionId)));
+        } finally {
+            REDIS.start();
+        }
+
+        awaitResync();
+        assertEquals(0, failoverRouter.getPendingWrites());
+        assertEquals(expectedContents, contents(messageService.getAllMessages(sessionId)));
+    }
+
+    @Test
+    void unreplayableWritesAreDeadLetteredWithoutBlockingTheJournal() throws Exception {
+        String sessionId = routingChatSessionService.createSession("failover-test-user", "Dead letter test")
+            .getSessionId();
+        sessionIds.add(sessionId);
+        int deadLettersBefore = failoverRouter.getDeadLetters().size();
+
+        // A message for a session Redis has never seen cannot be replayed
+        ChatMessage orphan = new ChatMessage("msg_orphan_" + System.nanoTime(), "missing-session",
+            MessageRole.USER, "Orphan", 1);
+        journal("missing-session", orphan);
+        ChatMessage valid = new ChatMessage("msg_valid_" + System.nanoTime(), sessionId, MessageRole.USER, "Valid", 1);
+        journal(sessionId, valid);
+
+        awaitResync();
+        List<PendingWrite> deadLetters = failoverRouter.getDeadLetters();
+        assertEquals(deadLettersBefore + 1, deadLetters.size());
+        assertEquals(orphan.getMessageId(), deadLetters.get(deadLetters.size() - 1).getMessage().getMessageId());
+        assertEquals(List.of("Valid"), contents(messageService.getAllMessages(sessionId)));
+    }
+
+    // Private helper methods
+
+    private String addMessage(String sessionId, String content) {
+        routingMessageService.addMessage(sessionId, MessageRole.USER, content, 2);
+        return content;
+    }
+
+    /**
+     * Journal a write as if Redis had rejected it for being unreachable
+     */
+    private void journal(String sessionId, ChatMessage message) {
+        failoverRouter.write(sessionId,
+            () -> {
+                throw new QueryTimeoutException("Redis unreachable");
+            },
+            null,
+            () -> message,
+            PendingWrite::message);
+    }
+
+    private void awaitResync() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + RESYNC_TIMEOUT_MS;
+        while (failoverRouter.isDegraded() && System.currentTimeMillis() < deadline) {
+            failoverRouter.resync();
+            Thread.sleep(200);
+        }
+        assertFalse(failoverRouter.isDegraded());
+    }
+
+    private List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
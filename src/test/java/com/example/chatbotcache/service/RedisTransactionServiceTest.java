@@ -0,0 +1,154 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The shared template runs without template-wide transaction support; multi-key writes that
+ * need atomicity go through the explicit MULTI/EXEC and pipeline APIs.
+ */
+class RedisTransactionServiceTest extends RedisIntegrationTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 4000;
+
+    @Autowired
+    private RedisTransactionService transactionService;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private RedisKeyScanner keyScanner;
+
+    private final String prefix = "test:tx:" + UUID.randomUUID() + ":";
+
+    @AfterEach
+    void tearDown() {
+        keyScanner.unlinkMatching(prefix + "*", 500);
+    }
+
+    @Test
+    void transactionAppliesEveryCommand() {
+        List<Object> results = transactionService.executeInTransaction(
+            ops -> writeIndexed(ops, prefix + "multi", prefix + "index", 7));
+
+        assertEquals(3, results.size());
+        assertEquals(7, redisTemplate.opsForValue().get(prefix + "multi"));
+        assertEquals(7.0, redisTemplate.opsForZSet().score(prefix + "index", prefix + "multi"));
+    }
+
+    @Test
+    void failingCallbackDiscardsQueuedCommands() {
+        long aborted = (long) transactionService.getStats().get("abortedTransactions");
+
+        assertThrows(IllegalStateException.class, () -> transactionService.executeInTransaction(ops -> {
+            ops.opsForValue().set(prefix + "discarded", 1, TTL);
+            throw new IllegalStateException("abort");
+        }));
+
+        assertFalse(redisTemplate.hasKey(prefix + "discarded"));
+        assertEquals(aborted + 1, transactionService.getStats().get("abortedTransactions"));
+    }
+
+    @Test
+    void pipelineReturnsResultsInCommandOrder() {
+        redisTemplate.opsForValue().set(prefix + "pipelined", 3, TTL);
+
+        List<Object> results = transactionService.executePipelined(ops -> {
+            ops.opsForValue().get(prefix + "pipelined");
+            ops.opsForValue().increment(prefix + "pipelined");
+            ops.opsForValue().get(prefix + "missing");
+        });
+
+        assertEquals(3, results.get(0));
+        assertEquals(4L, results.get(1));
+        assertNull(results.get(2));
+    }
+
+    @Test
+    void sharedTemplateHandlesConcurrentReadsAndWrites() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            AtomicInteger mismatches = new AtomicInteger(0);
+            runConcurrently(pool, i -> {
+                String key = prefix + "pooled:" + (i % 500);
+                redisTemplate.opsForValue().set(key, i, TTL);
+                // Other threads may overwrite the key, but a read must never be queued and come back null
+                if (redisTemplate.opsForValue().get(key) == null) {
+                    mismatches.incrementAndGet();
+                }
+            });
+            runConcurrently(pool, i -> transactionService.executeInTransaction(
+                ops -> writeIndexed(ops, prefix + "multi:" + (i % 500), prefix + "index", i)));
+            runConcurrently(pool, i -> transactionService.executePipelined(
+                ops -> writeIndexed(ops, prefix + "pipelined:" + (i % 500), prefix + "index", i)));
+
+            assertEquals(0, mismatches.get());
+            assertEquals(1000L, redisTemplate.opsForZSet().size(prefix + "index"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void readsInsideASpringTransactionAreNotQueued() {
+        redisTemplate.opsForValue().set(prefix + "plain", 1, TTL);
+
+        // With template-wide transaction support the template would bind a connection in MULTI
+        // here and the read would be queued, returning null
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals(1, redisTemplate.opsForValue().get(prefix + "plain"));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // Private helper methods
+
+    private void writeIndexed(RedisOperations<String, Object> ops, String key, String indexKey, int value) {
+        ops.opsForValue().set(key, value, TTL);
+        ops.opsForZSet().add(indexKey, key, value);
+        ops.expire(indexKey, TTL);
+    }
+
+    private void runConcurrently(ExecutorService pool, IntConsumer operation) throws Exception {
+        AtomicInteger next = new AtomicInteger(0);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(pool.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < OPERATIONS) {
+                    operation.accept(i);
+                }
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+    }
+}
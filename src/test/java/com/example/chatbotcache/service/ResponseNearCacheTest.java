@@ -0,0 +1,184 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two near caches on one Redis: a write on one node evicts the other's L1 copy but not its
+ * own, hit counts are flushed into a separate hash without rewriting the cached payload, and
+ * each tier's lookups are counted.
+ */
+class ResponseNearCacheTest extends RedisIntegrationTest {
+
+    private static final String MODEL = "gpt-3.5-turbo";
+    private static final Double TEMPERATURE = 0.7;
+    private static final long DELIVERY_TIMEOUT_MS = 5000;
+
+    @Autowired
+    private ResponseNearCache nearCache;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private RedisPubSubService pubSubService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private ResponseNearCache peer;
+    private RedisPubSubService.NotificationListener peerListener;
+    private String userInput;
+    private String cacheKey;
+
+    @BeforeEach
+    void setUp() {
+        List<RedisPubSubService.NotificationListener> listeners = cacheEventListeners();
+        List<RedisPubSubService.NotificationListener> before = new ArrayList<>(listeners);
+
+        // A second node sharing the Redis but with its own L1 and meters
+        peer = new ResponseNearCache();
+        ReflectionTestUtils.setField(peer, "pubSubService", pubSubService);
+        ReflectionTestUtils.setField(peer, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(peer, "enabled", true);
+        ReflectionTestUtils.setField(peer, "maxSize", 100L);
+        ReflectionTestUtils.setField(peer, "ttlSeconds", 300L);
+        peer.initialize();
+        peerListener = listeners.stream().filter(listener -> !before.contains(listener)).findFirst().orElseThrow();
+
+        userInput = "near cache test " + UUID.randomUUID();
+        cacheKey = ReflectionTestUtils.invokeMethod(cacheService, "generateCacheKey", userInput, MODEL, TEMPERATURE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pubSubService.unsubscribe(RedisPubSubService.CACHE_EVENTS_CHANNEL, peerListener);
+        redisTemplate.delete(List.of(cacheKey, cacheKey + ":hits"));
+        redisTemplate.opsForZSet().remove(CacheService.RESPONSE_CACHE_INDEX, cacheKey);
+    }
+
+    @Test
+    void writeOnOneNodeEvictsPeerCopyOnly() throws InterruptedException {
+        peer.putFromRemote(cacheKey, Map.of("response", "stale"));
+        assertNotNull(cached(peer, cacheKey));
+
+        nearCache.putAndInvalidatePeers(cacheKey, Map.of("response", "fresh"));
+
+        awaitTrue(() -> cached(peer, cacheKey) == null);
+        // The writer hears its own event first and ignores it
+        assertEquals(Map.of("response", "fresh"), cached(nearCache, cacheKey));
+    }
+
+    @Test
+    void hitFlushIncrementsCounterWithoutRewritingPayload() throws InterruptedException {
+        cacheService.cacheResponse("near-cache-session", userInput, "Cached answer", MODEL, TEMPERATURE);
+        byte[] payload = rawValue(cacheKey);
+        assertNotNull(payload);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("Cached answer", cacheService.getCachedResponse(userInput, MODEL, TEMPERATURE).get("response"));
+        }
+        cacheService.flushHitCounts();
+
+        // A scheduled flush may have drained some of the hits first
+        awaitTrue(() -> hitCount() == 2);
+        assertEquals(1, redisTemplate.opsForHash().size(cacheKey + ":hits"));
+        assertArrayEquals(payload, rawValue(cacheKey));
+    }
+
+    @Test
+    void lookupsAreCountedPerTier() throws InterruptedException {
+        double l1Hits = lookups("l1", "hit");
+        double l1Misses = lookups("l1", "miss");
+        double l2Hits = lookups("l2", "hit");
+        double l2Misses = lookups("l2", "miss");
+
+        assertNull(cacheService.getCachedResponse(userInput, MODEL, TEMPERATURE));
+        cacheService.cacheResponse("near-cache-session", userInput, "Cached answer", MODEL, TEMPERATURE);
+        assertNotNull(cacheService.getCachedResponse(userInput, MODEL, TEMPERATURE));
+
+        peer.putAndInvalidatePeers(cacheKey, Map.of("response", "Cached answer"));
+        awaitTrue(() -> cached(nearCache, cacheKey) == null);
+        assertNotNull(cacheService.getCachedResponse(userInput, MODEL, TEMPERATURE));
+
+        assertEquals(1, lookups("l1", "hit") - l1Hits);
+        assertEquals(2, lookups("l1", "miss") - l1Misses);
+        assertEquals(1, lookups("l2", "hit") - l2Hits);
+        assertEquals(1, lookups("l2", "miss") - l2Misses);
+
+        double l1Total = lookups("l1", "hit") + lookups("l1", "miss");
+        assertEquals(lookups("l1", "hit") / l1Total, hitRatio("l1"), 1e-9);
+        assertEquals(nearCache.getL2HitRatio(), hitRatio("l2"), 1e-9);
+        assertNotNull(meterRegistry.find("cache.size").tag("cache", "response_l1").gauge());
+    }
+
+    // Private helper methods
+
+    @SuppressWarnings("unchecked")
+    private List<RedisPubSubService.NotificationListener> cacheEventListeners() {
+        Map<String, List<RedisPubSubService.NotificationListener>> channelListeners =
+            (Map<String, List<RedisPubSubService.NotificationListener>>) ReflectionTestUtils.getField(pubSubService, "channelListeners");
+        return channelListeners.get(RedisPubSubService.CACHE_EVENTS_CHANNEL);
+    }
+
+    /**
+     * The node's L1 entry, read without counting a lookup or a hit
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cached(ResponseNearCache node, String key) {
+        Cache<String, Map<String, Object>> cache = (Cache<String, Map<String, Object>>) ReflectionTestUtils.getField(node, "cache");
+        return cache.getIfPresent(key);
+    }
+
+    private byte[] rawValue(String key) {
+        return redisTemplate.execute((RedisCallback<byte[]>) connection ->
+            connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private long hitCount() {
+        Object count = redisTemplate.opsForHash().get(cacheKey + ":hits", "hitCount");
+        return count != null ? ((Number) count).longValue() : 0;
+    }
+
+    private double lookups(String tier, String result) {
+        return meterRegistry.get("chatbot.cache.response.lookups").tag("tier", tier).tag("result", result)
+            .counter().count();
+    }
+
+    private double hitRatio(String tier) {
+        return meterRegistry.get("chatbot.cache.response.hit.ratio").tag("tier", tier).gauge().value();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.model.ChatMessage;
+import com.example.chatbotcache.model.MessageRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionMessageBufferTest {
+
+    @Test
+    void appendEvictsTheOldestMessageOnceFull() {
+        SessionMessageBuffer buffer = new SessionMessageBuffer(2);
+
+        assertNull(buffer.append(message("0_0")));
+        assertNull(buffer.append(message("0_1")));
+        assertEquals("0_0", buffer.append(message("0_2")).getMessageId());
+        assertEquals(List.of("0_1", "0_2"), ids(buffer.snapshot()));
+        assertEquals(List.of("0_2"), ids(buffer.latest(1)));
+    }
+
+    @Test
+    void removeLeavesTheRestInOrder() {
+        SessionMessageBuffer buffer = new SessionMessageBuffer(3);
+        buffer.append(message("0_0"));
+        buffer.append(message("0_1"));
+        buffer.append(message("0_2"));
+
+        assertEquals("0_1", buffer.remove("0_1").getMessageId());
+        assertEquals(List.of("0_0", "0_2"), ids(buffer.snapshot()));
+        assertEquals(2, buffer.size());
+        assertNull(buffer.remove("0_1"));
+    }
+
+    @Test
+    void appendAfterRemoveFillsTheGapBeforeEvicting() {
+        SessionMessageBuffer buffer = new SessionMessageBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.append(message("0_" + i));
+        }
+        buffer.remove("0_3");
+        buffer.remove("0_2");
+
+        assertNull(buffer.append(message("0_5")));
+        assertNull(buffer.append(message("0_6")));
+        assertEquals(List.of("0_4", "0_5", "0_6"), ids(buffer.snapshot()));
+        assertEquals(3, buffer.size());
+        assertEquals("0_4", buffer.append(message("0_7")).getMessageId());
+        assertEquals(List.of("0_5", "0_6", "0_7"), ids(buffer.snapshot()));
+    }
+
+    /**
+     * Removes shift slots under concurrent readers, which must still see an ordered snapshot
+     * without the duplicates a half-done shift would show
+     */
+    @Test
+    void snapshotsStayOrderedWhileRemoving() throws Exception {
+        int appends = 50_000;
+        int capacity = 20;
+        SessionMessageBuffer buffer = new SessionMessageBuffer(capacity);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicInteger writersRunning = new AtomicInteger(1);
+        AtomicInteger violations = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            futures.add(pool.submit(() -> {
+                try {
+                    startGate.await();
+                    for (int i = 0; i < appends; i++) {
+                        buffer.append(message("0_" + i));
+                        if (i % 3 == 2) {
+                            buffer.remove("0_" + (i - 1));
+                        }
+                    }
+                } finally {
+                    writersRunning.decrementAndGet();
+                }
+                return null;
+            }));
+            for (int r = 0; r < 2; r++) {
+                futures.add(pool.submit(() -> {
+                    startGate.await();
+                    while (writersRunning.get() > 0) {
+                        List<ChatMessage> snapshot = buffer.snapshot();
+                        if (snapshot.size() > capacity || !inWriterOrder(snapshot, 1)) {
+                            violations.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, violations.get());
+        assertEquals(capacity, buffer.size());
+        assertEquals(capacity, buffer.snapshot().size());
+    }
+
+    /**
+     * Concurrent writers and snapshot readers on one buffer: every snapshot stays bounded and
+     * keeps each writer's messages in order, and every append beyond capacity evicts exactly once
+     */
+    @Test
+    void snapshotsStayBoundedAndOrderedUnderContention() throws Exception {
+        int writers = 8;
+        int appendsPerWriter = 20_000;
+        int readers = 4;
+        int capacity = 50;
+        SessionMessageBuffer buffer = new SessionMessageBuffer(capacity);
+        ExecutorService pool = Executors.newFixedThreadPool(writers + readers);
+        CountDownLatch startGate = new CountDownLatch(1);
+        AtomicInteger writersRunning = new AtomicInteger(writers);
+        AtomicInteger evictions = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        try {
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(pool.submit(() -> {
+                    try {
+                        startGate.await();
+                        for (int i = 0; i < appendsPerWriter; i++) {
+                            if (buffer.append(message(writer + "_" + i)) != null) {
+                                evictions.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        writersRunning.decrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            for (int r = 0; r < readers; r++) {
+                futures.add(pool.submit(() -> {
+                    startGate.await();
+                    while (writersRunning.get() > 0) {
+                        List<ChatMessage> snapshot = buffer.snapshot();
+                        if (snapshot.size() > capacity || !inWriterOrder(snapshot, writers)) {
+                            violations.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            startGate.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long appends = (long) writers * appendsPerWriter;
+        assertEquals(0, violations.get());
+        assertEquals(appends - capacity, evictions.get());
+        assertEquals(capacity, buffer.size());
+        assertEquals(capacity, buffer.snapshot().size());
+        assertTrue(inWriterOrder(buffer.snapshot(), writers));
+    }
+
+    // Private helper methods
+
+    private static ChatMessage message(String id) {
+        return new ChatMessage(id, "buffer-test", MessageRole.USER, "message", 1);
+    }
+
+    private static List<String> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getMessageId).toList();
+    }
+
+    private static boolean inWriterOrder(List<ChatMessage> snapshot, int writers) {
+        int[] lastSeen = new int[writers];
+        Arrays.fill(lastSeen, -1);
+        for (ChatMessage message : snapshot) {
+            String[] parts = message.getMessageId().split("_");
+            int writer = Integer.parseInt(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            if (index <= lastSeen[writer]) {
+                return false;
+            }
+            lastSeen[writer] = index;
+        }
+        return true;
+    }
+}
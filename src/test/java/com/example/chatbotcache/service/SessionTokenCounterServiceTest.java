@@ -0,0 +1,110 @@
+package com.example.chatbotcache.service;
+
+import com.example.chatbotcache.RedisIntegrationTest;
+import com.example.chatbotcache.model.ChatSession;
+import com.example.chatbotcache.model.MessageRole;
+import com.example.chatbotcache.repository.PipelinedHashReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionTokenCounterServiceTest extends RedisIntegrationTest {
+
+    private static final String RECONCILE_QUEUE_KEY = "tokens:reconcile";
+
+    @Autowired
+    private SessionTokenCounterService tokenCounterService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ChatSessionService chatSessionService;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    private String sessionId;
+
+    @BeforeEach
+    void setUp() {
+        ChatSession session = chatSessionService.createSession("counter-test-user", "Counter test");
+        sessionId = session.getSessionId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        messageService.deleteSessionMessages(sessionId);
+        chatSessionService.deleteSession(sessionId);
+    }
+
+    @Test
+    void reconcileRebuildsTotalsFromTheMessageList() {
+        messageService.addMessage(sessionId, MessageRole.USER, "Question", 5);
+        messageService.addMessage(sessionId, MessageRole.ASSISTANT, "Answer", 7);
+
+        tokenCounterService.rebuild(sessionId, List.of());
+        assertEquals(0, tokenCounterService.getTotals(sessionId).getTotalTokens());
+
+        tokenCounterService.markForReconciliation(sessionId);
+        tokenCounterService.reconcileQueuedSessions();
+
+        SessionTokenCounterService.SessionTokenTotals totals = tokenCounterService.getTotals(sessionId);
+        assertEquals(12, totals.getTotalTokens());
+        assertEquals(2, totals.getMessageCount());
+        assertEquals(5, totals.getTokensForRole(MessageRole.USER));
+        assertEquals(7, totals.getTokensForRole(MessageRole.ASSISTANT));
+    }
+
+    @Test
+    void reconcileRequeuesSessionChangedDuringRebuild() {
+        messageService.addMessage(sessionId, MessageRole.USER, "Question", 5);
+        tokenCounterService.rebuild(sessionId, List.of());
+
+        // A message is appended after the list was read but before the totals are replaced
+        PipelinedHashReader hashReader = (PipelinedHashReader) ReflectionTestUtils.getField(tokenCounterService, "hashReader");
+        ReflectionTestUtils.setField(tokenCounterService, "hashReader", new PipelinedHashReader() {
+            @Override
+            public <T> List<T> readAll(String keyspace, List<String> ids, Class<T> type) {
+                List<T> read = hashReader.readAll(keyspace, ids, type);
+                messageService.addMessage(sessionId, MessageRole.ASSISTANT, "Answer", 7);
+                return read;
+            }
+        });
+        try {
+            tokenCounterService.markForReconciliation(sessionId);
+            tokenCounterService.reconcileQueuedSessions();
+        } finally {
+            ReflectionTestUtils.setField(tokenCounterService, "hashReader", hashReader);
+        }
+
+        // The appended message's delta was overwritten, so the session is queued again
+        assertEquals(5, tokenCounterService.getTotals(sessionId).getTotalTokens());
+        assertTrue(redisTemplate.opsForSet().isMember(RECONCILE_QUEUE_KEY, sessionId));
+
+        tokenCounterService.reconcileQueuedSessions();
+        SessionTokenCounterService.SessionTokenTotals totals = tokenCounterService.getTotals(sessionId);
+        assertEquals(12, totals.getTotalTokens());
+        assertEquals(2, totals.getMessageCount());
+        assertFalse(redisTemplate.opsForSet().isMember(RECONCILE_QUEUE_KEY, sessionId));
+    }
+
+    @Test
+    void missingCountersAreRecomputedOnRead() {
+        messageService.addMessage(sessionId, MessageRole.USER, "Question", 4);
+        tokenCounterService.clear(sessionId);
+
+        SessionTokenCounterService.SessionTokenTotals totals = tokenCounterService.getTotals(sessionId);
+        assertEquals(4, totals.getTotalTokens());
+        assertEquals(1, totals.getMessageCount());
+    }
+}